@@ -43,6 +43,7 @@ import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.util.ReflectionUtil;
@@ -53,6 +54,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -425,6 +428,16 @@ public class BdbjeCacheStore extends AbstractCacheStore {
       }
    }
 
+   /**
+    * {@inheritDoc} This implementation writes all entries within a single transaction, through {@link
+    * BdbjeCacheStore#applyModifications(java.util.List)}, so that they are committed with a single log write.
+    */
+   @Override
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      List<Modification> mods = new ArrayList<Modification>(entries.size());
+      for (InternalCacheEntry ed : entries) mods.add(new Store(ed));
+      applyModifications(mods);
+   }
 
    private void addNewExpiry(InternalCacheEntry entry) throws IOException {
       long expiry = entry.getExpiryTime();
@@ -28,6 +28,7 @@ import java.io.ObjectOutput;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -221,6 +222,45 @@ public class CassandraCacheStore extends AbstractCacheStore {
       }
    }
 
+   /**
+    * {@inheritDoc} This implementation fetches the entries with one <tt>multiget_slice</tt> call per block of keys.
+    */
+   @Override
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      Cassandra.Client cassandraClient = null;
+      try {
+         cassandraClient = dataSource.getConnection();
+         Set<InternalCacheEntry> s = new HashSet<InternalCacheEntry>();
+         SlicePredicate slicePredicate = new SlicePredicate();
+         slicePredicate.setColumn_names(Collections.singletonList(ByteBuffer.wrap(entryColumnPath.getColumn())));
+         Map<ByteBuffer, Object> keysByHash = new HashMap<ByteBuffer, Object>();
+         for (Object key : keys) {
+            keysByHash.put(ByteBufferUtil.bytes(hashKey(key)), key);
+         }
+         List<ByteBuffer> hashes = new ArrayList<ByteBuffer>(keysByHash.keySet());
+         // Get the entries in SLICE_SIZE blocks
+         for (int from = 0; from < hashes.size(); from += SLICE_SIZE) {
+            List<ByteBuffer> block = hashes.subList(from, Math.min(from + SLICE_SIZE, hashes.size()));
+            Map<ByteBuffer, List<ColumnOrSuperColumn>> rows = cassandraClient.multiget_slice(block,
+                     entryColumnParent, slicePredicate, readConsistencyLevel);
+            for (Map.Entry<ByteBuffer, List<ColumnOrSuperColumn>> row : rows.entrySet()) {
+               if (row.getValue().isEmpty())
+                  continue;
+               Object key = keysByHash.get(row.getKey());
+               InternalCacheEntry ice = unmarshall(row.getValue().get(0).getColumn().getValue(), key);
+               // expired entries are left for the purging thread to remove
+               if (ice != null && !ice.isExpired())
+                  s.add(ice);
+            }
+         }
+         return s;
+      } catch (Exception e) {
+         throw new CacheLoaderException(e);
+      } finally {
+         dataSource.releaseConnection(cassandraClient);
+      }
+   }
+
    @Override
    public Set<InternalCacheEntry> loadAll() throws CacheLoaderException {
       return load(Integer.MAX_VALUE);
@@ -546,6 +586,27 @@ public class CassandraCacheStore extends AbstractCacheStore {
 
    }
 
+   /**
+    * {@inheritDoc} This implementation sends all entries in a single <tt>batch_mutate</tt> call.
+    */
+   @Override
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      Cassandra.Client cassandraClient = null;
+
+      try {
+         cassandraClient = dataSource.getConnection();
+         Map<ByteBuffer, Map<String, List<Mutation>>> mutationMap = new HashMap<ByteBuffer, Map<String, List<Mutation>>>();
+         for (InternalCacheEntry entry : entries) {
+            store0(entry, mutationMap);
+         }
+         cassandraClient.batch_mutate(mutationMap, writeConsistencyLevel);
+      } catch (Exception e) {
+         throw new CacheLoaderException(e);
+      } finally {
+         dataSource.releaseConnection(cassandraClient);
+      }
+   }
+
    @Override
    protected void applyModifications(List<? extends Modification> mods) throws CacheLoaderException {
       Cassandra.Client cassandraClient = null;
@@ -298,6 +298,30 @@ public class TableManipulation implements Cloneable {
       return selectRowSql;
    }
 
+   /**
+    * Selects the id and data columns of the rows with the given number of ids, through an <tt>IN</tt> clause.  The
+    * statement depends on the number of ids, so it is not cached.
+    */
+   public String getSelectMultipleRowsSql(int numberOfIds) {
+      return "SELECT " + idColumnName + ", " + dataColumnName + " FROM " + getTableName() + " WHERE " + idColumnName + " IN (" + parameterList(numberOfIds) + ")";
+   }
+
+   /**
+    * Selects the ids of the rows, out of the given number of ids, that exist in the table.
+    */
+   public String getSelectMultipleIdsSql(int numberOfIds) {
+      return "SELECT " + idColumnName + " FROM " + getTableName() + " WHERE " + idColumnName + " IN (" + parameterList(numberOfIds) + ")";
+   }
+
+   private static String parameterList(int size) {
+      StringBuilder sb = new StringBuilder(size * 2);
+      for (int i = 0; i < size; i++) {
+         if (i > 0) sb.append(',');
+         sb.append('?');
+      }
+      return sb.toString();
+   }
+
    public String getDeleteRowSql() {
       if (deleteRowSql == null) {
          deleteRowSql = "DELETE FROM " + getTableName() + " WHERE " + idColumnName + " = ?";
@@ -158,4 +158,12 @@ public interface Log extends org.infinispan.util.logging.Log {
    @Message(value = "SQL error while fetching stored entry with key: %s, lockingKey: %s", id = 8027)
    void sqlFailureReadingKey(Object key, String lockingKey, @Cause SQLException e);
 
+   @LogMessage(level = ERROR)
+   @Message(value = "SQL error while fetching %d stored entries", id = 8028)
+   void sqlFailureReadingKeys(int numberOfKeys, @Cause SQLException e);
+
+   @LogMessage(level = ERROR)
+   @Message(value = "SQL error while storing %d entries in a batch", id = 8029)
+   void sqlFailureStoringKeys(int numberOfKeys, @Cause SQLException e);
+
 }
@@ -39,6 +39,10 @@ import org.infinispan.util.logging.LogFactory;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -125,6 +129,20 @@ public class JdbcMixedCacheStore extends AbstractCacheStore {
       return fromBuckets;
    }
 
+   @Override
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      List<Object> stringKeys = new ArrayList<Object>();
+      List<Object> binaryKeys = new ArrayList<Object>();
+      for (Object key : keys) {
+         if (getCacheStore(key) == stringBasedCacheStore) stringKeys.add(key);
+         else binaryKeys.add(key);
+      }
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      if (!stringKeys.isEmpty()) result.addAll(stringBasedCacheStore.loadAll(stringKeys));
+      if (!binaryKeys.isEmpty()) result.addAll(binaryCacheStore.loadAll(binaryKeys));
+      return result;
+   }
+
    @Override
    public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
       if (numEntries < 0) return loadAll();
@@ -150,6 +168,18 @@ public class JdbcMixedCacheStore extends AbstractCacheStore {
       getCacheStore(ed.getKey()).store(ed);
    }
 
+   @Override
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      List<InternalCacheEntry> stringEntries = new ArrayList<InternalCacheEntry>();
+      List<InternalCacheEntry> binaryEntries = new ArrayList<InternalCacheEntry>();
+      for (InternalCacheEntry ed : entries) {
+         if (getCacheStore(ed.getKey()) == stringBasedCacheStore) stringEntries.add(ed);
+         else binaryEntries.add(ed);
+      }
+      if (!stringEntries.isEmpty()) stringBasedCacheStore.storeAll(stringEntries);
+      if (!binaryEntries.isEmpty()) binaryCacheStore.storeAll(binaryEntries);
+   }
+
    public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
       binaryCacheStore.fromStream(inputStream);
       stringBasedCacheStore.fromStream(inputStream);
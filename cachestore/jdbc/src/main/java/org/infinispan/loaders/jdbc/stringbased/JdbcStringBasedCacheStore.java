@@ -30,6 +30,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.infinispan.Cache;
@@ -236,6 +242,138 @@ public class JdbcStringBasedCacheStore extends LockSupportCacheStore<String> {
       }
    }
 
+   /**
+    * Writes the entries using JDBC batches: the rows that already exist are looked up with a single <tt>IN</tt> query
+    * per batch, then all inserts and updates are sent as batch statements.
+    */
+   @Override
+   protected void storeAllLockSafe(List<InternalCacheEntry> entries, List<String> lockingKeys) throws CacheLoaderException {
+      // if a key is present more than once, the last entry wins, as it would with consecutive store() calls
+      Map<String, InternalCacheEntry> entriesById = new LinkedHashMap<String, InternalCacheEntry>();
+      for (int i = 0; i < entries.size(); i++) {
+         entriesById.put(lockingKeys.get(i), entries.get(i));
+      }
+      int batchSize = tableManipulation.getBatchSize();
+      Connection connection = null;
+      PreparedStatement insertPs = null;
+      PreparedStatement updatePs = null;
+      try {
+         connection = connectionFactory.getConnection();
+         Set<String> existing = selectExistingIds(connection, new ArrayList<String>(entriesById.keySet()));
+         insertPs = connection.prepareStatement(tableManipulation.getInsertRowSql());
+         updatePs = connection.prepareStatement(tableManipulation.getUpdateRowSql());
+         int inserts = 0, updates = 0;
+         for (Map.Entry<String, InternalCacheEntry> e : entriesById.entrySet()) {
+            String id = e.getKey();
+            InternalCacheEntry ed = e.getValue();
+            ByteBuffer byteBuffer = JdbcUtil.marshall(getMarshaller(), ed.toInternalCacheValue());
+            boolean update = existing.contains(id);
+            PreparedStatement ps = update ? updatePs : insertPs;
+            ps.setBinaryStream(1, byteBuffer.getStream(), byteBuffer.getLength());
+            ps.setLong(2, ed.getExpiryTime());
+            ps.setString(3, id);
+            ps.addBatch();
+            if (update) {
+               if (++updates % batchSize == 0) updatePs.executeBatch();
+            } else {
+               if (++inserts % batchSize == 0) insertPs.executeBatch();
+            }
+         }
+         if (inserts % batchSize != 0) insertPs.executeBatch();
+         if (updates % batchSize != 0) updatePs.executeBatch();
+         if (log.isTraceEnabled()) {
+            log.tracef("Stored %d entries (%d inserts, %d updates), batch size is %d", entriesById.size(), inserts, updates, batchSize);
+         }
+      } catch (SQLException ex) {
+         log.sqlFailureStoringKeys(entriesById.size(), ex);
+         throw new CacheLoaderException(String.format(
+               "Error while storing %d entries to database", entriesById.size()), ex);
+      } catch (InterruptedException e) {
+         if (log.isTraceEnabled()) {
+            log.trace("Interrupted while marshalling to store");
+         }
+         Thread.currentThread().interrupt();
+      } finally {
+         JdbcUtil.safeClose(insertPs);
+         JdbcUtil.safeClose(updatePs);
+         connectionFactory.releaseConnection(connection);
+      }
+   }
+
+   /**
+    * Reads the entries with one <tt>IN</tt> query per batch of keys rather than a query per key.
+    */
+   @Override
+   protected Set<InternalCacheEntry> loadAllLockSafe(List<Object> keys, List<String> lockingKeys) throws CacheLoaderException {
+      Map<String, Object> keysById = new HashMap<String, Object>(keys.size() * 2);
+      for (int i = 0; i < keys.size(); i++) {
+         keysById.put(lockingKeys.get(i), keys.get(i));
+      }
+      List<String> ids = new ArrayList<String>(keysById.keySet());
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      int batchSize = tableManipulation.getBatchSize();
+      Connection conn = null;
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try {
+         conn = connectionFactory.getConnection();
+         for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            ps = conn.prepareStatement(tableManipulation.getSelectMultipleRowsSql(batch.size()));
+            for (int i = 0; i < batch.size(); i++) {
+               ps.setString(i + 1, batch.get(i));
+            }
+            rs = ps.executeQuery();
+            while (rs.next()) {
+               Object key = keysById.get(rs.getString(1));
+               InputStream inputStream = rs.getBinaryStream(2);
+               InternalCacheValue icv = (InternalCacheValue) JdbcUtil.unmarshall(getMarshaller(), inputStream);
+               InternalCacheEntry storedEntry = icv.toInternalCacheEntry(key);
+               if (!storedEntry.isExpired()) {
+                  result.add(storedEntry);
+               }
+            }
+            JdbcUtil.safeClose(rs);
+            JdbcUtil.safeClose(ps);
+            rs = null;
+            ps = null;
+         }
+      } catch (SQLException e) {
+         log.sqlFailureReadingKeys(ids.size(), e);
+         throw new CacheLoaderException(String.format(
+               "SQL error while fetching %d stored entries", ids.size()), e);
+      } finally {
+         JdbcUtil.safeClose(rs);
+         JdbcUtil.safeClose(ps);
+         connectionFactory.releaseConnection(conn);
+      }
+      return result;
+   }
+
+   private Set<String> selectExistingIds(Connection conn, List<String> ids) throws SQLException {
+      Set<String> existing = new HashSet<String>();
+      int batchSize = tableManipulation.getBatchSize();
+      for (int from = 0; from < ids.size(); from += batchSize) {
+         List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+         PreparedStatement ps = null;
+         ResultSet rs = null;
+         try {
+            ps = conn.prepareStatement(tableManipulation.getSelectMultipleIdsSql(batch.size()));
+            for (int i = 0; i < batch.size(); i++) {
+               ps.setString(i + 1, batch.get(i));
+            }
+            rs = ps.executeQuery();
+            while (rs.next()) {
+               existing.add(rs.getString(1));
+            }
+         } finally {
+            JdbcUtil.safeClose(rs);
+            JdbcUtil.safeClose(ps);
+         }
+      }
+      return existing;
+   }
+
    @Override
    public boolean removeLockSafe(Object key, String keyStr) throws CacheLoaderException {
       Connection connection = null;
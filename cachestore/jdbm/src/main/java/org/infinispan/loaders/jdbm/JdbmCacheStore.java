@@ -53,6 +53,7 @@ import java.io.ObjectOutput;
 import java.text.SimpleDateFormat;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -291,6 +292,15 @@ public class JdbmCacheStore extends AbstractCacheStore {
       commit();
    }
 
+   /**
+    * {@inheritDoc} This implementation writes all entries before committing the record manager once.
+    */
+   @Override
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      for (InternalCacheEntry entry : entries) store0(entry);
+      commit();
+   }
+
    private byte[] marshall(InternalCacheEntry entry) throws IOException, InterruptedException {
       return getMarshaller().objectToByteBuffer(entry.toInternalCacheValue());
    }
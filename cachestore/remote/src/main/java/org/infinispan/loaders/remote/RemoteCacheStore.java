@@ -39,7 +39,11 @@ import org.infinispan.util.logging.LogFactory;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -76,6 +80,14 @@ public class RemoteCacheStore extends AbstractCacheStore {
       return (InternalCacheEntry) remoteCache.get(key);
    }
 
+   /**
+    * {@inheritDoc} The keys are read through one multi-key get per server owning some of them.
+    */
+   @Override
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      return convertToInternalCacheEntries(remoteCache.getAll((Collection<Object>) keys));
+   }
+
    @Override
    protected void purgeInternal() throws CacheLoaderException {
       if (log.isTraceEnabled()) {
@@ -96,6 +108,36 @@ public class RemoteCacheStore extends AbstractCacheStore {
       remoteCache.put(entry.getKey(), entry, toSeconds(entry.getLifespan(), entry, LIFESPAN), TimeUnit.SECONDS, toSeconds(entry.getMaxIdle(), entry, MAXIDLE), TimeUnit.SECONDS);
    }
 
+   /**
+    * {@inheritDoc} Entries sharing the same lifespan and max idle time, usually all of them, are written through one
+    * multi-key put per server owning some of their keys.
+    */
+   @Override
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      if (log.isTraceEnabled()) {
+         log.tracef("Adding %d entries", entries.size());
+      }
+      Map<List<Long>, Map<Object, Object>> byExpiration = new HashMap<List<Long>, Map<Object, Object>>();
+      for (InternalCacheEntry entry : entries) {
+         List<Long> expiration = Arrays.asList(toSeconds(entry.getLifespan(), entry, LIFESPAN), toSeconds(entry.getMaxIdle(), entry, MAXIDLE));
+         Map<Object, Object> batch = byExpiration.get(expiration);
+         if (batch == null) {
+            batch = new HashMap<Object, Object>();
+            byExpiration.put(expiration, batch);
+         }
+         batch.put(entry.getKey(), entry);
+      }
+      for (Map.Entry<List<Long>, Map<Object, Object>> batch : byExpiration.entrySet()) {
+         List<Long> expiration = batch.getKey();
+         remoteCache.putAll(batch.getValue(), expiration.get(0), TimeUnit.SECONDS, expiration.get(1), TimeUnit.SECONDS);
+      }
+   }
+
+   @Override
+   public void removeAll(Set<Object> keys) throws CacheLoaderException {
+      remoteCache.removeAll(keys);
+   }
+
    @Override
    @SuppressWarnings("unchecked")
    public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
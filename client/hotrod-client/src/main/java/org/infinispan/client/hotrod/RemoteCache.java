@@ -48,9 +48,11 @@ import java.util.concurrent.TimeUnit;
  * supplied key. In case of RemoteCache, this returns null.
  * <p/>
  * <b>Synthetic operations</b>: aggregate operations are being implemented based on other Hot Rod operations. E.g. all
- * the {@link java.util.Map#putAll(java.util.Map)} is implemented through multiple individual puts. This means that the
- * these operations are not atomic and that they are costly, e.g. as the number of network round-trips is not one, but
- * the size of the added map. All these synthetic operations are documented as such.
+ * the {@link java.util.Map#putAll(java.util.Map)} is implemented through one multi-key put per server owning some of
+ * the keys. This means that these operations are not atomic, and that the number of network round-trips is not one,
+ * but the number of servers involved. Multi-key operations were added in version 1.1 of the Hot Rod protocol, which
+ * this client speaks, so servers only understanding version 1.0 are not supported. All these synthetic operations
+ * are documented as such.
  * <p/>
  * <b>changing default behavior through {@link org.infinispan.client.hotrod.Flag}s</b>: it is possible to change the
  * default cache behaviour by using flags on an per invocation basis. E.g.
@@ -392,4 +394,11 @@ public interface RemoteCache<K, V> extends Cache<K, V> {
     * guarantee that "size" elements are returned( e.g. if the number of elements in the back-end server is smaller that "size")
     */
    Map<K, V> getBulk(int size);
+
+   /**
+    * Removes the given keys.  Like {@link #putAll(java.util.Map)} and {@link #getAll(java.util.Collection)}, this is a
+    * synthetic operation: the keys are grouped by the server owning them, and removed through one request per server.
+    * Previous values are never returned.
+    */
+   void removeAll(Collection<? extends K> keys);
 }
@@ -55,6 +55,7 @@ public class ConfigurationProperties {
    public static final String HASH_FUNCTION_PREFIX = "infinispan.client.hotrod.hash_function_impl";
    public static final String DEFAULT_EXECUTOR_FACTORY_QUEUE_SIZE ="infinispan.client.hotrod.default_executor_factory.queue_size";
    public static final String SO_TIMEOUT = "infinispan.client.hotrod.socket_timeout";
+   public static final String CONNECTIONS_PER_SERVER = "infinispan.client.hotrod.connections_per_server";
 
    // defaults
 
@@ -62,6 +63,7 @@ public class ConfigurationProperties {
    private static final int DEFAULT_VALUE_SIZE = 512;
    private static final int DEFAULT_HOTROD_PORT = 11222;
    private static final int DEFAULT_SO_TIMEOUT = 60000;
+   private static final int DEFAULT_CONNECTIONS_PER_SERVER = 2;
 
    private final TypedProperties props;
 
@@ -142,4 +144,8 @@ public class ConfigurationProperties {
    public int getSoTimeout() {
       return props.getIntProperty(SO_TIMEOUT, DEFAULT_SO_TIMEOUT);
    }
+
+   public int getConnectionsPerServer() {
+      return Math.max(1, props.getIntProperty(CONNECTIONS_PER_SERVER, DEFAULT_CONNECTIONS_PER_SERVER));
+   }
 }
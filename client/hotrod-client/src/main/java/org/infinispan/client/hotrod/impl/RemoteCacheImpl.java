@@ -31,6 +31,7 @@ import org.infinispan.client.hotrod.VersionedValue;
 import org.infinispan.client.hotrod.exceptions.RemoteCacheManagerNotStartedException;
 import org.infinispan.client.hotrod.exceptions.TransportException;
 import org.infinispan.client.hotrod.impl.async.NotifyingFutureImpl;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
 import org.infinispan.client.hotrod.impl.operations.*;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.marshall.Marshaller;
@@ -39,8 +40,11 @@ import org.infinispan.client.hotrod.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -95,6 +99,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Boolean> removeWithVersionAsync(final K key, final long version) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isNonBlocking()) {
+         return updatedFuture(operationsFactory.newRemoveIfUnmodifiedOperation(obj2bytes(key, true), version));
+      }
       final NotifyingFutureImpl<Boolean> result = new NotifyingFutureImpl<Boolean>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -119,6 +126,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Boolean> replaceWithVersionAsync(final K key, final V newValue, final long version, final int lifespanSeconds, final int maxIdleSeconds) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isNonBlocking()) {
+         return updatedFuture(operationsFactory.newReplaceIfUnmodifiedOperation(obj2bytes(key, true), obj2bytes(newValue, false), lifespanSeconds, maxIdleSeconds, version));
+      }
       final NotifyingFutureImpl<Boolean> result = new NotifyingFutureImpl<Boolean>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -143,8 +153,19 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public void putAll(Map<? extends K, ? extends V> map, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (map.isEmpty()) return;
+      int lifespanSecs = toSeconds(lifespan, lifespanUnit);
+      int maxIdleSecs = toSeconds(maxIdleTime, maxIdleTimeUnit);
+      if (log.isTraceEnabled()) {
+         log.tracef("About to add %d entries, lifespanSecs:%d, maxIdleSecs:%d", map.size(), lifespanSecs, maxIdleSecs);
+      }
+      // byte arrays use identity equality, which is what PutAllOperation expects
+      Map<byte[], byte[]> entries = new HashMap<byte[], byte[]>(map.size());
       for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
-         put(entry.getKey(), entry.getValue(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+         entries.put(obj2bytes(entry.getKey(), true), obj2bytes(entry.getValue(), false));
+      }
+      for (PutAllOperation op : operationsFactory.newPutAllOperations(entries, lifespanSecs, maxIdleSecs)) {
+         op.execute();
       }
    }
 
@@ -226,6 +247,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> putAsync(final K key, final V value, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isNonBlocking()) {
+         return valueFuture(operationsFactory.newPutKeyValueOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -242,6 +266,16 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Void> clearAsync() {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isNonBlocking()) {
+         ResponseFuture<Void> result = new ResponseFuture<Void>(executorService) {
+            @Override
+            protected Void convert(Object response) {
+               return null;
+            }
+         };
+         operationsFactory.newClearOperation().executeAsync(result);
+         return result;
+      }
       final NotifyingFutureImpl<Void> result = new NotifyingFutureImpl<Void>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -258,6 +292,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> putIfAbsentAsync(final K key,final V value,final long lifespan,final TimeUnit lifespanUnit,final long maxIdle,final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isNonBlocking()) {
+         return valueFuture(operationsFactory.newPutIfAbsentOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -274,6 +311,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> removeAsync(final Object key) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isNonBlocking()) {
+         return valueFuture(operationsFactory.newRemoveOperation(obj2bytes(key, true)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -290,6 +330,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> replaceAsync(final K key,final V value,final long lifespan,final TimeUnit lifespanUnit,final long maxIdle,final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isNonBlocking()) {
+         return valueFuture(operationsFactory.newReplaceOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -323,6 +366,31 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return result;
    }
 
+   @Override
+   public Map<K, V> getAll(Collection<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      Map<K, V> result = new HashMap<K, V>();
+      if (keys.isEmpty()) return result;
+      // one request per server owning some of the keys; issued one after the other, as the async executor may be
+      // running the caller itself
+      for (GetAllOperation op : operationsFactory.newGetAllOperations(keys2bytes(keys))) {
+         Map<byte[], byte[]> values = (Map<byte[], byte[]>) op.execute();
+         for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+            result.put((K) bytes2obj(entry.getKey()), (V) bytes2obj(entry.getValue()));
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public void removeAll(Collection<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      if (keys.isEmpty()) return;
+      for (RemoveAllOperation op : operationsFactory.newRemoveAllOperations(keys2bytes(keys))) {
+         op.execute();
+      }
+   }
+
    @Override
    public Map<K, V> getBulk() {
       return getBulk(0);
@@ -390,6 +458,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> getAsync(final K key) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isNonBlocking()) {
+         return valueFuture(operationsFactory.newGetKeyOperation(obj2bytes(key, true)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -403,10 +474,34 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return result;
    }
 
+   @Override
+   public NotifyingFuture<Map<K, V>> getAllAsync(final Collection<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      final NotifyingFutureImpl<Map<K, V>> result = new NotifyingFutureImpl<Map<K, V>>();
+      Future future = executorService.submit(new Callable() {
+         @Override
+         public Object call() throws Exception {
+            Map<K, V> toReturn = getAll(keys);
+            result.notifyFutureCompletion();
+            return toReturn;
+         }
+      });
+      result.setExecuting(future);
+      return result;
+   }
+
    public PingOperation.PingResult ping(Transport transport) {
       return operationsFactory.newPingOperation(transport).execute();
    }
 
+   private List<byte[]> keys2bytes(Collection<?> keys) {
+      List<byte[]> result = new ArrayList<byte[]>(keys.size());
+      for (Object key : keys) {
+         result.add(obj2bytes(key, true));
+      }
+      return result;
+   }
+
    private byte[] obj2bytes(Object o, boolean isKey) {
       try {
          return marshaller.objectToByteBuffer(o, isKey ? estimateKeySize : estimateValueSize);
@@ -418,6 +513,34 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       }
    }
 
+   /**
+    * Executes an operation returning a serialized value without blocking.
+    */
+   private NotifyingFuture<V> valueFuture(RetryOnFailureOperation op) {
+      ResponseFuture<V> result = new ResponseFuture<V>(executorService) {
+         @Override
+         protected V convert(Object response) {
+            return (V) bytes2obj((byte[]) response);
+         }
+      };
+      op.executeAsync(result);
+      return result;
+   }
+
+   /**
+    * Executes a versioned operation without blocking.
+    */
+   private NotifyingFuture<Boolean> updatedFuture(RetryOnFailureOperation op) {
+      ResponseFuture<Boolean> result = new ResponseFuture<Boolean>(executorService) {
+         @Override
+         protected Boolean convert(Object response) {
+            return ((VersionedOperationResponse) response).getCode().isUpdated();
+         }
+      };
+      op.executeAsync(result);
+      return result;
+   }
+
    private Object bytes2obj(byte[] bytes) {
       if (bytes == null) return null;
       try {
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.async;
+
+import org.infinispan.client.hotrod.impl.transport.MultiplexedTransport;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Notifying future completed by the I/O thread of a {@link MultiplexedTransport} when the response to a request is
+ * received, so no thread is blocked while the request is in flight. Subclasses can override {@link #convert(Object)}
+ * to turn the decoded response into the value returned to the user.
+ * <p/>
+ * Listeners attached before completion are notified through the executor given at construction, so that they are free
+ * to block, e.g. on another synchronous cache call, without stalling the I/O thread. Without an executor they are
+ * notified by the I/O thread and must not block.
+ *
+ * @since 5.0
+ */
+public class ResponseFuture<T> implements NotifyingFuture<T>, MultiplexedTransport.ResponseListener {
+
+   private final CountDownLatch done = new CountDownLatch(1);
+   private final CopyOnWriteArraySet<FutureListener<T>> listeners = new CopyOnWriteArraySet<FutureListener<T>>();
+   private final Executor listenerExecutor;
+   private volatile boolean completed;
+   private volatile boolean cancelled;
+   private volatile T value;
+   private volatile Throwable failure;
+
+   public ResponseFuture() {
+      this(null);
+   }
+
+   /**
+    * @param listenerExecutor notifies the listeners, or null to notify them on the completing thread
+    */
+   public ResponseFuture(Executor listenerExecutor) {
+      this.listenerExecutor = listenerExecutor;
+   }
+
+   @Override
+   public void responseReceived(Object response) {
+      T converted;
+      try {
+         converted = convert(response);
+      } catch (RuntimeException e) {
+         failed(e);
+         return;
+      }
+      synchronized (this) {
+         if (completed) return;
+         value = converted;
+         completed = true;
+      }
+      done();
+   }
+
+   @Override
+   public void failed(RuntimeException cause) {
+      synchronized (this) {
+         if (completed) return;
+         failure = cause;
+         completed = true;
+      }
+      done();
+   }
+
+   protected T convert(Object response) {
+      return (T) response;
+   }
+
+   private void done() {
+      done.countDown();
+      if (listeners.isEmpty()) return;
+      if (listenerExecutor != null) {
+         try {
+            listenerExecutor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  notifyListeners();
+               }
+            });
+            return;
+         } catch (RejectedExecutionException e) {
+            // shutting down, better notify on this thread than not at all
+         }
+      }
+      notifyListeners();
+   }
+
+   private void notifyListeners() {
+      for (FutureListener<T> listener : listeners) {
+         listener.futureDone(this);
+      }
+   }
+
+   @Override
+   public NotifyingFuture<T> attachListener(FutureListener<T> listener) {
+      listeners.add(listener);
+      // if the response arrived in the meantime, the listener might have been missed
+      if (completed && listeners.remove(listener)) {
+         listener.futureDone(this);
+      }
+      return this;
+   }
+
+   /**
+    * The request cannot be taken back once sent, so this only stops waiting for the response.
+    */
+   @Override
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      synchronized (this) {
+         if (completed) return false;
+         cancelled = true;
+         completed = true;
+      }
+      done();
+      return true;
+   }
+
+   @Override
+   public boolean isCancelled() {
+      return cancelled;
+   }
+
+   @Override
+   public boolean isDone() {
+      return completed;
+   }
+
+   @Override
+   public T get() throws InterruptedException, ExecutionException {
+      done.await();
+      return getValue();
+   }
+
+   @Override
+   public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      if (!done.await(timeout, unit)) {
+         throw new TimeoutException();
+      }
+      return getValue();
+   }
+
+   private T getValue() throws ExecutionException {
+      if (cancelled) throw new CancellationException();
+      if (failure != null) throw new ExecutionException(failure);
+      return value;
+   }
+}
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class for the operations acting on several keys at once.  All the keys are expected to be owned by the same
+ * server, see {@link TransportFactory#groupKeysByServer(java.util.Collection)}, so the operation is first sent there.
+ * Retries go to any server, as a non-owner still executes the operation, just less efficiently.
+ *
+ * @since 5.0
+ */
+@Immutable
+public abstract class AbstractMultiKeyOperation extends RetryOnFailureOperation {
+
+   protected final InetSocketAddress server;
+
+   protected final List<byte[]> keys;
+
+   protected AbstractMultiKeyOperation(TransportFactory transportFactory, InetSocketAddress server, List<byte[]> keys,
+                                       byte[] cacheName, AtomicInteger topologyId, Flag[] flags) {
+      super(transportFactory, cacheName, topologyId, flags);
+      this.server = server;
+      this.keys = keys;
+   }
+
+   @Override
+   protected Transport getTransport(int retryCount) {
+      if (retryCount == 0) {
+         return transportFactory.getTransport(server);
+      } else {
+         return transportFactory.getTransport();
+      }
+   }
+
+   protected void writeKeys(Transport transport) {
+      transport.writeVInt(keys.size());
+      for (byte[] key : keys) {
+         transport.writeArray(key);
+      }
+   }
+}
@@ -28,6 +28,7 @@ import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
 import org.infinispan.client.hotrod.exceptions.RemoteNodeSuspecException;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
+import org.infinispan.client.hotrod.impl.transport.MultiplexedTransport;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -72,9 +73,22 @@ public abstract class HotRodOperation implements HotRodConstants {
 
    public abstract Object execute();
 
+   /**
+    * Writes the request and reads the response through the given transport. A {@link MultiplexedTransport} decodes
+    * the response on its I/O thread, in which case the calling thread waits for the outcome.
+    */
+   protected static Object exchange(Transport transport, MultiplexedTransport.Exchange exchange) {
+      if (transport instanceof MultiplexedTransport) {
+         return ((MultiplexedTransport) transport).invokeAndWait(exchange);
+      }
+      return exchange.run(transport);
+   }
+
    protected final long writeHeader(Transport transport, short operationCode) {
       transport.writeByte(HotRodConstants.REQUEST_MAGIC);
-      long messageId = MSG_ID.incrementAndGet();
+      // a multiplexed transport needs to know the id up front, to match the response with the request
+      long messageId = transport instanceof MultiplexedTransport ?
+            ((MultiplexedTransport) transport).getMessageId() : MSG_ID.incrementAndGet();
       transport.writeVLong(messageId);
       transport.writeByte(HotRodConstants.HOTROD_VERSION);
       transport.writeByte(operationCode);
@@ -27,8 +27,14 @@ import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.client.hotrod.impl.transport.nio.NioTransportFactory;
 import org.infinispan.manager.CacheContainer;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -59,6 +65,14 @@ public class OperationsFactory implements HotRodConstants {
       this.forceReturnValue = forceReturnValue;
    }
 
+   /**
+    * @return whether the operations can be executed without blocking, through
+    *         {@link RetryOnFailureOperation#executeAsync(org.infinispan.client.hotrod.impl.transport.MultiplexedTransport.ResponseListener)}
+    */
+   public boolean isNonBlocking() {
+      return transportFactory instanceof NioTransportFactory;
+   }
+
    public GetOperation newGetKeyOperation(byte[] key) {
       return new GetOperation(transportFactory, key, cacheNameBytes, topologyId, flags());
    }
@@ -107,6 +121,37 @@ public class OperationsFactory implements HotRodConstants {
       return new BulkGetOperation(transportFactory, cacheNameBytes, topologyId, flags(), size);
    }
 
+   public List<GetAllOperation> newGetAllOperations(Collection<byte[]> keys) {
+      Flag[] flags = flags();
+      List<GetAllOperation> ops = new ArrayList<GetAllOperation>();
+      for (Map.Entry<InetSocketAddress, List<byte[]>> e : transportFactory.groupKeysByServer(keys).entrySet()) {
+         ops.add(new GetAllOperation(transportFactory, e.getKey(), e.getValue(), cacheNameBytes, topologyId, flags));
+      }
+      return ops;
+   }
+
+   /**
+    * @param entries keys are looked up by identity, so they must be the same arrays the values were stored with
+    */
+   public List<PutAllOperation> newPutAllOperations(Map<byte[], byte[]> entries, int lifespanSecs, int maxIdleSecs) {
+      Flag[] flags = flags();
+      List<PutAllOperation> ops = new ArrayList<PutAllOperation>();
+      for (Map.Entry<InetSocketAddress, List<byte[]>> e : transportFactory.groupKeysByServer(entries.keySet()).entrySet()) {
+         ops.add(new PutAllOperation(transportFactory, e.getKey(), e.getValue(), entries, cacheNameBytes, topologyId,
+                                     flags, lifespanSecs, maxIdleSecs));
+      }
+      return ops;
+   }
+
+   public List<RemoveAllOperation> newRemoveAllOperations(Collection<byte[]> keys) {
+      Flag[] flags = flags();
+      List<RemoveAllOperation> ops = new ArrayList<RemoveAllOperation>();
+      for (Map.Entry<InetSocketAddress, List<byte[]>> e : transportFactory.groupKeysByServer(keys).entrySet()) {
+         ops.add(new RemoveAllOperation(transportFactory, e.getKey(), e.getValue(), cacheNameBytes, topologyId, flags));
+      }
+      return ops;
+   }
+
    public PingOperation newPingOperation(Transport transport) {
       return new PingOperation(topologyId, transport, cacheNameBytes);
    }
@@ -26,6 +26,7 @@ import net.jcip.annotations.Immutable;
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
+import org.infinispan.client.hotrod.impl.transport.MultiplexedTransport;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -57,10 +58,14 @@ public class PingOperation extends HotRodOperation {
    @Override
    public PingResult execute() {
       try {
-         long messageId = writeHeader(transport, HotRodConstants.PING_REQUEST);
-         transport.flush();
-
-         short respStatus = readHeaderAndValidate(transport, messageId, HotRodConstants.PING_RESPONSE);
+         short respStatus = (Short) exchange(transport, new MultiplexedTransport.Exchange() {
+            @Override
+            public Object run(Transport transport) {
+               long messageId = writeHeader(transport, HotRodConstants.PING_REQUEST);
+               transport.flush();
+               return readHeaderAndValidate(transport, messageId, HotRodConstants.PING_RESPONSE);
+            }
+         });
          if (respStatus == HotRodConstants.NO_ERROR_STATUS) {
             if (log.isTraceEnabled())
                log.tracef("Successfully validated transport: %s", transport);
@@ -27,6 +27,7 @@ import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.exceptions.RemoteNodeSuspecException;
 import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.transport.MultiplexedTransport;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 import org.infinispan.client.hotrod.logging.Log;
@@ -48,6 +49,13 @@ public abstract class RetryOnFailureOperation extends HotRodOperation {
 
    protected final TransportFactory transportFactory;
 
+   private final MultiplexedTransport.Exchange exchange = new MultiplexedTransport.Exchange() {
+      @Override
+      public Object run(Transport transport) {
+         return executeOperation(transport);
+      }
+   };
+
    protected RetryOnFailureOperation(TransportFactory transportFactory, byte[] cacheName, AtomicInteger topologyId, Flag[] flags) {
       super(flags, cacheName, topologyId);
       this.transportFactory = transportFactory;
@@ -59,7 +67,7 @@ public abstract class RetryOnFailureOperation extends HotRodOperation {
       while (shouldRetry(retryCount)) {
          Transport transport = getTransport(retryCount);
          try {
-            return executeOperation(transport);
+            return exchange(transport, exchange);
          } catch (TransportException te) {
             logErrorAndThrowExceptionIfNeeded(retryCount, te);
          } catch (RemoteNodeSuspecException e) {
@@ -73,6 +81,50 @@ public abstract class RetryOnFailureOperation extends HotRodOperation {
       throw new IllegalStateException("We should not reach here!");
    }
 
+   /**
+    * Executes the operation without blocking: the listener is notified by the I/O thread once the response is
+    * received, or once the operation failed on all the retries. Requires a transport factory handing out
+    * {@link MultiplexedTransport}s.
+    */
+   public void executeAsync(MultiplexedTransport.ResponseListener listener) {
+      executeAsync(0, listener);
+   }
+
+   private void executeAsync(final int retryCount, final MultiplexedTransport.ResponseListener listener) {
+      Transport transport;
+      try {
+         transport = getTransport(retryCount);
+      } catch (RuntimeException e) {
+         listener.failed(e);
+         return;
+      }
+      if (!(transport instanceof MultiplexedTransport)) {
+         releaseTransport(transport);
+         listener.failed(new IllegalStateException("Transport does not support non-blocking requests: " + transport));
+         return;
+      }
+      ((MultiplexedTransport) transport).invoke(exchange, new MultiplexedTransport.ResponseListener() {
+         @Override
+         public void responseReceived(Object response) {
+            listener.responseReceived(response);
+         }
+
+         @Override
+         public void failed(RuntimeException cause) {
+            if ((cause instanceof TransportException || cause instanceof RemoteNodeSuspecException)
+                  && shouldRetry(retryCount + 1)) {
+               log.tracef(cause, "Exception encountered. Retry %d out of %d", retryCount, transportFactory.getTransportCount());
+               executeAsync(retryCount + 1, listener);
+            } else {
+               if (cause instanceof HotRodClientException) {
+                  log.exceptionAndNoRetriesLeft(retryCount, transportFactory.getTransportCount(), (HotRodClientException) cause);
+               }
+               listener.failed(cause);
+            }
+         }
+      });
+   }
+
    protected boolean shouldRetry(int retryCount) {
       return retryCount < transportFactory.getTransportCount();
    }
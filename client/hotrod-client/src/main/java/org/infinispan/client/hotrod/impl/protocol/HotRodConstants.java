@@ -35,7 +35,7 @@ public interface HotRodConstants {
    static final short REQUEST_MAGIC = 0xA0;
    static final short RESPONSE_MAGIC = 0xA1;
 
-   static final byte HOTROD_VERSION = 10;
+   static final byte HOTROD_VERSION = 11;
 
    //requests
    static final byte PUT_REQUEST = 0x01;
@@ -51,6 +51,10 @@ public interface HotRodConstants {
    static final byte STATS_REQUEST = 0x15;
    static final byte PING_REQUEST = 0x17;
    static final byte BULK_GET_REQUEST = 0x19;
+   // multi-key requests need protocol version 1.1
+   static final byte GET_ALL_REQUEST = 0x1B;
+   static final byte PUT_ALL_REQUEST = 0x1D;
+   static final byte REMOVE_ALL_REQUEST = 0x1F;
 
 
    //responses
@@ -67,6 +71,9 @@ public interface HotRodConstants {
    static final byte STATS_RESPONSE = 0x16;
    static final byte PING_RESPONSE = 0x18;
    static final byte BULK_GET_RESPONSE = 0x1A;
+   static final byte GET_ALL_RESPONSE = 0x1C;
+   static final byte PUT_ALL_RESPONSE = 0x1E;
+   static final byte REMOVE_ALL_RESPONSE = 0x20;
    static final byte ERROR_RESPONSE = 0x50;
 
    //response status
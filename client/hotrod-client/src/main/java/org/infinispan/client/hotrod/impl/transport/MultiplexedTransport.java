@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport;
+
+/**
+ * A transport sharing its connection with other concurrent requests. Requests are pipelined over the connection and
+ * the responses are matched to them by message id, so the thread sending a request does not have to wait for the
+ * response on the connection.
+ * <p/>
+ * The exchange, i.e. the code writing the request and reading the response, is run twice: once by the caller, up to
+ * the first read after the request was flushed, and once by the I/O thread, against the response bytes, with writes
+ * ignored. The second run is repeated if the response is not complete yet, so an exchange should not have side effects
+ * that cannot be repeated.
+ *
+ * @since 5.0
+ */
+public interface MultiplexedTransport extends Transport {
+
+   /**
+    * @return the message id the request written through this transport must carry
+    */
+   long getMessageId();
+
+   /**
+    * Sends the request written by the given exchange and notifies the listener once the response is decoded. Does not
+    * block, the listener is notified by the I/O thread.
+    */
+   void invoke(Exchange exchange, ResponseListener listener);
+
+   /**
+    * Like {@link #invoke(Exchange, ResponseListener)}, but waits for the outcome of the exchange.
+    *
+    * @return the value returned by the exchange
+    * @throws RuntimeException the exception thrown by the exchange
+    * @throws IllegalStateException if called from the I/O thread, which would never get to read the response
+    */
+   Object invokeAndWait(Exchange exchange);
+
+   /**
+    * Writes a request and reads its response.
+    */
+   public static interface Exchange {
+      Object run(Transport transport);
+   }
+
+   /**
+    * Notified about the outcome of an {@link Exchange}.
+    */
+   public static interface ResponseListener {
+      void responseReceived(Object response);
+
+      void failed(RuntimeException cause);
+   }
+}
@@ -27,6 +27,8 @@ import org.infinispan.client.hotrod.impl.ConfigurationProperties;
 import java.net.InetSocketAddress;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -51,6 +53,17 @@ public interface TransportFactory {
 
    Transport getTransport(byte[] key);
 
+   /**
+    * Returns a transport connected to the given server, or to any server if it is null.
+    */
+   Transport getTransport(InetSocketAddress server);
+
+   /**
+    * Groups the given keys by the server {@link #getTransport(byte[])} would pick for them.  If no consistent hash is
+    * available all the keys are mapped to a null server, meaning that any server can be used.
+    */
+   Map<InetSocketAddress, List<byte[]>> groupKeysByServer(Collection<byte[]> keys);
+
    boolean isTcpNoDelay();
 
    int getTransportCount();
@@ -0,0 +1,319 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.HotRodClientException;
+import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
+import org.infinispan.client.hotrod.exceptions.RemoteNodeSuspecException;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.infinispan.io.UnsignedNumeric.readUnsignedLong;
+
+/**
+ * Non-blocking connection to a Hot Rod server, shared by any number of in-flight requests. Requests are written in
+ * the order they are flushed, by the sending thread if the socket accepts them right away and by the I/O thread
+ * otherwise. Responses are read by the I/O thread, which uses the message id in their header to find the
+ * {@link NioTransport} to decode them with.
+ * <p/>
+ * Any I/O error, protocol error or response timeout closes the connection and fails all the requests in flight with
+ * a {@link TransportException}, so that they are retried on another connection.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class NioConnection {
+
+   private static final Log log = LogFactory.getLog(NioConnection.class, Log.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private static final int INITIAL_READ_BUFFER_SIZE = 8 * 1024;
+
+   private final InetSocketAddress serverAddress;
+   private final SocketChannel channel;
+   private final NioEventLoop eventLoop;
+   private final AtomicLong messageIds = new AtomicLong();
+   private final ConcurrentMap<Long, NioTransport> inFlight = new ConcurrentHashMap<Long, NioTransport>();
+
+   private final Object writeLock = new Object();
+   @GuardedBy("writeLock")
+   private final Queue<ByteBuffer> writeQueue = new LinkedList<ByteBuffer>();
+   @GuardedBy("writeLock")
+   private boolean connected;
+
+   private volatile boolean closed;
+   private volatile SelectionKey key;
+   // only used by the I/O thread
+   private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+
+   NioConnection(InetSocketAddress serverAddress, NioEventLoop eventLoop, boolean tcpNoDelay) {
+      this.serverAddress = serverAddress;
+      this.eventLoop = eventLoop;
+      try {
+         channel = SocketChannel.open();
+         channel.configureBlocking(false);
+         channel.socket().setTcpNoDelay(tcpNoDelay);
+         boolean connectedNow = channel.connect(serverAddress);
+         synchronized (writeLock) {
+            connected = connectedNow;
+         }
+      } catch (IOException e) {
+         log.couldNotConnectToServer(serverAddress, e);
+         throw new TransportException(String.format("Could not connect to server: %s", serverAddress), e);
+      }
+      eventLoop.register(this);
+   }
+
+   long nextMessageId() {
+      return messageIds.incrementAndGet();
+   }
+
+   InetSocketAddress getServerAddress() {
+      return serverAddress;
+   }
+
+   boolean inEventLoop() {
+      return eventLoop.inEventLoop();
+   }
+
+   SocketChannel getChannel() {
+      return channel;
+   }
+
+   void setKey(SelectionKey key) {
+      this.key = key;
+   }
+
+   boolean isValid() {
+      return !closed;
+   }
+
+   void send(NioTransport transport, ByteBuffer request) {
+      inFlight.put(transport.getMessageId(), transport);
+      boolean written;
+      try {
+         synchronized (writeLock) {
+            if (closed) {
+               inFlight.remove(transport.getMessageId());
+               throw new TransportException("Connection to " + serverAddress + " is closed");
+            }
+            writeQueue.add(request);
+            written = connected && writePending();
+         }
+      } catch (IOException e) {
+         close(new TransportException("Problems writing data to " + serverAddress, e));
+         throw new TransportException("Problems writing data to " + serverAddress, e);
+      }
+      if (!written) eventLoop.interestChanged(this);
+   }
+
+   void forget(NioTransport transport) {
+      inFlight.remove(transport.getMessageId());
+   }
+
+   /**
+    * @return the operations the I/O thread should wait for
+    */
+   int interestOps() {
+      synchronized (writeLock) {
+         if (!connected) return SelectionKey.OP_CONNECT;
+         return writeQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+      }
+   }
+
+   /**
+    * Called by the I/O thread when the channel is ready to complete the connection.
+    */
+   void finishConnect() {
+      try {
+         if (!channel.finishConnect()) return;
+         synchronized (writeLock) {
+            connected = true;
+            writePending();
+         }
+         if (trace) log.tracef("Connected to %s", serverAddress);
+      } catch (IOException e) {
+         log.couldNotConnectToServer(serverAddress, e);
+         close(new TransportException(String.format("Could not connect to server: %s", serverAddress), e));
+      }
+   }
+
+   /**
+    * Called by the I/O thread when the channel accepts more bytes.
+    */
+   void write() {
+      try {
+         synchronized (writeLock) {
+            writePending();
+         }
+      } catch (IOException e) {
+         close(new TransportException("Problems writing data to " + serverAddress, e));
+      }
+   }
+
+   @GuardedBy("writeLock")
+   private boolean writePending() throws IOException {
+      ByteBuffer head;
+      while ((head = writeQueue.peek()) != null) {
+         channel.write(head);
+         if (head.hasRemaining()) return false;
+         writeQueue.poll();
+      }
+      return true;
+   }
+
+   /**
+    * Called by the I/O thread when there are bytes to read. Decodes all the responses received completely.
+    */
+   void read() {
+      if (!readBuffer.hasRemaining()) {
+         // a response larger than the buffer
+         ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+         readBuffer.flip();
+         larger.put(readBuffer);
+         readBuffer = larger;
+      }
+      try {
+         if (channel.read(readBuffer) < 0) {
+            close(new TransportException("Connection closed by server " + serverAddress));
+            return;
+         }
+      } catch (IOException e) {
+         close(new TransportException("Problems reading data from " + serverAddress, e));
+         return;
+      }
+      readBuffer.flip();
+      try {
+         while (readBuffer.hasRemaining() && decodeResponse(readBuffer)) {
+            // keep decoding
+         }
+      } finally {
+         readBuffer.compact();
+      }
+   }
+
+   /**
+    * @return true if a response was consumed from the buffer
+    */
+   private boolean decodeResponse(ByteBuffer buffer) {
+      int start = buffer.position();
+      long messageId;
+      try {
+         buffer.get(); // magic, validated by the exchange
+         messageId = readUnsignedLong(buffer);
+      } catch (BufferUnderflowException e) {
+         buffer.position(start);
+         return false;
+      } catch (IOException e) {
+         close(new TransportException(e));
+         return false;
+      }
+      buffer.position(start);
+
+      NioTransport transport = inFlight.get(messageId);
+      if (transport == null) {
+         close(new InvalidResponseException("Received a response for unknown message id " + messageId + " from " + serverAddress));
+         return false;
+      }
+      try {
+         Object result = transport.decode(buffer);
+         inFlight.remove(messageId);
+         transport.completed(result);
+         return true;
+      } catch (NioTransport.ResponseNotAvailable e) {
+         buffer.position(start);
+         return false;
+      } catch (RuntimeException e) {
+         inFlight.remove(messageId);
+         transport.failed(e);
+         if (e.getClass() == HotRodClientException.class || e instanceof RemoteNodeSuspecException) {
+            // an error reported by the server, the whole response has been read
+            return true;
+         }
+         close(new TransportException("Could not decode the response from " + serverAddress, e));
+         return false;
+      }
+   }
+
+   /**
+    * Called by the I/O thread, closes the connection if a request waits for its response for too long.
+    */
+   void expire(long now) {
+      for (NioTransport transport : inFlight.values()) {
+         long deadline = transport.getDeadline();
+         if (deadline > 0 && now > deadline) {
+            close(new TransportException(String.format("Timed out waiting for the response to message %d from %s",
+                                                       transport.getMessageId(), serverAddress)));
+            return;
+         }
+      }
+   }
+
+   /**
+    * Closes the connection and fails all the requests still waiting for a response with the given cause.
+    */
+   void close(RuntimeException cause) {
+      synchronized (writeLock) {
+         if (closed) return;
+         closed = true;
+         writeQueue.clear();
+      }
+      if (!inFlight.isEmpty()) {
+         log.closingConnection(serverAddress, inFlight.size(), cause);
+      } else if (trace) {
+         log.tracef(cause, "Closing connection to %s", serverAddress);
+      }
+      SelectionKey k = key;
+      if (k != null) k.cancel();
+      Util.close(channel);
+      for (Long messageId : inFlight.keySet()) {
+         NioTransport transport = inFlight.remove(messageId);
+         if (transport != null) transport.failed(cause);
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "NioConnection{" +
+            "serverAddress=" + serverAddress +
+            ", inFlight=" + inFlight.size() +
+            ", closed=" + closed +
+            "}";
+   }
+}
@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The I/O thread of the {@link NioTransportFactory}: a single selector serving all the connections, to all the
+ * servers. Besides reading, writing and connecting, it periodically closes the connections with responses overdue.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class NioEventLoop implements Runnable {
+
+   private static final Log log = LogFactory.getLog(NioEventLoop.class, Log.class);
+
+   private static final long MAX_EXPIRATION_CHECK_INTERVAL = 1000;
+
+   private final Selector selector;
+   private final Thread thread;
+   private final long expirationCheckInterval;
+   private final Queue<NioConnection> registrations = new ConcurrentLinkedQueue<NioConnection>();
+   private final Queue<NioConnection> interestChanges = new ConcurrentLinkedQueue<NioConnection>();
+   private volatile boolean running = true;
+
+   /**
+    * @param soTimeout the time to wait for a response, in milliseconds, or 0 to wait forever
+    */
+   NioEventLoop(int soTimeout) {
+      expirationCheckInterval = soTimeout > 0 ? Math.min(soTimeout, MAX_EXPIRATION_CHECK_INTERVAL) : 0;
+      try {
+         selector = Selector.open();
+      } catch (IOException e) {
+         throw new TransportException("Could not open selector", e);
+      }
+      thread = new Thread(this, "HotRodClient-IO");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   void register(NioConnection connection) {
+      registrations.add(connection);
+      selector.wakeup();
+   }
+
+   /**
+    * Makes the I/O thread look at the operations the connection waits for again, e.g. because it has bytes to write.
+    */
+   void interestChanged(NioConnection connection) {
+      interestChanges.add(connection);
+      selector.wakeup();
+   }
+
+   boolean inEventLoop() {
+      return Thread.currentThread() == thread;
+   }
+
+   void stop() {
+      running = false;
+      selector.wakeup();
+      try {
+         thread.join(MAX_EXPIRATION_CHECK_INTERVAL);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   @Override
+   public void run() {
+      long nextExpirationCheck = System.currentTimeMillis() + expirationCheckInterval;
+      try {
+         while (running) {
+            try {
+               selector.select(expirationCheckInterval);
+               processRegistrations();
+               processInterestChanges();
+               processSelectedKeys();
+               if (expirationCheckInterval > 0) {
+                  long now = System.currentTimeMillis();
+                  if (now >= nextExpirationCheck) {
+                     for (SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+                        ((NioConnection) key.attachment()).expire(now);
+                     }
+                     nextExpirationCheck = now + expirationCheckInterval;
+                  }
+               }
+            } catch (Throwable t) {
+               // don't let a bug in a single exchange stop the I/O for all the connections
+               log.errorInIOThread(t);
+            }
+         }
+      } finally {
+         try {
+            selector.close();
+         } catch (IOException e) {
+            log.tracef(e, "Could not close selector");
+         }
+      }
+   }
+
+   private void processRegistrations() {
+      NioConnection connection;
+      while ((connection = registrations.poll()) != null) {
+         if (!connection.isValid()) continue;
+         try {
+            connection.setKey(connection.getChannel().register(selector, connection.interestOps(), connection));
+         } catch (ClosedChannelException e) {
+            connection.close(new TransportException(e));
+         }
+      }
+   }
+
+   private void processInterestChanges() {
+      NioConnection connection;
+      while ((connection = interestChanges.poll()) != null) {
+         updateInterest(connection.getChannel().keyFor(selector), connection);
+      }
+   }
+
+   private void processSelectedKeys() {
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+         SelectionKey key = keys.next();
+         keys.remove();
+         NioConnection connection = (NioConnection) key.attachment();
+         try {
+            if (key.isValid() && key.isConnectable()) connection.finishConnect();
+            if (key.isValid() && key.isWritable()) connection.write();
+            if (key.isValid() && key.isReadable()) connection.read();
+            updateInterest(key, connection);
+         } catch (CancelledKeyException e) {
+            // the connection was closed by another thread
+         }
+      }
+   }
+
+   private void updateInterest(SelectionKey key, NioConnection connection) {
+      // not registered yet: the registration picks up the current interest
+      if (key != null && key.isValid()) key.interestOps(connection.interestOps());
+   }
+}
@@ -0,0 +1,276 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
+import org.infinispan.client.hotrod.impl.transport.AbstractTransport;
+import org.infinispan.client.hotrod.impl.transport.MultiplexedTransport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.infinispan.io.UnsignedNumeric.*;
+
+/**
+ * Transport for a single request over a connection shared with other requests. Writes go to a buffer that is handed
+ * to the {@link NioConnection} on {@link #flush()}; reads are served from the connection's read buffer, once the I/O
+ * thread found the response carrying this transport's message id.
+ * <p/>
+ * Reading past the bytes received so far throws {@link ResponseNotAvailable}, which makes the connection run the
+ * exchange again once more bytes arrive, like a replaying decoder would.
+ *
+ * @since 5.0
+ */
+public class NioTransport extends AbstractTransport implements MultiplexedTransport {
+
+   private final NioConnection connection;
+   private final long messageId;
+   private final AtomicBoolean done = new AtomicBoolean();
+
+   private ExposedByteArrayOutputStream request = new ExposedByteArrayOutputStream(64);
+   private volatile boolean sent;
+   private volatile long deadline;
+   private volatile Exchange exchange;
+   private volatile ResponseListener listener;
+   // the caller might still be unwinding the exchange while the I/O thread decodes the response
+   private volatile Thread decoder;
+   private ByteBuffer response;
+
+   NioTransport(TransportFactory transportFactory, NioConnection connection) {
+      super(transportFactory);
+      this.connection = connection;
+      this.messageId = connection.nextMessageId();
+   }
+
+   @Override
+   public long getMessageId() {
+      return messageId;
+   }
+
+   @Override
+   public void invoke(Exchange exchange, ResponseListener listener) {
+      this.exchange = exchange;
+      this.listener = listener;
+      Object result;
+      try {
+         result = exchange.run(this);
+      } catch (ResponseNotAvailable expected) {
+         // the request is out, the I/O thread takes over
+         return;
+      } catch (RuntimeException e) {
+         connection.forget(this);
+         failed(e);
+         return;
+      }
+      // the exchange did not wait for a response
+      connection.forget(this);
+      completed(result);
+   }
+
+   @Override
+   public Object invokeAndWait(Exchange exchange) {
+      // the response could only ever be read by the thread that would be waiting for it, nor would timeouts be checked
+      if (connection.inEventLoop())
+         throw new IllegalStateException("Synchronous requests cannot be made from the I/O thread, e.g. from a future listener");
+      ResponseFuture<Object> future = new ResponseFuture<Object>();
+      invoke(exchange, future);
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new TransportException("Interrupted while waiting for the response from " + getServerAddress(), e);
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+         throw new TransportException(cause);
+      }
+   }
+
+   /**
+    * Runs the exchange against the response starting at the current position of the given buffer. Called by the I/O
+    * thread.
+    *
+    * @throws ResponseNotAvailable if the response has not been fully received yet
+    */
+   Object decode(ByteBuffer buffer) {
+      response = buffer;
+      decoder = Thread.currentThread();
+      try {
+         return exchange.run(this);
+      } finally {
+         decoder = null;
+         response = null;
+      }
+   }
+
+   void completed(Object result) {
+      if (done.compareAndSet(false, true)) listener.responseReceived(result);
+   }
+
+   void failed(RuntimeException cause) {
+      if (done.compareAndSet(false, true)) listener.failed(cause);
+   }
+
+   long getDeadline() {
+      return deadline;
+   }
+
+   InetSocketAddress getServerAddress() {
+      return connection.getServerAddress();
+   }
+
+   @Override
+   public void flush() {
+      if (sent) return;
+      sent = true;
+      int timeout = getTransportFactory().getSoTimeout();
+      if (timeout > 0) deadline = System.currentTimeMillis() + timeout;
+      connection.send(this, ByteBuffer.wrap(request.getRawBuffer(), 0, request.size()));
+      request = null;
+   }
+
+   @Override
+   public void release() {
+      // the connection is shared, there's nothing to give back
+   }
+
+   @Override
+   public void writeByte(short toWrite) {
+      if (!sent) request.write(toWrite);
+   }
+
+   @Override
+   protected void writeBytes(byte[] toAppend) {
+      if (!sent) request.write(toAppend, 0, toAppend.length);
+   }
+
+   @Override
+   public void writeVInt(int vInt) {
+      if (sent) return;
+      try {
+         writeUnsignedInt(request, vInt);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public void writeVLong(long l) {
+      if (sent) return;
+      try {
+         writeUnsignedLong(request, l);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public short readByte() {
+      try {
+         return (short) (input().get() & 0xFF);
+      } catch (BufferUnderflowException e) {
+         throw ResponseNotAvailable.INSTANCE;
+      }
+   }
+
+   @Override
+   public int readVInt() {
+      try {
+         return readUnsignedInt(input());
+      } catch (BufferUnderflowException e) {
+         throw ResponseNotAvailable.INSTANCE;
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public long readVLong() {
+      try {
+         return readUnsignedLong(input());
+      } catch (BufferUnderflowException e) {
+         throw ResponseNotAvailable.INSTANCE;
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public byte[] readByteArray(int size) {
+      ByteBuffer input = input();
+      if (input.remaining() < size) throw ResponseNotAvailable.INSTANCE;
+      byte[] result = new byte[size];
+      input.get(result);
+      return result;
+   }
+
+   @Override
+   public byte[] dumpStream() {
+      ByteBuffer input = response;
+      if (input == null || Thread.currentThread() != decoder) return new byte[0];
+      byte[] remaining = new byte[input.remaining()];
+      input.duplicate().get(remaining);
+      return remaining;
+   }
+
+   private ByteBuffer input() {
+      if (Thread.currentThread() != decoder) {
+         if (!sent) throw new IllegalStateException("Reading the response before the request was flushed");
+         // caller thread, done with writing: unwind the exchange, the response is decoded by the I/O thread
+         throw ResponseNotAvailable.INSTANCE;
+      }
+      return response;
+   }
+
+   @Override
+   public String toString() {
+      return "NioTransport{" +
+            "messageId=" + messageId +
+            ", connection=" + connection +
+            "}";
+   }
+
+   /**
+    * Thrown when an exchange reads beyond the bytes available for its response. Like Netty's replay signal, this is an
+    * {@link Error} so that exchanges catching exceptions do not swallow it.
+    */
+   static final class ResponseNotAvailable extends Error {
+      static final ResponseNotAvailable INSTANCE = new ResponseNotAvailable();
+
+      private ResponseNotAvailable() {
+         super(null, null);
+      }
+
+      @Override
+      public synchronized Throwable fillInStackTrace() {
+         return this;
+      }
+   }
+}
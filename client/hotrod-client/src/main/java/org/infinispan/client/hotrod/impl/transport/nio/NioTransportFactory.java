@@ -0,0 +1,290 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHashFactory;
+import org.infinispan.client.hotrod.impl.operations.PingOperation;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.client.hotrod.impl.transport.tcp.RequestBalancingStrategy;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.LogFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport factory multiplexing all the requests to a server over a few non-blocking connections, instead of
+ * borrowing a connection per request from a pool. Requests are pipelined and their responses are decoded by a single
+ * I/O thread, so a handful of connections per server serve any number of application threads, and the async
+ * operations of the {@link org.infinispan.client.hotrod.RemoteCache} don't occupy a thread while in flight.
+ * <p/>
+ * The number of connections per server is set through
+ * {@link ConfigurationProperties#CONNECTIONS_PER_SERVER}; connections are opened lazily and replaced when they
+ * fail. The connection pool properties do not apply to this factory.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class NioTransportFactory implements TransportFactory {
+
+   private static final Log log = LogFactory.getLog(NioTransportFactory.class, Log.class);
+
+   private final Object lock = new Object();
+   @GuardedBy("lock")
+   private RequestBalancingStrategy balancer;
+   @GuardedBy("lock")
+   private Collection<InetSocketAddress> servers;
+   @GuardedBy("lock")
+   private ConsistentHash consistentHash;
+   @GuardedBy("lock")
+   private final Map<InetSocketAddress, NioConnection[]> connections = new HashMap<InetSocketAddress, NioConnection[]>();
+   private final ConsistentHashFactory hashFactory = new ConsistentHashFactory();
+   private final AtomicInteger nextConnection = new AtomicInteger();
+
+   private volatile NioEventLoop eventLoop;
+   private volatile int connectionsPerServer;
+   private volatile boolean tcpNoDelay;
+   private volatile int soTimeout;
+
+   @Override
+   public void start(ConfigurationProperties cfg, Collection<InetSocketAddress> staticConfiguredServers, AtomicInteger topologyId, ClassLoader classLoader) {
+      synchronized (lock) {
+         hashFactory.init(cfg, classLoader);
+         servers = Collections.unmodifiableCollection(new ArrayList<InetSocketAddress>(staticConfiguredServers));
+         String balancerClass = cfg.getRequestBalancingStrategy();
+         balancer = (RequestBalancingStrategy) Util.getInstance(balancerClass, classLoader);
+         balancer.setServers(servers);
+         tcpNoDelay = cfg.getTcpNoDelay();
+         soTimeout = cfg.getSoTimeout();
+         connectionsPerServer = cfg.getConnectionsPerServer();
+         if (log.isDebugEnabled()) {
+            log.debugf("Statically configured servers: %s", staticConfiguredServers);
+            log.debugf("Load balancer class: %s", balancerClass);
+            log.debugf("Tcp no delay = %b; response timeout = %d ms; connections per server = %d",
+                       tcpNoDelay, soTimeout, connectionsPerServer);
+         }
+         eventLoop = new NioEventLoop(soTimeout);
+      }
+      // outside the lock: a new topology in the response is applied by the I/O thread
+      if (cfg.getPingOnStartup()) {
+         try {
+            new PingOperation(topologyId, getTransport()).execute();
+         } catch (Exception e) {
+            log.tracef("Ignoring ping request failure during ping on startup: %s", e.getMessage());
+         }
+      }
+   }
+
+   @Override
+   public void destroy() {
+      List<NioConnection> toClose = new ArrayList<NioConnection>();
+      synchronized (lock) {
+         for (NioConnection[] serverConnections : connections.values()) {
+            addAll(serverConnections, toClose);
+         }
+         connections.clear();
+      }
+      close(toClose, "Transport factory stopped");
+      eventLoop.stop();
+   }
+
+   @Override
+   public void updateHashFunction(LinkedHashMap<InetSocketAddress, Integer> servers2HashCode, int numKeyOwners, short hashFunctionVersion, int hashSpace) {
+      synchronized (lock) {
+         ConsistentHash hash = hashFactory.newConsistentHash(hashFunctionVersion);
+         if (hash == null) {
+            log.noHasHFunctionConfigured(hashFunctionVersion);
+         } else {
+            hash.init(servers2HashCode, numKeyOwners, hashSpace);
+         }
+         consistentHash = hash;
+      }
+   }
+
+   @Override
+   public Transport getTransport() {
+      InetSocketAddress server;
+      synchronized (lock) {
+         server = balancer.nextServer();
+      }
+      return newTransport(server);
+   }
+
+   @Override
+   public Transport getTransport(byte[] key) {
+      InetSocketAddress server;
+      synchronized (lock) {
+         server = consistentHash != null ? consistentHash.getServer(key) : balancer.nextServer();
+      }
+      if (log.isTraceEnabled()) {
+         log.tracef("Using server %s for the key", server);
+      }
+      return newTransport(server);
+   }
+
+   @Override
+   public Transport getTransport(InetSocketAddress server) {
+      return server == null ? getTransport() : newTransport(server);
+   }
+
+   @Override
+   public Map<InetSocketAddress, List<byte[]>> groupKeysByServer(Collection<byte[]> keys) {
+      Map<InetSocketAddress, List<byte[]>> result = new HashMap<InetSocketAddress, List<byte[]>>();
+      synchronized (lock) {
+         if (consistentHash == null) {
+            result.put(null, new ArrayList<byte[]>(keys));
+            return result;
+         }
+         for (byte[] key : keys) {
+            InetSocketAddress server = consistentHash.getServer(key);
+            List<byte[]> serverKeys = result.get(server);
+            if (serverKeys == null) {
+               serverKeys = new ArrayList<byte[]>();
+               result.put(server, serverKeys);
+            }
+            serverKeys.add(key);
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public void releaseTransport(Transport transport) {
+      // transports are not pooled, the connection underneath is shared
+   }
+
+   @Override
+   public void updateServers(Collection<InetSocketAddress> newServers) {
+      List<NioConnection> toClose = new ArrayList<NioConnection>();
+      synchronized (lock) {
+         Set<InetSocketAddress> addedServers = new HashSet<InetSocketAddress>(newServers);
+         addedServers.removeAll(servers);
+         Set<InetSocketAddress> failedServers = new HashSet<InetSocketAddress>(servers);
+         failedServers.removeAll(newServers);
+         if (addedServers.isEmpty() && failedServers.isEmpty()) {
+            log.debug("Same list of servers, not changing the connections");
+            return;
+         }
+         // connections to the new servers are opened on first use
+         for (InetSocketAddress server : addedServers) {
+            log.newServerAdded(server);
+         }
+         balancer.setServers(newServers);
+         for (InetSocketAddress server : failedServers) {
+            log.removingServer(server);
+            addAll(connections.remove(server), toClose);
+         }
+         servers = Collections.unmodifiableList(new ArrayList<InetSocketAddress>(newServers));
+      }
+      close(toClose, "Server no longer in the cluster");
+   }
+
+   public Collection<InetSocketAddress> getServers() {
+      synchronized (lock) {
+         return servers;
+      }
+   }
+
+   /**
+    * Note that the returned <code>ConsistentHash</code> may not be thread-safe.
+    */
+   public ConsistentHash getConsistentHash() {
+      synchronized (lock) {
+         return consistentHash;
+      }
+   }
+
+   @Override
+   public boolean isTcpNoDelay() {
+      return tcpNoDelay;
+   }
+
+   @Override
+   public int getTransportCount() {
+      if (Thread.currentThread().isInterrupted()) {
+         return -1;
+      }
+      synchronized (lock) {
+         return connectionsPerServer * servers.size();
+      }
+   }
+
+   @Override
+   public int getSoTimeout() {
+      return soTimeout;
+   }
+
+   private Transport newTransport(InetSocketAddress server) {
+      return new NioTransport(this, connectionTo(server));
+   }
+
+   private NioConnection connectionTo(InetSocketAddress server) {
+      int slot = (nextConnection.getAndIncrement() & Integer.MAX_VALUE) % connectionsPerServer;
+      synchronized (lock) {
+         NioConnection[] serverConnections = connections.get(server);
+         if (serverConnections == null) {
+            serverConnections = new NioConnection[connectionsPerServer];
+            connections.put(server, serverConnections);
+         }
+         NioConnection connection = serverConnections[slot];
+         if (connection == null || !connection.isValid()) {
+            // the connect itself does not block, requests are queued until it completes
+            connection = new NioConnection(server, eventLoop, tcpNoDelay);
+            serverConnections[slot] = connection;
+            if (log.isTraceEnabled()) {
+               log.tracef("Opened connection %d to %s", slot, server);
+            }
+         }
+         return connection;
+      }
+   }
+
+   private static void addAll(NioConnection[] serverConnections, List<NioConnection> list) {
+      if (serverConnections == null) return;
+      for (NioConnection connection : serverConnections) {
+         if (connection != null) list.add(connection);
+      }
+   }
+
+   private static void close(List<NioConnection> toClose, String reason) {
+      for (NioConnection connection : toClose) {
+         connection.close(new TransportException(reason));
+      }
+   }
+}
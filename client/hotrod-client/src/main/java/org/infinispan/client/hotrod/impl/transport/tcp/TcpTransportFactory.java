@@ -40,8 +40,11 @@ import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -154,6 +157,35 @@ public class TcpTransportFactory implements TransportFactory {
       return borrowTransportFromPool(server);
    }
 
+   @Override
+   public Transport getTransport(InetSocketAddress server) {
+      return server == null ? getTransport() : borrowTransportFromPool(server);
+   }
+
+   @Override
+   public Map<InetSocketAddress, List<byte[]>> groupKeysByServer(Collection<byte[]> keys) {
+      Map<InetSocketAddress, List<byte[]>> result = new HashMap<InetSocketAddress, List<byte[]>>();
+      synchronized (lock) {
+         if (consistentHash == null) {
+            result.put(null, new ArrayList<byte[]>(keys));
+            return result;
+         }
+         for (byte[] key : keys) {
+            InetSocketAddress server = consistentHash.getServer(key);
+            List<byte[]> serverKeys = result.get(server);
+            if (serverKeys == null) {
+               serverKeys = new ArrayList<byte[]>();
+               result.put(server, serverKeys);
+            }
+            serverKeys.add(key);
+         }
+      }
+      if (log.isTraceEnabled()) {
+         log.tracef("Split %d keys between servers %s", keys.size(), result.keySet());
+      }
+      return result;
+   }
+
    @Override
    public void releaseTransport(Transport transport) {
       // The invalidateObject()/returnObject() calls could take a long time, so we hold the lock only until we get the connection pool reference
@@ -114,4 +114,12 @@ public interface Log extends org.infinispan.util.logging.Log {
    @Message(value = "Could not fetch transport", id = 4017)
    void couldNotFetchTransport(@Cause Exception e);
 
+   @LogMessage(level = WARN)
+   @Message(value = "Closing connection to %s, failing %d requests waiting for a response", id = 4018)
+   void closingConnection(InetSocketAddress server, int requestsInFlight, @Cause Throwable cause);
+
+   @LogMessage(level = ERROR)
+   @Message(value = "Unexpected error in the I/O thread", id = 4019)
+   void errorInIOThread(@Cause Throwable t);
+
 }
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+/**
+ * Tests the multi-key get, put and remove operations against a distributed cluster, where the keys of a single call
+ * are owned by different servers.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "client.hotrod.MultiKeyOperationsDistTest")
+public class MultiKeyOperationsDistTest extends MultipleCacheManagersTest {
+
+   private HotRodServer hotRodServer1;
+   private HotRodServer hotRodServer2;
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, String> remoteCache;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      config.setNumOwners(1);
+      addClusterEnabledCacheManager(config);
+      addClusterEnabledCacheManager(config);
+      TestingUtil.blockUntilViewsReceived(10000, manager(0).getCache(), manager(1).getCache());
+
+      hotRodServer1 = TestHelper.startHotRodServer(manager(0));
+      hotRodServer2 = TestHelper.startHotRodServer(manager(1));
+
+      Properties props = new Properties();
+      props.put("infinispan.client.hotrod.server_list", "localhost:" + hotRodServer1.getPort());
+      remoteCacheManager = new RemoteCacheManager(props);
+      remoteCache = remoteCacheManager.getCache();
+      // the first request retrieves the topology and the hash function
+      remoteCache.put("init", "init");
+   }
+
+   @AfterClass
+   @Override
+   protected void destroy() {
+      super.destroy();
+      remoteCacheManager.stop();
+      hotRodServer1.stop();
+      hotRodServer2.stop();
+   }
+
+   public void testPutAllAndGetAll() {
+      Map<String, String> entries = new HashMap<String, String>();
+      for (int i = 0; i < 50; i++) {
+         entries.put("k" + i, "v" + i);
+      }
+      remoteCache.putAll(entries);
+
+      for (int i = 0; i < 50; i++) {
+         assertEquals("v" + i, cache(i % 2).get("k" + i));
+      }
+
+      List<String> keys = new ArrayList<String>(entries.keySet());
+      keys.add("missing");
+      assertEquals(entries, remoteCache.getAll(keys));
+   }
+
+   public void testRemoveAll() {
+      Map<String, String> entries = new HashMap<String, String>();
+      for (int i = 0; i < 20; i++) {
+         entries.put("r" + i, "v" + i);
+      }
+      remoteCache.putAll(entries);
+
+      List<String> removed = new ArrayList<String>();
+      for (int i = 0; i < 10; i++) {
+         removed.add("r" + i);
+      }
+      remoteCache.removeAll(removed);
+
+      for (int i = 0; i < 20; i++) {
+         if (i < 10) {
+            assertNull(remoteCache.get("r" + i));
+         } else {
+            assertEquals("v" + i, remoteCache.get("r" + i));
+         }
+      }
+   }
+}
@@ -0,0 +1,184 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.client.hotrod.impl.transport.nio.NioTransportFactory;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the remote cache over the {@link NioTransportFactory}, which pipelines the requests over a single connection
+ * here.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "client.hotrod.NioTransportFunctionalTest")
+public class NioTransportFunctionalTest extends SingleCacheManagerTest {
+
+   private HotRodServer hotRodServer;
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, Object> remoteCache;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      cacheManager = TestCacheManagerFactory.createLocalCacheManager();
+      cache = cacheManager.getCache();
+      hotRodServer = TestHelper.startHotRodServer(cacheManager);
+
+      Properties props = new Properties();
+      props.put("infinispan.client.hotrod.server_list", "127.0.0.1:" + hotRodServer.getPort());
+      props.put("infinispan.client.hotrod.transport_factory", NioTransportFactory.class.getName());
+      props.put("infinispan.client.hotrod.connections_per_server", "1");
+      props.put("infinispan.client.hotrod.force_return_values", "true");
+      remoteCacheManager = new RemoteCacheManager(props);
+      remoteCache = remoteCacheManager.getCache();
+      return cacheManager;
+   }
+
+   @AfterClass
+   @Override
+   protected void destroyAfterClass() {
+      super.destroyAfterClass();
+      remoteCacheManager.stop();
+      hotRodServer.stop();
+   }
+
+   public void testTransportFactory() {
+      assertTrue(TestingUtil.extractField(remoteCacheManager, "transportFactory") instanceof NioTransportFactory);
+   }
+
+   public void testSyncOperations() {
+      assertNull(remoteCache.put("k", "v1"));
+      assertEquals("v1", remoteCache.get("k"));
+      assertEquals("v1", remoteCache.replace("k", "v2"));
+      assertEquals("v2", remoteCache.putIfAbsent("k", "v3"));
+      assertTrue(remoteCache.containsKey("k"));
+      VersionedValue<Object> versioned = remoteCache.getVersioned("k");
+      assertFalse(remoteCache.replaceWithVersion("k", "v4", versioned.getVersion() + 1));
+      assertTrue(remoteCache.replaceWithVersion("k", "v4", versioned.getVersion()));
+      assertEquals("v4", remoteCache.remove("k"));
+      assertNull(remoteCache.get("k"));
+   }
+
+   public void testPipelinedAsyncOperations() throws Exception {
+      List<NotifyingFuture<Object>> puts = new ArrayList<NotifyingFuture<Object>>();
+      for (int i = 0; i < 1000; i++) {
+         puts.add(remoteCache.putAsync("async" + i, "v" + i));
+      }
+      for (NotifyingFuture<Object> put : puts) {
+         assertNull(put.get());
+      }
+      List<NotifyingFuture<Object>> gets = new ArrayList<NotifyingFuture<Object>>();
+      for (int i = 0; i < 1000; i++) {
+         gets.add(remoteCache.getAsync("async" + i));
+      }
+      for (int i = 0; i < 1000; i++) {
+         assertEquals("v" + i, gets.get(i).get());
+      }
+      assertEquals("v0", remoteCache.removeAsync("async0").get());
+      assertNull(remoteCache.getAsync("async0").get());
+      remoteCache.clearAsync().get();
+      assertNull(remoteCache.get("async1"));
+   }
+
+   public void testSyncCallFromFutureListener() throws Exception {
+      remoteCache.put("first", "second");
+      remoteCache.put("second", "value");
+      final AtomicReference<Object> result = new AtomicReference<Object>();
+      final CountDownLatch notified = new CountDownLatch(1);
+      remoteCache.getAsync("first").attachListener(new FutureListener<Object>() {
+         @Override
+         public void futureDone(Future<Object> future) {
+            try {
+               // would never return if the listener ran on the I/O thread
+               result.set(remoteCache.get(future.get()));
+            } catch (Exception e) {
+               result.set(e);
+            } finally {
+               notified.countDown();
+            }
+         }
+      });
+      assertTrue(notified.await(10, TimeUnit.SECONDS));
+      assertEquals("value", result.get());
+   }
+
+   public void testLargeValues() throws Exception {
+      byte[] value = new byte[256 * 1024];
+      for (int i = 0; i < value.length; i++) {
+         value[i] = (byte) i;
+      }
+      remoteCache.put("large", value);
+      assertTrue(Arrays.equals(value, (byte[]) remoteCache.get("large")));
+      assertTrue(Arrays.equals(value, (byte[]) remoteCache.getAsync("large").get()));
+   }
+
+   public void testConcurrentThreadsShareConnection() throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(20);
+      try {
+         List<Future<Void>> workers = new ArrayList<Future<Void>>();
+         for (int t = 0; t < 20; t++) {
+            final String prefix = "thread" + t + "-";
+            workers.add(executor.submit(new Callable<Void>() {
+               @Override
+               public Void call() throws Exception {
+                  for (int i = 0; i < 200; i++) {
+                     remoteCache.put(prefix + i, prefix + i);
+                     assertEquals(prefix + i, remoteCache.get(prefix + i));
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> worker : workers) {
+            worker.get();
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+}
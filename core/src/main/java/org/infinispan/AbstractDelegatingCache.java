@@ -241,6 +241,10 @@ public abstract class AbstractDelegatingCache<K, V> implements Cache<K, V> {
       return cache.get(key);
    }
 
+   public Map<K, V> getAll(Collection<? extends K> keys) {
+      return cache.getAll(keys);
+   }
+
    public V put(K key, V value) {
       return cache.put(key, value);
    }
@@ -293,6 +297,10 @@ public abstract class AbstractDelegatingCache<K, V> implements Cache<K, V> {
    public NotifyingFuture<V> getAsync(K key) {
       return cache.getAsync(key);
    }
+
+   public NotifyingFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys) {
+      return cache.getAllAsync(keys);
+   }
    
    @Override
    public String toString() {
@@ -553,6 +553,25 @@ public interface Cache<K, V> extends ConcurrentMap<K, V>, Lifecycle, Listenable
     */
    NotifyingFuture<V> getAsync(K key);
 
+   /**
+    * Retrieves the values associated with several keys at once.  In distributed mode, keys that are not available
+    * locally are fetched using a single remote call per owning node, rather than one remote call per key as repeated
+    * invocations of {@link #get(Object)} would do.
+    *
+    * @param keys keys to retrieve
+    * @return a map containing the keys that were found and their values.  Keys that are not mapped in the cache are
+    *         not present in the returned map.
+    */
+   Map<K, V> getAll(Collection<? extends K> keys);
+
+   /**
+    * Asynchronous version of {@link #getAll(java.util.Collection)}.
+    *
+    * @param keys keys to retrieve
+    * @return a future containing the map of keys that were found to their values
+    */
+   NotifyingFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys);
+
    AdvancedCache<K, V> getAdvancedCache();
 
    /**
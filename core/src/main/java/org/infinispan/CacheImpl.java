@@ -26,6 +26,7 @@ import org.infinispan.batch.BatchContainer;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
@@ -223,9 +224,12 @@ public class CacheImpl<K, V> extends CacheSupport<K,V> implements AdvancedCache<
    public final boolean containsKey(Object key) {
       assertKeyNotNull(key);
       InvocationContext ctx = getInvocationContext(false);
-      GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, ctx.getFlags());
-      Object response = invoker.invoke(ctx, command);
-      return response != null;
+      GetKeyValueCommand command = commandsFactory.acquireGetKeyValueCommand(key, ctx.getFlags());
+      try {
+         return invoker.invoke(ctx, command) != null;
+      } finally {
+         commandsFactory.releaseGetKeyValueCommand(command);
+      }
    }
 
    public final boolean containsValue(Object value) {
@@ -236,8 +240,20 @@ public class CacheImpl<K, V> extends CacheSupport<K,V> implements AdvancedCache<
    public final V get(Object key) {
       assertKeyNotNull(key);
       InvocationContext ctx = getInvocationContext(false);
-      GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, ctx.getFlags());
-      return (V) invoker.invoke(ctx, command);
+      GetKeyValueCommand command = commandsFactory.acquireGetKeyValueCommand(key, ctx.getFlags());
+      try {
+         return (V) invoker.invoke(ctx, command);
+      } finally {
+         commandsFactory.releaseGetKeyValueCommand(command);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   public final Map<K, V> getAll(Collection<? extends K> keys) {
+      for (K key : keys) assertKeyNotNull(key);
+      InvocationContext ctx = getInvocationContext(false);
+      GetAllCommand command = commandsFactory.buildGetAllCommand(keys, ctx.getFlags());
+      return (Map<K, V>) invoker.invoke(ctx, command);
    }
 
    @SuppressWarnings("unchecked")
@@ -667,6 +683,35 @@ public class CacheImpl<K, V> extends CacheSupport<K,V> implements AdvancedCache<
       }
    }
 
+   @Override
+   public NotifyingFuture<Map<K, V>> getAllAsync(final Collection<? extends K> keys) {
+      final Transaction tx = getOngoingTransaction();
+      final NotifyingNotifiableFuture f = new DeferredReturnFuture();
+      final EnumSet<Flag> flags = flagHolder.get() == null ? null : flagHolder.get().flags;
+
+      // A local cache without a loader resolves all keys in memory, so there is no point in starting a new thread
+      if (!config.getCacheMode().isClustered() && isSkipLoader(flags)) {
+         return wrapInFuture(getAll(keys));
+      } else {
+         Callable<Map<K, V>> c = new Callable<Map<K, V>>() {
+            @Override
+            public Map<K, V> call() throws Exception {
+               for (K key : keys) assertKeyNotNull(key);
+               InvocationContext ctx = getInvocationContext(tx);
+               if (flags != null)
+                  ctx.setFlags(flags);
+
+               GetAllCommand command = commandsFactory.buildGetAllCommand(keys, flags);
+               Object ret = invoker.invoke(ctx, command);
+               f.notifyDone();
+               return (Map<K, V>) ret;
+            }
+         };
+         f.setNetworkFuture(asyncExecutor.submit(c));
+         return f;
+      }
+   }
+
    private boolean isDistributedAndLocal(EnumSet<Flag> flags, K key, boolean isSkipLoader) {
       return config.getCacheMode().isDistributed()
             && isSkipLoader
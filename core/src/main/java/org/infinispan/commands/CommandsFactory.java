@@ -27,11 +27,15 @@ import org.infinispan.commands.control.RehashControlCommand;
 import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.IntermediateResultsCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -145,6 +149,32 @@ public interface CommandsFactory {
     */
    GetKeyValueCommand buildGetKeyValueCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Returns a GetKeyValueCommand reused by the calling thread, for invocations that do not retain the command once
+    * they return.  The command must be handed back with {@link #releaseGetKeyValueCommand(GetKeyValueCommand)} when
+    * the invocation completes.  If the thread's command is already in use, e.g. by a listener reading from the cache
+    * while it is being read from, a new command is built instead.
+    * @param key key to get
+    * @return a GetKeyValueCommand
+    * @since 5.0
+    */
+   GetKeyValueCommand acquireGetKeyValueCommand(Object key, Set<Flag> flags);
+
+   /**
+    * Hands back a command obtained from {@link #acquireGetKeyValueCommand(Object, java.util.Set)}, so that it can be
+    * reused by the next invocation on this thread.
+    * @param command command to release
+    * @since 5.0
+    */
+   void releaseGetKeyValueCommand(GetKeyValueCommand command);
+
+   /**
+    * Builds a GetAllCommand
+    * @param keys keys to get
+    * @return a GetAllCommand
+    */
+   GetAllCommand buildGetAllCommand(Collection<?> keys, Set<Flag> flags);
+
    /**
     * Builds a KeySetCommand
     * @return a KeySetCommand
@@ -249,6 +279,13 @@ public interface CommandsFactory {
     */
    ClusteredGetCommand buildClusteredGetCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a ClusteredGetAllCommand, which is a remote lookup command for several keys
+    * @param keys keys to look up
+    * @return a ClusteredGetAllCommand
+    */
+   ClusteredGetAllCommand buildClusteredGetAllCommand(Collection<Object> keys, Set<Flag> flags);
+
    /**
     * Builds a LockControlCommand to control explicit remote locking
     * @param keys keys to lock
@@ -303,13 +340,36 @@ public interface CommandsFactory {
    /**
     * Builds a MapReduceCommand used for migration and execution of MapReduce tasks.
     * 
+    * @param taskId id of the MapReduceTask
     * @param m Mapper for MapReduceTask
     * @param r Reducer for MapReduceTask
+    * @param combiner optional combiner for MapReduceTask, may be null
+    * @param distributeReducePhase whether intermediate results are reduced by the owners of their keys
     * @param sender sender's Address
     * @param keys keys used in MapReduceTask
     * @return a MapReduceCommand
     */
-   MapReduceCommand buildMapReduceCommand(Mapper m, Reducer r, Address sender, Collection keys);
+   MapReduceCommand buildMapReduceCommand(String taskId, Mapper m, Reducer r, Reducer combiner,
+            boolean distributeReducePhase, Address sender, Collection keys);
+
+   /**
+    * Builds a ReduceCommand used to run the distributed reduce phase of MapReduce tasks.
+    *
+    * @param taskId id of the MapReduceTask
+    * @param r Reducer for MapReduceTask, or null to discard the task's intermediate results
+    * @return a ReduceCommand
+    */
+   ReduceCommand buildReduceCommand(String taskId, Reducer r);
+
+   /**
+    * Builds an IntermediateResultsCommand used to push intermediate results of MapReduce tasks to the owners of their
+    * keys.
+    *
+    * @param taskId id of the MapReduceTask
+    * @param intermediateResults intermediate keys and their values
+    * @return an IntermediateResultsCommand
+    */
+   IntermediateResultsCommand buildIntermediateResultsCommand(String taskId, Map<Object, List<Object>> intermediateResults);
 
    /**
     * @see GetInDoubtTxInfoCommand
@@ -29,11 +29,15 @@ import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.module.ModuleCommandInitializer;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.IntermediateResultsCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -58,6 +62,7 @@ import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distexec.mapreduce.MapReduceManager;
 import org.infinispan.distexec.mapreduce.Mapper;
 import org.infinispan.distexec.mapreduce.Reducer;
 import org.infinispan.distribution.DistributionManager;
@@ -107,12 +112,15 @@ public class CommandsFactoryImpl implements CommandsFactory {
    KeySetCommand cachedKeySetCommand;
    ValuesCommand cachedValuesCommand;
    EntrySetCommand cachedEntrySetCommand;
+   // get commands are not stateless, but can be reused by the same thread once the invocation returns.
+   private final ThreadLocal<PooledGetKeyValueCommand> pooledGetKeyValueCommand = new ThreadLocal<PooledGetKeyValueCommand>();
    private InterceptorChain interceptorChain;
    private DistributionManager distributionManager;
    private InvocationContextContainer icc;
    private TransactionTable txTable;
    private Configuration configuration;
    private RecoveryManager recoveryManager;
+   private MapReduceManager mapReduceManager;
 
    private Map<Byte, ModuleCommandInitializer> moduleCommandInitializers;
 
@@ -121,7 +129,7 @@ public class CommandsFactoryImpl implements CommandsFactory {
                                  InterceptorChain interceptorChain, DistributionManager distributionManager,
                                  InvocationContextContainer icc, TransactionTable txTable, Configuration configuration,
                                  @ComponentName(KnownComponentNames.MODULE_COMMAND_INITIALIZERS) Map<Byte, ModuleCommandInitializer> moduleCommandInitializers,
-                                 RecoveryManager recoveryManager) {
+                                 RecoveryManager recoveryManager, MapReduceManager mapReduceManager) {
       this.dataContainer = container;
       this.notifier = notifier;
       this.cache = cache;
@@ -132,6 +140,7 @@ public class CommandsFactoryImpl implements CommandsFactory {
       this.configuration = configuration;
       this.moduleCommandInitializers = moduleCommandInitializers;
       this.recoveryManager = recoveryManager;
+      this.mapReduceManager = mapReduceManager;
    }
 
    @Start(priority = 1)
@@ -196,6 +205,34 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new GetKeyValueCommand(key, notifier, flags);
    }
 
+   public GetKeyValueCommand acquireGetKeyValueCommand(Object key, Set<Flag> flags) {
+      PooledGetKeyValueCommand pooled = pooledGetKeyValueCommand.get();
+      if (pooled == null) {
+         pooled = new PooledGetKeyValueCommand(notifier);
+         pooledGetKeyValueCommand.set(pooled);
+      } else if (pooled.inUse) {
+         return buildGetKeyValueCommand(key, flags);
+      }
+      pooled.inUse = true;
+      pooled.setKey(key);
+      pooled.setFlags(flags);
+      pooled.setReturnCacheEntry(false);
+      return pooled;
+   }
+
+   public void releaseGetKeyValueCommand(GetKeyValueCommand command) {
+      if (command instanceof PooledGetKeyValueCommand) {
+         PooledGetKeyValueCommand pooled = (PooledGetKeyValueCommand) command;
+         pooled.setKey(null);
+         pooled.setFlags(null);
+         pooled.inUse = false;
+      }
+   }
+
+   public GetAllCommand buildGetAllCommand(Collection<?> keys, Set<Flag> flags) {
+      return new GetAllCommand(keys, notifier, flags);
+   }
+
    public PutMapCommand buildPutMapCommand(Map map, long lifespan, long maxIdleTimeMillis, Set<Flag> flags) {
       return new PutMapCommand(map, notifier, lifespan, maxIdleTimeMillis, flags);
    }
@@ -242,6 +279,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new ClusteredGetCommand(key, cacheName, flags);
    }
 
+   public ClusteredGetAllCommand buildClusteredGetAllCommand(Collection<Object> keys, Set<Flag> flags) {
+      return new ClusteredGetAllCommand(keys, cacheName, flags);
+   }
+
    /**
     * @param isRemote true if the command is deserialized and is executed remote.
     */
@@ -312,6 +353,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
             ClusteredGetCommand clusteredGetCommand = (ClusteredGetCommand) c;
             clusteredGetCommand.initialize(icc, this, interceptorChain, distributionManager);
             break;
+         case ClusteredGetAllCommand.COMMAND_ID:
+            ClusteredGetAllCommand clusteredGetAllCommand = (ClusteredGetAllCommand) c;
+            clusteredGetAllCommand.initialize(icc, this, interceptorChain, distributionManager);
+            break;
          case LockControlCommand.COMMAND_ID:
             LockControlCommand lcc = (LockControlCommand) c;
             lcc.init(interceptorChain, icc, txTable);
@@ -346,7 +391,16 @@ public class CommandsFactoryImpl implements CommandsFactory {
             break;
          case MapReduceCommand.COMMAND_ID:
             MapReduceCommand mrc = (MapReduceCommand)c;
-            mrc.init(this, interceptorChain, icc, distributionManager,cache.getAdvancedCache().getRpcManager().getAddress());
+            mrc.init(this, interceptorChain, icc, distributionManager,cache.getAdvancedCache().getRpcManager().getAddress(),
+                     mapReduceManager);
+            break;
+         case ReduceCommand.COMMAND_ID:
+            ReduceCommand reduceCommand = (ReduceCommand) c;
+            reduceCommand.init(mapReduceManager, cache.getAdvancedCache().getRpcManager().getAddress());
+            break;
+         case IntermediateResultsCommand.COMMAND_ID:
+            IntermediateResultsCommand irc = (IntermediateResultsCommand) c;
+            irc.init(mapReduceManager);
             break;
          case DistributedExecuteCommand.COMMAND_ID:
             DistributedExecuteCommand dec = (DistributedExecuteCommand)c;
@@ -403,8 +457,19 @@ public class CommandsFactoryImpl implements CommandsFactory {
    }
 
    @Override
-   public MapReduceCommand buildMapReduceCommand(Mapper m, Reducer r, Address sender, Collection keys) {
-      return new MapReduceCommand(m, r, cacheName, keys);
+   public MapReduceCommand buildMapReduceCommand(String taskId, Mapper m, Reducer r, Reducer combiner,
+            boolean distributeReducePhase, Address sender, Collection keys) {
+      return new MapReduceCommand(taskId, m, r, combiner, distributeReducePhase, cacheName, keys);
+   }
+
+   @Override
+   public ReduceCommand buildReduceCommand(String taskId, Reducer r) {
+      return new ReduceCommand(taskId, r, cacheName);
+   }
+
+   @Override
+   public IntermediateResultsCommand buildIntermediateResultsCommand(String taskId, Map<Object, List<Object>> intermediateResults) {
+      return new IntermediateResultsCommand(taskId, intermediateResults, cacheName);
    }
 
    @Override
@@ -421,4 +486,12 @@ public class CommandsFactoryImpl implements CommandsFactory {
    public RemoveRecoveryInfoCommand buildRemoveRecoveryInfoCommand(long internalId) {
       return new RemoveRecoveryInfoCommand(internalId, cacheName);
    }
+
+   private static final class PooledGetKeyValueCommand extends GetKeyValueCommand {
+      boolean inUse;
+
+      PooledGetKeyValueCommand(CacheNotifier notifier) {
+         super(null, notifier, null);
+      }
+   }
 }
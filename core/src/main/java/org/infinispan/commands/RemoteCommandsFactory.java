@@ -29,7 +29,10 @@ import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.module.ModuleCommandFactory;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.IntermediateResultsCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -153,6 +156,9 @@ public class RemoteCommandsFactory {
             case ClusteredGetCommand.COMMAND_ID:
                command = new ClusteredGetCommand();
                break;
+            case ClusteredGetAllCommand.COMMAND_ID:
+               command = new ClusteredGetAllCommand();
+               break;
             case RehashControlCommand.COMMAND_ID:
                command = new RehashControlCommand(transport);
                break;
@@ -168,6 +174,12 @@ public class RemoteCommandsFactory {
             case MapReduceCommand.COMMAND_ID:
                command = new MapReduceCommand();
                break;
+            case ReduceCommand.COMMAND_ID:
+               command = new ReduceCommand();
+               break;
+            case IntermediateResultsCommand.COMMAND_ID:
+               command = new IntermediateResultsCommand();
+               break;
             case DistributedExecuteCommand.COMMAND_ID:
                command = new DistributedExecuteCommand<Object>();
                break;
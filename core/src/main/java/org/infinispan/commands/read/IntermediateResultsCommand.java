@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.read;
+
+import java.util.List;
+import java.util.Map;
+
+import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.distexec.mapreduce.MapReduceManager;
+
+/**
+ * IntermediateResultsCommand carries the intermediate keys emitted, and possibly combined, during the map phase of a
+ * MapReduce task to the node that is the primary owner of those keys. It is sent by the master, once all map nodes
+ * returned their results. The keys are held by the receiving node's {@link MapReduceManager} until the
+ * {@link ReduceCommand} for the task arrives.
+ *
+ * @since 5.0
+ */
+public class IntermediateResultsCommand extends BaseRpcCommand {
+   public static final int COMMAND_ID = 26;
+
+   private String taskId;
+   private Map<Object, List<Object>> intermediateResults;
+
+   private MapReduceManager mapReduceManager;
+
+   public IntermediateResultsCommand() {
+   }
+
+   public IntermediateResultsCommand(String taskId, Map<Object, List<Object>> intermediateResults, String cacheName) {
+      super(cacheName);
+      this.taskId = taskId;
+      this.intermediateResults = intermediateResults;
+   }
+
+   public void init(MapReduceManager mapReduceManager) {
+      this.mapReduceManager = mapReduceManager;
+   }
+
+   @Override
+   public Object perform(InvocationContext context) throws Throwable {
+      mapReduceManager.addIntermediateResults(taskId, intermediateResults);
+      return null;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[] { cacheName, taskId, intermediateResults };
+   }
+
+   @Override
+   public void setParameters(int commandId, Object[] args) {
+      if (commandId != COMMAND_ID)
+         throw new IllegalStateException("Invalid method id");
+      int i = 0;
+      cacheName = (String) args[i++];
+      taskId = (String) args[i++];
+      intermediateResults = (Map<Object, List<Object>>) args[i++];
+   }
+
+   @Override
+   public String toString() {
+      return "IntermediateResultsCommand(taskId=" + taskId + ", keys=" + intermediateResults.size() + ")";
+   }
+}
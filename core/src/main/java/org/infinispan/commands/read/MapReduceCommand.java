@@ -23,22 +23,24 @@
 package org.infinispan.commands.read;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.InvocationContextContainer;
 import org.infinispan.distexec.mapreduce.Collector;
+import org.infinispan.distexec.mapreduce.MapReduceManager;
 import org.infinispan.distexec.mapreduce.Mapper;
 import org.infinispan.distexec.mapreduce.Reducer;
 import org.infinispan.distribution.DistributionManager;
@@ -50,6 +52,15 @@ import org.infinispan.util.logging.LogFactory;
 /**
  * MapReduceCommand is used to migrate {@link Mapper} and {@link Reducer} to remote JVM where they
  * will get invoked.
+ * <p>
+ * Input keys are mapped in parallel on the node's {@link MapReduceManager} worker pool and the optional combiner is
+ * applied to the intermediate values of each worker. If the reduce phase is distributed, intermediate keys are then
+ * partitioned by their primary owner: the partition this node owns is kept here, the others are returned to the
+ * master, which routes them to their owners using {@link IntermediateResultsCommand}s before the {@link ReduceCommand}s
+ * are sent. Otherwise intermediate results are reduced locally and returned to the master.
+ * <p>
+ * Map nodes never push to each other themselves: a synchronous push made from the thread handling this command
+ * could deadlock with the owner doing the same, once both nodes' inbound threads are all taken.
  * 
  * @author Vladimir Blagojevic
  * @since 5.0
@@ -58,56 +69,57 @@ public class MapReduceCommand extends BaseRpcCommand {
    public static final int COMMAND_ID = 20;
    private static final Log log = LogFactory.getLog(MapReduceCommand.class);
    protected Set<Object> keys;
+   private String taskId;
    private Mapper  mapper;
    private Reducer  reducer;
+   private Reducer  combiner;
+   private boolean distributeReducePhase;
    
    private InterceptorChain invoker;
    private CommandsFactory commandsFactory;
    protected InvocationContextContainer icc;
    protected DistributionManager dm;
    protected Address localAddress;
+   private MapReduceManager mapReduceManager;
 
    public MapReduceCommand() {
    }
 
-   public MapReduceCommand( Mapper m, Reducer r, String cacheName, Object... inputKeys) {
-      super(cacheName);
-      if (inputKeys == null || inputKeys.length == 0) {
-         this.keys = new HashSet<Object>();
-      } else {
-         this.keys = new HashSet<Object>();
-         this.keys.addAll(Arrays.asList(inputKeys));
-      }
-      this.mapper = m;
-      this.reducer = r;
-   }
-
-   public MapReduceCommand( Mapper m, Reducer r, String cacheName, Collection<Object> inputKeys) {
+   public MapReduceCommand(String taskId, Mapper m, Reducer r, Reducer combiner, boolean distributeReducePhase,
+            String cacheName, Collection<Object> inputKeys) {
       super(cacheName);
       if (inputKeys == null || inputKeys.isEmpty())
          this.keys = new HashSet<Object>();
       else
          this.keys = new HashSet<Object>(inputKeys);
-     
+
+      this.taskId = taskId;
       this.mapper = m;
       this.reducer = r;
+      this.combiner = combiner;
+      this.distributeReducePhase = distributeReducePhase;
    }
    
    public void init(CommandsFactory factory, InterceptorChain invoker,
-            InvocationContextContainer icc, DistributionManager dm, Address localAddress) {
+            InvocationContextContainer icc, DistributionManager dm, Address localAddress,
+            MapReduceManager mapReduceManager) {
       this.commandsFactory = factory;
       this.invoker = invoker;
       this.icc = icc;
       this.dm = dm;      
       this.localAddress = localAddress;
+      this.mapReduceManager = mapReduceManager;
    }
 
    /**
-    * Performs invocation of mapping phase and local reduce phase before returning result to master node
+    * Performs invocation of mapping phase and local combine phase. If the reduce phase is distributed intermediate
+    * results are partitioned by the primary owners of their keys, otherwise they are reduced locally and returned to
+    * the master node.
     * 
     * @param context
     *           invocation context
-    * @return Map of intermediate key value pairs
+    * @return Map of intermediate key value pairs, or if the reduce phase is distributed, the intermediate results owned
+    *         by other nodes, partitioned by owner
     */
    @Override
    public Object perform(InvocationContext context) throws Throwable {
@@ -131,19 +143,17 @@ public class MapReduceCommand extends BaseRpcCommand {
          keys.addAll(selectedKeys);
       }
       log.tracef("For %s at %s invoking mapper on keys %s", this, localAddress, keys);
-      DefaultCollector<Object,Object> collector = new DefaultCollector<Object, Object>();
-      for (Object key : keys) {
-         GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, ctx.getFlags());
-         command.setReturnCacheEntry(false);
-         Object value = invoker.invoke(ctx, command);
-         mapper.map(key, value,collector);
-      }
-      Map<Object, List<Object>> collectedValues = collector.collectedValues();
+      Map<Object, List<Object>> collectedValues = mapAndCombine(ctx.getFlags());
+
+      if (distributeReducePhase)
+         return partitionIntermediateResults(collectedValues);
+
+      Reducer localReducer = combiner != null ? combiner : reducer;
       Map<Object,Object> reducedMap = new HashMap<Object, Object>();
       for (Entry<Object, List<Object>> e : collectedValues.entrySet()) {
          List<Object> list = e.getValue();
          if(list.size()>1){
-            Object reduced = reducer.reduce(e.getKey(),list.iterator());
+            Object reduced = localReducer.reduce(e.getKey(),list.iterator());
             reducedMap.put(e.getKey(), reduced);
          } else {
             reducedMap.put(e.getKey(),list.get(0));
@@ -153,6 +163,78 @@ public class MapReduceCommand extends BaseRpcCommand {
       return reducedMap;
    }
 
+   /**
+    * Splits input keys across the worker pool, each worker mapping its share with a private collector and combining
+    * its output. Worker outputs are then merged, and combined once more if a combiner is set.
+    */
+   private Map<Object, List<Object>> mapAndCombine(final Set<Flag> flags) throws Throwable {
+      int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), keys.size());
+      if (parallelism <= 1)
+         return new MapTask(keys, flags).call();
+
+      List<List<Object>> splits = new ArrayList<List<Object>>(parallelism);
+      for (int i = 0; i < parallelism; i++) splits.add(new ArrayList<Object>(keys.size() / parallelism + 1));
+      int i = 0;
+      for (Object key : keys) splits.get(i++ % parallelism).add(key);
+
+      List<Future<Map<Object, List<Object>>>> futures = new ArrayList<Future<Map<Object, List<Object>>>>(parallelism);
+      for (List<Object> split : splits) {
+         futures.add(mapReduceManager.getExecutorService().submit(new MapTask(split, flags)));
+      }
+      Map<Object, List<Object>> merged = new HashMap<Object, List<Object>>();
+      try {
+         for (Future<Map<Object, List<Object>>> future : futures) {
+            for (Entry<Object, List<Object>> e : future.get().entrySet()) {
+               List<Object> values = merged.get(e.getKey());
+               if (values == null)
+                  merged.put(e.getKey(), e.getValue());
+               else
+                  values.addAll(e.getValue());
+            }
+         }
+      } catch (ExecutionException e) {
+         for (Future<?> future : futures) future.cancel(true);
+         throw e.getCause();
+      }
+      combine(merged);
+      return merged;
+   }
+
+   private void combine(Map<Object, List<Object>> collectedValues) {
+      if (combiner == null) return;
+      for (Entry<Object, List<Object>> e : collectedValues.entrySet()) {
+         List<Object> list = e.getValue();
+         if (list.size() > 1) {
+            Object combined = combiner.reduce(e.getKey(), list.iterator());
+            List<Object> singleValue = new ArrayList<Object>(1);
+            singleValue.add(combined);
+            e.setValue(singleValue);
+         }
+      }
+   }
+
+   /**
+    * Partitions intermediate results by the primary owner of each intermediate key. The partition owned by this node
+    * is handed to the local {@link MapReduceManager} right away, the others are left for the master to route.
+    */
+   private Map<Address, Map<Object, List<Object>>> partitionIntermediateResults(Map<Object, List<Object>> collectedValues) {
+      Map<Address, Map<Object, List<Object>>> partitions = new HashMap<Address, Map<Object, List<Object>>>();
+      for (Entry<Object, List<Object>> e : collectedValues.entrySet()) {
+         Address owner = dm.locate(e.getKey()).get(0);
+         Map<Object, List<Object>> partition = partitions.get(owner);
+         if (partition == null) {
+            partition = new HashMap<Object, List<Object>>();
+            partitions.put(owner, partition);
+         }
+         partition.put(e.getKey(), e.getValue());
+      }
+      Map<Object, List<Object>> localPartition = partitions.remove(localAddress);
+      if (localPartition != null)
+         mapReduceManager.addIntermediateResults(taskId, localPartition);
+      log.tracef("%s executed at %s leaves intermediate keys for %s to the master", this, localAddress, partitions.keySet());
+      return partitions;
+   }
+
    @Override
    public byte getCommandId() {
       return COMMAND_ID;
@@ -161,7 +243,7 @@ public class MapReduceCommand extends BaseRpcCommand {
    @Override
    public Object[] getParameters() {
       
-      return new Object[] { cacheName, keys, mapper, reducer};
+      return new Object[] { cacheName, taskId, keys, mapper, reducer, combiner, distributeReducePhase};
    }
 
    @Override
@@ -170,9 +252,12 @@ public class MapReduceCommand extends BaseRpcCommand {
          throw new IllegalStateException("Invalid method id");
       int i = 0;
       cacheName = (String) args[i++];
+      taskId = (String) args[i++];
       keys = (Set<Object>) args[i++];
       mapper = (Mapper)args[i++];
       reducer = (Reducer) args[i++];
+      combiner = (Reducer) args[i++];
+      distributeReducePhase = (Boolean) args[i++];
    }
 
    @Override
@@ -208,25 +293,54 @@ public class MapReduceCommand extends BaseRpcCommand {
    
    @Override
    public String toString() {
-      return "MapReduceCommand(keys=" + keys+")";
+      return "MapReduceCommand(taskId=" + taskId + ", keys=" + keys+")";
    }
    
    private InvocationContext getInvocationContext(InvocationContext ctx) {
       return  ctx == null ? icc.createRemoteInvocationContext(localAddress):ctx;      
    }
    
+   /**
+    * Maps a share of the input keys on a worker thread, using its own invocation context and collector.
+    */
+   private class MapTask implements Callable<Map<Object, List<Object>>> {
+
+      private final Collection<Object> keys;
+      private final Set<Flag> flags;
+
+      MapTask(Collection<Object> keys, Set<Flag> flags) {
+         this.keys = keys;
+         this.flags = flags;
+      }
+
+      @Override
+      public Map<Object, List<Object>> call() throws Exception {
+         InvocationContext ctx = icc.createRemoteInvocationContext(localAddress);
+         DefaultCollector<Object, Object> collector = new DefaultCollector<Object, Object>();
+         for (Object key : keys) {
+            GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, flags);
+            command.setReturnCacheEntry(false);
+            Object value = invoker.invoke(ctx, command);
+            mapper.map(key, value, collector);
+         }
+         Map<Object, List<Object>> collectedValues = collector.collectedValues();
+         combine(collectedValues);
+         return collectedValues;
+      }
+   }
+   
    /**
     * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
     */
    private static class DefaultCollector<KOut, VOut> implements Collector<KOut, VOut> {
 
-      private final Map<KOut, List<VOut>> store = new ConcurrentHashMap<KOut, List<VOut>>();
+      private final Map<KOut, List<VOut>> store = new HashMap<KOut, List<VOut>>();
 
       @Override
       public void emit(KOut key, VOut value) {
          List<VOut> list = store.get(key);
          if (list == null) {
-            list = new LinkedList<VOut>();
+            list = new ArrayList<VOut>();
             store.put(key, list);
          }
          list.add(value);
@@ -236,4 +350,4 @@ public class MapReduceCommand extends BaseRpcCommand {
          return store;
       }
    }
-}
\ No newline at end of file
+}
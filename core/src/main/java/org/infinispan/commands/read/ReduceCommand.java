@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.read;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.distexec.mapreduce.MapReduceManager;
+import org.infinispan.distexec.mapreduce.Reducer;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * ReduceCommand runs the reduce phase of a MapReduce task on the intermediate keys this node is the primary owner of,
+ * as routed to it by the master with {@link IntermediateResultsCommand}s after the map phase. Keys are reduced in
+ * parallel on the {@link MapReduceManager} worker pool and the reduced values are returned to the master node.
+ * <p>
+ * A ReduceCommand without a reducer discards the intermediate results of its task, and is used to clean up after a
+ * failed map phase.
+ *
+ * @since 5.0
+ */
+public class ReduceCommand extends BaseRpcCommand {
+   public static final int COMMAND_ID = 25;
+   private static final Log log = LogFactory.getLog(ReduceCommand.class);
+
+   private String taskId;
+   private Reducer reducer;
+
+   private MapReduceManager mapReduceManager;
+   private Address localAddress;
+
+   public ReduceCommand() {
+   }
+
+   public ReduceCommand(String taskId, Reducer reducer, String cacheName) {
+      super(cacheName);
+      this.taskId = taskId;
+      this.reducer = reducer;
+   }
+
+   public void init(MapReduceManager mapReduceManager, Address localAddress) {
+      this.mapReduceManager = mapReduceManager;
+      this.localAddress = localAddress;
+   }
+
+   /**
+    * Reduces intermediate results of the task held by this node
+    *
+    * @param context
+    *           invocation context
+    * @return Map of intermediate keys owned by this node and their reduced values
+    */
+   @Override
+   public Object perform(InvocationContext context) throws Throwable {
+      Map<Object, List<Object>> intermediateResults = mapReduceManager.removeIntermediateResults(taskId);
+      if (reducer == null) {
+         log.tracef("Discarded %s intermediate keys of MapReduce task %s at %s", intermediateResults.size(), taskId, localAddress);
+         return new HashMap<Object, Object>();
+      }
+
+      int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), intermediateResults.size());
+      if (parallelism <= 1)
+         return new ReduceTask(new ArrayList<Entry<Object, List<Object>>>(intermediateResults.entrySet())).call();
+
+      List<List<Entry<Object, List<Object>>>> splits = new ArrayList<List<Entry<Object, List<Object>>>>(parallelism);
+      for (int i = 0; i < parallelism; i++)
+         splits.add(new ArrayList<Entry<Object, List<Object>>>(intermediateResults.size() / parallelism + 1));
+      int i = 0;
+      for (Entry<Object, List<Object>> e : intermediateResults.entrySet()) splits.get(i++ % parallelism).add(e);
+
+      List<Future<Map<Object, Object>>> futures = new ArrayList<Future<Map<Object, Object>>>(parallelism);
+      for (List<Entry<Object, List<Object>>> split : splits) {
+         futures.add(mapReduceManager.getExecutorService().submit(new ReduceTask(split)));
+      }
+      Map<Object, Object> reducedMap = new HashMap<Object, Object>(intermediateResults.size());
+      try {
+         for (Future<Map<Object, Object>> future : futures) reducedMap.putAll(future.get());
+      } catch (ExecutionException e) {
+         for (Future<?> future : futures) future.cancel(true);
+         throw e.getCause();
+      }
+      log.tracef("%s executed at %s reduced %s intermediate keys", this, localAddress, reducedMap.size());
+      return reducedMap;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[] { cacheName, taskId, reducer };
+   }
+
+   @Override
+   public void setParameters(int commandId, Object[] args) {
+      if (commandId != COMMAND_ID)
+         throw new IllegalStateException("Invalid method id");
+      int i = 0;
+      cacheName = (String) args[i++];
+      taskId = (String) args[i++];
+      reducer = (Reducer) args[i++];
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof ReduceCommand)) return false;
+      if (!super.equals(o)) return false;
+      ReduceCommand that = (ReduceCommand) o;
+      return taskId != null ? taskId.equals(that.taskId) : that.taskId == null;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = super.hashCode();
+      result = 31 * result + (taskId != null ? taskId.hashCode() : 0);
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "ReduceCommand(taskId=" + taskId + ")";
+   }
+
+   private class ReduceTask implements Callable<Map<Object, Object>> {
+
+      private final List<Entry<Object, List<Object>>> entries;
+
+      ReduceTask(List<Entry<Object, List<Object>>> entries) {
+         this.entries = entries;
+      }
+
+      @Override
+      public Map<Object, Object> call() throws Exception {
+         Map<Object, Object> reduced = new HashMap<Object, Object>(entries.size());
+         for (Entry<Object, List<Object>> e : entries) {
+            List<Object> values = e.getValue();
+            reduced.put(e.getKey(), values.size() > 1 ? reducer.reduce(e.getKey(), values.iterator()) : values.get(0));
+         }
+         return reduced;
+      }
+   }
+}
@@ -39,6 +39,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -57,6 +58,8 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
 
    protected WriteCommand[] modifications;
    protected boolean onePhaseCommit;
+   protected Map<Object, Long> versionsSeen;
+   protected long commitVersion;
    protected CacheNotifier notifier;
    protected RecoveryManager recoveryManager;
 
@@ -135,6 +138,30 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
       return modifications != null ? modifications.length : 0;
    }
 
+   /**
+    * Only used with optimistic locking.
+    *
+    * @return the version of each modified entry as read by the transaction, keyed by the entry's key, or null if the
+    *         transaction does not use optimistic locking
+    */
+   public Map<Object, Long> getVersionsSeen() {
+      return versionsSeen;
+   }
+
+   /**
+    * Only used with optimistic locking.
+    *
+    * @return the version entries modified by this transaction are committed with, identical on all owners
+    */
+   public long getCommitVersion() {
+      return commitVersion;
+   }
+
+   public void setVersions(Map<Object, Long> versionsSeen, long commitVersion) {
+      this.versionsSeen = versionsSeen;
+      this.commitVersion = commitVersion;
+   }
+
    public byte getCommandId() {
       return COMMAND_ID;
    }
@@ -142,12 +169,14 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
    @Override
    public Object[] getParameters() {
       int numMods = modifications == null ? 0 : modifications.length;
-      Object[] retval = new Object[numMods + 4];
+      Object[] retval = new Object[numMods + 6];
       retval[0] = globalTx;
       retval[1] = cacheName;
       retval[2] = onePhaseCommit;
       retval[3] = numMods;
       if (numMods > 0) System.arraycopy(modifications, 0, retval, 4, numMods);
+      retval[numMods + 4] = versionsSeen;
+      retval[numMods + 5] = commitVersion;
       return retval;
    }
 
@@ -162,6 +191,8 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
          modifications = new WriteCommand[numMods];
          System.arraycopy(args, 4, modifications, 0, numMods);
       }
+      versionsSeen = (Map<Object, Long>) args[numMods + 4];
+      commitVersion = (Long) args[numMods + 5];
    }
 
    public PrepareCommand copy() {
@@ -169,6 +200,8 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
       copy.globalTx = globalTx;
       copy.modifications = modifications == null ? null : modifications.clone();
       copy.onePhaseCommit = onePhaseCommit;
+      copy.versionsSeen = versionsSeen;
+      copy.commitVersion = commitVersion;
       return copy;
    }
 
@@ -178,6 +211,7 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
             "gtx=" + globalTx +
             ", modifications=" + (modifications == null ? null : Arrays.asList(modifications)) +
             ", onePhaseCommit=" + onePhaseCommit +
+            (versionsSeen == null ? "" : ", versionsSeen=" + versionsSeen + ", commitVersion=" + commitVersion) +
             ", " + super.toString();
    }
 
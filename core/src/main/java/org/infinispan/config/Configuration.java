@@ -31,6 +31,7 @@ import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
 import org.infinispan.distribution.group.Grouper;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
+import org.infinispan.eviction.MarshalledEntrySizeEstimator;
 import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
@@ -141,6 +142,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
    @XmlElement
    InvocationBatching invocationBatching = new InvocationBatching().setConfiguration(this);
 
+   @XmlElement
+   BinaryMode binaryMode = new BinaryMode().setConfiguration(this);
+
    @XmlElement
    DeadlockDetectionType deadlockDetection = new DeadlockDetectionType().setConfiguration(this);
 
@@ -323,6 +327,25 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       locking.setWriteSkewCheck(writeSkewCheck);
    }
 
+   public boolean isOptimisticLocking() {
+      return locking.optimistic;
+   }
+
+   /**
+    * This setting is only applicable to transactional caches using REPEATABLE_READ. If true, writes performed within a
+    * transaction do not acquire locks; instead, locks on all modified keys are acquired in a deterministic order when
+    * the transaction prepares, and the version of each modified entry is validated against the version read by the
+    * transaction. If any entry has been changed by a concurrent transaction in the meantime, the prepare fails and the
+    * transaction is rolled back.
+    *
+    * @param optimistic
+    * @deprecated Use {@link FluentConfiguration.LockingConfig#optimistic(Boolean)} instead
+    */
+   @Deprecated
+   public void setOptimisticLocking(boolean optimistic) {
+      locking.setOptimistic(optimistic);
+   }
+
    public int getConcurrencyLevel() {
       return locking.concurrencyLevel;
    }
@@ -391,6 +414,18 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       jmxStatistics.setEnabled(useMbean);
    }
 
+   /**
+    * If true, and JMX statistics are enabled, the latency of cache operations is recorded in nanosecond resolution
+    * histograms, from which percentiles are reported.  If false, latencies are not measured at all.
+    *
+    * @param latencyHistograms
+    * @deprecated Use {@link FluentConfiguration.JmxStatisticsConfig#latencyHistograms(Boolean)} instead
+    */
+   @Deprecated
+   public void setLatencyHistograms(boolean latencyHistograms) {
+      jmxStatistics.setLatencyHistograms(latencyHistograms);
+   }
+
    /**
     * Enables invocation batching if set to <tt>true</tt>.  You still need to use {@link
     * org.infinispan.Cache#startBatch()} and {@link org.infinispan.Cache#endBatch(boolean)} to demarcate the start and
@@ -523,7 +558,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
    /**
     * Pluggable data container class which must implement
-    * {@link org.infinispan.container.DataContainer}
+    * {@link org.infinispan.container.DataContainer}. Use
+    * {@link org.infinispan.container.OffHeapDataContainer} to keep entries in direct memory rather than on the heap.
     */
    public String getDataContainerClass() {
       return dataContainer.dataContainerClass;
@@ -561,7 +597,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
    }
 
    /**
-    * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS' and 'NONE' (to disable eviction).
+    * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS', 'CLOCK' and 'NONE' (to disable eviction).
     *
     * @param evictionStrategy
     * @deprecated Use {@link FluentConfiguration.EvictionConfig#strategy(org.infinispan.eviction.EvictionStrategy)} instead
@@ -572,7 +608,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
    }
 
    /**
-    * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS' and 'NONE' (to disable eviction).
+    * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS', 'CLOCK' and 'NONE' (to disable eviction).
     *
     * @param eStrategy
     * @deprecated Use {@link FluentConfiguration.EvictionConfig#strategy(org.infinispan.eviction.EvictionStrategy)} instead
@@ -632,6 +668,39 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       this.eviction.setMaxEntries(evictionMaxEntries);
    }
 
+   public long getEvictionMaxMemory() {
+      return eviction.maxMemory;
+   }
+
+   /**
+    * Maximum estimated amount of memory, in bytes, taken up by the entries of a cache instance. When set to a
+    * positive value, eviction is driven by the estimated size of the entries and maxEntries is ignored. -1 means
+    * no limit.
+    *
+    * @param evictionMaxMemory
+    * @deprecated Use {@link FluentConfiguration.EvictionConfig#maxMemory(Long)} instead
+    */
+   @Deprecated
+   public void setEvictionMaxMemory(long evictionMaxMemory) {
+      this.eviction.setMaxMemory(evictionMaxMemory);
+   }
+
+   public String getEvictionSizeEstimatorClass() {
+      return eviction.sizeEstimatorClass;
+   }
+
+   /**
+    * Fully qualified class name of the {@link org.infinispan.eviction.EntrySizeEstimator} used when eviction is
+    * bounded by memory.
+    *
+    * @param evictionSizeEstimatorClass
+    * @deprecated Use {@link FluentConfiguration.EvictionConfig#sizeEstimatorClass(String)} instead
+    */
+   @Deprecated
+   public void setEvictionSizeEstimatorClass(String evictionSizeEstimatorClass) {
+      this.eviction.setSizeEstimatorClass(evictionSizeEstimatorClass);
+   }
+
    /**
     * Expiration lifespan, in milliseconds
     */
@@ -1084,6 +1153,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.async.replQueueInterval;
    }
 
+   public long getReplQueueMaxBytes() {
+      return clustering.async.replQueueMaxBytes;
+   }
+
    public String getReplQueueClass() {
       return this.clustering.async.replQueueClass;
    }
@@ -1092,6 +1165,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return jmxStatistics.enabled;
    }
 
+   public boolean isLatencyHistogramsEnabled() {
+      return jmxStatistics.enabled && jmxStatistics.latencyHistograms;
+   }
+
    /**
     * @return true if invocation batching is enabled.
     * @since 4.0
@@ -1100,6 +1177,14 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return invocationBatching.enabled;
    }
 
+   /**
+    * @return true if keys and values of this cache are handled as opaque binary data
+    * @since 5.0
+    */
+   public boolean isBinaryModeEnabled() {
+      return binaryMode.enabled;
+   }
+
    public boolean isIndexingEnabled() {
       return indexing.isEnabled();
    }
@@ -1231,6 +1316,14 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.stateRetrieval.logFlushTimeout;
    }
 
+   public boolean isStateRetrievalNonBlocking() {
+      return clustering.stateRetrieval.nonBlocking;
+   }
+
+   public int getStateRetrievalChunkSize() {
+      return clustering.stateRetrieval.chunkSize;
+   }
+
    /**
     * @deprecated Use {@link #isStoreAsBinary()}
     */
@@ -1280,6 +1373,18 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
    public boolean isGroupsEnabled() {
       return clustering.hash.groupsEnabled;
    }
+
+   public boolean isStaggeredRemoteGets() {
+      return clustering.hash.staggeredRemoteGets;
+   }
+
+   public long getStaggerDelay() {
+      return clustering.hash.staggerDelay;
+   }
+
+   public int getRehashChunkSize() {
+      return clustering.hash.rehashChunkSize;
+   }
    
    public List<Grouper<?>> getGroupers() {
       return clustering.hash.groupers; 
@@ -1332,6 +1437,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       eviction.accept(v);
       expiration.accept(v);
       invocationBatching.accept(v);
+      binaryMode.accept(v);
       jmxStatistics.accept(v);
       storeAsBinary.accept(v);
       lazyDeserialization.accept(v);
@@ -1374,6 +1480,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return false;
       if (invocationBatching != null ? !invocationBatching.equals(that.invocationBatching) : that.invocationBatching != null)
          return false;
+      if (binaryMode != null ? !binaryMode.equals(that.binaryMode) : that.binaryMode != null)
+         return false;
       if (jmxStatistics != null ? !jmxStatistics.equals(that.jmxStatistics) : that.jmxStatistics != null) return false;
       if (storeAsBinary != null ? !storeAsBinary.equals(that.storeAsBinary) : that.storeAsBinary != null)
          return false;
@@ -1404,6 +1512,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       result = 31 * result + (storeAsBinary != null ? storeAsBinary.hashCode() : 0);
       result = 31 * result + (lazyDeserialization != null ? lazyDeserialization.hashCode() : 0);
       result = 31 * result + (invocationBatching != null ? invocationBatching.hashCode() : 0);
+      result = 31 * result + (binaryMode != null ? binaryMode.hashCode() : 0);
       result = 31 * result + (deadlockDetection != null ? deadlockDetection.hashCode() : 0);
       return result;
    }
@@ -1470,6 +1579,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             dolly.invocationBatching = (InvocationBatching) invocationBatching.clone();
             dolly.invocationBatching.setConfiguration(dolly);
          }
+         if (binaryMode != null) {
+            dolly.binaryMode = (BinaryMode) binaryMode.clone();
+            dolly.binaryMode.setConfiguration(dolly);
+         }
          if (deadlockDetection != null) {
             dolly.deadlockDetection = (DeadlockDetectionType) deadlockDetection.clone();
             dolly.deadlockDetection.setConfiguration(dolly);
@@ -1532,6 +1645,12 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       if (clustering.mode.isClustered() && (globalConfiguration != null
               && (globalConfiguration.getTransportClass() == null || globalConfiguration.getTransportClass().length() == 0)))
          throw new ConfigurationException("Cache cannot use a clustered mode (" + clustering.mode + ") mode and not define a transport!");
+      if (locking.optimistic) {
+         if (locking.isolationLevel != IsolationLevel.REPEATABLE_READ)
+            throw new ConfigurationException("Optimistic locking requires the REPEATABLE_READ isolation level, but " + locking.isolationLevel + " is configured!");
+         if (transaction.useEagerLocking)
+            throw new ConfigurationException("Optimistic locking cannot be used together with eager locking!");
+      }
    }
 
    public boolean isOnePhaseCommit() {
@@ -1856,6 +1975,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseLockStriping")
       protected Boolean useLockStriping = false;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setOptimisticLocking")
+      protected Boolean optimistic = false;
+
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setConcurrencyLevel")
       protected Integer concurrencyLevel = 32;
 
@@ -1948,6 +2070,27 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       }
 
 
+      @XmlAttribute
+      public Boolean isOptimistic() {
+         return optimistic;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #optimistic(Boolean)} instead
+       */
+      @Deprecated
+      public void setOptimistic(Boolean optimistic) {
+         testImmutability("optimistic");
+         this.optimistic = optimistic;
+      }
+
+      @Override
+      public LockingConfig optimistic(Boolean optimistic) {
+         setOptimistic(optimistic);
+         return this;
+      }
+
+
       @XmlAttribute
       public Integer getConcurrencyLevel() {
          return concurrencyLevel;
@@ -1990,6 +2133,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (writeSkewCheck != null ? !writeSkewCheck.equals(that.writeSkewCheck) : that.writeSkewCheck != null)
             return false;
+         if (optimistic != null ? !optimistic.equals(that.optimistic) : that.optimistic != null)
+            return false;
 
          return true;
       }
@@ -2001,6 +2146,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (writeSkewCheck != null ? writeSkewCheck.hashCode() : 0);
          result = 31 * result + (useLockStriping != null ? useLockStriping.hashCode() : 0);
          result = 31 * result + (concurrencyLevel != null ? concurrencyLevel.hashCode() : 0);
+         result = 31 * result + (optimistic != null ? optimistic.hashCode() : 0);
          return result;
       }
    }
@@ -2296,6 +2442,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setReplQueueInterval")
       protected Long replQueueInterval = 5000L;
 
+      @ConfigurationDocRef(bean = AsyncConfig.class, targetElement = "replQueueMaxBytes")
+      protected Long replQueueMaxBytes = 1048576L;
+
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseAsyncMarshalling")
       protected Boolean asyncMarshalling = false;
 
@@ -2328,6 +2477,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (replQueueMaxElements != null ? !replQueueMaxElements.equals(asyncType.replQueueMaxElements) : asyncType.replQueueMaxElements != null)
             return false;
+         if (replQueueMaxBytes != null ? !replQueueMaxBytes.equals(asyncType.replQueueMaxBytes) : asyncType.replQueueMaxBytes != null)
+            return false;
          if (useReplQueue != null ? !useReplQueue.equals(asyncType.useReplQueue) : asyncType.useReplQueue != null)
             return false;
          if (!Util.safeEquals(replQueueClass, asyncType.replQueueClass))
@@ -2342,6 +2493,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (useReplQueue != null ? useReplQueue.hashCode() : 0);
          result = 31 * result + (replQueueMaxElements != null ? replQueueMaxElements.hashCode() : 0);
          result = 31 * result + (replQueueInterval != null ? replQueueInterval.hashCode() : 0);
+         result = 31 * result + (replQueueMaxBytes != null ? replQueueMaxBytes.hashCode() : 0);
          result = 31 * result + (asyncMarshalling != null ? asyncMarshalling.hashCode() : 0);
          result = 31 * result + (replQueueClass != null ? replQueueClass.hashCode() : 0);
          return result;
@@ -2414,6 +2566,27 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       }
 
 
+      @XmlAttribute
+      public Long getReplQueueMaxBytes() {
+         return replQueueMaxBytes;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #replQueueMaxBytes(Long)}
+       */
+      @Deprecated
+      public void setReplQueueMaxBytes(Long replQueueMaxBytes) {
+         testImmutability("replQueueMaxBytes");
+         this.replQueueMaxBytes = replQueueMaxBytes;
+      }
+
+      @Override
+      public AsyncConfig replQueueMaxBytes(Long replQueueMaxBytes) {
+         setReplQueueMaxBytes(replQueueMaxBytes);
+         return this;
+      }
+
+
       @XmlAttribute
       public Boolean isAsyncMarshalling() {
          return asyncMarshalling;
@@ -2583,6 +2756,12 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionThreadPolicy")
       protected EvictionThreadPolicy threadPolicy = EvictionThreadPolicy.DEFAULT;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionMaxMemory")
+      protected Long maxMemory = -1L;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionSizeEstimatorClass")
+      protected String sizeEstimatorClass = MarshalledEntrySizeEstimator.class.getName();
+
       public void accept(ConfigurationBeanVisitor v) {
          v.visitEvictionType(this);
       }
@@ -2667,6 +2846,46 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @XmlAttribute
+      public Long getMaxMemory() {
+         return maxMemory;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #maxMemory(Long)}
+       */
+      @Deprecated
+      public void setMaxMemory(Long maxMemory) {
+         testImmutability("maxMemory");
+         this.maxMemory = maxMemory;
+      }
+
+      @Override
+      public EvictionConfig maxMemory(Long maxMemory) {
+         setMaxMemory(maxMemory);
+         return this;
+      }
+
+      @XmlAttribute
+      public String getSizeEstimatorClass() {
+         return sizeEstimatorClass;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #sizeEstimatorClass(String)}
+       */
+      @Deprecated
+      public void setSizeEstimatorClass(String sizeEstimatorClass) {
+         testImmutability("sizeEstimatorClass");
+         this.sizeEstimatorClass = sizeEstimatorClass;
+      }
+
+      @Override
+      public EvictionConfig sizeEstimatorClass(String sizeEstimatorClass) {
+         setSizeEstimatorClass(sizeEstimatorClass);
+         return this;
+      }
+
       @Override
       protected EvictionType setConfiguration(Configuration config) {
          super.setConfiguration(config);
@@ -2681,6 +2900,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          EvictionType that = (EvictionType) o;
 
          if (maxEntries != null ? !maxEntries.equals(that.maxEntries) : that.maxEntries != null) return false;
+         if (maxMemory != null ? !maxMemory.equals(that.maxMemory) : that.maxMemory != null) return false;
+         if (sizeEstimatorClass != null ? !sizeEstimatorClass.equals(that.sizeEstimatorClass) : that.sizeEstimatorClass != null)
+            return false;
          if (strategy != that.strategy) return false;
          if (threadPolicy != that.threadPolicy) return false;
          if (wakeUpInterval != null ? !wakeUpInterval.equals(that.wakeUpInterval) : that.wakeUpInterval != null)
@@ -2695,6 +2917,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (strategy != null ? strategy.hashCode() : 0);
          result = 31 * result + (threadPolicy != null ? threadPolicy.hashCode() : 0);
          result = 31 * result + (maxEntries != null ? maxEntries.hashCode() : 0);
+         result = 31 * result + (maxMemory != null ? maxMemory.hashCode() : 0);
+         result = 31 * result + (sizeEstimatorClass != null ? sizeEstimatorClass.hashCode() : 0);
          return result;
       }
    }
@@ -2836,6 +3060,12 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setStateRetrievalMaxNonProgressingLogWrites")
       protected Integer maxNonProgressingLogWrites = 100;
 
+      @ConfigurationDocRef(bean = StateRetrievalConfig.class, targetElement = "nonBlocking")
+      protected Boolean nonBlocking = false;
+
+      @ConfigurationDocRef(bean = StateRetrievalConfig.class, targetElement = "chunkSize")
+      protected Integer chunkSize = 10000;
+
       public void accept(ConfigurationBeanVisitor v) {
          v.visitStateRetrievalType(this);
       }
@@ -3007,6 +3237,48 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+
+      @XmlAttribute
+      public Boolean isNonBlocking() {
+         return nonBlocking;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #nonBlocking(Boolean)} instead
+       */
+      @Deprecated
+      public void setNonBlocking(Boolean nonBlocking) {
+         testImmutability("nonBlocking");
+         this.nonBlocking = nonBlocking;
+      }
+
+      @Override
+      public StateRetrievalConfig nonBlocking(Boolean nonBlocking) {
+         setNonBlocking(nonBlocking);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Integer getChunkSize() {
+         return chunkSize;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #chunkSize(Integer)} instead
+       */
+      @Deprecated
+      public void setChunkSize(Integer chunkSize) {
+         testImmutability("chunkSize");
+         this.chunkSize = chunkSize;
+      }
+
+      @Override
+      public StateRetrievalConfig chunkSize(Integer chunkSize) {
+         setChunkSize(chunkSize);
+         return this;
+      }
+
       @Override
       public boolean equals(Object o) {
          if (this == o) return true;
@@ -3022,6 +3294,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          if (retryWaitTimeIncreaseFactor != null ? !retryWaitTimeIncreaseFactor.equals(that.retryWaitTimeIncreaseFactor) : that.retryWaitTimeIncreaseFactor != null)
             return false;
          if (numRetries != null ? !numRetries.equals(that.numRetries) : that.numRetries != null) return false;
+         if (nonBlocking != null ? !nonBlocking.equals(that.nonBlocking) : that.nonBlocking != null) return false;
+         if (chunkSize != null ? !chunkSize.equals(that.chunkSize) : that.chunkSize != null) return false;
 
          return true;
       }
@@ -3033,6 +3307,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (initialRetryWaitTime != null ? initialRetryWaitTime.hashCode() : 0);
          result = 31 * result + (retryWaitTimeIncreaseFactor != null ? retryWaitTimeIncreaseFactor.hashCode() : 0);
          result = 31 * result + (numRetries != null ? numRetries.hashCode() : 0);
+         result = 31 * result + (nonBlocking != null ? nonBlocking.hashCode() : 0);
+         result = 31 * result + (chunkSize != null ? chunkSize.hashCode() : 0);
          return result;
       }
    }
@@ -3147,6 +3423,15 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       
       @XmlTransient
       protected Boolean groupsEnabled = false;
+
+      @ConfigurationDocRef(bean = HashConfig.class, targetElement = "staggeredRemoteGets")
+      protected Boolean staggeredRemoteGets = false;
+
+      @ConfigurationDocRef(bean = HashConfig.class, targetElement = "staggerDelay")
+      protected Long staggerDelay = 10L;
+
+      @ConfigurationDocRef(bean = HashConfig.class, targetElement = "rehashChunkSize")
+      protected Integer rehashChunkSize = 1000;
       
       @XmlTransient
       protected List<Grouper<?>> groupers = new ArrayList<Grouper<?>>();
@@ -3300,6 +3585,68 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
       
+      @XmlAttribute
+      public Boolean isStaggeredRemoteGets() {
+         return staggeredRemoteGets;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #staggeredRemoteGets(Boolean)}
+       */
+      @Deprecated
+      public void setStaggeredRemoteGets(Boolean staggeredRemoteGets) {
+         testImmutability("staggeredRemoteGets");
+         this.staggeredRemoteGets = staggeredRemoteGets;
+      }
+
+      @Override
+      public HashConfig staggeredRemoteGets(Boolean staggeredRemoteGets) {
+         setStaggeredRemoteGets(staggeredRemoteGets);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Long getStaggerDelay() {
+         return staggerDelay;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #staggerDelay(Long)}
+       */
+      @Deprecated
+      public void setStaggerDelay(Long staggerDelay) {
+         testImmutability("staggerDelay");
+         this.staggerDelay = staggerDelay;
+      }
+
+      @Override
+      public HashConfig staggerDelay(Long staggerDelay) {
+         setStaggerDelay(staggerDelay);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Integer getRehashChunkSize() {
+         return rehashChunkSize;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #rehashChunkSize(Integer)}
+       */
+      @Deprecated
+      public void setRehashChunkSize(Integer rehashChunkSize) {
+         testImmutability("rehashChunkSize");
+         this.rehashChunkSize = rehashChunkSize;
+      }
+
+      @Override
+      public HashConfig rehashChunkSize(Integer rehashChunkSize) {
+         setRehashChunkSize(rehashChunkSize);
+         return this;
+      }
+
       @Override
       public HashConfig groupers(List<Grouper<?>> groupers) {
          testImmutability("groupers");
@@ -3338,6 +3685,11 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (rehashWait != null ? !rehashWait.equals(hashType.rehashWait) : hashType.rehashWait != null) return false;
          if (rehashEnabled != hashType.rehashEnabled) return false;
+         if (staggeredRemoteGets != null ? !staggeredRemoteGets.equals(hashType.staggeredRemoteGets) : hashType.staggeredRemoteGets != null)
+            return false;
+         if (staggerDelay != null ? !staggerDelay.equals(hashType.staggerDelay) : hashType.staggerDelay != null) return false;
+         if (rehashChunkSize != null ? !rehashChunkSize.equals(hashType.rehashChunkSize) : hashType.rehashChunkSize != null)
+            return false;
 
          return true;
       }
@@ -3353,6 +3705,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (rehashWait != null ? rehashWait.hashCode() : 0);
          result = 31 * result + (rehashRpcTimeout != null ? rehashRpcTimeout.hashCode() : 0);
          result = 31 * result + (rehashEnabled ? 0 : 1);
+         result = 31 * result + (staggeredRemoteGets != null ? staggeredRemoteGets.hashCode() : 0);
+         result = 31 * result + (staggerDelay != null ? staggerDelay.hashCode() : 0);
+         result = 31 * result + (rehashChunkSize != null ? rehashChunkSize.hashCode() : 0);
          return result;
       }
    }
@@ -3700,10 +4055,33 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
        */
       private static final long serialVersionUID = 8716456707015486673L;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setLatencyHistograms")
+      protected Boolean latencyHistograms = true;
+
       public JmxStatistics() {
          super("jmxStatistics");
       }
 
+      @XmlAttribute
+      public Boolean isLatencyHistograms() {
+         return latencyHistograms;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #latencyHistograms(Boolean)} instead
+       */
+      @Deprecated
+      public void setLatencyHistograms(Boolean latencyHistograms) {
+         testImmutability("latencyHistograms");
+         this.latencyHistograms = latencyHistograms;
+      }
+
+      @Override
+      public JmxStatistics latencyHistograms(Boolean latencyHistograms) {
+         setLatencyHistograms(latencyHistograms);
+         return this;
+      }
+
       @Override
       protected JmxStatistics setConfiguration(Configuration config) {
          super.setConfiguration(config);
@@ -3721,6 +4099,27 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          super.disable();
          return this;
       }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (!(o instanceof JmxStatistics)) return false;
+         if (!super.equals(o)) return false;
+
+         JmxStatistics that = (JmxStatistics) o;
+
+         if (latencyHistograms != null ? !latencyHistograms.equals(that.latencyHistograms) : that.latencyHistograms != null)
+            return false;
+
+         return true;
+      }
+
+      @Override
+      public int hashCode() {
+         int result = super.hashCode();
+         result = 31 * result + (latencyHistograms != null ? latencyHistograms.hashCode() : 0);
+         return result;
+      }
    }
 
    /**
@@ -3759,6 +4158,45 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       }
    }
 
+   /**
+    * Declares that keys and values of this cache are opaque binary data, i.e. byte arrays or
+    * {@link org.infinispan.util.ByteArrayKey}s, as produced by the Hot Rod protocol decoder. They are then never
+    * wrapped in {@link org.infinispan.marshall.MarshalledValue}s and storeAsBinary is ignored, so bytes travel from the
+    * protocol decoder through the data container, replication and cache stores without any further serialization.
+    * Keys of any other type are rejected by the {@link org.infinispan.interceptors.BinaryModeInterceptor}.
+    *
+    * @see <a href="../../../config.html#ce_default_binaryMode">Configuration reference</a>
+    */
+   @ConfigurationDoc(name = "binaryMode")
+   public static class BinaryMode extends BooleanAttributeType implements BinaryModeConfig {
+      /**
+       * The serialVersionUID
+       */
+      private static final long serialVersionUID = -3946424585418617392L;
+
+      public BinaryMode() {
+         super("binaryMode");
+      }
+
+      @Override
+      public BinaryMode enabled(Boolean enabled) {
+         super.enabled(enabled);
+         return this;
+      }
+
+      @Override
+      protected BinaryMode setConfiguration(Configuration config) {
+         super.setConfiguration(config);
+         return this;
+      }
+
+      @Override
+      public BinaryMode disable() {
+         super.disable();
+         return this;
+      }
+   }
+
    /**
     * This element configures deadlock detection.
     *
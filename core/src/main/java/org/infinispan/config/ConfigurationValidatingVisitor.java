@@ -114,7 +114,7 @@ public class ConfigurationValidatingVisitor extends AbstractConfigurationBeanVis
    }
 
    public void visitEvictionType(EvictionType et) {
-      if (et.strategy.isEnabled() && et.maxEntries <= 0)
-         throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled");
+      if (et.strategy.isEnabled() && et.maxEntries <= 0 && et.maxMemory <= 0)
+         throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled and not bounded by maxMemory");
    }
 }
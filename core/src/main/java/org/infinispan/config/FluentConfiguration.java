@@ -95,6 +95,17 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        */
       LockingConfig useLockStriping(Boolean useLockStriping);
 
+      /**
+       * If true, transactional writes do not acquire locks until the transaction prepares. At
+       * prepare time, locks on all modified keys are acquired in key order and the versions read by
+       * the transaction are validated against the current entry versions. A conflicting concurrent
+       * update causes the prepare to fail. Requires REPEATABLE_READ and is incompatible with eager
+       * locking.
+       *
+       * @param optimistic
+       */
+      LockingConfig optimistic(Boolean optimistic);
+
       /**
        * Concurrency level for lock containers. Adjust this value according to the number of
        * concurrent threads interacting with Infinispan. Similar to the concurrencyLevel tuning
@@ -322,7 +333,7 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
       EvictionConfig wakeUpInterval(Long wakeUpInterval);
 
       /**
-       * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS' and 'NONE' (to disable
+       * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS', 'CLOCK' and 'NONE' (to disable
        * eviction).
        *
        * @param strategy
@@ -344,6 +355,24 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param maxEntries
        */
       EvictionConfig maxEntries(Integer maxEntries);
+
+      /**
+       * Maximum estimated amount of memory, in bytes, taken up by the entries of a cache instance. When set to a
+       * positive value eviction is driven by the estimated size of the entries rather than by their number, and
+       * maxEntries is ignored. -1 means no limit.
+       *
+       * @param maxMemory
+       */
+      EvictionConfig maxMemory(Long maxMemory);
+
+      /**
+       * Fully qualified class name of the {@link org.infinispan.eviction.EntrySizeEstimator} used to estimate the
+       * size of the entries when eviction is bounded by maxMemory. Defaults to
+       * {@link org.infinispan.eviction.MarshalledEntrySizeEstimator}.
+       *
+       * @param sizeEstimatorClass
+       */
+      EvictionConfig sizeEstimatorClass(String sizeEstimatorClass);
    }
 
    /**
@@ -454,6 +483,16 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        */
       AsyncConfig replQueueInterval(Long replQueueInterval);
 
+      /**
+       * If useReplQueue is set to true, this attribute triggers flushing of the queue once the estimated size of the
+       * queued keys and values reaches this many bytes, and caps the size of each batch sent. It is only honoured by
+       * replication queues that batch by size, such as {@link org.infinispan.remoting.CoalescingReplicationQueue}.
+       * Defaults to 1 MB.
+       *
+       * @param replQueueMaxBytes
+       */
+      AsyncConfig replQueueMaxBytes(Long replQueueMaxBytes);
+
       /**
        * If true, asynchronous marshalling is enabled which means that caller can return even
        * quicker, but it can suffer from reordering of operations. You can find more information <a
@@ -552,6 +591,24 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param maxNonProgressingLogWrites
        */
       StateRetrievalConfig maxNonProgressingLogWrites(Integer maxNonProgressingLogWrites);
+
+      /**
+       * If true, a replicated cache that joins the cluster fetches its state while the rest of the cluster keeps
+       * accepting writes. Modifications received by the joiner during the state transfer are logged and replayed once
+       * the state has been applied, instead of flushing the cluster to obtain a consistent view of the transaction
+       * log. All nodes in the cluster must use the same setting. Defaults to false.
+       *
+       * @param nonBlocking
+       */
+      StateRetrievalConfig nonBlocking(Boolean nonBlocking);
+
+      /**
+       * Number of cache entries written to the state transfer stream at a time when {@link #nonBlocking(Boolean)} is
+       * enabled, which bounds the memory a state provider uses to generate the in-memory state. Defaults to 10000.
+       *
+       * @param chunkSize
+       */
+      StateRetrievalConfig chunkSize(Integer chunkSize);
    }
 
    /**
@@ -660,6 +717,35 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * groupers will be invoked
        */
       HashConfig groupsEnabled(Boolean groupsEnabled);
+
+      /**
+       * If true, remote gets are sent to a single owner at a time rather than to all owners of the key. Owners are
+       * tried in order of their observed response times, starting with the fastest healthy owner, and the next
+       * owner is only contacted if the previous one failed or did not reply within an adaptive delay bounded by
+       * {@link #staggerDelay(Long)}. This reduces the read traffic and the CPU spent serving reads remotely by a
+       * factor close to numOwners. Defaults to false, in which case all owners are queried at once.
+       *
+       * @param staggeredRemoteGets
+       */
+      HashConfig staggeredRemoteGets(Boolean staggeredRemoteGets);
+
+      /**
+       * Maximum time, in milliseconds, a staggered remote get waits for an owner to reply before sending the request
+       * to the next owner as well. The actual delay adapts to the response times observed for the owner being waited
+       * on and is only ever shorter than this value. Defaults to 10 milliseconds.
+       *
+       * @param staggerDelay
+       */
+      HashConfig staggerDelay(Long staggerDelay);
+
+      /**
+       * Maximum number of entries pushed to a new owner in a single state transfer message while rehashing. State is
+       * streamed to each new owner in chunks of this size, with at most two chunks in flight per owner, so the memory
+       * used by a rehash does not grow with the amount of data being moved. Defaults to 1000.
+       *
+       * @param rehashChunkSize
+       */
+      HashConfig rehashChunkSize(Integer rehashChunkSize);
       
       /**
        * Controls the groupers used in distribution
@@ -743,9 +829,19 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
       StoreAsBinaryConfig storeValuesAsBinary(Boolean storeValuesAsBinary);
    }
 
-   public static interface JmxStatisticsConfig extends FluentTypes {}
+   public static interface JmxStatisticsConfig extends FluentTypes {
+      /**
+       * If true, the latency of cache operations is recorded in nanosecond resolution histograms, and reported as
+       * percentiles. If false, latencies are not measured at all. Only applicable if JMX statistics are enabled.
+       *
+       * @param latencyHistograms
+       */
+      JmxStatisticsConfig latencyHistograms(Boolean latencyHistograms);
+   }
 
    public static interface InvocationBatchingConfig extends FluentTypes {}
+
+   public static interface BinaryModeConfig extends FluentTypes {}
 }
 
 interface FluentTypes {
@@ -802,6 +898,12 @@ interface FluentTypes {
     */
    FluentConfiguration.InvocationBatchingConfig invocationBatching();
 
+   /**
+    * This method allows configuration of binary mode. When this method is
+    * called, it automatically enables binary mode.
+    */
+   FluentConfiguration.BinaryModeConfig binaryMode();
+
    Configuration build();
 }
 
@@ -881,6 +983,11 @@ abstract class AbstractFluentConfigurationBean extends AbstractNamedCacheConfigu
       return config.invocationBatching.enabled(true);
    }
 
+   @Override
+   public FluentConfiguration.BinaryModeConfig binaryMode() {
+      return config.binaryMode.enabled(true);
+   }
+
    public FluentConfiguration.AsyncConfig async() {
       return clustering().async();
    }
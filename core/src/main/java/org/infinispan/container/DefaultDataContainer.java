@@ -23,8 +23,10 @@
 package org.infinispan.container;
 
 import net.jcip.annotations.ThreadSafe;
+import org.infinispan.container.entries.ExpirationIndex;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.eviction.EntrySizeEstimator;
 import org.infinispan.eviction.EvictionManager;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
@@ -57,7 +59,7 @@ import java.util.concurrent.ConcurrentMap;
  * @since 4.0
  */
 @ThreadSafe
-public class DefaultDataContainer implements DataContainer {
+public class DefaultDataContainer implements VersionedDataContainer {
 
    final ConcurrentMap<Object, InternalCacheEntry> entries;
    final InternalEntryFactory entryFactory;
@@ -67,37 +69,50 @@ public class DefaultDataContainer implements DataContainer {
 
    protected DefaultDataContainer(int concurrencyLevel) {
       entries = new ConcurrentHashMap<Object, InternalCacheEntry>(128, 0.75f,concurrencyLevel);
-      entryFactory = new InternalEntryFactory();
+      entryFactory = new InternalEntryFactory(new ExpirationIndex());
       evictionListener = null;
    }
 
    protected DefaultDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      evictionListener = createEvictionListener(strategy, policy);
+      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, toEviction(strategy), evictionListener);
+      entryFactory = new InternalEntryFactory(new ExpirationIndex());
+   }
+
+   protected DefaultDataContainer(int concurrencyLevel, long maxMemory, EntrySizeEstimator sizeEstimator,
+            EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      evictionListener = createEvictionListener(strategy, policy);
+      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxMemory, concurrencyLevel,
+               toEviction(strategy), evictionListener, sizeEstimator);
+      entryFactory = new InternalEntryFactory(new ExpirationIndex());
+   }
 
+   private DefaultEvictionListener createEvictionListener(EvictionStrategy strategy, EvictionThreadPolicy policy) {
       // translate eviction policy and strategy
       switch (policy) {
          case PIGGYBACK:
          case DEFAULT:
-            evictionListener = new DefaultEvictionListener();
-            break;
+            return new DefaultEvictionListener();
          default:
             throw new IllegalArgumentException("No such eviction thread policy " + strategy);
       }
+   }
 
-      Eviction eviction;
+   private static Eviction toEviction(EvictionStrategy strategy) {
       switch (strategy) {
          case FIFO:
+            return Eviction.FIFO;
          case UNORDERED:
+            return Eviction.UNORDERED;
          case LRU:
-            eviction = Eviction.LRU;
-            break;
+            return Eviction.LRU;
          case LIRS:
-            eviction = Eviction.LIRS;
-            break;
+            return Eviction.LIRS;
+         case CLOCK:
+            return Eviction.CLOCK;
          default:
             throw new IllegalArgumentException("No such eviction strategy " + strategy);
       }
-      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction, evictionListener);
-      entryFactory = new InternalEntryFactory();
    }
 
    @Inject
@@ -111,10 +126,31 @@ public class DefaultDataContainer implements DataContainer {
       return new DefaultDataContainer(concurrencyLevel, maxEntries, strategy, policy);
    }
 
+   /**
+    * Creates a data container bounded by the estimated amount of memory retained by its entries, as computed by
+    * the given size estimator.
+    */
+   public static DataContainer memoryBoundedDataContainer(int concurrencyLevel, long maxMemory,
+            EntrySizeEstimator sizeEstimator, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      return new DefaultDataContainer(concurrencyLevel, maxMemory, sizeEstimator, strategy, policy);
+   }
+
    public static DataContainer unBoundedDataContainer(int concurrencyLevel) {
       return new DefaultDataContainer(concurrencyLevel);
    }
 
+   /**
+    * Returns the estimated amount of memory, in bytes, retained by the entries of a memory bounded container, or
+    * -1 if this container is not bounded by memory.
+    */
+   public long getMemorySize() {
+      if (entries instanceof BoundedConcurrentHashMap) {
+         BoundedConcurrentHashMap<Object, InternalCacheEntry> map = (BoundedConcurrentHashMap<Object, InternalCacheEntry>) entries;
+         if (map.isWeighted()) return map.weight();
+      }
+      return -1;
+   }
+
    public InternalCacheEntry peek(Object key) {
       InternalCacheEntry e = entries.get(key);
       return e;
@@ -125,6 +161,7 @@ public class DefaultDataContainer implements DataContainer {
       if (e != null) {
          if (e.isExpired()) {
             entries.remove(k);
+            unschedule(k, e);
             e = null;
          } else {
             e.touch();
@@ -134,6 +171,10 @@ public class DefaultDataContainer implements DataContainer {
    }
 
    public void put(Object k, Object v, long lifespan, long maxIdle) {
+      put(k, v, lifespan, maxIdle, 0);
+   }
+
+   public void put(Object k, Object v, long lifespan, long maxIdle, long version) {
       InternalCacheEntry e = entries.get(k);
       if (e != null) {
          e.setValue(v);
@@ -143,10 +184,14 @@ public class DefaultDataContainer implements DataContainer {
          if(original == e) {
             e.reincarnate();
          }
+         // an entry that became immortal is no longer rescheduled by the factory
+         if (!e.canExpire()) unschedule(k, original);
       } else {
          // this is a brand-new entry
          e = entryFactory.createNewEntry(k, v, lifespan, maxIdle);
       }
+      // the version is written after the value, and read before it, so readers never pair a stale value with a new version
+      e.setVersion(version);
       entries.put(k, e);
    }
 
@@ -154,6 +199,7 @@ public class DefaultDataContainer implements DataContainer {
       InternalCacheEntry ice = peek(k);
       if (ice != null && ice.isExpired()) {
          entries.remove(k);
+         unschedule(k, ice);
          ice = null;
       }
       return ice != null;
@@ -161,6 +207,7 @@ public class DefaultDataContainer implements DataContainer {
 
    public InternalCacheEntry remove(Object k) {
       InternalCacheEntry e = entries.remove(k);
+      if (e != null) unschedule(k, e);
       return e == null || e.isExpired() ? null : e;
    }
 
@@ -170,6 +217,7 @@ public class DefaultDataContainer implements DataContainer {
 
    public void clear() {
       entries.clear();
+      entryFactory.getExpirationIndex().clear();
    }
 
    public Set<Object> keySet() {
@@ -184,15 +232,31 @@ public class DefaultDataContainer implements DataContainer {
       return new EntrySet();
    }
 
+   /**
+    * Removes expired entries, visiting only those that the expiration index reports as due rather than every entry
+    * in the container.
+    */
    public void purgeExpired() {
-      for (Iterator<InternalCacheEntry> purgeCandidates = entries.values().iterator(); purgeCandidates.hasNext();) {
-         InternalCacheEntry e = purgeCandidates.next();
-         if (e.isExpired()) {
-            purgeCandidates.remove();
+      ExpirationIndex expirationIndex = entryFactory.getExpirationIndex();
+      for (Object key : expirationIndex.advance(System.currentTimeMillis())) {
+         // a peek, so that the reaper does not count as an access to the entries it visits
+         InternalCacheEntry e = entries instanceof BoundedConcurrentHashMap ?
+               ((BoundedConcurrentHashMap<Object, InternalCacheEntry>) entries).peek(key) : entries.get(key);
+         if (e != null) {
+            if (e.isExpired()) {
+               entries.remove(key, e);
+            } else if (e.canExpire()) {
+               // the entry has been used or updated since it was scheduled
+               expirationIndex.schedule(key, e.getExpiryTime());
+            }
          }
       }
    }
 
+   private void unschedule(Object key, InternalCacheEntry e) {
+      if (e.canExpire()) entryFactory.getExpirationIndex().unschedule(key);
+   }
+
    public Iterator<InternalCacheEntry> iterator() {
       return new EntryIterator(entries.values().iterator());
    }
@@ -200,6 +264,7 @@ public class DefaultDataContainer implements DataContainer {
    private final class DefaultEvictionListener implements EvictionListener<Object, InternalCacheEntry> {
       @Override
       public void onEntryEviction(Map<Object, InternalCacheEntry> evicted) {
+         for (Map.Entry<Object, InternalCacheEntry> e : evicted.entrySet()) unschedule(e.getKey(), e.getValue());
          evictionManager.onEntryEviction(evicted);
       }
 
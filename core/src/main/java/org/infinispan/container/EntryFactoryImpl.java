@@ -33,6 +33,7 @@ import org.infinispan.container.entries.ReadCommittedEntry;
 import org.infinispan.container.entries.RepeatableReadEntry;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
+import org.infinispan.distribution.DistributionManager;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.marshall.MarshalledValue;
@@ -49,9 +50,11 @@ public class EntryFactoryImpl implements EntryFactory {
    private boolean useRepeatableRead;
    DataContainer container;
    boolean writeSkewCheck;
+   boolean optimisticLocking;
    LockManager lockManager;
    Configuration configuration;
    CacheNotifier notifier;
+   DistributionManager distributionManager;
 
    private static final Log log = LogFactory.getLog(EntryFactoryImpl.class);
    private static final boolean trace = log.isTraceEnabled();
@@ -64,18 +67,48 @@ public class EntryFactoryImpl implements EntryFactory {
       this.notifier = notifier;
    }
 
+   @Inject
+   public void injectDistributionManager(DistributionManager distributionManager) {
+      this.distributionManager = distributionManager;
+   }
+
    @Start
    public void init() {
       useRepeatableRead = configuration.getIsolationLevel() == IsolationLevel.REPEATABLE_READ;
       writeSkewCheck = configuration.isWriteSkewCheck();
+      optimisticLocking = configuration.isOptimisticLocking();
    }
 
-   private MVCCEntry createWrappedEntry(Object key, Object value, boolean isForInsert, boolean forRemoval, long lifespan) {
+   private MVCCEntry createWrappedEntry(Object key, Object value, boolean isForInsert, boolean forRemoval, long lifespan, long version) {
       if (value == null && !isForInsert) return useRepeatableRead ?
             forRemoval ? new NullMarkerEntryForRemoval(key) : NullMarkerEntry.getInstance()
             : null;
 
-      return useRepeatableRead ? new RepeatableReadEntry(key, value, lifespan) : new ReadCommittedEntry(key, value, lifespan);
+      return useRepeatableRead ? new RepeatableReadEntry(key, value, lifespan, version) : new ReadCommittedEntry(key, value, lifespan, version);
+   }
+
+   private MVCCEntry createWrappedEntry(InternalCacheEntry ice, boolean forRemoval) {
+      // read the version before the value, see DefaultDataContainer.put()
+      long version = ice.getVersion();
+      return createWrappedEntry(ice.getKey(), ice.getValue(), false, forRemoval, ice.getLifespan(), version);
+   }
+
+   /**
+    * With optimistic locking, writes performed within a transaction, or replayed from a remote prepare, do not acquire
+    * locks.  The locks are acquired in key order when the transaction prepares.
+    */
+   private boolean isLockingDeferred(InvocationContext ctx) {
+      return optimisticLocking && ctx.isInTxScope() && !ctx.hasFlag(Flag.FORCE_WRITE_LOCK);
+   }
+
+   /**
+    * With optimistic locking, a key owned by another node is absent from the local data container whether or not it
+    * exists.  Unless the transaction read it, its version is only known if it is fetched from an owner before the write,
+    * see DistributionInterceptor.storeRemoteEntry().
+    */
+   private boolean isOwnedElsewhere(InvocationContext ctx, Object key) {
+      return optimisticLocking && ctx.isInTxScope() && distributionManager != null &&
+            !distributionManager.getLocality(key).isLocal();
    }
 
    public final CacheEntry wrapEntryForReading(InvocationContext ctx, Object key) throws InterruptedException {
@@ -86,13 +119,14 @@ public class EntryFactoryImpl implements EntryFactory {
       } else if ((cacheEntry = ctx.lookupEntry(key)) == null) {
          if (trace) log.tracef("Key %s is not in context, fetching from container.", key);
          // simple implementation.  Peek the entry, wrap it, put wrapped entry in the context.
-         cacheEntry = container.get(key);
+         InternalCacheEntry ice = container.get(key);
+         cacheEntry = ice;
 
          // do not bother wrapping though if this is not in a tx.  repeatable read etc are all meaningless unless there is a tx.
          if (useRepeatableRead && ctx.isInTxScope()) {
-            MVCCEntry mvccEntry = cacheEntry == null ?
-                  createWrappedEntry(key, null, false, false, -1) :
-                  createWrappedEntry(key, cacheEntry.getValue(), false, false, cacheEntry.getLifespan());
+            MVCCEntry mvccEntry = ice == null ?
+                  createWrappedEntry(key, null, false, false, -1, MVCCEntry.NON_EXISTENT_VERSION) :
+                  createWrappedEntry(ice, false);
             if (mvccEntry != null) ctx.putLookedUpEntry(key, mvccEntry);
             return mvccEntry;
          }
@@ -117,18 +151,26 @@ public class EntryFactoryImpl implements EntryFactory {
       try {
          CacheEntry cacheEntry = ctx.lookupEntry(key);
          MVCCEntry mvccEntry = null;
-         if (createIfAbsent && cacheEntry != null && cacheEntry.isNull()) cacheEntry = null;
+         boolean lockingDeferred = isLockingDeferred(ctx);
+         // remember that the transaction has seen the key as absent, so that a concurrent insertion is detected
+         boolean readAsAbsent = false;
+         if (createIfAbsent && cacheEntry != null && cacheEntry.isNull()) {
+            cacheEntry = null;
+            readAsAbsent = true;
+         }
          if (cacheEntry != null) // exists in context!  Just acquire lock if needed, and wrap.
          {
             if (trace) log.trace("Exists in context.");
             // Acquire lock if needed. Add necessary check for skip locking in advance in order to avoid marshalled value issues
-            if (alreadyLocked || ctx.hasFlag(Flag.SKIP_LOCKING) || acquireLock(ctx, key)) {
+            if (alreadyLocked || ctx.hasFlag(Flag.SKIP_LOCKING) || lockingDeferred || acquireLock(ctx, key)) {
 
                if (cacheEntry instanceof MVCCEntry && (!forRemoval || !(cacheEntry instanceof NullMarkerEntry))) {
                   mvccEntry = (MVCCEntry) cacheEntry;
                } else {
                   // this is a read-only entry that needs to be copied to a proper read-write entry!!
-                  mvccEntry = createWrappedEntry(key, cacheEntry.getValue(), false, forRemoval, cacheEntry.getLifespan());
+                  long version = cacheEntry instanceof InternalCacheEntry ?
+                        ((InternalCacheEntry) cacheEntry).getVersion() : MVCCEntry.NON_EXISTENT_VERSION;
+                  mvccEntry = createWrappedEntry(key, cacheEntry.getValue(), false, forRemoval, cacheEntry.getLifespan(), version);
                   cacheEntry = mvccEntry;
                   ctx.putLookedUpEntry(key, cacheEntry);
                }
@@ -153,17 +195,19 @@ public class EntryFactoryImpl implements EntryFactory {
 
          } else {
             boolean lockAcquired = false;
-            if (!alreadyLocked) {
+            if (!alreadyLocked && !lockingDeferred) {
                lockAcquired = acquireLock(ctx, key);
             }
             // else, fetch from dataContainer or used passed entry.
-            cacheEntry = entry != null ? entry : container.get(key);
-            if (cacheEntry != null) {
+            InternalCacheEntry ice = entry != null ? entry : container.get(key);
+            if (ice != null) {
                if (trace) log.trace("Retrieved from container.");
                // exists in cache!  Just acquire lock if needed, and wrap.
                // do we need a lock?
-               boolean needToCopy = alreadyLocked || lockAcquired || ctx.hasFlag(Flag.SKIP_LOCKING); // even if we do not acquire a lock, if skip-locking is enabled we should copy
-               mvccEntry = createWrappedEntry(key, cacheEntry.getValue(), false, false, cacheEntry.getLifespan());
+               boolean needToCopy = alreadyLocked || lockAcquired || lockingDeferred || ctx.hasFlag(Flag.SKIP_LOCKING); // even if we do not acquire a lock, if skip-locking is enabled we should copy
+               mvccEntry = readAsAbsent ?
+                     createWrappedEntry(key, ice.getValue(), false, false, ice.getLifespan(), MVCCEntry.NON_EXISTENT_VERSION) :
+                     createWrappedEntry(ice, false);
                ctx.putLookedUpEntry(key, mvccEntry);
                if (needToCopy) mvccEntry.copyForUpdate(container, writeSkewCheck);
             } else if (createIfAbsent) {
@@ -179,7 +223,9 @@ public class EntryFactoryImpl implements EntryFactory {
                   releaseLock(key);
                   throw e;
                }
-               mvccEntry = createWrappedEntry(key, null, true, false, -1);
+               long version = !readAsAbsent && isOwnedElsewhere(ctx, key) ?
+                     MVCCEntry.UNREAD_VERSION : MVCCEntry.NON_EXISTENT_VERSION;
+               mvccEntry = createWrappedEntry(key, null, true, false, -1, version);
                mvccEntry.setCreated(true);
                ctx.putLookedUpEntry(key, mvccEntry);
                mvccEntry.copyForUpdate(container, writeSkewCheck);
@@ -192,7 +238,7 @@ public class EntryFactoryImpl implements EntryFactory {
          }
 
          // see if we need to force the lock on nonexistent entries.
-         if (mvccEntry == null && forceLockIfAbsent) {
+         if (mvccEntry == null && forceLockIfAbsent && !lockingDeferred) {
             // make sure we record this! Null value since this is a forced lock on the key
             if (acquireLock(ctx, key)) ctx.putLookedUpEntry(key, null);
          }
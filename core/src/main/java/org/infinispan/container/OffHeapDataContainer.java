@@ -0,0 +1,865 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.CacheException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionThreadPolicy;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.Immutables;
+import org.infinispan.util.hash.MurmurHash3;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link DataContainer} which keeps the marshalled form of keys and values, together with their lifespan and
+ * maxIdle metadata, in direct memory slabs instead of on the Java heap.  The only heap structures maintained per
+ * segment are a primitive hash index and the list of slabs, so the amount of heap used does not grow with the
+ * number of entries stored.
+ * <p/>
+ * Keys are compared using their marshalled form, so keys must marshall deterministically (i.e. equal keys must
+ * produce equal byte streams).  Entries returned by {@link #get(Object)} and friends are copies decoded from direct
+ * memory, so changes made to them are not reflected in the container unless they are put back.
+ * <p/>
+ * When bounded, the container evicts entries per segment in LRU order (LIRS and CLOCK are approximated by LRU), or
+ * in insertion order for FIFO and UNORDERED.  A memory bound (eviction maxMemory) applies to the exact size of the
+ * marshalled entries, headers included, so no size estimator is involved; it takes precedence over maxEntries.  Memory freed by removals is reclaimed by compacting a segment's slabs
+ * once more than half of the bytes allocated are garbage.
+ * <p/>
+ * This container is selected by configuring {@code OffHeapDataContainer} as the data container class; the size of
+ * the direct memory slabs can be tuned through the {@code slabSize} data container property.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+@MBean(objectName = "OffHeapDataContainer", description = "Data container keeping entries in direct memory")
+public class OffHeapDataContainer implements VersionedDataContainer {
+
+   public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+   // Layout of an entry in direct memory.  Addresses are encoded as (slab index << 32 | offset within slab).
+   static final int HASH = 0;
+   static final int KEY_LENGTH = 4;
+   static final int VALUE_LENGTH = 8;
+   static final int BUCKET_NEXT = 12;
+   static final int ORDER_PREV = 20;
+   static final int ORDER_NEXT = 28;
+   static final int CREATED = 36;
+   static final int LAST_USED = 44;
+   static final int LIFESPAN = 52;
+   static final int MAX_IDLE = 60;
+   static final int VERSION = 68;
+   static final int HEADER_SIZE = 76;
+
+   static final long NULL = -1;
+
+   private static final int HASH_SEED = 9001;
+   private static final int INITIAL_TABLE_SIZE = 16;
+
+   final Segment[] segments;
+   final int segmentShift;
+   final int segmentMask;
+   final int maxEntriesPerSegment;
+   final long maxBytesPerSegment;
+   final boolean accessOrder;
+   final OffHeapEvictionListener evictionListener;
+   volatile int slabSize = DEFAULT_SLAB_SIZE;
+   private StreamingMarshaller marshaller;
+   private EvictionManager evictionManager;
+   private PassivationManager passivator;
+
+   protected OffHeapDataContainer(int concurrencyLevel) {
+      this(concurrencyLevel, -1, -1, true, false);
+   }
+
+   protected OffHeapDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      this(concurrencyLevel, maxEntries, -1, isAccessOrdered(strategy), isSupported(policy));
+   }
+
+   protected OffHeapDataContainer(int concurrencyLevel, long maxMemory, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      this(concurrencyLevel, -1, maxMemory, isAccessOrdered(strategy), isSupported(policy));
+   }
+
+   private OffHeapDataContainer(int concurrencyLevel, int maxEntries, long maxMemory, boolean accessOrder, boolean bounded) {
+      if (concurrencyLevel <= 0)
+         throw new IllegalArgumentException("Illegal concurrency level " + concurrencyLevel);
+      int sshift = 0;
+      int ssize = 1;
+      while (ssize < concurrencyLevel) {
+         ++sshift;
+         ssize <<= 1;
+      }
+      segmentShift = 32 - sshift;
+      segmentMask = ssize - 1;
+      maxEntriesPerSegment = maxEntries < 0 ? -1 : Math.max(1, (maxEntries + ssize - 1) / ssize);
+      maxBytesPerSegment = maxMemory <= 0 ? -1 : Math.max(1, (maxMemory + ssize - 1) / ssize);
+      this.accessOrder = accessOrder;
+      this.evictionListener = bounded ? new OffHeapEvictionListener() : null;
+      segments = new Segment[ssize];
+      for (int i = 0; i < ssize; i++) segments[i] = new Segment();
+   }
+
+   private static boolean isAccessOrdered(EvictionStrategy strategy) {
+      switch (strategy) {
+         case FIFO:
+         case UNORDERED:
+            return false;
+         case LRU:
+         case LIRS:
+         case CLOCK:
+            return true;
+         default:
+            throw new IllegalArgumentException("No such eviction strategy " + strategy);
+      }
+   }
+
+   private static boolean isSupported(EvictionThreadPolicy policy) {
+      switch (policy) {
+         case PIGGYBACK:
+         case DEFAULT:
+            return true;
+         default:
+            throw new IllegalArgumentException("No such eviction thread policy " + policy);
+      }
+   }
+
+   @Inject
+   public void initialize(StreamingMarshaller marshaller, EvictionManager evictionManager, PassivationManager passivator) {
+      this.marshaller = marshaller;
+      this.evictionManager = evictionManager;
+      this.passivator = passivator;
+   }
+
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries,
+            EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      return new OffHeapDataContainer(concurrencyLevel, maxEntries, strategy, policy);
+   }
+
+   public static DataContainer memoryBoundedDataContainer(int concurrencyLevel, long maxMemory,
+            EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      return new OffHeapDataContainer(concurrencyLevel, maxMemory, strategy, policy);
+   }
+
+   public static DataContainer unBoundedDataContainer(int concurrencyLevel) {
+      return new OffHeapDataContainer(concurrencyLevel);
+   }
+
+   /**
+    * Size, in bytes, of the direct memory slabs entries are allocated from.  Entries larger than a slab get a
+    * dedicated slab of their own.
+    */
+   public void setSlabSize(int slabSize) {
+      if (slabSize < HEADER_SIZE)
+         throw new IllegalArgumentException("Slab size must be at least " + HEADER_SIZE + " bytes");
+      this.slabSize = slabSize;
+   }
+
+   public int getSlabSize() {
+      return slabSize;
+   }
+
+   /**
+    * @return the number of bytes of direct memory currently reserved by the container's slabs
+    */
+   @ManagedAttribute(description = "Number of bytes of direct memory reserved by the container")
+   @Metric(displayName = "Off-heap bytes allocated")
+   public long getAllocatedOffHeapBytes() {
+      long total = 0;
+      for (Segment s : segments) total += s.allocatedBytes;
+      return total;
+   }
+
+   public InternalCacheEntry peek(Object k) {
+      byte[] key = marshall(k);
+      int hash = hash(key);
+      EntryBytes raw = segmentFor(hash).read(key, hash, false, false);
+      return raw == null ? null : decode(k, raw);
+   }
+
+   public InternalCacheEntry get(Object k) {
+      byte[] key = marshall(k);
+      int hash = hash(key);
+      EntryBytes raw = segmentFor(hash).read(key, hash, true, true);
+      return raw == null ? null : decode(k, raw);
+   }
+
+   public void put(Object k, Object v, long lifespan, long maxIdle) {
+      put(k, v, lifespan, maxIdle, 0);
+   }
+
+   public void put(Object k, Object v, long lifespan, long maxIdle, long version) {
+      byte[] key = marshall(k);
+      byte[] value = marshall(v);
+      int hash = hash(key);
+      List<EntryBytes> victims = segmentFor(hash).put(key, value, hash, lifespan, maxIdle, version);
+      if (victims != null) {
+         // victims were only copied under the segment lock, so that other writers don't wait for the cache store
+         Map<Object, InternalCacheEntry> evicted = new HashMap<Object, InternalCacheEntry>(victims.size());
+         for (EntryBytes victim : victims) {
+            InternalCacheEntry ice = decode(victim);
+            evictionListener.onEntryChosenForEviction(ice);
+            evicted.put(ice.getKey(), ice);
+         }
+         evictionListener.onEntryEviction(evicted);
+      }
+   }
+
+   public boolean containsKey(Object k) {
+      byte[] key = marshall(k);
+      int hash = hash(key);
+      return segmentFor(hash).read(key, hash, true, false) != null;
+   }
+
+   public InternalCacheEntry remove(Object k) {
+      byte[] key = marshall(k);
+      int hash = hash(key);
+      EntryBytes raw = segmentFor(hash).remove(key, hash);
+      return raw == null || raw.isExpired(System.currentTimeMillis()) ? null : decode(k, raw);
+   }
+
+   public int size() {
+      int size = 0;
+      for (Segment s : segments) size += s.count;
+      return size;
+   }
+
+   public void clear() {
+      for (Segment s : segments) s.clear();
+   }
+
+   public Set<Object> keySet() {
+      return new KeySet();
+   }
+
+   public Collection<Object> values() {
+      return new Values();
+   }
+
+   public Set<InternalCacheEntry> entrySet() {
+      return new EntrySet();
+   }
+
+   public void purgeExpired() {
+      long now = System.currentTimeMillis();
+      for (Segment s : segments) s.purgeExpired(now);
+   }
+
+   public Iterator<InternalCacheEntry> iterator() {
+      return new EntryIterator();
+   }
+
+   private Segment segmentFor(int hash) {
+      return segments[(hash >>> segmentShift) & segmentMask];
+   }
+
+   private static int hash(byte[] key) {
+      return MurmurHash3.MurmurHash3_x64_32(key, HASH_SEED);
+   }
+
+   private byte[] marshall(Object o) {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException("Interrupted while marshalling " + o, e);
+      } catch (Exception e) {
+         throw new CacheException("Unable to marshall " + o + " into direct memory", e);
+      }
+   }
+
+   private Object unmarshall(byte[] bytes) {
+      try {
+         return marshaller.objectFromByteBuffer(bytes);
+      } catch (Exception e) {
+         throw new CacheException("Unable to unmarshall entry from direct memory", e);
+      }
+   }
+
+   private InternalCacheEntry decode(Object key, EntryBytes raw) {
+      InternalCacheEntry ice = InternalEntryFactory.create(key, unmarshall(raw.value), raw.created, raw.lifespan, raw.lastUsed, raw.maxIdle);
+      ice.setVersion(raw.version);
+      return ice;
+   }
+
+   private InternalCacheEntry decode(EntryBytes raw) {
+      return decode(unmarshall(raw.key), raw);
+   }
+
+   /**
+    * Heap copy of an entry read out of direct memory while holding the segment lock.  Unmarshalling happens after the
+    * lock has been released.
+    */
+   static final class EntryBytes {
+      final byte[] key;
+      final byte[] value;
+      final long created;
+      final long lastUsed;
+      final long lifespan;
+      final long maxIdle;
+      final long version;
+
+      EntryBytes(byte[] key, byte[] value, long created, long lastUsed, long lifespan, long maxIdle, long version) {
+         this.key = key;
+         this.value = value;
+         this.created = created;
+         this.lastUsed = lastUsed;
+         this.lifespan = lifespan;
+         this.maxIdle = maxIdle;
+         this.version = version;
+      }
+
+      boolean isExpired(long now) {
+         return isExpired(now, created, lastUsed, lifespan, maxIdle);
+      }
+
+      static boolean isExpired(long now, long created, long lastUsed, long lifespan, long maxIdle) {
+         return (lifespan > -1 && created > -1 && now > created + lifespan)
+               || (maxIdle > -1 && lastUsed > -1 && now > lastUsed + maxIdle);
+      }
+   }
+
+   /**
+    * A segment owns a set of direct memory slabs which entries are bump-allocated from, a chained hash index of
+    * entry addresses and a doubly linked list, threaded through the entries themselves, holding them in eviction
+    * order (least recently used or oldest first).
+    */
+   final class Segment extends ReentrantLock {
+      private static final long serialVersionUID = -2402484391428543475L;
+
+      volatile int count;
+      volatile long allocatedBytes;
+
+      private List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+      private ByteBuffer current;
+      private int currentIndex;
+      private long[] table = newTable(INITIAL_TABLE_SIZE);
+      private long head = NULL;
+      private long tail = NULL;
+      private long usedBytes;
+      private long liveBytes;
+
+      EntryBytes read(byte[] key, int hash, boolean expire, boolean touch) {
+         lock();
+         try {
+            long address = find(key, hash);
+            if (address == NULL) return null;
+            if (expire && isExpired(address, System.currentTimeMillis())) {
+               unlink(address);
+               return null;
+            }
+            if (touch) {
+               putLong(address, LAST_USED, System.currentTimeMillis());
+               if (accessOrder) moveToTail(address);
+            }
+            return copy(address, false);
+         } finally {
+            unlock();
+         }
+      }
+
+      /**
+       * @return copies of the entries evicted to make room, or null if none was
+       */
+      List<EntryBytes> put(byte[] key, byte[] value, int hash, long lifespan, long maxIdle, long version) {
+         List<EntryBytes> evicted = null;
+         lock();
+         try {
+            long existing = find(key, hash);
+            if (existing != NULL) unlink(existing);
+
+            int size = HEADER_SIZE + key.length + value.length;
+            long address = allocate(size);
+            long now = System.currentTimeMillis();
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            slab.putInt(offset + HASH, hash);
+            slab.putInt(offset + KEY_LENGTH, key.length);
+            slab.putInt(offset + VALUE_LENGTH, value.length);
+            slab.putLong(offset + CREATED, now);
+            slab.putLong(offset + LAST_USED, now);
+            slab.putLong(offset + LIFESPAN, lifespan);
+            slab.putLong(offset + MAX_IDLE, maxIdle);
+            slab.putLong(offset + VERSION, version);
+            writeBytes(slab, offset + HEADER_SIZE, key);
+            writeBytes(slab, offset + HEADER_SIZE + key.length, value);
+            link(address, hash);
+            liveBytes += size;
+
+            if (isOverLimit()) {
+               evicted = new ArrayList<EntryBytes>();
+               while (isOverLimit() && head != address) {
+                  long victim = head;
+                  evicted.add(copy(victim, true));
+                  unlink(victim);
+               }
+            }
+            compactIfNeeded();
+            return evicted;
+         } finally {
+            unlock();
+         }
+      }
+
+      private boolean isOverLimit() {
+         return (maxEntriesPerSegment > -1 && count > maxEntriesPerSegment)
+               || (maxBytesPerSegment > -1 && liveBytes > maxBytesPerSegment);
+      }
+
+      EntryBytes remove(byte[] key, int hash) {
+         lock();
+         try {
+            long address = find(key, hash);
+            if (address == NULL) return null;
+            EntryBytes raw = copy(address, false);
+            unlink(address);
+            compactIfNeeded();
+            return raw;
+         } finally {
+            unlock();
+         }
+      }
+
+      void purgeExpired(long now) {
+         lock();
+         try {
+            long address = head;
+            while (address != NULL) {
+               long next = getLong(address, ORDER_NEXT);
+               if (isExpired(address, now)) unlink(address);
+               address = next;
+            }
+            compactIfNeeded();
+         } finally {
+            unlock();
+         }
+      }
+
+      void clear() {
+         lock();
+         try {
+            slabs = new ArrayList<ByteBuffer>();
+            current = null;
+            currentIndex = 0;
+            table = newTable(INITIAL_TABLE_SIZE);
+            head = tail = NULL;
+            usedBytes = liveBytes = 0;
+            allocatedBytes = 0;
+            count = 0;
+         } finally {
+            unlock();
+         }
+      }
+
+      /**
+       * Copies every live entry of this segment onto the heap, in eviction order.
+       */
+      List<EntryBytes> snapshot() {
+         lock();
+         try {
+            List<EntryBytes> entries = new ArrayList<EntryBytes>(count);
+            long address = head;
+            while (address != NULL) {
+               entries.add(copy(address, true));
+               address = getLong(address, ORDER_NEXT);
+            }
+            return entries;
+         } finally {
+            unlock();
+         }
+      }
+
+      private long find(byte[] key, int hash) {
+         long address = table[hash & (table.length - 1)];
+         while (address != NULL) {
+            if (getInt(address, HASH) == hash && keyEquals(address, key)) return address;
+            address = getLong(address, BUCKET_NEXT);
+         }
+         return NULL;
+      }
+
+      private boolean keyEquals(long address, byte[] key) {
+         ByteBuffer slab = slab(address);
+         int offset = offset(address);
+         if (slab.getInt(offset + KEY_LENGTH) != key.length) return false;
+         int start = offset + HEADER_SIZE;
+         for (int i = 0; i < key.length; i++) {
+            if (slab.get(start + i) != key[i]) return false;
+         }
+         return true;
+      }
+
+      private boolean isExpired(long address, long now) {
+         ByteBuffer slab = slab(address);
+         int offset = offset(address);
+         return EntryBytes.isExpired(now, slab.getLong(offset + CREATED), slab.getLong(offset + LAST_USED),
+                                     slab.getLong(offset + LIFESPAN), slab.getLong(offset + MAX_IDLE));
+      }
+
+      private EntryBytes copy(long address, boolean withKey) {
+         ByteBuffer slab = slab(address);
+         int offset = offset(address);
+         int keyLength = slab.getInt(offset + KEY_LENGTH);
+         byte[] key = withKey ? readBytes(slab, offset + HEADER_SIZE, keyLength) : null;
+         byte[] value = readBytes(slab, offset + HEADER_SIZE + keyLength, slab.getInt(offset + VALUE_LENGTH));
+         return new EntryBytes(key, value, slab.getLong(offset + CREATED), slab.getLong(offset + LAST_USED),
+                               slab.getLong(offset + LIFESPAN), slab.getLong(offset + MAX_IDLE),
+                               slab.getLong(offset + VERSION));
+      }
+
+      /**
+       * Adds the entry at the given address to the hash index and to the tail of the eviction order list.
+       */
+      private void link(long address, int hash) {
+         if (count + 1 > table.length * 3 / 4) rebuildTable(table.length << 1);
+         int bucket = hash & (table.length - 1);
+         putLong(address, BUCKET_NEXT, table[bucket]);
+         table[bucket] = address;
+         appendToOrder(address);
+         count++;
+      }
+
+      /**
+       * Removes the entry at the given address from the hash index and the eviction order list, and accounts for its
+       * bytes as garbage.
+       */
+      private void unlink(long address) {
+         int bucket = getInt(address, HASH) & (table.length - 1);
+         long previous = NULL;
+         long current = table[bucket];
+         while (current != address) {
+            previous = current;
+            current = getLong(current, BUCKET_NEXT);
+         }
+         long next = getLong(address, BUCKET_NEXT);
+         if (previous == NULL) table[bucket] = next;
+         else putLong(previous, BUCKET_NEXT, next);
+         removeFromOrder(address);
+         liveBytes -= entrySize(address);
+         count--;
+      }
+
+      private void appendToOrder(long address) {
+         putLong(address, ORDER_PREV, tail);
+         putLong(address, ORDER_NEXT, NULL);
+         if (tail == NULL) head = address;
+         else putLong(tail, ORDER_NEXT, address);
+         tail = address;
+      }
+
+      private void removeFromOrder(long address) {
+         long prev = getLong(address, ORDER_PREV);
+         long next = getLong(address, ORDER_NEXT);
+         if (prev == NULL) head = next;
+         else putLong(prev, ORDER_NEXT, next);
+         if (next == NULL) tail = prev;
+         else putLong(next, ORDER_PREV, prev);
+      }
+
+      private void moveToTail(long address) {
+         if (address != tail) {
+            removeFromOrder(address);
+            appendToOrder(address);
+         }
+      }
+
+      private void rebuildTable(int size) {
+         table = newTable(size);
+         long address = head;
+         while (address != NULL) {
+            int bucket = getInt(address, HASH) & (size - 1);
+            putLong(address, BUCKET_NEXT, table[bucket]);
+            table[bucket] = address;
+            address = getLong(address, ORDER_NEXT);
+         }
+      }
+
+      private long allocate(int size) {
+         if (size > slabSize) {
+            ByteBuffer dedicated = ByteBuffer.allocateDirect(size);
+            dedicated.position(size);
+            return addSlab(dedicated);
+         }
+         if (current == null || current.remaining() < size) {
+            current = ByteBuffer.allocateDirect(slabSize);
+            currentIndex = slabIndex(addSlab(current));
+         }
+         int offset = current.position();
+         current.position(offset + size);
+         usedBytes += size;
+         return address(currentIndex, offset);
+      }
+
+      private long addSlab(ByteBuffer slab) {
+         slabs.add(slab);
+         allocatedBytes += slab.capacity();
+         // dedicated slabs are filled completely by their single entry
+         if (slab != current) usedBytes += slab.capacity();
+         return address(slabs.size() - 1, 0);
+      }
+
+      /**
+       * Once more than half of the bytes handed out by the slabs belong to removed entries, copies the live entries
+       * into fresh slabs and drops the old ones so that their direct memory can be released.
+       */
+      private void compactIfNeeded() {
+         if (slabs.size() < 2 || liveBytes * 2 > usedBytes) return;
+         List<ByteBuffer> oldSlabs = slabs;
+         long oldHead = head;
+         slabs = new ArrayList<ByteBuffer>();
+         current = null;
+         currentIndex = 0;
+         head = tail = NULL;
+         usedBytes = allocatedBytes = 0;
+         long address = oldHead;
+         while (address != NULL) {
+            ByteBuffer from = oldSlabs.get(slabIndex(address));
+            int offset = offset(address);
+            long next = from.getLong(offset + ORDER_NEXT);
+            int size = HEADER_SIZE + from.getInt(offset + KEY_LENGTH) + from.getInt(offset + VALUE_LENGTH);
+            long moved = allocate(size);
+            ByteBuffer source = from.duplicate();
+            source.limit(offset + size).position(offset);
+            ByteBuffer target = slab(moved).duplicate();
+            target.position(offset(moved));
+            target.put(source);
+            appendToOrder(moved);
+            address = next;
+         }
+         rebuildTable(table.length);
+      }
+
+      private int entrySize(long address) {
+         return HEADER_SIZE + getInt(address, KEY_LENGTH) + getInt(address, VALUE_LENGTH);
+      }
+
+      private ByteBuffer slab(long address) {
+         return slabs.get(slabIndex(address));
+      }
+
+      private int getInt(long address, int field) {
+         return slab(address).getInt(offset(address) + field);
+      }
+
+      private long getLong(long address, int field) {
+         return slab(address).getLong(offset(address) + field);
+      }
+
+      private void putLong(long address, int field, long value) {
+         slab(address).putLong(offset(address) + field, value);
+      }
+   }
+
+   private static long[] newTable(int size) {
+      long[] table = new long[size];
+      Arrays.fill(table, NULL);
+      return table;
+   }
+
+   private static long address(int slabIndex, int offset) {
+      return ((long) slabIndex << 32) | (offset & 0xFFFFFFFFL);
+   }
+
+   private static int slabIndex(long address) {
+      return (int) (address >>> 32);
+   }
+
+   private static int offset(long address) {
+      return (int) address;
+   }
+
+   private static void writeBytes(ByteBuffer slab, int offset, byte[] bytes) {
+      ByteBuffer target = slab.duplicate();
+      target.position(offset);
+      target.put(bytes);
+   }
+
+   private static byte[] readBytes(ByteBuffer slab, int offset, int length) {
+      byte[] bytes = new byte[length];
+      ByteBuffer source = slab.duplicate();
+      source.position(offset);
+      source.get(bytes);
+      return bytes;
+   }
+
+   private final class OffHeapEvictionListener {
+      void onEntryEviction(Map<Object, InternalCacheEntry> evicted) {
+         evictionManager.onEntryEviction(evicted);
+      }
+
+      void onEntryChosenForEviction(InternalCacheEntry internalCacheEntry) {
+         passivator.passivate(internalCacheEntry);
+      }
+   }
+
+   /**
+    * Iterates over the container one segment at a time, copying a segment's entries onto the heap only when the
+    * iteration reaches it.
+    */
+   private class EntryIterator implements Iterator<InternalCacheEntry> {
+      private int nextSegment = 0;
+      private Iterator<EntryBytes> current = Collections.<EntryBytes>emptyList().iterator();
+
+      public boolean hasNext() {
+         while (!current.hasNext()) {
+            if (nextSegment >= segments.length) return false;
+            current = segments[nextSegment++].snapshot().iterator();
+         }
+         return true;
+      }
+
+      public InternalCacheEntry next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         return decode(current.next());
+      }
+
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   /**
+    * Minimal implementation needed for unmodifiable Set
+    */
+   private class KeySet extends AbstractSet<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<Object>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public Object next() {
+               return it.next().getKey();
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+         return peek(o) != null;
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+
+   /**
+    * Minimal implementation needed for unmodifiable Set
+    */
+   private class EntrySet extends AbstractSet<InternalCacheEntry> {
+      @Override
+      public boolean contains(Object o) {
+         if (!(o instanceof Map.Entry)) {
+            return false;
+         }
+
+         @SuppressWarnings("rawtypes")
+         Map.Entry e = (Map.Entry) o;
+         InternalCacheEntry ice = peek(e.getKey());
+         if (ice == null) {
+            return false;
+         }
+         return ice.getValue().equals(e.getValue());
+      }
+
+      @Override
+      public Iterator<InternalCacheEntry> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<InternalCacheEntry>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public InternalCacheEntry next() {
+               return Immutables.immutableInternalCacheEntry(it.next());
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+
+   /**
+    * Minimal implementation needed for unmodifiable Collection
+    */
+   private class Values extends AbstractCollection<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<Object>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public Object next() {
+               return it.next().getValue();
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+}
@@ -0,0 +1,43 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+/**
+ * A {@link DataContainer} that can store a version along with each entry.  Versions are assigned by transactions using
+ * optimistic locking, so that concurrent modifications can be detected when such a transaction prepares.  Containers
+ * that don't implement this interface have the version set on the entry returned by {@link #peek(Object)} after a put.
+ *
+ * @since 5.0
+ */
+public interface VersionedDataContainer extends DataContainer {
+
+   /**
+    * Puts an entry in the cache along with a lifespan, a maxIdle time and a version.
+    * @param k key under which to store entry
+    * @param v value to store
+    * @param lifespan lifespan in milliseconds.  -1 means immortal.
+    * @param maxIdle max idle time for which to store entry.  -1 means forever.
+    * @param version version of the entry.  0 means unversioned.
+    */
+   void put(Object k, Object v, long lifespan, long maxIdle, long version);
+}
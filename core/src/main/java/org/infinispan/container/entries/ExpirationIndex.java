@@ -0,0 +1,274 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.entries;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An index of keys by expiry time, implemented as a hierarchical timing wheel. It allows a data container to find
+ * the entries that are due for expiration without visiting every entry it holds.
+ * <p/>
+ * Time is divided into ticks of a fixed duration. The lowest wheel has a slot per tick, and each of the higher wheels
+ * has a slot per full revolution of the wheel below it. A key is placed in the lowest wheel able to hold its expiry
+ * time, and moved down to a lower wheel whenever the slot of a higher wheel comes due. Scheduling a key and
+ * advancing the wheel are therefore constant time operations, and {@link #advance(long)} only visits keys that are
+ * due or are being moved down.
+ * <p/>
+ * The index remembers the time each key was last scheduled with, so that scheduling a key again moves it rather than
+ * adding it twice, and {@link #unschedule(Object)} can find it when its entry is removed.  The index is still allowed
+ * to be stale: a key stays scheduled at its original time when the expiry time of its entry is extended by an access.
+ * Callers must hence check the entries of the keys returned by {@link #advance(long)} and reschedule those that turn
+ * out not to be expired, but must always schedule a key no later than its entry expires.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class ExpirationIndex {
+
+   /**
+    * Default duration of a tick, in milliseconds.
+    */
+   public static final long DEFAULT_TICK_MILLIS = 1000;
+
+   private static final int WHEEL_BITS = 6;
+   private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+   private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+   private static final int LEVELS = 4;
+
+   private final long tickMillis;
+   /**
+    * Slots per level, created lazily.  Each slot maps a key to the expiry time it was scheduled with, which also
+    * collapses repeated schedules of the same key falling into the same slot.
+    */
+   private final AtomicReferenceArray<ConcurrentMap<Object, Long>>[] wheels;
+   /**
+    * The expiry time each key was last scheduled with, which locates its slot.
+    */
+   private final ConcurrentMap<Object, Long> scheduled = new ConcurrentHashMap<Object, Long>();
+   /**
+    * Scheduling happens under the read lock, advancing the wheel under the write lock.
+    */
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+   /**
+    * The tick that has not fully elapsed yet.  All ticks before it have been processed.
+    */
+   private volatile long currentTick;
+
+   public ExpirationIndex() {
+      this(DEFAULT_TICK_MILLIS, System.currentTimeMillis());
+   }
+
+   @SuppressWarnings("unchecked")
+   public ExpirationIndex(long tickMillis, long now) {
+      if (tickMillis <= 0) throw new IllegalArgumentException("Tick duration must be positive");
+      this.tickMillis = tickMillis;
+      this.currentTick = now / tickMillis;
+      wheels = new AtomicReferenceArray[LEVELS];
+      for (int i = 0; i < LEVELS; i++) {
+         wheels[i] = new AtomicReferenceArray<ConcurrentMap<Object, Long>>(WHEEL_SIZE);
+      }
+   }
+
+   /**
+    * Schedules a key for expiration.
+    *
+    * @param key        key of the entry
+    * @param expiryTime time, in milliseconds, at which the entry expires. Negative values are ignored.
+    */
+   public void schedule(Object key, long expiryTime) {
+      if (expiryTime < 0) return;
+      lock.readLock().lock();
+      try {
+         Long previous = scheduled.put(key, expiryTime);
+         if (previous != null) displace(key, previous);
+         place(key, expiryTime);
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Removes a key from the index, e.g. because its entry has been removed.
+    *
+    * @param key key of the entry
+    */
+   public void unschedule(Object key) {
+      lock.readLock().lock();
+      try {
+         Long expiryTime = scheduled.remove(key);
+         if (expiryTime != null) displace(key, expiryTime);
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Advances the wheel to the given time and returns the keys scheduled to expire at or before it.  Keys that are
+    * scheduled later in the current tick stay in the index.
+    *
+    * @param now current time, in milliseconds
+    * @return keys due for expiration, never null
+    */
+   public Collection<Object> advance(long now) {
+      long nowTick = now / tickMillis;
+      Collection<Object> due = null;
+      lock.writeLock().lock();
+      try {
+         while (currentTick < nowTick) {
+            due = drain(wheels[0], (int) (currentTick & WHEEL_MASK), Long.MAX_VALUE, due);
+            currentTick++;
+            cascade();
+         }
+         due = drain(wheels[0], (int) (currentTick & WHEEL_MASK), now, due);
+      } finally {
+         lock.writeLock().unlock();
+      }
+      return due == null ? Collections.emptyList() : due;
+   }
+
+   /**
+    * Removes all keys from the index.
+    */
+   public void clear() {
+      lock.writeLock().lock();
+      try {
+         scheduled.clear();
+         for (AtomicReferenceArray<ConcurrentMap<Object, Long>> wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+               wheel.set(i, null);
+            }
+         }
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Counts the scheduled keys.  Meant for testing and diagnostics, as it visits the whole index.
+    */
+   public int size() {
+      int size = 0;
+      for (AtomicReferenceArray<ConcurrentMap<Object, Long>> wheel : wheels) {
+         for (int i = 0; i < WHEEL_SIZE; i++) {
+            ConcurrentMap<Object, Long> slot = wheel.get(i);
+            if (slot != null) size += slot.size();
+         }
+      }
+      return size;
+   }
+
+   private void place(Object key, long expiryTime) {
+      long tick = Math.max(expiryTime / tickMillis, currentTick);
+      long delta = tick - currentTick;
+      int level = 0;
+      while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+         level++;
+      }
+      if (delta >= 1L << (WHEEL_BITS * LEVELS)) {
+         // beyond the reach of the highest wheel: park in its last slot, moved down again once that comes due
+         tick = currentTick + (1L << (WHEEL_BITS * LEVELS)) - 1;
+      }
+      int index = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+      slot(wheels[level], index).put(key, expiryTime);
+   }
+
+   /**
+    * Removes a key scheduled with the given expiry time from the slot it was placed in.  Keys whose expiry time had
+    * already passed when they were placed are left in the current slot, which is drained by the next advance.
+    */
+   private void displace(Object key, long expiryTime) {
+      long tick = expiryTime / tickMillis;
+      for (int level = 0; level < LEVELS; level++) {
+         int index = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+         ConcurrentMap<Object, Long> slot = wheels[level].get(index);
+         if (slot != null && slot.remove(key, expiryTime)) return;
+      }
+      if (tick - currentTick >= 1L << (WHEEL_BITS * (LEVELS - 1))) {
+         // possibly parked beyond the reach of the highest wheel, see place()
+         AtomicReferenceArray<ConcurrentMap<Object, Long>> highest = wheels[LEVELS - 1];
+         for (int i = 0; i < WHEEL_SIZE; i++) {
+            ConcurrentMap<Object, Long> slot = highest.get(i);
+            if (slot != null && slot.remove(key, expiryTime)) return;
+         }
+      }
+   }
+
+   /**
+    * Moves the keys of the higher wheel slots that came due with the current tick down, highest wheel first.  Must be
+    * called holding the write lock.
+    */
+   private void cascade() {
+      for (int level = LEVELS - 1; level > 0; level--) {
+         long span = 1L << (WHEEL_BITS * level);
+         if ((currentTick & (span - 1)) == 0) {
+            int index = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            ConcurrentMap<Object, Long> slot = wheels[level].getAndSet(index, null);
+            if (slot != null) {
+               for (Map.Entry<Object, Long> e : slot.entrySet()) {
+                  place(e.getKey(), e.getValue());
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Removes the keys scheduled at or before the given time from a slot of the lowest wheel.  Must be called holding
+    * the write lock.
+    */
+   private Collection<Object> drain(AtomicReferenceArray<ConcurrentMap<Object, Long>> wheel, int index, long time,
+                                    Collection<Object> due) {
+      ConcurrentMap<Object, Long> slot = wheel.get(index);
+      if (slot != null && !slot.isEmpty()) {
+         for (Map.Entry<Object, Long> e : slot.entrySet()) {
+            if (e.getValue() <= time && slot.remove(e.getKey(), e.getValue())) {
+               scheduled.remove(e.getKey(), e.getValue());
+               if (due == null) due = new ArrayList<Object>();
+               due.add(e.getKey());
+            }
+         }
+      }
+      return due;
+   }
+
+   private static ConcurrentMap<Object, Long> slot(AtomicReferenceArray<ConcurrentMap<Object, Long>> wheel, int index) {
+      ConcurrentMap<Object, Long> slot = wheel.get(index);
+      if (slot == null) {
+         slot = new ConcurrentHashMap<Object, Long>();
+         if (!wheel.compareAndSet(index, null, slot)) {
+            slot = wheel.get(index);
+         }
+      }
+      return slot;
+   }
+}
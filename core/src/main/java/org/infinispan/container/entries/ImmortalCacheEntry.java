@@ -22,6 +22,7 @@
  */
 package org.infinispan.container.entries;
 
+import org.infinispan.io.UnsignedNumeric;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -85,6 +86,14 @@ public class ImmortalCacheEntry extends AbstractInternalCacheEntry {
       return cacheValue;
    }
 
+   public final long getVersion() {
+      return cacheValue.version;
+   }
+
+   public final void setVersion(long version) {
+      cacheValue.version = version;
+   }
+
    public Object getValue() {
       return cacheValue.value;
    }
@@ -124,14 +133,18 @@ public class ImmortalCacheEntry extends AbstractInternalCacheEntry {
       @Override
       public void writeObject(ObjectOutput output, ImmortalCacheEntry ice) throws IOException {
          output.writeObject(ice.key);
-         output.writeObject(ice.cacheValue.value);      
+         output.writeObject(ice.cacheValue.value);
+         UnsignedNumeric.writeUnsignedLong(output, ice.cacheValue.version);
       }
 
       @Override
       public ImmortalCacheEntry readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object k = input.readObject();
          Object v = input.readObject();
-         return new ImmortalCacheEntry(k, v);
+         long version = UnsignedNumeric.readUnsignedLong(input);
+         ImmortalCacheEntry ice = new ImmortalCacheEntry(k, v);
+         ice.setVersion(version);
+         return ice;
       }
 
       @Override
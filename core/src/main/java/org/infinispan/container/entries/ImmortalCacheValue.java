@@ -27,6 +27,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.Set;
 
+import org.infinispan.io.UnsignedNumeric;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -40,13 +41,16 @@ import org.infinispan.util.Util;
 public class ImmortalCacheValue implements InternalCacheValue, Cloneable {
 
    Object value;
+   volatile long version;
 
    ImmortalCacheValue(Object value) {
       this.value = value;
    }
 
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new ImmortalCacheEntry(key, value);
+      InternalCacheEntry ice = new ImmortalCacheEntry(key, value);
+      ice.setVersion(version);
+      return ice;
    }
 
    public final Object setValue(Object value) {
@@ -59,6 +63,10 @@ public class ImmortalCacheValue implements InternalCacheValue, Cloneable {
       return value;
    }
 
+   public final long getVersion() {
+      return version;
+   }
+
    public boolean isExpired() {
       return false;
    }
@@ -120,12 +128,16 @@ public class ImmortalCacheValue implements InternalCacheValue, Cloneable {
       @Override
       public void writeObject(ObjectOutput output, ImmortalCacheValue icv) throws IOException {
          output.writeObject(icv.value);
+         UnsignedNumeric.writeUnsignedLong(output, icv.version);
       }
 
       @Override
       public ImmortalCacheValue readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object v = input.readObject();
-         return new ImmortalCacheValue(v);
+         long version = UnsignedNumeric.readUnsignedLong(input);
+         ImmortalCacheValue icv = new ImmortalCacheValue(v);
+         icv.version = version;
+         return icv;
       }
 
       @Override
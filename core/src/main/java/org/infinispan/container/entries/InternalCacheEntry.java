@@ -80,6 +80,21 @@ public interface InternalCacheEntry extends CacheEntry, Cloneable {
     */
    void reincarnate();
 
+   /**
+    * Versions are assigned to entries written by optimistic transactions, and are used to validate that an entry has
+    * not been modified concurrently by the time the transaction prepares.
+    *
+    * @return the version of this entry, or 0 if the entry is not versioned
+    */
+   long getVersion();
+
+   /**
+    * Sets the version of this entry.
+    *
+    * @param version version to set
+    */
+   void setVersion(long version);
+
    /**
     * Creates a representation of this entry as an {@link org.infinispan.container.entries.InternalCacheValue}. The main
     * purpose of this is to provide a representation that does <i>not</i> have a reference to the key. This is useful in
@@ -47,6 +47,11 @@ public interface InternalCacheValue {
 
    InternalCacheEntry toInternalCacheEntry(Object key);
 
+   /**
+    * @return the version of the value, or 0 if the value is not versioned
+    */
+   long getVersion();
+
    /**
     * @return true if the entry has expired; false otherwise
     */
@@ -30,6 +30,29 @@ package org.infinispan.container.entries;
  */
 public class InternalEntryFactory {
 
+   private final ExpirationIndex expirationIndex;
+
+   public InternalEntryFactory() {
+      this(null);
+   }
+
+   /**
+    * Creates a factory that schedules every mortal or transient entry it creates or updates in the given expiration
+    * index.
+    *
+    * @param expirationIndex index to maintain, or null for none
+    */
+   public InternalEntryFactory(ExpirationIndex expirationIndex) {
+      this.expirationIndex = expirationIndex;
+   }
+
+   /**
+    * @return the expiration index maintained by this factory, or null if there is none
+    */
+   public ExpirationIndex getExpirationIndex() {
+      return expirationIndex;
+   }
+
    public static InternalCacheEntry create(Object key, Object value) {
       return new ImmortalCacheEntry(key, value);
    }
@@ -68,13 +91,13 @@ public class InternalEntryFactory {
          return new ImmortalCacheEntry(key, value);
 
       if (lifespan > -1 && maxIdle < 0)
-         return new MortalCacheEntry(key, value, lifespan);
+         return index(new MortalCacheEntry(key, value, lifespan));
 
       if (lifespan < 0 && maxIdle > -1)
-         return new TransientCacheEntry(key, value, maxIdle);
+         return index(new TransientCacheEntry(key, value, maxIdle));
 
       // else...
-      return new TransientMortalCacheEntry(key, value, maxIdle, lifespan);
+      return index(new TransientMortalCacheEntry(key, value, maxIdle, lifespan));
    }
 
    /**
@@ -89,6 +112,11 @@ public class InternalEntryFactory {
     * @return a cache entry
     */
    public InternalCacheEntry update(InternalCacheEntry ice, long lifespan, long maxIdle) {
+      InternalCacheEntry updated = update0(ice, lifespan, maxIdle);
+      return updated.canExpire() ? index(updated) : updated;
+   }
+
+   private InternalCacheEntry update0(InternalCacheEntry ice, long lifespan, long maxIdle) {
       if (ice instanceof ImmortalCacheEntry) {
          if (lifespan < 0) {
             if (maxIdle < 0) {
@@ -155,4 +183,9 @@ public class InternalEntryFactory {
       }
       return ice;
    }
+
+   private InternalCacheEntry index(InternalCacheEntry ice) {
+      if (expirationIndex != null) expirationIndex.schedule(ice.getKey(), ice.getExpiryTime());
+      return ice;
+   }
 }
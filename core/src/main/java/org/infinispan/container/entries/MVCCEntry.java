@@ -32,6 +32,17 @@ import org.infinispan.container.DataContainer;
  */
 public interface MVCCEntry extends CacheEntry {
 
+   /**
+    * Version reported for entries that did not exist in the data container when they were read into scope.
+    */
+   long NON_EXISTENT_VERSION = -1;
+
+   /**
+    * Version reported for entries a transaction writes without knowing their current version, such as entries owned by
+    * other nodes that were not fetched before being written.  Such blind writes are not validated at prepare time.
+    */
+   long UNREAD_VERSION = -2;
+
    /**
     * Makes internal copies of the entry for updates
     *
@@ -46,4 +57,27 @@ public interface MVCCEntry extends CacheEntry {
     * @param placeholder if true, the entry is marked as a lock placeholder.  If false, the entry is un-marked as a placeholder.
     */
    void setLockPlaceholder(boolean placeholder);
+
+   /**
+    * @return the version of the underlying entry at the time it was read into the current scope, 0 if the underlying
+    *         entry is not versioned, {@link #NON_EXISTENT_VERSION} if it did not exist, or {@link #UNREAD_VERSION} if
+    *         it is not known.
+    */
+   long getVersion();
+
+   /**
+    * Sets the version the entry was read with, for entries whose current version only became known after they were
+    * wrapped, e.g. when they were fetched from a remote owner.
+    *
+    * @param version version read
+    */
+   void setVersion(long version);
+
+   /**
+    * Sets the version the entry is stamped with when its changes are committed to the data container.  Entries that are
+    * not stamped are committed unversioned.
+    *
+    * @param commitVersion version to commit with
+    */
+   void setCommitVersion(long commitVersion);
 }
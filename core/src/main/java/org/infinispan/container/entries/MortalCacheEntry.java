@@ -102,6 +102,14 @@ public class MortalCacheEntry extends AbstractInternalCacheEntry {
       return cacheValue;
    }
 
+   public final long getVersion() {
+      return cacheValue.version;
+   }
+
+   public final void setVersion(long version) {
+      cacheValue.version = version;
+   }
+
    @Override
    public boolean equals(Object o) {
       if (this == o) return true;
@@ -137,6 +145,7 @@ public class MortalCacheEntry extends AbstractInternalCacheEntry {
       public void writeObject(ObjectOutput output, MortalCacheEntry mce) throws IOException {
          output.writeObject(mce.key);
          output.writeObject(mce.cacheValue.value);
+         UnsignedNumeric.writeUnsignedLong(output, mce.cacheValue.version);
          UnsignedNumeric.writeUnsignedLong(output, mce.cacheValue.created);
          output.writeLong(mce.cacheValue.lifespan); // could be negative so should not use unsigned longs
       }
@@ -145,9 +154,12 @@ public class MortalCacheEntry extends AbstractInternalCacheEntry {
       public MortalCacheEntry readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object k = input.readObject();
          Object v = input.readObject();
+         long version = UnsignedNumeric.readUnsignedLong(input);
          long created = UnsignedNumeric.readUnsignedLong(input);
          Long lifespan = input.readLong();
-         return new MortalCacheEntry(k, v, lifespan, created);
+         MortalCacheEntry ice = new MortalCacheEntry(k, v, lifespan, created);
+         ice.setVersion(version);
+         return ice;
       }
 
       @Override
@@ -79,7 +79,9 @@ public class MortalCacheValue extends ImmortalCacheValue {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new MortalCacheEntry(key, value, lifespan, created);
+      InternalCacheEntry ice = new MortalCacheEntry(key, value, lifespan, created);
+      ice.setVersion(version);
+      return ice;
    }
 
    @Override
@@ -122,6 +124,7 @@ public class MortalCacheValue extends ImmortalCacheValue {
       @Override
       public void writeObject(ObjectOutput output, MortalCacheValue mcv) throws IOException {
          output.writeObject(mcv.value);
+         UnsignedNumeric.writeUnsignedLong(output, mcv.version);
          UnsignedNumeric.writeUnsignedLong(output, mcv.created);
          output.writeLong(mcv.lifespan); // could be negative so should not use unsigned longs
       }
@@ -129,9 +132,12 @@ public class MortalCacheValue extends ImmortalCacheValue {
       @Override
       public MortalCacheValue readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object v = input.readObject();
+         long version = UnsignedNumeric.readUnsignedLong(input);
          long created = UnsignedNumeric.readUnsignedLong(input);
          Long lifespan = input.readLong();
-         return new MortalCacheValue(v, created, lifespan);
+         MortalCacheValue icv = new MortalCacheValue(v, created, lifespan);
+         icv.version = version;
+         return icv;
       }
 
       @Override
@@ -24,6 +24,7 @@ package org.infinispan.container.entries;
 
 import org.infinispan.atomic.AtomicHashMap;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.VersionedDataContainer;
 import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -46,6 +47,8 @@ public class ReadCommittedEntry implements MVCCEntry {
    protected byte flags = 0;
    private long lifespan = -1;
    private long maxIdle = -1;
+   private long version = NON_EXISTENT_VERSION;
+   private long commitVersion;
 
    protected ReadCommittedEntry() {
       setValid(true);
@@ -58,6 +61,11 @@ public class ReadCommittedEntry implements MVCCEntry {
       this.lifespan = lifespan;
    }
 
+   public ReadCommittedEntry(Object key, Object value, long lifespan, long version) {
+      this(key, value, lifespan);
+      this.version = version;
+   }
+
    // if this or any MVCC entry implementation ever needs to store a boolean, always use a flag instead.  This is far
    // more space-efficient.  Note that this value will be stored in a byte, which means up to 8 flags can be stored in
    // a single byte.  Always start shifting with 0, the last shift cannot be greater than 7.
@@ -139,6 +147,18 @@ public class ReadCommittedEntry implements MVCCEntry {
       return false;
    }
 
+   public long getVersion() {
+      return version;
+   }
+
+   public final void setVersion(long version) {
+      this.version = version;
+   }
+
+   public final void setCommitVersion(long commitVersion) {
+      this.commitVersion = commitVersion;
+   }
+
    public void copyForUpdate(DataContainer container, boolean writeSkewCheck) {
       if (isChanged()) return; // already copied
 
@@ -174,7 +194,16 @@ public class ReadCommittedEntry implements MVCCEntry {
          if (isRemoved()) {
             container.remove(key);
          } else if (value != null) {
-            container.put(key, value, lifespan, maxIdle);
+            if (container instanceof VersionedDataContainer) {
+               ((VersionedDataContainer) container).put(key, value, lifespan, maxIdle, commitVersion);
+            } else {
+               container.put(key, value, lifespan, maxIdle);
+               if (commitVersion != 0) {
+                  // containers that delegate to another one still hand out the stored entry
+                  InternalCacheEntry stored = container.peek(key);
+                  if (stored != null) stored.setVersion(commitVersion);
+               }
+            }
          }
          reset();
       }
@@ -183,6 +212,7 @@ public class ReadCommittedEntry implements MVCCEntry {
    private void reset() {
       oldValue = null;
       flags = 0;
+      commitVersion = 0;
       setValid(true);
    }
 
@@ -40,6 +40,10 @@ public class RepeatableReadEntry extends ReadCommittedEntry {
       super(key, value, lifespan);
    }
 
+   public RepeatableReadEntry(Object key, Object value, long lifespan, long version) {
+      super(key, value, lifespan, version);
+   }
+
    @Override
    public void copyForUpdate(DataContainer container, boolean writeSkewCheck) {
       if (isChanged()) return; // already copied
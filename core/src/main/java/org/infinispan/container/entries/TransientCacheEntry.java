@@ -102,6 +102,14 @@ public class TransientCacheEntry extends AbstractInternalCacheEntry {
       return cacheValue;
    }
 
+   public final long getVersion() {
+      return cacheValue.version;
+   }
+
+   public final void setVersion(long version) {
+      cacheValue.version = version;
+   }
+
    @Override
    public boolean equals(Object o) {
       if (this == o) return true;
@@ -139,6 +147,7 @@ public class TransientCacheEntry extends AbstractInternalCacheEntry {
       public void writeObject(ObjectOutput output, TransientCacheEntry tce) throws IOException {
          output.writeObject(tce.key);
          output.writeObject(tce.cacheValue.value);
+         UnsignedNumeric.writeUnsignedLong(output, tce.cacheValue.version);
          UnsignedNumeric.writeUnsignedLong(output, tce.cacheValue.lastUsed);
          output.writeLong(tce.cacheValue.maxIdle); // could be negative so should not use unsigned longs
       }
@@ -147,9 +156,12 @@ public class TransientCacheEntry extends AbstractInternalCacheEntry {
       public TransientCacheEntry readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object k = input.readObject();
          Object v = input.readObject();
+         long version = UnsignedNumeric.readUnsignedLong(input);
          long lastUsed = UnsignedNumeric.readUnsignedLong(input);
          Long maxIdle = input.readLong();
-         return new TransientCacheEntry(k, v, maxIdle, lastUsed);
+         TransientCacheEntry ice = new TransientCacheEntry(k, v, maxIdle, lastUsed);
+         ice.setVersion(version);
+         return ice;
       }
 
       @Override
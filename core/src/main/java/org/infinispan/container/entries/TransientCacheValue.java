@@ -78,7 +78,9 @@ public class TransientCacheValue extends ImmortalCacheValue {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new TransientCacheEntry(key, value, maxIdle, lastUsed);
+      InternalCacheEntry ice = new TransientCacheEntry(key, value, maxIdle, lastUsed);
+      ice.setVersion(version);
+      return ice;
    }
 
    @Override
@@ -120,6 +122,7 @@ public class TransientCacheValue extends ImmortalCacheValue {
       @Override
       public void writeObject(ObjectOutput output, TransientCacheValue tcv) throws IOException {
          output.writeObject(tcv.value);
+         UnsignedNumeric.writeUnsignedLong(output, tcv.version);
          UnsignedNumeric.writeUnsignedLong(output, tcv.lastUsed);
          output.writeLong(tcv.maxIdle); // could be negative so should not use unsigned longs
       }
@@ -127,9 +130,12 @@ public class TransientCacheValue extends ImmortalCacheValue {
       @Override
       public TransientCacheValue readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object v = input.readObject();
+         long version = UnsignedNumeric.readUnsignedLong(input);
          long lastUsed = UnsignedNumeric.readUnsignedLong(input);
          Long maxIdle = input.readLong();
-         return new TransientCacheValue(v, maxIdle, lastUsed);
+         TransientCacheValue icv = new TransientCacheValue(v, maxIdle, lastUsed);
+         icv.version = version;
+         return icv;
       }
 
       @Override
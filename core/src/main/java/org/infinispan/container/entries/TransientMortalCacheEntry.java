@@ -101,6 +101,14 @@ public class TransientMortalCacheEntry extends AbstractInternalCacheEntry {
       return cacheValue;
    }
 
+   public final long getVersion() {
+      return cacheValue.version;
+   }
+
+   public final void setVersion(long version) {
+      cacheValue.version = version;
+   }
+
    public long getLastUsed() {
       return cacheValue.lastUsed;
    }
@@ -161,6 +169,7 @@ public class TransientMortalCacheEntry extends AbstractInternalCacheEntry {
       public void writeObject(ObjectOutput output, TransientMortalCacheEntry entry) throws IOException {
          output.writeObject(entry.key);
          output.writeObject(entry.cacheValue.value);
+         UnsignedNumeric.writeUnsignedLong(output, entry.cacheValue.version);
          UnsignedNumeric.writeUnsignedLong(output, entry.cacheValue.created);
          output.writeLong(entry.cacheValue.lifespan); // could be negative so should not use unsigned longs
          UnsignedNumeric.writeUnsignedLong(output, entry.cacheValue.lastUsed);
@@ -171,11 +180,14 @@ public class TransientMortalCacheEntry extends AbstractInternalCacheEntry {
       public TransientMortalCacheEntry readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object k = input.readObject();
          Object v = input.readObject();
+         long version = UnsignedNumeric.readUnsignedLong(input);
          long created = UnsignedNumeric.readUnsignedLong(input);
          Long lifespan = input.readLong();
          long lastUsed = UnsignedNumeric.readUnsignedLong(input);
          Long maxIdle = input.readLong();
-         return new TransientMortalCacheEntry(k, v, maxIdle, lifespan, lastUsed, created);
+         TransientMortalCacheEntry ice = new TransientMortalCacheEntry(k, v, maxIdle, lifespan, lastUsed, created);
+         ice.setVersion(version);
+         return ice;
       }
 
       @Override
@@ -80,7 +80,9 @@ public class TransientMortalCacheValue extends MortalCacheValue {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new TransientMortalCacheEntry(key, value, maxIdle, lifespan, lastUsed, created);
+      InternalCacheEntry ice = new TransientMortalCacheEntry(key, value, maxIdle, lifespan, lastUsed, created);
+      ice.setVersion(version);
+      return ice;
    }
 
    @Override
@@ -122,6 +124,7 @@ public class TransientMortalCacheValue extends MortalCacheValue {
       @Override
       public void writeObject(ObjectOutput output, TransientMortalCacheValue value) throws IOException {
          output.writeObject(value.value);
+         UnsignedNumeric.writeUnsignedLong(output, value.version);
          UnsignedNumeric.writeUnsignedLong(output, value.created);
          output.writeLong(value.lifespan); // could be negative so should not use unsigned longs
          UnsignedNumeric.writeUnsignedLong(output, value.lastUsed);
@@ -131,11 +134,14 @@ public class TransientMortalCacheValue extends MortalCacheValue {
       @Override
       public TransientMortalCacheValue readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object v = input.readObject();
+         long version = UnsignedNumeric.readUnsignedLong(input);
          long created = UnsignedNumeric.readUnsignedLong(input);
          Long lifespan = input.readLong();
          long lastUsed = UnsignedNumeric.readUnsignedLong(input);
          Long maxIdle = input.readLong();
-         return new TransientMortalCacheValue(v, created, lifespan, maxIdle, lastUsed);
+         TransientMortalCacheValue icv = new TransientMortalCacheValue(v, created, lifespan, maxIdle, lastUsed);
+         icv.version = version;
+         return icv;
       }
 
       @Override
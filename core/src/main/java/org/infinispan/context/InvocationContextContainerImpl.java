@@ -87,6 +87,8 @@ public class InvocationContextContainerImpl implements InvocationContextContaine
             nonTxContext = (NonTxInvocationContext) existing;
          }
          nonTxContext.setOriginLocal(true);
+         // the context may have served a remote invocation before
+         nonTxContext.setOrigin(null);
          return nonTxContext;
       }
    }
@@ -117,6 +119,7 @@ public class InvocationContextContainerImpl implements InvocationContextContaine
       if (existing != null && existing instanceof NonTxInvocationContext) {
          NonTxInvocationContext context = (NonTxInvocationContext) existing;
          context.setOriginLocal(true);
+         context.setOrigin(null);
          return context;
       }
       NonTxInvocationContext remoteTxContext = new NonTxInvocationContext();
@@ -26,11 +26,21 @@ import org.infinispan.container.entries.CacheEntry;
 import org.infinispan.util.BidirectionalLinkedHashMap;
 import org.infinispan.util.BidirectionalMap;
 import org.infinispan.util.InfinispanCollections;
+import org.infinispan.util.ReversibleOrderedSet;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * Context to be used for non transactional calls, both remote and local.
+ * <p/>
+ * Most non transactional invocations only ever look up a single key, so the first entry looked up is held in fields
+ * and exposed through a reusable view, rather than in a map.  Entries are only moved into a map once a second key is
+ * looked up, and that map is kept and cleared across invocations, since contexts are reused by the thread they are
+ * associated with.
  *
  * @author Mircea.Markus@jboss.com
  * @since 4.0
@@ -39,32 +49,60 @@ public class NonTxInvocationContext extends AbstractInvocationContext {
 
    protected BidirectionalLinkedHashMap<Object, CacheEntry> lookedUpEntries = null;
 
+   // the only looked up entry, as long as lookedUpEntries is empty; keys are never null
+   private Object singleKey;
+   private CacheEntry singleEntry;
+   private SingleEntryMap singleEntryMap;
+
    public CacheEntry lookupEntry(Object k) {
+      if (singleKey != null) return singleKey.equals(k) ? singleEntry : null;
       return lookedUpEntries == null ? null : lookedUpEntries.get(k);
    }
 
    public void removeLookedUpEntry(Object key) {
-      if (lookedUpEntries != null) lookedUpEntries.remove(key);
+      if (singleKey != null) {
+         if (singleKey.equals(key)) {
+            singleKey = null;
+            singleEntry = null;
+         }
+      } else if (lookedUpEntries != null) {
+         lookedUpEntries.remove(key);
+      }
    }
 
    public void putLookedUpEntry(Object key, CacheEntry e) {
-      initLookedUpEntries();
-      lookedUpEntries.put(key, e);
+      if (lookedUpEntries != null && !lookedUpEntries.isEmpty()) {
+         lookedUpEntries.put(key, e);
+      } else if (singleKey == null || singleKey.equals(key)) {
+         singleKey = key;
+         singleEntry = e;
+      } else {
+         initLookedUpEntries();
+         lookedUpEntries.put(singleKey, singleEntry);
+         lookedUpEntries.put(key, e);
+         singleKey = null;
+         singleEntry = null;
+      }
    }
 
    public void putLookedUpEntries(Map<Object, CacheEntry> newLookedUpEntries) {
-      initLookedUpEntries();
       for (Map.Entry<Object, CacheEntry> ce: newLookedUpEntries.entrySet()) {
-         lookedUpEntries.put(ce.getKey(), ce.getValue());
+         putLookedUpEntry(ce.getKey(), ce.getValue());
       }
    }
 
    public void clearLookedUpEntries() {
+      singleKey = null;
+      singleEntry = null;
       if (lookedUpEntries != null) lookedUpEntries.clear();
    }
 
    @SuppressWarnings("unchecked")
    public BidirectionalMap<Object, CacheEntry> getLookedUpEntries() {
+      if (singleKey != null) {
+         if (singleEntryMap == null) singleEntryMap = new SingleEntryMap();
+         return singleEntryMap;
+      }
       return (BidirectionalMap<Object, CacheEntry>)
             (lookedUpEntries == null ? InfinispanCollections.emptyBidirectionalMap() : lookedUpEntries);
    }
@@ -98,9 +136,135 @@ public class NonTxInvocationContext extends AbstractInvocationContext {
    @Override
    public NonTxInvocationContext clone() {
       NonTxInvocationContext dolly = (NonTxInvocationContext) super.clone();
+      // the view is bound to this instance
+      dolly.singleEntryMap = null;
       if (lookedUpEntries != null) {
          dolly.lookedUpEntries = new BidirectionalLinkedHashMap<Object, CacheEntry>(lookedUpEntries);
       }
       return dolly;
    }
+
+   /**
+    * A live view of the single looked up entry.  Updates through the view are applied to the context.
+    */
+   private final class SingleEntryMap extends AbstractMap<Object, CacheEntry> implements BidirectionalMap<Object, CacheEntry> {
+
+      private final ReversibleOrderedSet<Object> keySet = new SingletonSet<Object>() {
+         @Override
+         Object element() {
+            return singleKey;
+         }
+      };
+
+      private final Map.Entry<Object, CacheEntry> entry = new Map.Entry<Object, CacheEntry>() {
+         public Object getKey() {
+            return singleKey;
+         }
+
+         public CacheEntry getValue() {
+            return singleEntry;
+         }
+
+         public CacheEntry setValue(CacheEntry value) {
+            CacheEntry old = singleEntry;
+            singleEntry = value;
+            return old;
+         }
+
+         @Override
+         public String toString() {
+            return singleKey + "=" + singleEntry;
+         }
+      };
+
+      private final ReversibleOrderedSet<Map.Entry<Object, CacheEntry>> entrySet = new SingletonSet<Map.Entry<Object, CacheEntry>>() {
+         @Override
+         Map.Entry<Object, CacheEntry> element() {
+            return singleKey == null ? null : entry;
+         }
+      };
+
+      @Override
+      public int size() {
+         return singleKey == null ? 0 : 1;
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+         return singleKey != null && singleKey.equals(key);
+      }
+
+      @Override
+      public CacheEntry get(Object key) {
+         return lookupEntry(key);
+      }
+
+      @Override
+      public CacheEntry put(Object key, CacheEntry value) {
+         CacheEntry old = lookupEntry(key);
+         putLookedUpEntry(key, value);
+         return old;
+      }
+
+      @Override
+      public CacheEntry remove(Object key) {
+         CacheEntry old = lookupEntry(key);
+         removeLookedUpEntry(key);
+         return old;
+      }
+
+      @Override
+      public void clear() {
+         clearLookedUpEntries();
+      }
+
+      @Override
+      public ReversibleOrderedSet<Object> keySet() {
+         return keySet;
+      }
+
+      @Override
+      public ReversibleOrderedSet<Map.Entry<Object, CacheEntry>> entrySet() {
+         return entrySet;
+      }
+   }
+
+   /**
+    * A set of at most one element, read through {@link #element()}; iterating it in either direction is the same.
+    */
+   private abstract class SingletonSet<E> extends AbstractSet<E> implements ReversibleOrderedSet<E> {
+
+      abstract E element();
+
+      @Override
+      public int size() {
+         return singleKey == null ? 0 : 1;
+      }
+
+      @Override
+      public Iterator<E> iterator() {
+         return new Iterator<E>() {
+            boolean done = singleKey == null;
+
+            public boolean hasNext() {
+               return !done;
+            }
+
+            public E next() {
+               if (done) throw new NoSuchElementException();
+               done = true;
+               return element();
+            }
+
+            public void remove() {
+               if (!done || singleKey == null) throw new IllegalStateException();
+               removeLookedUpEntry(singleKey);
+            }
+         };
+      }
+
+      public Iterator<E> reverseIterator() {
+         return iterator();
+      }
+   }
 }
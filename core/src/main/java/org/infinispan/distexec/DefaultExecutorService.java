@@ -68,6 +68,7 @@ import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.SuccessfulResponse;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyDistanceComparator;
 import org.infinispan.util.Util;
 import org.infinispan.util.concurrent.FutureListener;
 import org.infinispan.util.concurrent.NotifyingFuture;
@@ -315,7 +316,7 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
          DistributedExecuteCommand<T> c = factory.buildDistributedExecuteCommand(task, me, Arrays.asList(input));
          DistributedRunnableFuture<T> f = new DistributedRunnableFuture<T>(c);
          ArrayList<Address> nodes = new ArrayList<Address>(nodesKeysMap.keySet());
-         executeFuture(selectExecutionNode(nodes), f);         
+         executeFuture(selectNearestExecutionNode(nodes), f);         
          return f;
       } else {
          return submit(task);
@@ -421,9 +422,11 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
 
    protected <K> Map<Address, List<K>> mapKeysToNodes(K... input) {
       DistributionManager dm = cache.getDistributionManager();
+      TopologyDistanceComparator nearestFirst = new TopologyDistanceComparator(rpc.getAddress());
       Map<Address, List<K>> addressToKey = new HashMap<Address, List<K>>();
       for (K key : input) {
-         List<Address> nodesForKey = dm.locate(key);
+         // run against the owner nearest to us, so that input keys don't have to cross racks or sites
+         List<Address> nodesForKey = nearestFirst.sort(dm.locate(key));
          Address ownerOfKey = nodesForKey.get(0);
          List<K> keysAtNode = addressToKey.get(ownerOfKey);
          if (keysAtNode == null) {
@@ -440,6 +443,14 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
       return list.get(0);
    }
    
+   /**
+    * Selects a random node among the candidates nearest to this node in the cluster topology.
+    */
+   protected Address selectNearestExecutionNode(List<Address> candidates) {
+      List<List<Address>> byDistance = new TopologyDistanceComparator(rpc.getAddress()).groupByDistance(candidates);
+      return selectExecutionNode(byDistance.isEmpty() ? candidates : byDistance.get(0));
+   }
+
    protected Address selectExecutionNode() {
      return selectExecutionNode(rpc.getTransport().getMembers());     
    }
@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distexec.mapreduce;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+
+/**
+ * Node local support for {@link MapReduceTask} execution. Holds the worker pool used to run the map and reduce
+ * phases in parallel, and the intermediate key/value pairs pushed to this node because it is the primary owner of
+ * their intermediate keys, until the reduce phase for their task runs.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+@Scope(Scopes.NAMED_CACHE)
+public interface MapReduceManager {
+
+   /**
+    * @return the executor used to run map and reduce work in parallel on this node
+    */
+   ExecutorService getExecutorService();
+
+   /**
+    * Merges intermediate results of a task into the results already received by this node.
+    *
+    * @param taskId id of the task the results belong to
+    * @param intermediateResults intermediate keys mapped to the values emitted, or combined, for them
+    */
+   void addIntermediateResults(String taskId, Map<Object, List<Object>> intermediateResults);
+
+   /**
+    * Removes and returns all intermediate results received for a task.
+    *
+    * @param taskId id of the task
+    * @return intermediate results received for the task, or an empty map if none were received
+    */
+   Map<Object, List<Object>> removeIntermediateResults(String taskId);
+}
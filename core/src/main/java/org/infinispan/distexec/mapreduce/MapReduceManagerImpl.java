@@ -0,0 +1,132 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distexec.mapreduce;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * Default {@link MapReduceManager}. The worker pool is only created once a task actually runs on this node, so caches
+ * that never execute a {@link MapReduceTask} do not pay for its threads.
+ *
+ * @since 5.0
+ */
+public class MapReduceManagerImpl implements MapReduceManager {
+
+   private static final Log log = LogFactory.getLog(MapReduceManagerImpl.class);
+
+   private final ConcurrentMap<String, Map<Object, List<Object>>> intermediateResults = new ConcurrentHashMap<String, Map<Object, List<Object>>>();
+   private Configuration configuration;
+   private volatile ExecutorService executorService;
+
+   @Inject
+   public void init(Configuration configuration) {
+      this.configuration = configuration;
+   }
+
+   @Stop
+   public void stop() {
+      synchronized (this) {
+         if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+         }
+      }
+      if (!intermediateResults.isEmpty())
+         log.debugf("Discarding intermediate results of unfinished MapReduce tasks %s", intermediateResults.keySet());
+      intermediateResults.clear();
+   }
+
+   @Override
+   public ExecutorService getExecutorService() {
+      ExecutorService executor = executorService;
+      if (executor == null) {
+         synchronized (this) {
+            executor = executorService;
+            if (executor == null) {
+               executor = createExecutor();
+               executorService = executor;
+            }
+         }
+      }
+      return executor;
+   }
+
+   @Override
+   public void addIntermediateResults(String taskId, Map<Object, List<Object>> results) {
+      Map<Object, List<Object>> taskResults = intermediateResults.get(taskId);
+      if (taskResults == null) {
+         taskResults = new HashMap<Object, List<Object>>();
+         Map<Object, List<Object>> existing = intermediateResults.putIfAbsent(taskId, taskResults);
+         if (existing != null) taskResults = existing;
+      }
+      synchronized (taskResults) {
+         for (Entry<Object, List<Object>> e : results.entrySet()) {
+            List<Object> values = taskResults.get(e.getKey());
+            if (values == null) {
+               values = new ArrayList<Object>(e.getValue().size());
+               taskResults.put(e.getKey(), values);
+            }
+            values.addAll(e.getValue());
+         }
+      }
+   }
+
+   @Override
+   public Map<Object, List<Object>> removeIntermediateResults(String taskId) {
+      Map<Object, List<Object>> taskResults = intermediateResults.remove(taskId);
+      if (taskResults == null) return Collections.emptyMap();
+      synchronized (taskResults) {
+         return taskResults;
+      }
+   }
+
+   private ExecutorService createExecutor() {
+      final String threadNamePrefix = "MapReduceWorker-" + configuration.getName();
+      final AtomicInteger counter = new AtomicInteger(0);
+      ThreadFactory tf = new ThreadFactory() {
+         public Thread newThread(Runnable r) {
+            Thread th = new Thread(r, threadNamePrefix + "-" + counter.getAndIncrement());
+            th.setDaemon(true);
+            return th;
+         }
+      };
+      return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), tf);
+   }
+}
@@ -23,6 +23,7 @@
 package org.infinispan.distexec.mapreduce;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,6 +31,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -40,12 +42,11 @@ import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
 import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.read.IntermediateResultsCommand;
 import org.infinispan.commands.read.MapReduceCommand;
-import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.distribution.DistributionManager;
-import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.factories.GlobalComponentRegistry;
-import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.lifecycle.ComponentStatus;
 import org.infinispan.marshall.Marshaller;
 import org.infinispan.marshall.StreamingMarshaller;
@@ -136,6 +137,8 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
 
    private Mapper<KIn, VIn, KOut, VOut> mapper;
    private Reducer<KOut, VOut> reducer;
+   private Reducer<KOut, VOut> combiner;
+   private final boolean distributeReducePhase;
 
    private final Collection<KIn> keys;
    private final AdvancedCache<KIn, VIn> cache;
@@ -149,6 +152,22 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
     *           cache node initiating map reduce task
     */
    public MapReduceTask(Cache<KIn, VIn> masterCacheNode) {
+      this(masterCacheNode, true);
+   }
+
+   /**
+    * Create a new MapReduceTask given a master cache node. All distributed task executions will be
+    * initiated from this cache node.
+    * 
+    * @param masterCacheNode
+    *           cache node initiating map reduce task
+    * @param distributeReducePhase
+    *           if true intermediate keys are reduced in parallel by their primary owners and only reduced values are
+    *           sent back to the master node; if false each node returns its locally reduced intermediate results
+    *           and the final reduce runs on the master node
+    */
+   public MapReduceTask(Cache<KIn, VIn> masterCacheNode, boolean distributeReducePhase) {
+      this.distributeReducePhase = distributeReducePhase;
       if (masterCacheNode == null)
          throw new NullPointerException("Can not use " + masterCacheNode
                   + " cache for MapReduceTask");
@@ -183,6 +202,9 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
     * non-static contexts contain implicit non-transient references to enclosing class instances,
     * serializing such an inner class instance will result in serialization of its associated outer
     * class instance as well.
+    * <p>
+    * Input keys of each node are mapped in parallel, so a Mapper instance may be invoked concurrently by
+    * several threads and should keep no unsynchronized state.
     * 
     * @param mapper
     * @return
@@ -213,6 +235,25 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
       return this;
    }
 
+   /**
+    * Specifies an optional Combiner to use for this MapReduceTask. The combiner reduces intermediate values emitted
+    * on each node before they are sent over the network for the reduce phase, and therefore has to be a function
+    * whose output can be fed back to the {@link Reducer} as an intermediate value. If no combiner is specified and
+    * the reduce phase is distributed, all values emitted by mappers are shipped to the reducing nodes.
+    * 
+    * <p>
+    * Note that combiner should not be specified as inner class, for the same reasons as {@link Reducer}.
+    * 
+    * @param combiner
+    * @return this task
+    */
+   public MapReduceTask<KIn, VIn, KOut, VOut> combinedWith(Reducer<KOut, VOut> combiner) {
+      if (combiner == null)
+         throw new NullPointerException("A valid reference of Combiner is needed " + combiner);
+      this.combiner = combiner;
+      return this;
+   }
+
    /**
     * Executes this task across Infinispan cluster nodes.
     * 
@@ -225,39 +266,71 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
       
       if (reducer == null)
          throw new NullPointerException("A valid reference of Reducer is not set " + reducer);
-            
-      ComponentRegistry registry = cache.getComponentRegistry();
+
+      String taskId = UUID.randomUUID().toString();
+      Map<Address, Object> mapResults;
+      try {
+         mapResults = executeMapPhase(taskId);
+         if (distributeReducePhase) routeIntermediateResults(taskId, mapResults);
+      } catch (CacheException e) {
+         if (distributeReducePhase) discardIntermediateResults(taskId);
+         throw e;
+      }
+      if (distributeReducePhase)
+         return executeReducePhase(taskId);
+
+      // we have results from all nodes now, group intermediate keys for final reduction
+      Map<KOut, List<VOut>> reduceMap = new HashMap<KOut, List<VOut>>();
+      for (Object nodeResult : mapResults.values()) {
+         groupKeys(reduceMap, (Map<KOut, VOut>) nodeResult);
+      }
+
+      // final reduce
+      Map<KOut, VOut> result = new HashMap<KOut, VOut>();
+      for (Entry<KOut, List<VOut>> entry : reduceMap.entrySet()) {
+         VOut reduced = reducer.reduce(entry.getKey(), (entry.getValue()).iterator());
+         result.put(entry.getKey(), reduced);
+      }
+      return result;
+   }
+
+   /**
+    * Invokes MapReduceCommand on the nodes owning input keys, or on all nodes if no input keys were specified, and
+    * waits for all of them to complete. The local node maps its share while remote nodes are working.
+    * 
+    * @return the result of the map phase of each node
+    */
+   protected Map<Address, Object> executeMapPhase(String taskId) throws CacheException {
       RpcManager rpc = cache.getRpcManager();
-      InvocationContextContainer icc = cache.getInvocationContextContainer();
-      DistributionManager dm = cache.getDistributionManager();
-      InterceptorChain invoker = registry.getComponent(InterceptorChain.class);
-      CommandsFactory factory = registry.getComponent(CommandsFactory.class);
-      
-      MapReduceCommand cmd = null;
+      CommandsFactory factory = cache.getComponentRegistry().getComponent(CommandsFactory.class);
+
       MapReduceCommand selfCmd = null;
-      Map<Address, Response> results = new HashMap<Address, Response>();
+      List<MapReduceFuture> futures = new ArrayList<MapReduceFuture>();
       if (inputTaskKeysEmpty()) {
-         cmd = factory.buildMapReduceCommand(mapper, reducer, rpc.getAddress(), keys);
-         selfCmd = cmd;
+         MapReduceCommand cmd = factory.buildMapReduceCommand(taskId, mapper, reducer, combiner,
+                  distributeReducePhase, rpc.getAddress(), keys);
+         selfCmd = factory.buildMapReduceCommand(taskId, clone(mapper), clone(reducer), clone(combiner),
+                  distributeReducePhase, rpc.getAddress(), keys);
          try {
             log.debugf("Invoking %s across entire cluster ", cmd);
-            Map<Address, Response> map = rpc.invokeRemotely(null, cmd, true, false);
-            log.debugf("Invoked %s across entire cluster, results are %s", cmd, map);
-            results.putAll(map);
-         } catch (Throwable e) {
+            MapReduceFuture future = new MapReduceFuture();
+            futures.add(future);
+            rpc.invokeRemotelyInFuture(null, cmd, future);
+         } catch (Exception e) {
             throw new CacheException("Could not invoke MapReduce task on remote nodes ", e);
          }
       } else {
          Map<Address, List<KIn>> keysToNodes = mapKeysToNodes();
          log.debugf("Keys to nodes mapping is " + keysToNodes);
-         List<MapReduceFuture> futures = new ArrayList<MapReduceFuture>();
          for (Entry<Address, List<KIn>> e : keysToNodes.entrySet()) {
             Address address = e.getKey();
             List<KIn> keys = e.getValue();
             if (address.equals(rpc.getAddress())) {
-               selfCmd = factory.buildMapReduceCommand(clone(mapper), clone(reducer), rpc.getAddress(), keys);
+               selfCmd = factory.buildMapReduceCommand(taskId, clone(mapper), clone(reducer), clone(combiner),
+                        distributeReducePhase, rpc.getAddress(), keys);
             } else {
-               cmd = factory.buildMapReduceCommand(mapper, reducer, rpc.getAddress(), keys);
+               MapReduceCommand cmd = factory.buildMapReduceCommand(taskId, mapper, reducer, combiner,
+                        distributeReducePhase, rpc.getAddress(), keys);
                try {
                   log.debugf("Invoking %s on %s", cmd, address);
                   MapReduceFuture future = new MapReduceFuture();
@@ -269,59 +342,170 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
                }
             }
          }
-         for (MapReduceFuture future : futures) {
-            Map<Address, Response> result;
-            try {
-               result = (Map<Address, Response>) future.get();               
-               results.putAll(result);
-               log.debugf("Received result from future %s", result);
-            } catch (Exception e1) {
-               throw new CacheException("Could not retrieve MapReduceTask result from remote node", e1);
-            }            
-         }
       }
-      boolean selfInvoke = selfCmd != null;
-      Object localCommandResult = null;
-      if (selfInvoke) {
-         log.debugf("Invoking %s locally", cmd);
-         selfCmd.init(factory, invoker, icc, dm, rpc.getAddress());
+
+      Map<Address, Object> results = new HashMap<Address, Object>();
+      if (selfCmd != null) {
+         log.debugf("Invoking %s locally", selfCmd);
+         factory.initializeReplicableCommand(selfCmd, false);
          try {
-            localCommandResult = selfCmd.perform(null);
-            log.debugf("Invoked %s locally", cmd);
+            results.put(rpc.getAddress(), selfCmd.perform(null));
+            log.debugf("Invoked %s locally", selfCmd);
          } catch (Throwable e1) {
             throw new CacheException("Could not invoke MapReduce task locally ", e1);
          }
       }
+      for (MapReduceFuture future : futures) {
+         collectResponses(results, future, "MapReduce");
+      }
+      return results;
+   }
 
-      // we have results from all nodes now, group intermediate keys for final reduction
-      Map<KOut, List<VOut>> reduceMap = new HashMap<KOut, List<VOut>>();
-      for (Entry<Address, Response> e : results.entrySet()) {
-         Response rsp = e.getValue();
-         if (rsp.isSuccessful() && rsp.isValid()) {            
-            Map<KOut, VOut> reducedResponse = (Map<KOut, VOut>) ((SuccessfulResponse) rsp).getResponseValue();
-            groupKeys(reduceMap, reducedResponse);
-         } else if (rsp instanceof ExceptionResponse) {
-            throw new CacheException("MapReduce task on remote node " + e.getKey()
-                     + " threw Exception", ((ExceptionResponse) rsp).getException());
+   /**
+    * Sends the intermediate results returned by the map phase to the primary owners of their keys, merging what
+    * different nodes emitted for the same owner into a single command. Map nodes leave these results to the master
+    * instead of pushing them to each other, so that no node handling a command ever waits on another node.
+    */
+   @SuppressWarnings("unchecked")
+   protected void routeIntermediateResults(String taskId, Map<Address, Object> mapResults) throws CacheException {
+      Map<Address, Map<Object, List<Object>>> byOwner = new HashMap<Address, Map<Object, List<Object>>>();
+      for (Object nodeResult : mapResults.values()) {
+         for (Entry<Address, Map<Object, List<Object>>> partition : ((Map<Address, Map<Object, List<Object>>>) nodeResult).entrySet()) {
+            Map<Object, List<Object>> merged = byOwner.get(partition.getKey());
+            if (merged == null) {
+               byOwner.put(partition.getKey(), partition.getValue());
+               continue;
+            }
+            for (Entry<Object, List<Object>> e : partition.getValue().entrySet()) {
+               List<Object> values = merged.get(e.getKey());
+               if (values == null)
+                  merged.put(e.getKey(), e.getValue());
+               else
+                  values.addAll(e.getValue());
+            }
+         }
+      }
+
+      RpcManager rpc = cache.getRpcManager();
+      CommandsFactory factory = cache.getComponentRegistry().getComponent(CommandsFactory.class);
+      List<MapReduceFuture> futures = new ArrayList<MapReduceFuture>(byOwner.size());
+      for (Entry<Address, Map<Object, List<Object>>> e : byOwner.entrySet()) {
+         IntermediateResultsCommand cmd = factory.buildIntermediateResultsCommand(taskId, e.getValue());
+         if (e.getKey().equals(rpc.getAddress())) {
+            factory.initializeReplicableCommand(cmd, false);
+            try {
+               cmd.perform(null);
+            } catch (Throwable t) {
+               throw new CacheException("Could not store intermediate results of MapReduce task locally", t);
+            }
          } else {
-            throw new CacheException("MapReduce task on remote node " + e.getKey() + " failed ");
+            try {
+               MapReduceFuture future = new MapReduceFuture();
+               futures.add(future);
+               rpc.invokeRemotelyInFuture(Collections.singleton(e.getKey()), cmd, future);
+            } catch (Exception ex) {
+               throw new CacheException("Could not send intermediate results of MapReduce task to " + e.getKey(), ex);
+            }
          }
       }
+      for (MapReduceFuture future : futures) {
+         try {
+            future.get();
+         } catch (Exception e) {
+            throw new CacheException("Could not send intermediate results of MapReduce task " + taskId, e);
+         }
+      }
+   }
+
+   /**
+    * Invokes ReduceCommand on every node, each of them reducing the intermediate keys it is the primary owner of, and
+    * merges their disjoint results as they are received.
+    */
+   @SuppressWarnings("unchecked")
+   protected Map<KOut, VOut> executeReducePhase(String taskId) throws CacheException {
+      RpcManager rpc = cache.getRpcManager();
+      CommandsFactory factory = cache.getComponentRegistry().getComponent(CommandsFactory.class);
 
-      if (selfInvoke) {
-         groupKeys(reduceMap, (Map<KOut, VOut>) localCommandResult);
+      ReduceCommand cmd = factory.buildReduceCommand(taskId, reducer);
+      List<MapReduceFuture> futures = new ArrayList<MapReduceFuture>();
+      for (Address address : rpc.getTransport().getMembers()) {
+         if (address.equals(rpc.getAddress())) continue;
+         try {
+            log.debugf("Invoking %s on %s", cmd, address);
+            MapReduceFuture future = new MapReduceFuture();
+            futures.add(future);
+            rpc.invokeRemotelyInFuture(Collections.singleton(address), cmd, future);
+         } catch (Exception ex) {
+            throw new CacheException("Could not invoke reduce phase of MapReduceTask on remote node " + address, ex);
+         }
       }
 
-      // final reduce
-      //TODO parallelize into Executor
+      ReduceCommand selfCmd = factory.buildReduceCommand(taskId, clone(reducer));
+      factory.initializeReplicableCommand(selfCmd, false);
       Map<KOut, VOut> result = new HashMap<KOut, VOut>();
-      for (Entry<KOut, List<VOut>> entry : reduceMap.entrySet()) {
-         VOut reduced = reducer.reduce(entry.getKey(), (entry.getValue()).iterator());
-         result.put(entry.getKey(), reduced);
+      try {
+         mergeReduced(result, (Map<KOut, VOut>) selfCmd.perform(null));
+      } catch (Throwable e) {
+         throw new CacheException("Could not invoke reduce phase of MapReduce task locally ", e);
+      }
+      for (MapReduceFuture future : futures) {
+         Map<Address, Object> nodeResults = new HashMap<Address, Object>();
+         collectResponses(nodeResults, future, "Reduce phase of MapReduce");
+         for (Object nodeResult : nodeResults.values()) {
+            mergeReduced(result, (Map<KOut, VOut>) nodeResult);
+         }
       }
       return result;
    }
 
+   /**
+    * Intermediate keys are reduced on their primary owner so results from different nodes are disjoint, unless the
+    * owner of a key changed while the task was running. Values reduced on different nodes are then reduced together.
+    */
+   protected void mergeReduced(Map<KOut, VOut> result, Map<KOut, VOut> reduced) {
+      for (Entry<KOut, VOut> e : reduced.entrySet()) {
+         VOut existing = result.put(e.getKey(), e.getValue());
+         if (existing != null) {
+            result.put(e.getKey(), reducer.reduce(e.getKey(), Arrays.asList(existing, e.getValue()).iterator()));
+         }
+      }
+   }
+
+   private void discardIntermediateResults(String taskId) {
+      RpcManager rpc = cache.getRpcManager();
+      CommandsFactory factory = cache.getComponentRegistry().getComponent(CommandsFactory.class);
+      ReduceCommand cmd = factory.buildReduceCommand(taskId, null);
+      try {
+         rpc.invokeRemotely(null, cmd, false);
+         factory.initializeReplicableCommand(cmd, false);
+         cmd.perform(null);
+      } catch (Throwable e) {
+         log.debugf("Could not discard intermediate results of MapReduce task %s: %s", taskId, e);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private void collectResponses(Map<Address, Object> results, MapReduceFuture future, String phase) {
+      Map<Address, Response> responses;
+      try {
+         responses = (Map<Address, Response>) future.get();
+         log.debugf("Received result from future %s", responses);
+      } catch (Exception e1) {
+         throw new CacheException("Could not retrieve " + phase + " task result from remote node", e1);
+      }
+      for (Entry<Address, Response> e : responses.entrySet()) {
+         Response rsp = e.getValue();
+         if (rsp.isSuccessful() && rsp.isValid()) {
+            results.put(e.getKey(), ((SuccessfulResponse) rsp).getResponseValue());
+         } else if (rsp instanceof ExceptionResponse) {
+            throw new CacheException(phase + " task on remote node " + e.getKey()
+                     + " threw Exception", ((ExceptionResponse) rsp).getException());
+         } else {
+            throw new CacheException(phase + " task on remote node " + e.getKey() + " failed ");
+         }
+      }
+   }
+
    /**
     * Executes this task across Infinispan cluster nodes asynchronously.
     * 
@@ -427,7 +611,7 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
    }
    
    protected Reducer<KOut, VOut> clone(Reducer<KOut, VOut> reducer){      
-      return Util.cloneWithMarshaller(marshaller, reducer);
+      return reducer == null ? null : Util.cloneWithMarshaller(marshaller, reducer);
    }
    
    private void ensureProperCacheState(AdvancedCache<KIn, VIn> cache) throws NullPointerException,
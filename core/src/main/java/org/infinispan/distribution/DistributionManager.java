@@ -116,6 +116,19 @@ public interface DistributionManager {
     */
    InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext ctx) throws Exception;
 
+   /**
+    * Retrieves several cache entries from remote sources.  Keys are grouped by owner and a single {@link
+    * org.infinispan.commands.remote.ClusteredGetAllCommand} is sent to each owner, all owners being contacted in
+    * parallel.  Keys an owner could not answer for, e.g. because of a rehash in progress, are looked up individually
+    * using {@link #retrieveFromRemoteSource(Object, org.infinispan.context.InvocationContext)}.
+    *
+    * @param keys keys to look up
+    * @param ctx invocation context
+    * @return a map of the keys that could be located to their internal cache entries, never null
+    * @throws Exception if something bad happens
+    */
+   Map<Object, InternalCacheEntry> retrieveFromRemoteSources(Collection<Object> keys, InvocationContext ctx) throws Exception;
+
    /**
     * Retrieves the consistent hash instance currently in use, which may be an instance of the configured ConsistentHash
     * instance (which defaults to {@link org.infinispan.distribution.ch.DefaultConsistentHash}, or an instance of
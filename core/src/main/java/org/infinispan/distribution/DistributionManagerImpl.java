@@ -24,6 +24,7 @@ package org.infinispan.distribution;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.RehashControlCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.WriteCommand;
@@ -36,6 +37,8 @@ import org.infinispan.context.InvocationContext;
 import org.infinispan.context.InvocationContextContainer;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
@@ -52,14 +55,17 @@ import org.infinispan.notifications.cachemanagerlistener.annotation.Merged;
 import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged;
 import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent;
 import org.infinispan.remoting.InboundInvocationHandler;
-import org.infinispan.remoting.responses.ClusteredGetResponseValidityFilter;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.SuccessfulResponse;
-import org.infinispan.remoting.rpc.ResponseFilter;
+import org.infinispan.remoting.rpc.NearestFirstClusteredGet;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyDistanceComparator;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
@@ -85,6 +91,7 @@ import static org.infinispan.context.Flag.*;
 public class DistributionManagerImpl implements DistributionManager {
    private static final Log log = LogFactory.getLog(DistributionManagerImpl.class);
    private static final boolean trace = log.isTraceEnabled();
+   private static final long MIN_STAGGER_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
 
    // Injected components
    private CacheLoaderManager cacheLoaderManager;
@@ -97,6 +104,10 @@ public class DistributionManagerImpl implements DistributionManager {
    private InterceptorChain interceptorChain;
    private InvocationContextContainer icc;
    private CacheNotifier cacheNotifier;
+   private ExecutorService asyncTransportExecutor;
+   private OwnerLatencyTracker latencyTracker;
+   private TopologyDistanceComparator nearestFirst;
+   private NearestFirstClusteredGet nearestFirstGet;
 
    private final ViewChangeListener listener;
    private final ExecutorService rehashExecutor;
@@ -149,7 +160,8 @@ public class DistributionManagerImpl implements DistributionManager {
    public void init(Configuration configuration, RpcManager rpcManager, CacheManagerNotifier notifier, CommandsFactory cf,
                     DataContainer dataContainer, InterceptorChain interceptorChain, InvocationContextContainer icc,
                     CacheLoaderManager cacheLoaderManager, InboundInvocationHandler inboundInvocationHandler,
-                    CacheNotifier cacheNotifier) {
+                    CacheNotifier cacheNotifier,
+                    @ComponentName(KnownComponentNames.ASYNC_TRANSPORT_EXECUTOR) ExecutorService asyncTransportExecutor) {
       this.cacheLoaderManager = cacheLoaderManager;
       this.configuration = configuration;
       this.rpcManager = rpcManager;
@@ -160,6 +172,8 @@ public class DistributionManagerImpl implements DistributionManager {
       this.interceptorChain = interceptorChain;
       this.icc = icc;
       this.cacheNotifier = cacheNotifier;
+      this.asyncTransportExecutor = asyncTransportExecutor;
+      this.latencyTracker = new OwnerLatencyTracker(TimeUnit.MILLISECONDS.toNanos(configuration.getSyncReplTimeout()));
    }
 
    // needs to be AFTER the RpcManager
@@ -172,6 +186,8 @@ public class DistributionManagerImpl implements DistributionManager {
       Transport t = rpcManager.getTransport();
       List<Address> members = t.getMembers();
       self = t.getAddress();
+      nearestFirst = new TopologyDistanceComparator(self);
+      nearestFirstGet = new NearestFirstClusteredGet(rpcManager, nearestFirst, this);
       lastViewId = t.getViewId();
       consistentHash = ConsistentHashHelper.createConsistentHash(configuration, members);
 
@@ -288,24 +304,183 @@ public class DistributionManagerImpl implements DistributionManager {
    }
 
    public InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext ctx) throws Exception {
+      if (configuration.isStaggeredRemoteGets()) return staggeredRetrieveFromRemoteSource(key, ctx);
+
+      List<Address> owners = new ArrayList<Address>(locate(key));
+      owners.remove(self);
+      if (owners.isEmpty()) return null;
+
       ClusteredGetCommand get = cf.buildClusteredGetCommand(key, ctx.getFlags());
+      Map<Address, Response> responses = nearestFirstGet.invoke(owners, get, ResponseMode.SYNCHRONOUS,
+                                                                configuration.getSyncReplTimeout());
+      for (Response r : responses.values()) {
+         if (r instanceof SuccessfulResponse) {
+            InternalCacheValue cacheValue = (InternalCacheValue) ((SuccessfulResponse) r).getResponseValue();
+            return cacheValue.toInternalCacheEntry(key);
+         }
+      }
+      return null;
+   }
 
-      ResponseFilter filter = new ClusteredGetResponseValidityFilter(locate(key));
-      Map<Address, Response> responses = rpcManager.invokeRemotely(locate(key), get, ResponseMode.SYNCHRONOUS,
-                                                                   configuration.getSyncReplTimeout(), false, filter);
+   /**
+    * Sends the remote get to one owner at a time, fastest healthy owner first.  The next owner is contacted if the
+    * current one fails, cannot give an authoritative answer, or does not reply within the stagger delay.  The first
+    * value received wins.
+    */
+   private InternalCacheEntry staggeredRetrieveFromRemoteSource(Object key, InvocationContext ctx) throws Exception {
+      List<Address> owners = latencyTracker.sortByLatency(locate(key), nearestFirst);
+      owners.remove(self);
+      if (owners.isEmpty()) return null;
+
+      final ClusteredGetCommand get = cf.buildClusteredGetCommand(key, ctx.getFlags());
+      final long timeout = configuration.getSyncReplTimeout();
+      CompletionService<Response> completionService = new ExecutorCompletionService<Response>(asyncTransportExecutor);
+      Map<Future<Response>, Address> pending = new HashMap<Future<Response>, Address>(owners.size());
+      Map<Address, Long> sendTimes = new HashMap<Address, Long>(owners.size());
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      int next = 0;
+      try {
+         while (next < owners.size() || !pending.isEmpty()) {
+            long now = System.nanoTime();
+            if (pending.isEmpty()) {
+               sendRemoteGet(completionService, get, owners.get(next++), timeout, pending, sendTimes);
+               continue;
+            }
+            if (now >= deadline) break;
+
+            Future<Response> done;
+            if (next < owners.size()) {
+               long delay = staggerDelayNanos(owners.get(next - 1));
+               done = completionService.poll(Math.min(delay, deadline - now), TimeUnit.NANOSECONDS);
+               if (done == null) {
+                  if (trace) log.tracef("No reply for key %s within %d nanos, also asking %s", key, delay, owners.get(next));
+                  sendRemoteGet(completionService, get, owners.get(next++), timeout, pending, sendTimes);
+                  continue;
+               }
+            } else {
+               done = completionService.poll(deadline - now, TimeUnit.NANOSECONDS);
+               if (done == null) break;
+            }
 
-      if (!responses.isEmpty()) {
-         for (Response r : responses.values()) {
-            if (r instanceof SuccessfulResponse) {
-               InternalCacheValue cacheValue = (InternalCacheValue) ((SuccessfulResponse) r).getResponseValue();
+            Address owner = pending.remove(done);
+            long elapsed = System.nanoTime() - sendTimes.get(owner);
+            Response response;
+            try {
+               response = done.get();
+            } catch (ExecutionException e) {
+               if (trace) log.tracef(e.getCause(), "Remote get for key %s on %s failed", key, owner);
+               latencyTracker.recordFailure(owner);
+               continue;
+            }
+            latencyTracker.recordResponse(owner, elapsed);
+            if (response instanceof SuccessfulResponse) {
+               InternalCacheValue cacheValue = (InternalCacheValue) ((SuccessfulResponse) response).getResponseValue();
                return cacheValue.toInternalCacheEntry(key);
             }
+            // an owner answering nothing does not have the key, unless state is still being moved around
+            if (response == null && !isRehashInProgress() && isJoinComplete()) return null;
+         }
+      } finally {
+         long now = System.nanoTime();
+         for (Map.Entry<Future<Response>, Address> e : pending.entrySet()) {
+            latencyTracker.recordPending(e.getValue(), now - sendTimes.get(e.getValue()));
+            // frees the transport thread still waiting for a reply nobody needs anymore
+            e.getKey().cancel(true);
          }
       }
-
+      if (trace) log.tracef("None of the owners %s returned a value for key %s", owners, key);
       return null;
    }
 
+   private void sendRemoteGet(CompletionService<Response> completionService, final ClusteredGetCommand get,
+                              final Address owner, final long timeout, Map<Future<Response>, Address> pending,
+                              Map<Address, Long> sendTimes) {
+      sendTimes.put(owner, System.nanoTime());
+      Future<Response> future = completionService.submit(new Callable<Response>() {
+         public Response call() throws Exception {
+            Map<Address, Response> responses = rpcManager.invokeRemotely(Collections.singleton(owner), get,
+                                                                         ResponseMode.SYNCHRONOUS, timeout, false, null);
+            return responses == null ? null : responses.get(owner);
+         }
+      });
+      pending.put(future, owner);
+   }
+
+   /**
+    * Twice the average response time of the owner, bounded by the configured stagger delay.
+    */
+   private long staggerDelayNanos(Address owner) {
+      long maxDelay = TimeUnit.MILLISECONDS.toNanos(configuration.getStaggerDelay());
+      long average = latencyTracker.getAverageNanos(owner);
+      return average < 0 ? maxDelay : Math.min(maxDelay, Math.max(MIN_STAGGER_DELAY_NANOS, 2 * average));
+   }
+
+   @SuppressWarnings("unchecked")
+   public Map<Object, InternalCacheEntry> retrieveFromRemoteSources(Collection<Object> keys, InvocationContext ctx) throws Exception {
+      Map<Object, InternalCacheEntry> entries = new HashMap<Object, InternalCacheEntry>(keys.size());
+      List<Object> unanswered = new LinkedList<Object>();
+
+      // group the keys by the first owner that is not the local node
+      Map<Address, List<Object>> keysByOwner = new HashMap<Address, List<Object>>();
+      for (Map.Entry<Object, List<Address>> e : getConsistentHash().locateAll(keys, getReplCount()).entrySet()) {
+         Address target = null;
+         for (Address owner : nearestFirst.sort(e.getValue())) {
+            if (!owner.equals(self)) {
+               target = owner;
+               break;
+            }
+         }
+         if (target == null) {
+            unanswered.add(e.getKey());
+         } else {
+            List<Object> ownerKeys = keysByOwner.get(target);
+            if (ownerKeys == null) keysByOwner.put(target, ownerKeys = new ArrayList<Object>());
+            ownerKeys.add(e.getKey());
+         }
+      }
+
+      Map<Address, RemoteGetFuture> futures = new HashMap<Address, RemoteGetFuture>(keysByOwner.size());
+      for (Map.Entry<Address, List<Object>> e : keysByOwner.entrySet()) {
+         ClusteredGetAllCommand get = cf.buildClusteredGetAllCommand(e.getValue(), ctx.getFlags());
+         RemoteGetFuture future = new RemoteGetFuture();
+         rpcManager.invokeRemotelyInFuture(Collections.singleton(e.getKey()), get, future);
+         futures.put(e.getKey(), future);
+      }
+
+      for (Map.Entry<Address, RemoteGetFuture> e : futures.entrySet()) {
+         Address owner = e.getKey();
+         List<Object> ownerKeys = keysByOwner.get(owner);
+         Map<Object, InternalCacheValue> values = null;
+         try {
+            Map<Address, Response> responses = (Map<Address, Response>) e.getValue().get();
+            Response r = responses == null ? null : responses.get(owner);
+            if (r instanceof SuccessfulResponse)
+               values = (Map<Object, InternalCacheValue>) ((SuccessfulResponse) r).getResponseValue();
+         } catch (ExecutionException ee) {
+            if (trace) log.tracef(ee.getCause(), "Batched remote get on %s failed, looking up keys individually", owner);
+         }
+         if (values == null) {
+            unanswered.addAll(ownerKeys);
+            continue;
+         }
+         for (Object key : ownerKeys) {
+            if (!values.containsKey(key)) {
+               // the owner is affected by a rehash and could not give an authoritative answer
+               unanswered.add(key);
+            } else {
+               InternalCacheValue value = values.get(key);
+               if (value != null) entries.put(key, value.toInternalCacheEntry(key));
+            }
+         }
+      }
+
+      for (Object key : unanswered) {
+         InternalCacheEntry ice = retrieveFromRemoteSource(key, ctx);
+         if (ice != null) entries.put(key, ice);
+      }
+      return entries;
+   }
+
    public Address getSelf() {
       return self;
    }
@@ -326,6 +501,10 @@ public class DistributionManagerImpl implements DistributionManager {
       return isRehashInProgress() && !getConsistentHash().locate(key, getReplCount()).contains(getSelf());
    }
 
+   public OwnerLatencyTracker getLatencyTracker() {
+      return latencyTracker;
+   }
+
    public TransactionLogger getTransactionLogger() {
       return transactionLogger;
    }
@@ -482,6 +661,7 @@ public class DistributionManagerImpl implements DistributionManager {
             rehashInProgressMonitor.notifyAll();
          }
          lastViewId = e.getViewId();
+         latencyTracker.retainAll(e.getNewMembers());
 
          // make sure the pushConfirmations map has one entry for each cluster member
          // we will always have
@@ -577,4 +757,43 @@ public class DistributionManagerImpl implements DistributionManager {
    public void setConfiguration(Configuration configuration) {
       this.configuration = configuration;
    }
+
+   /**
+    * Exposes the responses of an RPC submitted with {@link RpcManager#invokeRemotelyInFuture(java.util.Collection,
+    * org.infinispan.commands.ReplicableCommand, org.infinispan.util.concurrent.NotifyingNotifiableFuture)}.
+    */
+   private static class RemoteGetFuture implements NotifyingNotifiableFuture<Object> {
+      private volatile Future<Object> networkFuture;
+
+      public NotifyingFuture<Object> attachListener(FutureListener<Object> listener) {
+         throw new UnsupportedOperationException();
+      }
+
+      public boolean cancel(boolean mayInterruptIfRunning) {
+         return networkFuture.cancel(mayInterruptIfRunning);
+      }
+
+      public boolean isCancelled() {
+         return networkFuture.isCancelled();
+      }
+
+      public boolean isDone() {
+         return networkFuture.isDone();
+      }
+
+      public Object get() throws InterruptedException, ExecutionException {
+         return networkFuture.get();
+      }
+
+      public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+         return networkFuture.get(timeout, unit);
+      }
+
+      public void notifyDone() {
+      }
+
+      public void setNetworkFuture(Future<Object> future) {
+         this.networkFuture = future;
+      }
+   }
 }
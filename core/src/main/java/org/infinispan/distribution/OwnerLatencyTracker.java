@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.remoting.transport.Address;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of how fast each cluster member answers remote gets, so that reads can be sent to the fastest healthy
+ * owner of a key first.
+ * <p/>
+ * Response times are smoothed with an exponentially weighted moving average.  A member that fails to answer is
+ * considered unhealthy for a quarantine period, during which it is only contacted after all healthy owners.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class OwnerLatencyTracker {
+
+   /**
+    * Weight of the latest sample in the moving average.
+    */
+   private static final double SAMPLE_WEIGHT = 0.2;
+
+   private final ConcurrentMap<Address, Latency> latencies = new ConcurrentHashMap<Address, Latency>();
+   private final long quarantineNanos;
+
+   /**
+    * @param quarantineNanos for how long, in nanoseconds, a member that failed to answer is considered unhealthy
+    */
+   public OwnerLatencyTracker(long quarantineNanos) {
+      this.quarantineNanos = quarantineNanos;
+   }
+
+   /**
+    * Records the time a member took to answer a remote get.  A member that answers is no longer considered unhealthy.
+    */
+   public void recordResponse(Address member, long nanos) {
+      Latency latency = sample(member, nanos);
+      latency.failed = false;
+   }
+
+   /**
+    * Records the time spent waiting for a member that did not answer before the remote get completed, as a lower
+    * bound of its response time.
+    */
+   public void recordPending(Address member, long nanos) {
+      sample(member, nanos);
+   }
+
+   /**
+    * Records that a member failed to answer a remote get, placing it in quarantine.
+    */
+   public void recordFailure(Address member) {
+      Latency latency = getOrCreate(member);
+      latency.failedAt = System.nanoTime();
+      latency.failed = true;
+   }
+
+   /**
+    * @return the average response time of the member in nanoseconds, or -1 if it has never answered
+    */
+   public long getAverageNanos(Address member) {
+      Latency latency = latencies.get(member);
+      return latency == null ? -1 : latency.averageNanos;
+   }
+
+   public boolean isHealthy(Address member) {
+      Latency latency = latencies.get(member);
+      return latency == null || latency.isHealthy(System.nanoTime());
+   }
+
+   /**
+    * Orders owners so that healthy members come before quarantined ones and, within each group, faster members come
+    * before slower ones.  The sort is stable, so owners with the same latency keep the order of the consistent hash
+    * and the primary owner wins ties.
+    *
+    * @param owners owners of a key, as returned by the consistent hash
+    * @return a new list containing the same owners
+    */
+   public List<Address> sortByLatency(Collection<Address> owners) {
+      return sortByLatency(owners, null);
+   }
+
+   /**
+    * Like {@link #sortByLatency(java.util.Collection)}, but healthy owners are first ordered by the given preference
+    * and latency only decides between owners the preference considers equal.
+    *
+    * @param owners owners of a key, as returned by the consistent hash
+    * @param preference may be null
+    * @return a new list containing the same owners
+    */
+   public List<Address> sortByLatency(Collection<Address> owners, final Comparator<Address> preference) {
+      final long now = System.nanoTime();
+      List<Address> sorted = new ArrayList<Address>(owners);
+      Collections.sort(sorted, new Comparator<Address>() {
+         public int compare(Address a1, Address a2) {
+            Latency l1 = latencies.get(a1);
+            Latency l2 = latencies.get(a2);
+            boolean healthy1 = l1 == null || l1.isHealthy(now);
+            boolean healthy2 = l2 == null || l2.isHealthy(now);
+            if (healthy1 != healthy2) return healthy1 ? -1 : 1;
+            if (preference != null) {
+               int preferred = preference.compare(a1, a2);
+               if (preferred != 0) return preferred;
+            }
+            // members we know nothing about yet sort first, so they get sampled
+            long avg1 = l1 == null ? 0 : l1.averageNanos;
+            long avg2 = l2 == null ? 0 : l2.averageNanos;
+            return avg1 < avg2 ? -1 : (avg1 == avg2 ? 0 : 1);
+         }
+      });
+      return sorted;
+   }
+
+   /**
+    * Forgets about members no longer in the cluster.
+    */
+   public void retainAll(Collection<Address> members) {
+      latencies.keySet().retainAll(members);
+   }
+
+   private Latency sample(Address member, long nanos) {
+      Latency latency = getOrCreate(member);
+      synchronized (latency) {
+         latency.averageNanos = latency.averageNanos < 0 ? nanos :
+               (long) (SAMPLE_WEIGHT * nanos + (1 - SAMPLE_WEIGHT) * latency.averageNanos);
+      }
+      return latency;
+   }
+
+   private Latency getOrCreate(Address member) {
+      Latency latency = latencies.get(member);
+      if (latency == null) {
+         latency = new Latency();
+         Latency existing = latencies.putIfAbsent(member, latency);
+         if (existing != null) latency = existing;
+      }
+      return latency;
+   }
+
+   private class Latency {
+      volatile long averageNanos = -1;
+      volatile long failedAt;
+      volatile boolean failed;
+
+      boolean isHealthy(long now) {
+         return !failed || now - failedAt > quarantineNanos;
+      }
+   }
+}
@@ -66,11 +66,16 @@ import static org.infinispan.distribution.ch.ConsistentHashHelper.createConsiste
  * - For K2, the old CH is A,B and the new CH is B,C
  * - B (since it is the backup owner and A left) pushes K2 to C
  * </pre>
+ * The state is streamed while the data container and the cache store are iterated: each new owner receives it in
+ * chunks of at most {@link org.infinispan.config.Configuration#getRehashChunkSize()} entries, with a bounded number
+ * of chunks awaiting acknowledgement, so the memory used by a rehash does not grow with the amount of data moved.
  *
  * @author Bela Ban
  * @since 4.2
  */
 public class RebalanceTask extends RehashTask {
+   private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+
    private final InvocationContextContainer icc;
    private final CacheNotifier notifier;
    private final InterceptorChain interceptorChain;
@@ -120,32 +125,36 @@ public class RebalanceTask extends RehashTask {
             // notify listeners that a rehash is about to start
             notifier.notifyDataRehashed(oldCacheSet, newCacheSet, newViewId, true);
 
-            List<Object> keysToRemove = new ArrayList<Object>();
-
             int numOwners = configuration.getNumOwners();
+            int chunkSize = configuration.getRehashChunkSize();
 
-            // Contains the state to be pushed to various servers. The state is a hashmap of keys and values
-            final Map<Address, Map<Object, InternalCacheValue>> states = new HashMap<Address, Map<Object, InternalCacheValue>>();
+            // Streams the state to the new owners in bounded chunks as we iterate, so the memory used here does not
+            // depend on the amount of data being moved
+            StatePusher statePusher = new StatePusher(chOld, chNew, chunkSize);
+            List<Object> keysToRemove = new ArrayList<Object>(chunkSize);
 
             for (InternalCacheEntry ice : dataContainer) {
-               rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, states, keysToRemove);
+               rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, statePusher, keysToRemove);
             }
+            // keys to remove are never pushed by this node, so they can be invalidated before the push completes
+            invalidateKeys(keysToRemove);
 
             // Only fetch the data from the cache store if the cache store is not shared
             CacheStore cacheStore = distributionManager.getCacheStoreForRehashing();
             if (cacheStore != null) {
+               // the store only hands out the keys, values are loaded one at a time as they are pushed
                for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
-                  rebalance(key, null, numOwners, chOld, chNew, cacheStore, states, keysToRemove);
+                  rebalance(key, null, numOwners, chOld, chNew, cacheStore, statePusher, keysToRemove);
                }
+               invalidateKeys(keysToRemove);
             } else {
                if (trace) log.trace("No cache store or cache store is shared, not rebalancing stored keys");
             }
 
-            // Now for each server S in states.keys(): push states.get(S) to S via RPC
-            pushState(chOld, chNew, states);
-
-            // now we can invalidate the keys
-            invalidateKeys(oldCacheSet, newCacheSet, keysToRemove);
+            // send the last, partial chunks and wait until every new owner has applied all the state we pushed
+            statePusher.flush();
+            log.debugf("Node finished pushing data for rehash %d: %d keys in %d chunks", newViewId,
+                       statePusher.keysPushed, statePusher.chunksPushed);
          } else {
             if (trace) log.trace("Rehash not enabled, so not pushing state");
          }
@@ -167,56 +176,106 @@ public class RebalanceTask extends RehashTask {
       }
    }
 
-   private void invalidateKeys(Collection<Address> oldCacheSet, Collection<Address> newCacheSet, List<Object> keysToRemove) {
+   private void invalidateKeys(List<Object> keysToRemove) {
+      if (keysToRemove.isEmpty()) return;
       try {
-         InvalidateCommand invalidateCmd = cf.buildInvalidateFromL1Command(true, keysToRemove);
+         InvalidateCommand invalidateCmd = cf.buildInvalidateFromL1Command(true, new ArrayList<Object>(keysToRemove));
          InvocationContext ctx = icc.createNonTxInvocationContext();
          ctx.setFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_LOCKING);
          interceptorChain.invoke(ctx, invalidateCmd);
 
          if (trace) {
-            if (keysToRemove.size() > 0)
-               log.tracef("%s removed %d keys", self, keysToRemove.size());
+            log.tracef("%s removed %d keys", self, keysToRemove.size());
             log.tracef("data container has now %d keys", dataContainer.size());
          }
+         keysToRemove.clear();
       } catch (CacheException e) {
          log.failedToInvalidateKeys(e);
          throw e;
       }
    }
 
-   private void pushState(ConsistentHash chOld, ConsistentHash chNew, Map<Address, Map<Object, InternalCacheValue>> states) throws InterruptedException, ExecutionException {
-      NotifyingNotifiableFuture<Object> stateTransferFuture = new AggregatingNotifyingFutureImpl(null, states.size());
+   /**
+    * Pushes state to the new owners as a stream of chunks of at most <code>chunkSize</code> entries. Entries are
+    * buffered per target until a chunk is full, and no more than {@link #MAX_CHUNKS_IN_FLIGHT} chunks per target may
+    * be waiting for an acknowledgement, so a slow receiver throttles the sender instead of letting state pile up.
+    */
+   private class StatePusher {
+      private final ConsistentHash chOld;
+      private final ConsistentHash chNew;
+      private final int chunkSize;
+      private final Map<Address, Map<Object, InternalCacheValue>> chunks = new HashMap<Address, Map<Object, InternalCacheValue>>();
+      private final Map<Address, Queue<NotifyingNotifiableFuture<Object>>> inFlight = new HashMap<Address, Queue<NotifyingNotifiableFuture<Object>>>();
+      int keysPushed;
+      int chunksPushed;
+
+      StatePusher(ConsistentHash chOld, ConsistentHash chNew, int chunkSize) {
+         this.chOld = chOld;
+         this.chNew = chNew;
+         this.chunkSize = chunkSize;
+      }
+
+      void push(Address target, Object key, InternalCacheValue value) throws InterruptedException, ExecutionException {
+         Map<Object, InternalCacheValue> chunk = chunks.get(target);
+         if (chunk == null) {
+            chunk = new HashMap<Object, InternalCacheValue>();
+            chunks.put(target, chunk);
+         }
+         chunk.put(key, value);
+         keysPushed++;
+         if (chunk.size() >= chunkSize) {
+            chunks.remove(target);
+            send(target, chunk);
+         }
+      }
+
+      void flush() throws InterruptedException, ExecutionException {
+         for (Map.Entry<Address, Map<Object, InternalCacheValue>> entry : chunks.entrySet()) {
+            send(entry.getKey(), entry.getValue());
+         }
+         chunks.clear();
+         for (Queue<NotifyingNotifiableFuture<Object>> pending : inFlight.values()) {
+            while (!pending.isEmpty()) await(pending.poll());
+         }
+      }
+
+      private void send(Address target, Map<Object, InternalCacheValue> chunk) throws InterruptedException, ExecutionException {
+         Queue<NotifyingNotifiableFuture<Object>> pending = inFlight.get(target);
+         if (pending == null) {
+            pending = new LinkedList<NotifyingNotifiableFuture<Object>>();
+            inFlight.put(target, pending);
+         }
+         // flow control: wait for the receiver to apply the oldest chunk before sending another one
+         while (pending.size() >= MAX_CHUNKS_IN_FLIGHT) await(pending.poll());
 
-      for (Map.Entry<Address, Map<Object, InternalCacheValue>> entry : states.entrySet()) {
-         final Address target = entry.getKey();
-         Map<Object, InternalCacheValue> state = entry.getValue();
          if (trace)
-            log.tracef("%s pushing to %s keys %s", self, target, state.keySet());
+            log.tracef("%s pushing to %s keys %s", self, target, chunk.keySet());
 
          final RehashControlCommand cmd = cf.buildRehashControlCommand(RehashControlCommand.Type.APPLY_STATE, self,
-               newViewId, state, chOld, chNew);
-
+               newViewId, chunk, chOld, chNew);
+         NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl(null, 1);
          rpcManager.invokeRemotelyInFuture(Collections.singleton(target), cmd,
-                                           false, stateTransferFuture, configuration.getRehashRpcTimeout());
+                                           false, future, configuration.getRehashRpcTimeout());
+         pending.add(future);
+         chunksPushed++;
       }
 
-      // wait to see if all servers received the new state
-      // TODO we might want to retry the state transfer operation if it failed on some of the nodes and the view hasn't changed
-      try {
-         stateTransferFuture.get();
-      } catch (ExecutionException e) {
-         log.errorTransferringState(e);
-         throw e;
+      private void await(NotifyingNotifiableFuture<Object> future) throws InterruptedException, ExecutionException {
+         // TODO we might want to retry the state transfer operation if it failed on some of the nodes and the view hasn't changed
+         try {
+            future.get();
+         } catch (ExecutionException e) {
+            log.errorTransferringState(e);
+            throw e;
+         }
       }
-      log.debugf("Node finished pushing data for rehash %d", newViewId);
    }
 
 
    /**
-    * Computes the list of old and new servers for a given key K and value V. Adds (K, V) to the <code>states</code> map
-    * if K should be pushed to other servers. Adds K to the <code>keysToRemove</code> list if this node is no longer an
-    * owner for K.
+    * Computes the list of old and new servers for a given key K and value V. Pushes (K, V) through the
+    * <code>statePusher</code> if K should be pushed to other servers. Adds K to the <code>keysToRemove</code> list if
+    * this node is no longer an owner for K, invalidating the list once it holds a full chunk of keys.
     *
     * @param key         The key
     * @param value       The value; <code>null</code> if the value is not in the data container
@@ -224,11 +283,12 @@ public class RebalanceTask extends RehashTask {
     * @param chOld       The old (current) consistent hash
     * @param chNew       The new consistent hash
     * @param cacheStore  If the value is <code>null</code>, try to load it from this cache store
-    * @param states      The result hashmap. Keys are servers, values are states (hashmaps) to be pushed to them
+    * @param statePusher Streams the state to the servers it should be pushed to
     * @param keysToRemove A list that the keys that we need to remove will be added to
     */
    protected void rebalance(Object key, InternalCacheEntry value, int numOwners, ConsistentHash chOld, ConsistentHash chNew,
-                            CacheStore cacheStore, Map<Address, Map<Object, InternalCacheValue>> states, List<Object> keysToRemove) {
+                            CacheStore cacheStore, StatePusher statePusher, List<Object> keysToRemove)
+         throws InterruptedException, ExecutionException {
       // 1. Get the old and new servers for key K
       List<Address> oldOwners = chOld.locate(key, numOwners);
       List<Address> newOwners = chNew.locate(key, numOwners);
@@ -260,15 +320,12 @@ public class RebalanceTask extends RehashTask {
             }
          }
 
-         for (Address server : newOwners) {
-            if (!oldOwners.contains(server)) { // server doesn't have K
-               Map<Object, InternalCacheValue> map = states.get(server);
-               if (map == null) {
-                  map = new HashMap<Object, InternalCacheValue>();
-                  states.put(server, map);
+         if (value != null) {
+            InternalCacheValue icv = value.toInternalCacheValue();
+            for (Address server : newOwners) {
+               if (!oldOwners.contains(server)) { // server doesn't have K
+                  statePusher.push(server, key, icv);
                }
-               if (value != null)
-                  map.put(key, value.toInternalCacheValue());
             }
          }
       }
@@ -276,6 +333,8 @@ public class RebalanceTask extends RehashTask {
       // 5. Remove K if it should not be stored here any longer; rebalancing moved K to a different server
       if (oldOwners.contains(self) && !newOwners.contains(self)) {
          keysToRemove.add(key);
+         if (keysToRemove.size() >= statePusher.chunkSize)
+            invalidateKeys(keysToRemove);
       }
    }
 
@@ -252,9 +252,19 @@ public abstract class AbstractWheelConsistentHash extends AbstractConsistentHash
       public void writeObject(ObjectOutput output, T abstractWheelConsistentHash) throws IOException {
          output.writeInt(abstractWheelConsistentHash.numVirtualNodes);
          output.writeObject(abstractWheelConsistentHash.hashFunction.getClass().getName());
+         writeParameters(output, abstractWheelConsistentHash);
          output.writeObject(abstractWheelConsistentHash.caches);
       }
 
+      /**
+       * Hook for subclasses with extra settings that must be restored before the caches are set.
+       */
+      protected void writeParameters(ObjectOutput output, T abstractWheelConsistentHash) throws IOException {
+      }
+
+      protected void readParameters(ObjectInput unmarshaller, T abstractWheelConsistentHash) throws IOException, ClassNotFoundException {
+      }
+
       @Override
       @SuppressWarnings("unchecked")
       public T readObject(ObjectInput unmarshaller) throws IOException, ClassNotFoundException {
@@ -262,6 +272,7 @@ public abstract class AbstractWheelConsistentHash extends AbstractConsistentHash
          instance.numVirtualNodes = unmarshaller.readInt();
          String hashFunctionName = (String) unmarshaller.readObject();
          instance.setHashFunction((Hash) Util.getInstance(hashFunctionName, cl));
+         readParameters(unmarshaller, instance);
          Set<Address> caches = (Set<Address>) unmarshaller.readObject();
          instance.setCaches(caches);
          return instance;
@@ -76,6 +76,9 @@ public class ConsistentHashHelper {
          wch.setHashFunction(h);
          wch.setNumVirtualNodes(c.getNumVirtualNodes());
       }
+      if (ch instanceof SegmentedConsistentHash) {
+         ((SegmentedConsistentHash) ch).setNumOwners(c.getNumOwners());
+      }
       if (ch instanceof AbstractConsistentHash) {
           AbstractConsistentHash ach = (AbstractConsistentHash) ch;
           if (c.isGroupsEnabled())
@@ -176,6 +179,12 @@ public class ConsistentHashHelper {
          groupManager = wTemplate.groupManager;
       }
       ConsistentHash ch = constructConsistentHashInstance(template.getClass(), hf, numVirtualNodes, groupManager);
+      if (template instanceof SegmentedConsistentHash) {
+         SegmentedConsistentHash sTemplate = (SegmentedConsistentHash) template;
+         SegmentedConsistentHash sch = (SegmentedConsistentHash) ch;
+         sch.setNumSegments(sTemplate.numSegments);
+         sch.setNumOwners(sTemplate.numOwners);
+      }
       if (addresses != null && !addresses.isEmpty())  ch.setCaches(toSet(addresses));
       return ch;
    }
@@ -0,0 +1,231 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.ch;
+
+import org.infinispan.marshall.Ids;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.Util;
+import org.infinispan.util.hash.Hash;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A wheel-based consistent hash that splits the hash space into a fixed number of equally sized segments and
+ * precomputes the owners of each segment whenever the member list changes.
+ * <p/>
+ * Nodes (and virtual nodes) are placed on the wheel exactly as in {@link DefaultConsistentHash}, but a key is owned by
+ * the nodes that follow the <i>start</i> of its segment rather than its own position. This makes {@link #locate(Object,
+ * int)} a single array lookup instead of a binary search followed by a walk of the wheel, and all keys mapping to the
+ * same segment share the same (immutable) owner list.
+ * <p/>
+ * The table holds {@link #setNumOwners(Integer) numOwners} owners per segment, which should match the configured
+ * number of owners. Lookups asking for more owners than were precomputed fall back to walking the wheel.
+ *
+ * @since 5.0
+ */
+public class SegmentedConsistentHash extends AbstractWheelConsistentHash {
+
+   public static final int DEFAULT_NUM_SEGMENTS = 1024;
+   public static final int DEFAULT_NUM_OWNERS = 2;
+
+   protected int numSegments = DEFAULT_NUM_SEGMENTS;
+   protected int numOwners = DEFAULT_NUM_OWNERS;
+
+   // segmentOwners[i] holds min(numOwners, caches.size()) distinct owners for segment i
+   private List<Address>[] segmentOwners;
+
+   public SegmentedConsistentHash() {
+   }
+
+   public SegmentedConsistentHash(Hash hash) {
+      setHashFunction(hash);
+   }
+
+   public void setNumSegments(Integer numSegments) {
+      if (caches != null) {
+         throw new IllegalStateException("Must configure the number of segments before adding the caches");
+      }
+      if (numSegments < 1 || numSegments > HASH_SPACE) {
+         throw new IllegalArgumentException("The number of segments must be between 1 and " + HASH_SPACE);
+      }
+      this.numSegments = numSegments;
+   }
+
+   public void setNumOwners(Integer numOwners) {
+      if (caches != null) {
+         throw new IllegalStateException("Must configure the number of owners before adding the caches");
+      }
+      if (numOwners < 1) {
+         throw new IllegalArgumentException("The number of owners must be strictly positive");
+      }
+      this.numOwners = numOwners;
+   }
+
+   public int getNumSegments() {
+      return numSegments;
+   }
+
+   public int getNumOwners() {
+      return numOwners;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void setCaches(Set<Address> newCaches) {
+      super.setCaches(newCaches);
+
+      int depth = Math.min(numOwners, caches.size());
+      List<Address>[] owners = new List[numSegments];
+      // consecutive segments whose start falls between the same two wheel positions have the same owners
+      int lastPositionIndex = -1;
+      for (int segment = 0; segment < numSegments; segment++) {
+         int segmentStart = getSegmentStart(segment);
+         int positionIndex = getPositionIndex(segmentStart);
+         if (positionIndex == lastPositionIndex) {
+            owners[segment] = owners[segment - 1];
+         } else {
+            owners[segment] = Collections.unmodifiableList(walkWheel(segmentStart, depth));
+            lastPositionIndex = positionIndex;
+         }
+      }
+      segmentOwners = owners;
+   }
+
+   /**
+    * @return the segment the given key maps to, between 0 (inclusive) and {@link #getNumSegments()} (exclusive)
+    */
+   public int getSegment(Object key) {
+      // HASH_SPACE * numSegments <= HASH_SPACE * HASH_SPACE, so this cannot overflow
+      return getNormalizedHash(getGrouping(key)) * numSegments / HASH_SPACE;
+   }
+
+   /**
+    * @return the precomputed, unmodifiable owner list of the given segment
+    */
+   public List<Address> getSegmentOwners(int segment) {
+      return segmentOwners[segment];
+   }
+
+   @Override
+   public List<Address> locate(Object key, int replCount) {
+      int segment = getSegment(key);
+      List<Address> owners = segmentOwners[segment];
+      int size = owners.size();
+      if (replCount >= size) {
+         // the table already holds every node in the cluster, or the caller asked for exactly numOwners
+         if (replCount == size || size == caches.size())
+            return owners;
+         return walkWheel(getSegmentStart(segment), Math.min(replCount, caches.size()));
+      }
+      return owners.subList(0, replCount);
+   }
+
+   @Override
+   public boolean isKeyLocalToAddress(Address target, Object key, int replCount) {
+      return locate(key, replCount).contains(target);
+   }
+
+   /**
+    * The first normalized hash belonging to the given segment.
+    */
+   private int getSegmentStart(int segment) {
+      return (segment * HASH_SPACE + numSegments - 1) / numSegments;
+   }
+
+   private List<Address> walkWheel(int normalizedHash, int count) {
+      List<Address> owners = new ArrayList<Address>(count);
+      for (Iterator<Map.Entry<Integer, Address>> it = getPositionsIterator(normalizedHash); it.hasNext();) {
+         Address a = it.next().getValue();
+         // if virtual nodes are enabled we have to avoid duplicate addresses
+         if (!(isVirtualNodesEnabled() && owners.contains(a))) {
+            owners.add(a);
+            if (owners.size() >= count)
+               break;
+         }
+      }
+      return owners;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SegmentedConsistentHash that = (SegmentedConsistentHash) o;
+
+      if (hashFunction != null ? !hashFunction.equals(that.hashFunction) : that.hashFunction != null) return false;
+      if (numVirtualNodes != that.numVirtualNodes) return false;
+      if (numSegments != that.numSegments) return false;
+      if (numOwners != that.numOwners) return false;
+      if (caches != null ? !caches.equals(that.caches) : that.caches != null) return false;
+
+      return true;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = caches != null ? caches.hashCode() : 0;
+      result = 31 * result + hashFunction.hashCode();
+      result = 31 * result + numVirtualNodes;
+      result = 31 * result + numSegments;
+      result = 31 * result + numOwners;
+      return result;
+   }
+
+   public static class Externalizer extends AbstractWheelConsistentHash.Externalizer<SegmentedConsistentHash> {
+      @Override
+      protected SegmentedConsistentHash instance() {
+         return new SegmentedConsistentHash();
+      }
+
+      @Override
+      protected void writeParameters(ObjectOutput output, SegmentedConsistentHash ch) throws IOException {
+         output.writeInt(ch.numSegments);
+         output.writeInt(ch.numOwners);
+      }
+
+      @Override
+      protected void readParameters(ObjectInput unmarshaller, SegmentedConsistentHash ch) throws IOException {
+         ch.setNumSegments(unmarshaller.readInt());
+         ch.setNumOwners(unmarshaller.readInt());
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.SEGMENTED_CONSISTENT_HASH;
+      }
+
+      @Override
+      public Set<Class<? extends SegmentedConsistentHash>> getTypeClasses() {
+         return Util.<Class<? extends SegmentedConsistentHash>>asSet(SegmentedConsistentHash.class);
+      }
+   }
+}
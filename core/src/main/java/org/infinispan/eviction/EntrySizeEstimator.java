@@ -0,0 +1,39 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+
+/**
+ * Estimates the amount of memory retained by a cache entry. Used by data containers bounded by
+ * {@link org.infinispan.config.Configuration#getEvictionMaxMemory()} rather than by a number of entries.
+ * <p/>
+ * Implementations are instantiated reflectively and must have a public no-arg constructor. They may declare
+ * {@link org.infinispan.factories.annotations.Inject} methods to obtain named cache components such as the
+ * marshaller. Estimates are taken on every write, so they should be cheap rather than exact.
+ *
+ * @since 5.0
+ */
+public interface EntrySizeEstimator extends BoundedConcurrentHashMap.EntrySizeEstimator<Object, InternalCacheEntry> {
+}
@@ -33,7 +33,11 @@ public enum EvictionStrategy {
    UNORDERED,
    FIFO,
    LRU,
-   LIRS;
+   LIRS,
+   /**
+    * Approximate LRU, where reads only flag the entry as recently used instead of reordering entries
+    */
+   CLOCK;
    
    public boolean isEnabled() {
       return this != NONE;
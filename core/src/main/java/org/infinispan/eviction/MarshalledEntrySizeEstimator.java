@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default {@link EntrySizeEstimator}, using the marshalled size of keys and values as an estimate for the memory
+ * they retain.
+ * <p/>
+ * Byte arrays, {@link ByteArrayKey}s and already serialized {@link MarshalledValue}s, the form keys and values take
+ * when lazy deserialization or binary storage is enabled, are measured by their raw byte length. Strings are measured
+ * by their length. Anything else is estimated per class: the first few instances of a class and then one in
+ * {@link #SAMPLE_INTERVAL} are marshalled, and the others are given the running average of those samples, so puts do
+ * not pay for marshalling just to be measured. A fixed overhead accounts for the entry itself and its bookkeeping in
+ * the data container.
+ *
+ * @since 5.0
+ */
+public class MarshalledEntrySizeEstimator implements EntrySizeEstimator {
+
+   private static final Log log = LogFactory.getLog(MarshalledEntrySizeEstimator.class);
+
+   /**
+    * Rough retained size of an internal cache entry and the hash entry referencing it, in bytes.
+    */
+   static final int ENTRY_OVERHEAD = 96;
+
+   /**
+    * Size assumed for objects that cannot be marshalled, the same initial guess {@link MarshalledValue} starts
+    * with.
+    */
+   static final int UNMARSHALLABLE_SIZE = 128;
+
+   /**
+    * Instances of a class marshalled before its estimate is trusted.
+    */
+   static final int INITIAL_SAMPLES = 4;
+
+   /**
+    * Once the initial samples are taken, one instance in this many is marshalled to keep a class's estimate current.
+    */
+   static final int SAMPLE_INTERVAL = 256;
+
+   private final ConcurrentMap<Class<?>, ClassSize> classSizes = new ConcurrentHashMap<Class<?>, ClassSize>();
+   private StreamingMarshaller marshaller;
+
+   @Inject
+   public void injectMarshaller(StreamingMarshaller marshaller) {
+      this.marshaller = marshaller;
+   }
+
+   @Override
+   public int estimateSize(Object key, InternalCacheEntry entry) {
+      long size = ENTRY_OVERHEAD + sizeOf(key) + sizeOf(entry.getValue());
+      return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+   }
+
+   int sizeOf(Object o) {
+      if (o == null) {
+         return 0;
+      } else if (o instanceof byte[]) {
+         return ((byte[]) o).length;
+      } else if (o instanceof ByteArrayKey) {
+         return ((ByteArrayKey) o).getData().length;
+      } else if (o instanceof MarshalledValue) {
+         MarshalledValue mv = (MarshalledValue) o;
+         int serializedSize = mv.getSerializedSizeIfKnown();
+         return serializedSize >= 0 ? serializedSize : sizeOf(mv.get());
+      } else if (o instanceof String) {
+         return ((String) o).length() << 1;
+      }
+      ClassSize classSize = classSizes.get(o.getClass());
+      if (classSize == null) {
+         classSize = new ClassSize();
+         ClassSize existing = classSizes.putIfAbsent(o.getClass(), classSize);
+         if (existing != null) classSize = existing;
+      }
+      return classSize.estimate(o);
+   }
+
+   int marshalledSize(Object o) {
+      if (marshaller != null) {
+         try {
+            return marshaller.objectToBuffer(o).getLength();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         } catch (Exception e) {
+            if (log.isTraceEnabled())
+               log.tracef("Unable to marshall %s to estimate its size", o);
+         }
+      }
+      return UNMARSHALLABLE_SIZE;
+   }
+
+   /**
+    * Running average of the marshalled size of the sampled instances of a class.
+    */
+   private final class ClassSize {
+      private final AtomicInteger seen = new AtomicInteger();
+      private volatile int average = UNMARSHALLABLE_SIZE;
+
+      int estimate(Object o) {
+         int n = seen.incrementAndGet();
+         if (n > INITIAL_SAMPLES && n % SAMPLE_INTERVAL != 0) return average;
+         int size = marshalledSize(o);
+         // racing samples may lose an update, which only delays the estimate by a sample
+         average = n <= INITIAL_SAMPLES ? (int) ((average * (n - 1L) + size) / n) : (int) ((average * 7L + size) >> 3);
+         return size;
+      }
+   }
+}
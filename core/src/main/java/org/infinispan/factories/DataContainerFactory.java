@@ -26,6 +26,8 @@ import org.infinispan.config.ConfigurationException;
 import org.infinispan.config.parsing.XmlConfigHelper;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.container.OffHeapDataContainer;
+import org.infinispan.eviction.EntrySizeEstimator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.annotations.DefaultFactoryFor;
@@ -57,17 +59,43 @@ public class DataContainerFactory extends AbstractNamedCacheComponentFactory imp
             case LRU:
             case FIFO:
             case LIRS:
+            case CLOCK:
+               EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
+               long maxMemory = configuration.getEvictionMaxMemory();
+               if (maxMemory > 0) {
+                  EntrySizeEstimator estimator = (EntrySizeEstimator) Util.getInstance(
+                        configuration.getEvictionSizeEstimatorClass(), configuration.getClassLoader());
+                  componentRegistry.wireDependencies(estimator);
+                  return (T) DefaultDataContainer.memoryBoundedDataContainer(level, maxMemory, estimator, st, policy);
+               }
                int maxEntries = configuration.getEvictionMaxEntries();
                //handle case when < 0 value signifies unbounded container 
                if(maxEntries < 0) {
                    return (T) DefaultDataContainer.unBoundedDataContainer(level);
                }
-               EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
                return (T) DefaultDataContainer.boundedDataContainer(level, maxEntries, st, policy);
             default:
                throw new ConfigurationException("Unknown eviction strategy "
                         + configuration.getEvictionStrategy());
          }
+      } else if (OffHeapDataContainer.class.getName().equals(configuration.getDataContainerClass())) {
+         EvictionStrategy st = configuration.getEvictionStrategy();
+         int level = configuration.getConcurrencyLevel();
+         int maxEntries = configuration.getEvictionMaxEntries();
+         long maxMemory = configuration.getEvictionMaxMemory();
+         DataContainer dataContainer;
+         if (st == EvictionStrategy.NONE || (maxEntries < 0 && maxMemory <= 0)) {
+            dataContainer = OffHeapDataContainer.unBoundedDataContainer(level);
+         } else if (maxMemory > 0) {
+            // entries are measured exactly once marshalled, no estimator needed
+            EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
+            dataContainer = OffHeapDataContainer.memoryBoundedDataContainer(level, maxMemory, st, policy);
+         } else {
+            EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
+            dataContainer = OffHeapDataContainer.boundedDataContainer(level, maxEntries, st, policy);
+         }
+         XmlConfigHelper.setValues(dataContainer, configuration.getDataContainerProperties(), false, true);
+         return (T) dataContainer;
       } else {
          DataContainer dataContainer = DataContainer.class.cast(Util.getInstance(configuration.getDataContainerClass(), configuration.getClassLoader()));
          XmlConfigHelper.setValues(dataContainer, configuration.getDataContainerProperties(), false, true);
@@ -64,7 +64,8 @@ public class InterceptorChainFactory extends AbstractNamedCacheComponentFactory
    }
 
    private boolean isUsingMarshalledValues(Configuration c) {
-      return c.isStoreAsBinary() && (c.isStoreKeysAsBinary() || c.isStoreValuesAsBinary());
+      // in binary mode keys and values already are byte arrays, there's nothing to wrap
+      return !c.isBinaryModeEnabled() && c.isStoreAsBinary() && (c.isStoreKeysAsBinary() || c.isStoreValuesAsBinary());
    }
 
    public InterceptorChain buildInterceptorChain() throws IllegalAccessException, InstantiationException, ClassNotFoundException {
@@ -79,7 +80,9 @@ public class InterceptorChainFactory extends AbstractNamedCacheComponentFactory
       componentRegistry.registerComponent(interceptorChain, InterceptorChain.class);
 
       // add marshallable check interceptor for situations where we want to figure out before marshalling
-      if (isUsingMarshalledValues(configuration) || configuration.isUseAsyncMarshalling()
+      if (configuration.isBinaryModeEnabled())
+         interceptorChain.appendInterceptor(createInterceptor(BinaryModeInterceptor.class));
+      else if (isUsingMarshalledValues(configuration) || configuration.isUseAsyncMarshalling()
             || configuration.isUseReplQueue() || hasAsyncStore())
          interceptorChain.appendInterceptor(createInterceptor(IsMarshallableInterceptor.class));
 
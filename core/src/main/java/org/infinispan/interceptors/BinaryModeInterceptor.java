@@ -0,0 +1,134 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.interceptors;
+
+import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
+import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.commands.write.ReplaceCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.marshall.NotSerializableException;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.ByteArrayKey;
+
+import java.util.Map;
+
+/**
+ * Takes the place of {@link IsMarshallableInterceptor} in caches running in
+ * {@link org.infinispan.config.Configuration#isBinaryModeEnabled() binary mode}.
+ * Keys must be byte arrays or {@link ByteArrayKey}s, anything else is rejected
+ * with an {@link IllegalArgumentException}. </p>
+ *
+ * Values are not restricted to byte arrays, since protocol servers wrap the
+ * bytes they receive together with their metadata (e.g. Hot Rod's
+ * <code>CacheValue</code> carries the entry version). Values other than byte
+ * arrays are checked with {@link StreamingMarshaller#isMarshallable(Object)},
+ * which answers from a per class cache after the first check, so nothing is
+ * marshalled on the put path.
+ *
+ * @since 5.0
+ */
+public class BinaryModeInterceptor extends CommandInterceptor {
+
+   private StreamingMarshaller marshaller;
+
+   @Inject
+   protected void injectMarshaller(StreamingMarshaller marshaller) {
+      this.marshaller = marshaller;
+   }
+
+   @Override
+   public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
+      checkKey(command.getKey());
+      return super.visitGetKeyValueCommand(ctx, command);
+   }
+
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      for (Object key : command.getKeys())
+         checkKey(key);
+      return super.visitGetAllCommand(ctx, command);
+   }
+
+   @Override
+   public Object visitLockControlCommand(TxInvocationContext ctx, LockControlCommand command) throws Throwable {
+      for (Object key : command.getKeys())
+         checkKey(key);
+      return super.visitLockControlCommand(ctx, command);
+   }
+
+   @Override
+   public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+      checkKey(command.getKey());
+      checkValue(command.getValue());
+      return super.visitPutKeyValueCommand(ctx, command);
+   }
+
+   @Override
+   public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
+      for (Map.Entry<Object, Object> entry : command.getMap().entrySet()) {
+         checkKey(entry.getKey());
+         checkValue(entry.getValue());
+      }
+      return super.visitPutMapCommand(ctx, command);
+   }
+
+   @Override
+   public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
+      checkKey(command.getKey());
+      return super.visitRemoveCommand(ctx, command);
+   }
+
+   @Override
+   public Object visitReplaceCommand(InvocationContext ctx, ReplaceCommand command) throws Throwable {
+      checkKey(command.getKey());
+      checkValue(command.getNewValue());
+      return super.visitReplaceCommand(ctx, command);
+   }
+
+   private void checkKey(Object key) {
+      if (!(key instanceof ByteArrayKey) && !(key instanceof byte[]))
+         throw new IllegalArgumentException(String.format(
+               "Binary mode caches only accept byte[] or ByteArrayKey keys, not %s", key.getClass()));
+   }
+
+   private void checkValue(Object value) throws NotSerializableException {
+      if (value == null || value instanceof byte[]) return;
+      boolean marshallable;
+      try {
+         marshallable = marshaller.isMarshallable(value);
+      } catch (Exception e) {
+         throw new NotSerializableException(String.format(
+               "Object of type %s expected to be marshallable", value.getClass()), e);
+      }
+      if (!marshallable)
+         throw new NotSerializableException(String.format(
+               "Object of type %s expected to be marshallable", value.getClass()));
+   }
+}
@@ -22,8 +22,14 @@
  */
 package org.infinispan.interceptors;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
@@ -42,9 +48,11 @@ import org.infinispan.interceptors.base.JmxStatsCommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.loaders.BulkOperations;
 import org.infinispan.loaders.CacheLoader;
 import org.infinispan.loaders.CacheLoaderManager;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
+import org.infinispan.stats.LatencyStatistics;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
@@ -59,10 +67,12 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
    protected CacheLoader loader;
    private DataContainer dataContainer;
    private EntryFactory entryFactory;
+   private LatencyStatistics latencies;
 
    @Inject
-   protected void injectDependencies(CacheLoaderManager clm, DataContainer dataContainer, EntryFactory entryFactory, CacheNotifier notifier) {
+   protected void injectDependencies(CacheLoaderManager clm, DataContainer dataContainer, EntryFactory entryFactory, CacheNotifier notifier, LatencyStatistics latencies) {
       this.clm = clm;
+      this.latencies = latencies;
       this.dataContainer = dataContainer;
       this.notifier = notifier;
       this.entryFactory = entryFactory;
@@ -92,6 +102,14 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      if (!ctx.hasFlag(Flag.SKIP_CACHE_STORE) && !ctx.hasFlag(Flag.SKIP_CACHE_LOAD)) {
+         loadAllIfNeeded(ctx, command.getKeys());
+      }
+      return invokeNextInterceptor(ctx, command);
+   }
+
    @Override
    public Object visitInvalidateCommand(InvocationContext ctx, InvalidateCommand command) throws Throwable {
       Object[] keys;
@@ -146,7 +164,10 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
          }
 
          // we *may* need to load this.
+         boolean timed = latencies.isEnabled();
+         long start = timed ? System.nanoTime() : 0;
          InternalCacheEntry loaded = loader.load(key);
+         if (timed) latencies.recordSince(LatencyStatistics.Operation.CACHE_LOAD, start);
          if (loaded == null) {
             if (log.isTraceEnabled()) {
                log.trace("No need to load.  Key doesn't exist in the loader.");
@@ -166,6 +187,51 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
       }
    }
 
+   /**
+    * Same as {@link #loadIfNeeded(InvocationContext, Object)} for several keys, loading those missing from the data
+    * container with a single call to the cache loader.
+    */
+   private void loadAllIfNeeded(InvocationContext ctx, List<Object> keys) throws Throwable {
+      // keys to load, and whether a temporary lock was acquired on them
+      Map<Object, Boolean> toLoad = new LinkedHashMap<Object, Boolean>();
+      for (Object key : keys) {
+         if (key == null || toLoad.containsKey(key)) continue;
+         CacheEntry e = entryFactory.wrapEntryForReading(ctx, key);
+         if (e == null || e.isNull()) {
+            // Obtain a temporary lock to verify the key is not being concurrently added
+            boolean keyLocked = entryFactory.acquireLock(ctx, key);
+            if (dataContainer.containsKey(key)) {
+               log.trace("No need to load.  Key exists in the data container.");
+               if (keyLocked) entryFactory.releaseLock(key);
+            } else {
+               toLoad.put(key, keyLocked);
+            }
+         }
+      }
+      if (toLoad.isEmpty()) return;
+
+      boolean timed = latencies.isEnabled();
+      long start = timed ? System.nanoTime() : 0;
+      Set<InternalCacheEntry> loaded = BulkOperations.loadAll(loader, toLoad.keySet());
+      if (timed) latencies.recordSince(LatencyStatistics.Operation.CACHE_LOAD, start);
+
+      Map<Object, InternalCacheEntry> loadedByKey = new HashMap<Object, InternalCacheEntry>(loaded.size());
+      for (InternalCacheEntry se : loaded) loadedByKey.put(se.getKey(), se);
+      for (Map.Entry<Object, Boolean> e : toLoad.entrySet()) {
+         Object key = e.getKey();
+         boolean keyLocked = e.getValue();
+         InternalCacheEntry se = loadedByKey.get(key);
+         if (se == null) {
+            if (keyLocked) entryFactory.releaseLock(key);
+            if (getStatisticsEnabled()) cacheMisses.incrementAndGet();
+         } else {
+            // Reuse the lock and create a new entry for loading
+            MVCCEntry n = entryFactory.wrapEntryForWriting(ctx, key, true, false, keyLocked, false, true);
+            recordLoadedEntry(ctx, key, n, se);
+         }
+      }
+   }
+
    /**
     * This method records a loaded entry, performing the following steps:
     * <ol>
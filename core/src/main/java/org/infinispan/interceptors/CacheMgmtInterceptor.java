@@ -22,22 +22,32 @@
  */
 package org.infinispan.interceptors;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.tx.CommitCommand;
+import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.write.EvictCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
 import org.infinispan.commands.write.RemoveCommand;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultDataContainer;
 import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.base.JmxStatsCommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.stats.LatencyHistogram;
+import org.infinispan.stats.LatencyStatistics;
+import org.infinispan.util.concurrent.StripedCounter;
+import org.rhq.helpers.pluginAnnotations.agent.DataType;
 import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Parameter;
 import org.rhq.helpers.pluginAnnotations.agent.Units;
 
 import java.util.Map;
@@ -52,43 +62,65 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 @MBean(objectName = "Statistics", description = "General statistics such as timings, hit/miss ratio, etc.")
 public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
-   private AtomicLong hitTimes = new AtomicLong(0);
-   private AtomicLong missTimes = new AtomicLong(0);
-   private AtomicLong storeTimes = new AtomicLong(0);
-   private AtomicLong hits = new AtomicLong(0);
-   private AtomicLong misses = new AtomicLong(0);
-   private AtomicLong stores = new AtomicLong(0);
-   private AtomicLong evictions = new AtomicLong(0);
+   private final StripedCounter hitTimes = new StripedCounter();
+   private final StripedCounter missTimes = new StripedCounter();
+   private final StripedCounter storeTimes = new StripedCounter();
+   private final StripedCounter hits = new StripedCounter();
+   private final StripedCounter misses = new StripedCounter();
+   private final StripedCounter stores = new StripedCounter();
+   private final StripedCounter evictions = new StripedCounter();
    private AtomicLong start = new AtomicLong(System.currentTimeMillis());
    private AtomicLong reset = new AtomicLong(start.get());
-   private AtomicLong removeHits = new AtomicLong(0);
-   private AtomicLong removeMisses = new AtomicLong(0);
+   private final StripedCounter removeHits = new StripedCounter();
+   private final StripedCounter removeMisses = new StripedCounter();
 
    private DataContainer dataContainer;
+   private LatencyStatistics latencies;
 
    @Inject
-   public void setDependencies(DataContainer dataContainer) {
+   public void setDependencies(DataContainer dataContainer, LatencyStatistics latencies) {
       this.dataContainer = dataContainer;
+      this.latencies = latencies;
    }
 
    @Override
    public Object visitEvictCommand(InvocationContext ctx, EvictCommand command) throws Throwable {
       Object returnValue = invokeNextInterceptor(ctx, command);
-      evictions.incrementAndGet();
+      evictions.increment();
       return returnValue;
    }
 
    @Override
    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
       if (retval == null) {
-         missTimes.getAndAdd(t2 - t1);
-         misses.incrementAndGet();
+         missTimes.add(t2 - t1);
+         misses.increment();
+         latencies.record(LatencyStatistics.Operation.GET_MISS, t2 - t1);
       } else {
-         hitTimes.getAndAdd(t2 - t1);
-         hits.incrementAndGet();
+         hitTimes.add(t2 - t1);
+         hits.increment();
+         latencies.record(LatencyStatistics.Operation.GET_HIT, t2 - t1);
+      }
+      return retval;
+   }
+
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      long t1 = System.nanoTime();
+      Map retval = (Map) invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
+      int requests = command.getKeys().size();
+      if (requests > 0) {
+         int found = retval == null ? 0 : retval.size();
+         // the elapsed time is shared between hits and misses in proportion to their number
+         long hitTime = (t2 - t1) * found / requests;
+         hitTimes.add(hitTime);
+         missTimes.add(t2 - t1 - hitTime);
+         hits.add(found);
+         misses.add(requests - found);
       }
       return retval;
    }
@@ -96,13 +128,14 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @Override
    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
       Map data = command.getMap();
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
 
       if (data != null && !data.isEmpty()) {
-         storeTimes.getAndAdd(t2 - t1);
-         stores.getAndAdd(data.size());
+         storeTimes.add(t2 - t1);
+         stores.add(data.size());
+         latencies.record(LatencyStatistics.Operation.PUT, t2 - t1);
       }
       return retval;
    }
@@ -110,25 +143,47 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @Override
    //Map.put(key,value) :: oldValue
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
-      storeTimes.getAndAdd(t2 - t1);
-      stores.incrementAndGet();
+      long t2 = System.nanoTime();
+      storeTimes.add(t2 - t1);
+      stores.increment();
+      latencies.record(LatencyStatistics.Operation.PUT, t2 - t1);
       return retval;
    }
 
    @Override
    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
+      boolean timed = latencies.isEnabled();
+      long t1 = timed ? System.nanoTime() : 0;
       Object retval = invokeNextInterceptor(ctx, command);
+      if (timed) latencies.recordSince(LatencyStatistics.Operation.REMOVE, t1);
       if (retval == null) {
-         removeMisses.incrementAndGet();
+         removeMisses.increment();
       } else {
-         removeHits.incrementAndGet();
+         removeHits.increment();
       }
       return retval;
    }
 
+   @Override
+   public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
+      if (!latencies.isEnabled() || !ctx.isOriginLocal()) return invokeNextInterceptor(ctx, command);
+      long t1 = System.nanoTime();
+      Object retval = invokeNextInterceptor(ctx, command);
+      latencies.recordSince(LatencyStatistics.Operation.PREPARE, t1);
+      return retval;
+   }
+
+   @Override
+   public Object visitCommitCommand(TxInvocationContext ctx, CommitCommand command) throws Throwable {
+      if (!latencies.isEnabled() || !ctx.isOriginLocal()) return invokeNextInterceptor(ctx, command);
+      long t1 = System.nanoTime();
+      Object retval = invokeNextInterceptor(ctx, command);
+      latencies.recordSince(LatencyStatistics.Operation.COMMIT, t1);
+      return retval;
+   }
+
    @ManagedAttribute(description = "Number of cache attribute hits")
    @Metric(displayName = "Number of cache hits", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getHits() {
@@ -180,9 +235,10 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @ManagedAttribute(description = "read/writes ratio for the cache")
    @Metric(displayName = "Read/write ratio", units = Units.PERCENTAGE, displayType = DisplayType.SUMMARY)
    public double getReadWriteRatio() {
-      if (stores.get() == 0)
+      long storesL = stores.get();
+      if (storesL == 0)
          return 0;
-      return (((double) (hits.get() + misses.get()) / (double) stores.get()));
+      return (((double) (hits.get() + misses.get()) / (double) storesL));
    }
 
    @ManagedAttribute(description = "Average number of milliseconds for a read operation on the cache")
@@ -191,15 +247,45 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
       long total = hits.get() + misses.get();
       if (total == 0)
          return 0;
-      return (hitTimes.get() + missTimes.get()) / total;
+      return TimeUnit.NANOSECONDS.toMillis((hitTimes.get() + missTimes.get()) / total);
    }
 
    @ManagedAttribute(description = "Average number of milliseconds for a write operation in the cache")
    @Metric(displayName = "Average write time", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
    public long getAverageWriteTime() {
-      if (stores.get() == 0)
+      long storesL = stores.get();
+      if (storesL == 0)
          return 0;
-      return (storeTimes.get()) / stores.get();
+      return TimeUnit.NANOSECONDS.toMillis(storeTimes.get() / storesL);
+   }
+
+   @ManagedOperation(description = "Returns a percentile of the latency of an operation, in microseconds")
+   @Operation(displayName = "Latency percentile")
+   public double getLatencyPercentile(@Parameter(name = "operation", description = "One of GET_HIT, GET_MISS, PUT, REMOVE, REMOTE_GET, PREPARE, COMMIT, CACHE_LOAD or CACHE_STORE") String operation,
+                                      @Parameter(name = "percentile", description = "Percentile between 0 and 100, e.g. 99.9") double percentile) {
+      long nanos = latencies.snapshot(LatencyStatistics.Operation.valueOf(operation)).getPercentile(percentile);
+      return nanos / 1000d;
+   }
+
+   @ManagedAttribute(description = "Latency percentiles of cache operations, or an empty string if latency histograms are disabled")
+   @Metric(displayName = "Latency percentiles", dataType = DataType.TRAIT)
+   public String getLatencySummary() {
+      if (!latencies.isEnabled()) return "";
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<LatencyStatistics.Operation, LatencyHistogram.Snapshot> e : latencies.snapshots().entrySet()) {
+         if (e.getValue().getCount() == 0) continue;
+         if (sb.length() > 0) sb.append('\n');
+         sb.append(e.getKey()).append(": ").append(e.getValue());
+      }
+      return sb.toString();
+   }
+
+   public LatencyHistogram.Snapshot getLatencySnapshot(LatencyStatistics.Operation operation) {
+      return latencies.snapshot(operation);
+   }
+
+   public boolean isLatencyHistogramsEnabled() {
+      return latencies.isEnabled();
    }
 
    @ManagedAttribute(description = "Number of entries currently in the cache")
@@ -208,6 +294,14 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
       return dataContainer.size();
    }
 
+   @ManagedAttribute(description = "Estimated amount of memory retained by the cache entries, in bytes, or -1 if eviction is not bounded by memory")
+   @Metric(displayName = "Estimated memory retained by cache entries", units = Units.BYTES, displayType = DisplayType.SUMMARY)
+   public long getMemorySize() {
+      if (dataContainer instanceof DefaultDataContainer)
+         return ((DefaultDataContainer) dataContainer).getMemorySize();
+      return -1;
+   }
+
    @ManagedAttribute(description = "Number of seconds since cache started")
    @Metric(displayName = "Seconds since cache started", units = Units.SECONDS, measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getElapsedTime() {
@@ -223,15 +317,16 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @ManagedOperation(description = "Resets statistics gathered by this component")
    @Operation(displayName = "Reset Statistics (Statistics)")
    public void resetStatistics() {
-      hits.set(0);
-      misses.set(0);
-      stores.set(0);
-      evictions.set(0);
-      hitTimes.set(0);
-      missTimes.set(0);
-      storeTimes.set(0);
-      removeHits.set(0);
-      removeMisses.set(0);
+      hits.reset();
+      misses.reset();
+      stores.reset();
+      evictions.reset();
+      hitTimes.reset();
+      missTimes.reset();
+      storeTimes.reset();
+      removeHits.reset();
+      removeMisses.reset();
+      latencies.reset();
       reset.set(System.currentTimeMillis());
    }
 }
@@ -46,24 +46,34 @@ import org.infinispan.interceptors.base.JmxStatsCommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.loaders.BulkOperations;
+import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderManager;
 import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.decorators.AbstractDelegatingStore;
+import org.infinispan.loaders.decorators.AsyncStore;
+import org.infinispan.loaders.decorators.ChainingCacheStore;
 import org.infinispan.loaders.modifications.Clear;
 import org.infinispan.loaders.modifications.Modification;
 import org.infinispan.loaders.modifications.Remove;
 import org.infinispan.loaders.modifications.Store;
+import org.infinispan.stats.LatencyStatistics;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Units;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.infinispan.context.Flag.SKIP_CACHE_STORE;
@@ -83,7 +93,9 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
    private Map<GlobalTransaction, Set<Object>> preparingTxs;
    final AtomicLong cacheStores = new AtomicLong(0);
    CacheStore store;
+   private List<AsyncStore> asyncStores = Collections.emptyList();
    private CacheLoaderManager loaderManager;
+   private LatencyStatistics latencies;
 
    public CacheStoreInterceptor() {
       log = LogFactory.getLog(getClass());
@@ -91,13 +103,19 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
    }
 
    @Inject
-   protected void init(CacheLoaderManager loaderManager) {
+   protected void init(CacheLoaderManager loaderManager, LatencyStatistics latencies) {
       this.loaderManager = loaderManager;
+      this.latencies = latencies;
    }
 
    @Start(priority = 15)
    protected void start() {
       store = loaderManager.getCacheStore();
+      if (store != null) {
+         List<AsyncStore> found = new ArrayList<AsyncStore>(1);
+         collectAsyncStores(store, found);
+         asyncStores = found;
+      }
       this.setStatisticsEnabled(configuration.isExposeJmxStatistics());
       loaderConfig = configuration.getCacheLoaderManagerConfig();
       txStores = new ConcurrentHashMap<GlobalTransaction, Integer>(64, 0.75f, configuration.getConcurrencyLevel());
@@ -208,7 +226,7 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
 
       Object key = command.getKey();
       InternalCacheEntry se = getStoredEntry(key, ctx);
-      store.store(se);
+      storeEntry(se);
       if (trace) log.tracef("Stored entry %s under key %s", se, key);
       if (getStatisticsEnabled()) cacheStores.incrementAndGet();
 
@@ -222,7 +240,7 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
 
       Object key = command.getKey();
       InternalCacheEntry se = getStoredEntry(key, ctx);
-      store.store(se);
+      storeEntry(se);
       if (trace) log.tracef("Stored entry %s under key %s", se, key);
       if (getStatisticsEnabled()) cacheStores.incrementAndGet();
 
@@ -235,11 +253,13 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
       if (skip(ctx, command) || ctx.isInTxScope()) return returnValue;
 
       Map<Object, Object> map = command.getMap();
-      for (Object key : map.keySet()) {
-         InternalCacheEntry se = getStoredEntry(key, ctx);
-         store.store(se);
-         if (trace) log.tracef("Stored entry %s under key %s", se, key);
-      }
+      List<InternalCacheEntry> entries = new ArrayList<InternalCacheEntry>(map.size());
+      for (Object key : map.keySet()) entries.add(getStoredEntry(key, ctx));
+      boolean timed = latencies.isEnabled();
+      long start = timed ? System.nanoTime() : 0;
+      BulkOperations.storeAll(store, entries);
+      if (timed) latencies.recordSince(LatencyStatistics.Operation.CACHE_STORE, start);
+      if (trace) log.tracef("Stored entries %s", entries);
       if (getStatisticsEnabled()) cacheStores.getAndAdd(map.size());
       return returnValue;
    }
@@ -343,6 +363,7 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
    @Operation(displayName = "Reset statistics")
    public void resetStatistics() {
       cacheStores.set(0);
+      for (AsyncStore s : asyncStores) s.resetStatistics();
    }
 
    @ManagedAttribute(description = "number of cache loader stores")
@@ -351,6 +372,60 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
       return cacheStores.get();
    }
 
+   @ManagedAttribute(description = "Number of modifications queued or pending in asynchronous (write-behind) cache stores")
+   @Metric(displayName = "Async store queue depth", displayType = DisplayType.SUMMARY)
+   public long getAsyncStoreQueueDepth() {
+      long depth = 0;
+      for (AsyncStore s : asyncStores) depth += s.getQueueDepth() + s.getPendingModifications();
+      return depth;
+   }
+
+   @ManagedAttribute(description = "Average number of modifications flushed per batch by asynchronous cache stores")
+   @Metric(displayName = "Async store average batch size", displayType = DisplayType.SUMMARY)
+   public long getAsyncStoreAverageBatchSize() {
+      long flushes = 0, modifications = 0;
+      for (AsyncStore s : asyncStores) {
+         flushes += s.getFlushCount();
+         modifications += s.getFlushedModificationCount();
+      }
+      return flushes == 0 ? 0 : modifications / flushes;
+   }
+
+   @ManagedAttribute(description = "Average number of milliseconds taken to flush a batch to the underlying store by asynchronous cache stores")
+   @Metric(displayName = "Async store average flush time", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public long getAsyncStoreAverageFlushTime() {
+      long flushes = 0, time = 0;
+      for (AsyncStore s : asyncStores) {
+         flushes += s.getFlushCount();
+         time += s.getTotalFlushTime();
+      }
+      return flushes == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(time / flushes);
+   }
+
+   @ManagedAttribute(description = "Maximum number of milliseconds taken to flush a batch to the underlying store by asynchronous cache stores")
+   @Metric(displayName = "Async store maximum flush time", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public long getAsyncStoreMaxFlushTime() {
+      long max = 0;
+      for (AsyncStore s : asyncStores) max = Math.max(max, s.getMaxFlushTime());
+      return TimeUnit.NANOSECONDS.toMillis(max);
+   }
+
+   private static void collectAsyncStores(CacheStore store, List<AsyncStore> found) {
+      if (store instanceof AsyncStore) found.add((AsyncStore) store);
+      if (store instanceof AbstractDelegatingStore) {
+         collectAsyncStores(((AbstractDelegatingStore) store).getDelegate(), found);
+      } else if (store instanceof ChainingCacheStore) {
+         for (CacheStore s : ((ChainingCacheStore) store).getStores().keySet()) collectAsyncStores(s, found);
+      }
+   }
+
+   private void storeEntry(InternalCacheEntry se) throws CacheLoaderException {
+      boolean timed = latencies.isEnabled();
+      long start = timed ? System.nanoTime() : 0;
+      store.store(se);
+      if (timed) latencies.recordSince(LatencyStatistics.Operation.CACHE_STORE, start);
+   }
+
    InternalCacheEntry getStoredEntry(Object key, InvocationContext ctx) {
       CacheEntry entry = ctx.lookupEntry(key);
       if (entry instanceof InternalCacheEntry) {
@@ -32,9 +32,11 @@ import org.infinispan.context.InvocationContext;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
+import org.infinispan.loaders.BulkOperations;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -91,12 +93,13 @@ public class DistCacheStoreInterceptor extends CacheStoreInterceptor {
       if (skip(ctx) || ctx.isInTxScope()) return returnValue;
 
       Map<Object, Object> map = command.getMap();
+      List<InternalCacheEntry> entries = new ArrayList<InternalCacheEntry>(map.size());
       for (Object key : map.keySet()) {
-         if (!skipKey(key)) {
-            InternalCacheEntry se = getStoredEntry(key, ctx);
-            store.store(se);
-            log.tracef("Stored entry %s under key %s", se, key);
-         }
+         if (!skipKey(key)) entries.add(getStoredEntry(key, ctx));
+      }
+      if (!entries.isEmpty()) {
+         BulkOperations.storeAll(store, entries);
+         log.tracef("Stored entries %s", entries);
       }
       if (getStatisticsEnabled()) cacheStores.getAndAdd(map.size());
       return returnValue;
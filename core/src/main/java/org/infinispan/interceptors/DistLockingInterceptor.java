@@ -41,6 +41,12 @@ public class DistLockingInterceptor extends LockingInterceptor {
       this.dm = dm;
    }
 
+   @Override
+   protected boolean isValidatedLocally(Object key) {
+      // versions of entries this node does not own are validated by their owners
+      return dm.getLocality(key).isLocal();
+   }
+
    protected void commitEntry(CacheEntry entry, boolean skipOwnershipCheck) {
       boolean doCommit = true;
       // ignore locality for removals, even if skipOwnershipCheck is not true
@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -38,6 +39,8 @@ import org.infinispan.container.DataContainer;
 import org.infinispan.container.EntryFactory;
 import org.infinispan.container.entries.CacheEntry;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.MVCCEntry;
+import org.infinispan.container.entries.NullMarkerEntry;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.LocalTxInvocationContext;
@@ -51,6 +54,7 @@ import org.infinispan.interceptors.base.BaseRpcInterceptor;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.SuccessfulResponse;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.stats.LatencyStatistics;
 import org.infinispan.util.Immutables;
 import org.infinispan.util.concurrent.NotifyingFutureImpl;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
@@ -78,6 +82,7 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
    boolean isL1CacheEnabled, needReliableReturnValues;
    EntryFactory entryFactory;
    L1Manager l1Manager;
+   LatencyStatistics latencies;
 
    static final RecipientGenerator CLEAR_COMMAND_GENERATOR = new RecipientGenerator() {
       public List<Address> generateRecipients() {
@@ -90,12 +95,13 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
    };
 
    @Inject
-   public void injectDependencies(DistributionManager distributionManager, CommandsFactory cf, DataContainer dataContainer, EntryFactory entryFactory, L1Manager l1Manager) {
+   public void injectDependencies(DistributionManager distributionManager, CommandsFactory cf, DataContainer dataContainer, EntryFactory entryFactory, L1Manager l1Manager, LatencyStatistics latencies) {
       this.dm = distributionManager;
       this.cf = cf;
       this.dataContainer = dataContainer;
       this.entryFactory = entryFactory;
       this.l1Manager = l1Manager;
+      this.latencies = latencies;
    }
 
    @Start
@@ -132,6 +138,43 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       return returnValue;
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      boolean isRehashInProgress = !dm.isJoinComplete() || dm.isRehashInProgress();
+      Map<Object, Object> returnValue = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+
+      if (isL1CacheEnabled && !ctx.isOriginLocal()) {
+         for (Object key : returnValue.keySet()) l1Manager.addRequestor(key, ctx.getOrigin());
+      }
+
+      // keys owned elsewhere are fetched with a single batched get per owner, keys that are mapped here but may not
+      // have been received yet because of an ongoing rehash are looked up one by one, as visitGetKeyValueCommand does
+      List<Object> remoteKeys = null;
+      for (Object key : command.getKeys()) {
+         if (!needsRemoteGet(ctx, key, !returnValue.containsKey(key))) continue;
+         boolean isMappedToLocalNode = dm.getLocality(key).isLocal();
+         if (ctx.isOriginLocal() && !isMappedToLocalNode && isNotInL1(key)) {
+            if (remoteKeys == null) remoteKeys = new LinkedList<Object>();
+            remoteKeys.add(key);
+         } else if (isMappedToLocalNode && isRehashInProgress) {
+            Object value = realRemoteGet(ctx, key, false, false);
+            if (value != null) returnValue.put(key, command.isReturnCacheEntries() ? ctx.lookupEntry(key) : value);
+         }
+      }
+
+      if (remoteKeys != null) {
+         if (trace) log.tracef("Doing a remote get for keys %s", remoteKeys);
+         Map<Object, InternalCacheEntry> remoteEntries = dm.retrieveFromRemoteSources(remoteKeys, ctx);
+         for (Map.Entry<Object, InternalCacheEntry> e : remoteEntries.entrySet()) {
+            InternalCacheEntry ice = e.getValue();
+            storeRemoteEntry(ctx, e.getKey(), ice, true, false);
+            returnValue.put(e.getKey(), command.isReturnCacheEntries() ? ice : ice.getValue());
+         }
+      }
+      return returnValue;
+   }
+
    private boolean needsRemoteGet(InvocationContext ctx, Object key, boolean retvalCheck) {
       CacheEntry entry;
       return retvalCheck && !ctx.hasFlag(Flag.SKIP_REMOTE_LOOKUP) && ((entry = ctx.lookupEntry(key)) == null || entry.isNull() || entry.isLockPlaceholder());
@@ -174,35 +217,60 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
    private Object realRemoteGet(InvocationContext ctx, Object key, boolean storeInL1, boolean isWrite) throws Throwable {
       if (trace) log.tracef("Doing a remote get for key %s", key);
       // attempt a remote lookup
+      boolean timed = latencies.isEnabled();
+      long start = timed ? System.nanoTime() : 0;
       InternalCacheEntry ice = dm.retrieveFromRemoteSource(key, ctx);
+      if (timed) latencies.recordSince(LatencyStatistics.Operation.REMOTE_GET, start);
 
       if (ice != null) {
-         if (storeInL1) {
-            if (isL1CacheEnabled) {
-               if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
-               long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
-               PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
-               entryFactory.wrapEntryForWriting(ctx, key, true, false, ctx.hasLockedKey(key), false, false);
-               invokeNextInterceptor(ctx, put);
-            } else {
-               CacheEntry ce = ctx.lookupEntry(key);
-               if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
-                  if (ce != null && ce.isChanged()) {
-                     ce.setValue(ice.getValue());
-                  } else {
-                     if (isWrite)
-                        entryFactory.wrapEntryForWriting(ctx, ice, true, false, ctx.hasLockedKey(key), false, false);
-                     else
-                        ctx.putLookedUpEntry(key, ice);
-                  }
-               }
+         storeRemoteEntry(ctx, key, ice, storeInL1, isWrite);
+         return ice.getValue();
+      }
+      // the owners do not have the entry, so a blind write is validated against its absence
+      CacheEntry ce;
+      if (isWrite && (ce = ctx.lookupEntry(key)) instanceof MVCCEntry && ((MVCCEntry) ce).getVersion() == MVCCEntry.UNREAD_VERSION)
+         setVersionRead(ce, MVCCEntry.NON_EXISTENT_VERSION);
+      return null;
+   }
+
+   private void storeRemoteEntry(InvocationContext ctx, Object key, InternalCacheEntry ice, boolean storeInL1, boolean isWrite) throws Throwable {
+      if (storeInL1) {
+         if (isL1CacheEnabled) {
+            if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
+            long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
+            PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
+            MVCCEntry mvccEntry = entryFactory.wrapEntryForWriting(ctx, key, true, false, ctx.hasLockedKey(key), false, false);
+            if (mvccEntry != null) {
+               setVersionRead(mvccEntry, ice.getVersion());
+               // the L1 copy keeps the owner's version, unless a transaction commits it with a version of its own
+               mvccEntry.setCommitVersion(ice.getVersion());
             }
+            invokeNextInterceptor(ctx, put);
          } else {
-            if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
+            CacheEntry ce = ctx.lookupEntry(key);
+            if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
+               if (ce != null && ce.isChanged()) {
+                  ce.setValue(ice.getValue());
+                  setVersionRead(ce, ice.getVersion());
+               } else {
+                  if (isWrite)
+                     setVersionRead(entryFactory.wrapEntryForWriting(ctx, ice, true, false, ctx.hasLockedKey(key), false, false), ice.getVersion());
+                  else
+                     ctx.putLookedUpEntry(key, ice);
+               }
+            }
          }
-         return ice.getValue();
+      } else {
+         if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
       }
-      return null;
+   }
+
+   /**
+    * Entries written before being fetched from their owners were wrapped without knowing their version.  With
+    * optimistic locking, the version fetched is the one the write is validated against when the transaction prepares.
+    */
+   private static void setVersionRead(CacheEntry entry, long version) {
+      if (entry instanceof MVCCEntry && !(entry instanceof NullMarkerEntry)) ((MVCCEntry) entry).setVersion(version);
    }
 
    /**
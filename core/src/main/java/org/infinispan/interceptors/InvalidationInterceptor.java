@@ -45,6 +45,7 @@ import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.util.concurrent.NotifyingFutureImpl;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.concurrent.StripedCounter;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
@@ -59,7 +60,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -77,7 +77,7 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 @MBean(objectName = "Invalidation", description = "Component responsible for invalidating entries on remote caches when entries are written to locally.")
 public class InvalidationInterceptor extends BaseRpcInterceptor {
-   private final AtomicLong invalidations = new AtomicLong(0);
+   private final StripedCounter invalidations = new StripedCounter();
    protected Map<GlobalTransaction, List<VisitableCommand>> txMods;
    private CommandsFactory commandsFactory;
    @ManagedAttribute(description = "Enables or disables the gathering of statistics by this component", writable = true)
@@ -226,7 +226,7 @@ public class InvalidationInterceptor extends BaseRpcInterceptor {
    }
 
    private void incrementInvalidations() {
-      if (statisticsEnabled) invalidations.incrementAndGet();
+      if (statisticsEnabled) invalidations.increment();
    }
    
    private boolean isPutForExternalRead(InvocationContext ctx) {
@@ -240,7 +240,7 @@ public class InvalidationInterceptor extends BaseRpcInterceptor {
    @ManagedOperation(description = "Resets statistics gathered by this component")
    @Operation(displayName = "Reset statistics")
    public void resetStatistics() {
-      invalidations.set(0);
+      invalidations.reset();
    }
 
    @Metric(displayName = "Statistics enabled", dataType = DataType.TRAIT)
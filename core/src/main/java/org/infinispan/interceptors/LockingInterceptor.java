@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.CacheException;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.AbstractTransactionBoundaryCommand;
 import org.infinispan.commands.tx.CommitCommand;
@@ -47,17 +48,25 @@ import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
 import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
 import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.ClusterIdGenerator;
 import org.infinispan.util.ReversibleOrderedSet;
+import org.infinispan.util.Util;
 import org.infinispan.util.concurrent.IsolationLevel;
 import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.concurrent.locks.LockManager;
+import org.infinispan.util.concurrent.locks.WriteSkewException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -75,6 +84,27 @@ public class LockingInterceptor extends CommandInterceptor {
    EntryFactory entryFactory;
    boolean useReadCommitted;
    Transport transport;
+   EmbeddedCacheManager cacheManager;
+   boolean optimisticLocking;
+   boolean clustered;
+   ClusterIdGenerator versionGenerator;
+
+   /**
+    * Orders keys for lock acquisition at prepare time, so that transactions modifying overlapping sets of keys always
+    * attempt to lock them in the same order.  Keys with colliding hash codes are ordered by their natural order where
+    * possible; otherwise the lock acquisition timeout resolves the rare deadlocks this may cause.
+    */
+   private static final Comparator<Object> KEY_ORDER = new Comparator<Object>() {
+      @SuppressWarnings("unchecked")
+      public int compare(Object o1, Object o2) {
+         int h1 = o1.hashCode();
+         int h2 = o2.hashCode();
+         if (h1 != h2) return h1 < h2 ? -1 : 1;
+         if (o1 instanceof Comparable && o1.getClass() == o2.getClass())
+            return ((Comparable<Object>) o1).compareTo(o2);
+         return 0;
+      }
+   };
 
    @Inject
    public void setDependencies(LockManager lockManager, DataContainer dataContainer, EntryFactory entryFactory, Transport transport) {
@@ -84,9 +114,32 @@ public class LockingInterceptor extends CommandInterceptor {
       this.transport = transport;
    }
 
+   @Inject
+   public void injectCacheManager(EmbeddedCacheManager cacheManager) {
+      this.cacheManager = cacheManager;
+   }
+
    @Start
    private void determineIsolationLevel() {
       useReadCommitted = configuration.getIsolationLevel() == IsolationLevel.READ_COMMITTED;
+      optimisticLocking = configuration.isOptimisticLocking();
+      clustered = configuration.getCacheMode().isClustered();
+      if (optimisticLocking) {
+         // commit versions need to be unique cluster wide since they are shipped to all owners with the prepare
+         versionGenerator = new ClusterIdGenerator();
+         ClusterIdGenerator.RankCalculator rcl = versionGenerator.getRankCalculatorListener();
+         cacheManager.addListener(rcl);
+         if (transport != null)
+            rcl.calculateRank(transport.getAddress(), transport.getMembers(), transport.getViewId());
+      }
+   }
+
+   @Stop
+   private void stopVersionGenerator() {
+      if (versionGenerator != null) {
+         cacheManager.removeListener(versionGenerator.getRankCalculatorListener());
+         versionGenerator = null;
+      }
    }
 
    @Override
@@ -128,16 +181,90 @@ public class LockingInterceptor extends CommandInterceptor {
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       try {
          abortIfRemoteTransactionInvalid(ctx, command);
+         if (optimisticLocking) lockAndValidate(ctx, command);
          return invokeNextInterceptor(ctx, command);
       } catch (TimeoutException te) {
          cleanupLocks(ctx, false);
          throw te;
+      } catch (WriteSkewException wse) {
+         cleanupLocks(ctx, false);
+         throw wse;
       } finally {
          if (command.isOnePhaseCommit())
             cleanupLocks(ctx, true);
       }
    }
 
+   /**
+    * With optimistic locking, the keys modified by the transaction are only locked here, in key order.  Once the locks
+    * are held, the version of every modified entry is compared with the version the transaction originally read, and
+    * the prepare fails if any of them changed in the meantime.  The originator then picks the version the entries are
+    * committed with and ships it, along with the versions read, to the remote owners which repeat the validation.
+    */
+   private void lockAndValidate(TxInvocationContext ctx, PrepareCommand command) throws InterruptedException {
+      Map<Object, Long> versionsSeen;
+      long commitVersion;
+      if (ctx.isOriginLocal()) {
+         versionsSeen = new HashMap<Object, Long>();
+         for (Map.Entry<Object, CacheEntry> e : ctx.getLookedUpEntries().entrySet()) {
+            CacheEntry entry = e.getValue();
+            if (entry == null)
+               versionsSeen.put(e.getKey(), MVCCEntry.NON_EXISTENT_VERSION);
+            else if (entry.isChanged() && entry instanceof MVCCEntry)
+               versionsSeen.put(e.getKey(), ((MVCCEntry) entry).getVersion());
+         }
+         if (versionsSeen.isEmpty()) return;
+         commitVersion = versionGenerator.newVersion(clustered);
+         command.setVersions(versionsSeen, commitVersion);
+      } else {
+         versionsSeen = command.getVersionsSeen();
+         if (versionsSeen == null) return;
+         commitVersion = command.getCommitVersion();
+      }
+
+      lockInKeyOrder(ctx, versionsSeen.keySet());
+
+      for (Map.Entry<Object, Long> e : versionsSeen.entrySet()) {
+         Object key = e.getKey();
+         // blind writes are locked, but there is nothing to validate them against
+         if (isValidatedLocally(key) && e.getValue() != MVCCEntry.UNREAD_VERSION) {
+            InternalCacheEntry ice = dataContainer.peek(key);
+            long currentVersion = ice == null || ice.isExpired() ? MVCCEntry.NON_EXISTENT_VERSION : ice.getVersion();
+            if (currentVersion != e.getValue()) {
+               log.unableToCopyEntryForUpdate(key);
+               throw new WriteSkewException("Detected write skew on key [" + key + "] for transaction "
+                     + ctx.getGlobalTransaction() + ": read version " + e.getValue() + " but current version is " + currentVersion);
+            }
+         }
+         CacheEntry entry = ctx.lookupEntry(key);
+         if (entry instanceof MVCCEntry && entry.isChanged()) ((MVCCEntry) entry).setCommitVersion(commitVersion);
+      }
+   }
+
+   private void lockInKeyOrder(InvocationContext ctx, Collection<Object> keys) throws InterruptedException {
+      Object[] sorted = keys.toArray();
+      Arrays.sort(sorted, KEY_ORDER);
+      for (Object key : sorted) lockIfNotOwned(ctx, key);
+   }
+
+   private void lockIfNotOwned(InvocationContext ctx, Object key) throws InterruptedException {
+      if (lockManager.ownsLock(key, ctx.getLockOwner())) return;
+      if (!lockManager.lockAndRecord(key, ctx)) {
+         Object owner = lockManager.getOwner(key);
+         throw new TimeoutException("Unable to acquire lock after [" + Util.prettyPrintTime(configuration.getLockAcquisitionTimeout()) + "] on key [" + key + "] for requestor [" +
+               ctx.getLockOwner() + "]! Lock held by [" + owner + "]");
+      }
+      // make sure the lock is released when the transaction completes, even if the key was not wrapped
+      if (!ctx.getLookedUpEntries().containsKey(key)) ctx.putLookedUpEntry(key, null);
+   }
+
+   /**
+    * @return true if the version of the given key is validated against the local data container at prepare time
+    */
+   protected boolean isValidatedLocally(Object key) {
+      return true;
+   }
+
    // read commands
 
    @Override
@@ -150,6 +277,16 @@ public class LockingInterceptor extends CommandInterceptor {
       }
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         for (Object key : command.getKeys()) entryFactory.wrapEntryForReading(ctx, key);
+         return invokeNextInterceptor(ctx, command);
+      } finally {
+         doAfterCall(ctx);
+      }
+   }
+
    @Override
    public Object visitLockControlCommand(TxInvocationContext ctx, LockControlCommand c) throws Throwable {
       boolean localTxScope = ctx.isOriginLocal() && ctx.isInTxScope();
@@ -211,7 +348,9 @@ public class LockingInterceptor extends CommandInterceptor {
 
    private void lockKeysForLockCommand(TxInvocationContext ctx, LockControlCommand c) throws InterruptedException {
       for (Object key : c.getKeys()) {
-         MVCCEntry e = entryFactory.wrapEntryForWriting(ctx, key, true, false, false, false, false);
+         // explicit locks are acquired straight away, even if locking is otherwise deferred until prepare
+         if (optimisticLocking) lockIfNotOwned(ctx, key);
+         MVCCEntry e = entryFactory.wrapEntryForWriting(ctx, key, true, false, optimisticLocking, false, false);
          if (e != null && e.isCreated()) {
             // mark as temporary entry just for the sake of a lock command
             e.setLockPlaceholder(true);
@@ -361,7 +500,8 @@ public class LockingInterceptor extends CommandInterceptor {
             Map.Entry<Object, CacheEntry> e = it.next();
             CacheEntry entry = e.getValue();
             Object key = e.getKey();
-            boolean needToUnlock = lockManager.possiblyLocked(entry);
+            // with optimistic locking, changed entries are not necessarily locked
+            boolean needToUnlock = lockManager.possiblyLocked(entry) && (!optimisticLocking || lockManager.ownsLock(key, owner));
             // could be null with read-committed
             if (entry != null && entry.isChanged()) {
                commitEntry(entry, ctx.hasFlag(Flag.SKIP_OWNERSHIP_CHECK));
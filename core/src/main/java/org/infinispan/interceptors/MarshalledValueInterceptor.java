@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.ValuesCommand;
@@ -50,6 +51,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -193,6 +195,35 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
       return processRetVal(retVal, ctx);
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      List<MarshalledValue> marshalledKeys = null;
+      if (wrapKeys) {
+         List<Object> keys = new ArrayList<Object>(command.getKeys().size());
+         marshalledKeys = new ArrayList<MarshalledValue>(keys.size());
+         for (Object key : command.getKeys()) {
+            if (!isTypeExcluded(key.getClass())) {
+               MarshalledValue mv = createMarshalledValue(key, ctx);
+               marshalledKeys.add(mv);
+               key = mv;
+            }
+            keys.add(key);
+         }
+         command.setKeys(keys);
+      }
+      Map<Object, Object> retVal = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+      if (marshalledKeys != null) {
+         for (MarshalledValue mv : marshalledKeys) compact(mv);
+      }
+      if (!ctx.isOriginLocal() || retVal == null) return retVal;
+      Map<Object, Object> unwrapped = new HashMap<Object, Object>(retVal.size());
+      for (Map.Entry<Object, Object> e : retVal.entrySet()) {
+         unwrapped.put(processRetVal(e.getKey(), ctx), processRetVal(e.getValue(), ctx));
+      }
+      return unwrapped;
+   }
+
    @Override
    @SuppressWarnings("unchecked")
    public Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable {
@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -50,6 +51,7 @@ import org.infinispan.transaction.TransactionCoordinator;
 import org.infinispan.transaction.TransactionLog;
 import org.infinispan.transaction.TransactionTable;
 import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.concurrent.StripedCounter;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
 import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
@@ -61,7 +63,6 @@ import javax.transaction.RollbackException;
 import javax.transaction.Status;
 import javax.transaction.SystemException;
 import javax.transaction.Transaction;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Interceptor in charge with handling transaction related operations, e.g enlisting cache as an transaction
@@ -78,9 +79,9 @@ public class TxInterceptor extends CommandInterceptor {
    private TransactionLog transactionLog;
    private TransactionTable txTable;
 
-   private final AtomicLong prepares = new AtomicLong(0);
-   private final AtomicLong commits = new AtomicLong(0);
-   private final AtomicLong rollbacks = new AtomicLong(0);
+   private final StripedCounter prepares = new StripedCounter();
+   private final StripedCounter commits = new StripedCounter();
+   private final StripedCounter rollbacks = new StripedCounter();
    @ManagedAttribute(description = "Enables or disables the gathering of statistics by this component", writable = true)
    private boolean statisticsEnabled;
    protected TransactionCoordinator txCoordinator;
@@ -121,7 +122,7 @@ public class TxInterceptor extends CommandInterceptor {
       if (!command.isOnePhaseCommit()) {
          transactionLog.logPrepare(command);
       }
-      if (this.statisticsEnabled) prepares.incrementAndGet();
+      if (this.statisticsEnabled) prepares.increment();
       Object result = invokeNextInterceptor(ctx, command);
       if (command.isOnePhaseCommit()) {
          transactionLog.logOnePhaseCommit(ctx.getGlobalTransaction(), command.getModifications());
@@ -138,7 +139,7 @@ public class TxInterceptor extends CommandInterceptor {
 
    @Override
    public Object visitCommitCommand(TxInvocationContext ctx, CommitCommand command) throws Throwable {
-      if (this.statisticsEnabled) commits.incrementAndGet();
+      if (this.statisticsEnabled) commits.increment();
       Object result = invokeNextInterceptor(ctx, command);
       markCompleted(ctx, command.getGlobalTransaction(), true);
       transactionLog.logCommit(command.getGlobalTransaction());
@@ -147,7 +148,7 @@ public class TxInterceptor extends CommandInterceptor {
 
    @Override
    public Object visitRollbackCommand(TxInvocationContext ctx, RollbackCommand command) throws Throwable {
-      if (this.statisticsEnabled) rollbacks.incrementAndGet();
+      if (this.statisticsEnabled) rollbacks.increment();
       transactionLog.rollback(command.getGlobalTransaction());
       markCompleted(ctx, command.getGlobalTransaction(), false);
       return invokeNextInterceptor(ctx, command);
@@ -193,6 +194,11 @@ public class TxInterceptor extends CommandInterceptor {
       return enlistReadAndInvokeNext(ctx, command);
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      return enlistReadAndInvokeNext(ctx, command);
+   }
+
    private Object enlistReadAndInvokeNext(InvocationContext ctx, VisitableCommand command) throws Throwable {
       if (shouldEnlist(ctx)) {
          LocalTransaction localTransaction = enlist(ctx);
@@ -253,9 +259,9 @@ public class TxInterceptor extends CommandInterceptor {
    @ManagedOperation(description = "Resets statistics gathered by this component")
    @Operation(displayName = "Reset Statistics")
    public void resetStatistics() {
-      prepares.set(0);
-      commits.set(0);
-      rollbacks.set(0);
+      prepares.reset();
+      commits.reset();
+      rollbacks.reset();
    }
 
    @Operation(displayName = "Enable/disable statistics")
@@ -23,8 +23,13 @@
 package org.infinispan.loaders;
 
 import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.marshall.StreamingMarshaller;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * An abstract {@link org.infinispan.loaders.CacheLoader} that holds common implementations for some methods
  *
@@ -32,7 +37,7 @@ import org.infinispan.marshall.StreamingMarshaller;
  * @author Mircea.Markus@jboss.com
  * @since 4.0
  */
-public abstract class AbstractCacheLoader implements CacheLoader {
+public abstract class AbstractCacheLoader implements BulkCacheLoader {
 
    protected volatile StreamingMarshaller marshaller;
    protected volatile Cache cache;
@@ -45,6 +50,18 @@ public abstract class AbstractCacheLoader implements CacheLoader {
       return load(key) != null;
    }
 
+   /**
+    * {@inheritDoc} This implementation delegates to {@link CacheLoader#load(Object)} for each key.
+    */
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      for (Object key : keys) {
+         InternalCacheEntry se = load(key);
+         if (se != null) result.add(se);
+      }
+      return result;
+   }
+
    @Override
    public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
       this.marshaller = m;
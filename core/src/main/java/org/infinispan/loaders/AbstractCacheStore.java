@@ -23,6 +23,7 @@
 package org.infinispan.loaders;
 
 import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.modifications.Modification;
 import org.infinispan.loaders.modifications.Remove;
 import org.infinispan.loaders.modifications.Store;
@@ -34,6 +35,8 @@ import org.infinispan.util.logging.LogFactory;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,7 +53,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Mircea.Markus@jboss.com
  * @since 4.0
  */
-public abstract class AbstractCacheStore extends AbstractCacheLoader implements CacheStore {
+public abstract class AbstractCacheStore extends AbstractCacheLoader implements BulkCacheStore {
 
    private static final Log log = LogFactory.getLog(AbstractCacheStore.class);
 
@@ -113,12 +116,21 @@ public abstract class AbstractCacheStore extends AbstractCacheLoader implements
 
    protected abstract void purgeInternal() throws CacheLoaderException;
 
+   /**
+    * Applies modifications in order, on a one phase prepare or a commit.  Consecutive {@link Store} modifications are
+    * written through {@link #storeAll(java.util.Collection)} so that stores supporting bulk writes are used efficiently.
+    */
    protected void applyModifications(List<? extends Modification> mods) throws CacheLoaderException {
+      List<InternalCacheEntry> toStore = new ArrayList<InternalCacheEntry>();
       for (Modification m : mods) {
+         if (m.getType() != Modification.Type.STORE && !toStore.isEmpty()) {
+            storeAll(toStore);
+            toStore.clear();
+         }
          switch (m.getType()) {
             case STORE:
                Store s = (Store) m;
-               store(s.getStoredEntry());
+               toStore.add(s.getStoredEntry());
                break;
             case CLEAR:
                clear();
@@ -131,6 +143,14 @@ public abstract class AbstractCacheStore extends AbstractCacheLoader implements
                throw new IllegalArgumentException("Unknown modification type " + m.getType());
          }
       }
+      if (!toStore.isEmpty()) storeAll(toStore);
+   }
+
+   /**
+    * {@inheritDoc} This implementation delegates to {@link #store(InternalCacheEntry)} for each entry.
+    */
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      for (InternalCacheEntry entry : entries) store(entry);
    }
 
    public void prepare(List<? extends Modification> mods, GlobalTransaction tx, boolean isOnePhase) throws CacheLoaderException {
@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A {@link CacheLoader} able to load several entries at once, more efficiently than loading them one at a time.
+ * Loaders extending {@link AbstractCacheLoader} implement this by loading each key in turn, and may override it.  Callers
+ * holding a plain {@link CacheLoader} should use {@link BulkOperations#loadAll(CacheLoader, java.util.Collection)}.
+ *
+ * @since 5.0
+ */
+public interface BulkCacheLoader extends CacheLoader {
+
+   /**
+    * Loads the entries mapped to by a collection of keys.  Keys that do not exist in the loader, or whose entries have
+    * expired, are simply not represented in the returned set.
+    *
+    * @param keys keys to load
+    * @return a set of entries, or an empty set if none of the keys could be found.
+    * @throws CacheLoaderException in the event of problems reading from source
+    */
+   Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException;
+}
@@ -0,0 +1,47 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.util.Collection;
+
+/**
+ * A {@link CacheStore} able to write several entries at once, more efficiently than storing them one at a time.
+ * Stores extending {@link AbstractCacheStore} implement this by storing each entry in turn, and may override it.
+ * Callers holding a plain {@link CacheStore} should use
+ * {@link BulkOperations#storeAll(CacheStore, java.util.Collection)}.
+ *
+ * @since 5.0
+ */
+public interface BulkCacheStore extends CacheStore, BulkCacheLoader {
+
+   /**
+    * Stores a collection of entries in the store.  It is equivalent to calling {@link #store(InternalCacheEntry)} for
+    * each entry.
+    *
+    * @param entries entries to store
+    * @throws CacheLoaderException in the event of problems writing to the store
+    */
+   void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException;
+}
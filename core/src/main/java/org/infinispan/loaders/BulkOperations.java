@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Loads and stores several entries at once through any {@link CacheLoader} or {@link CacheStore}, using the bulk
+ * operations of those implementing {@link BulkCacheLoader} or {@link BulkCacheStore}, and one call per entry otherwise.
+ *
+ * @since 5.0
+ */
+public final class BulkOperations {
+
+   private BulkOperations() {
+   }
+
+   public static Set<InternalCacheEntry> loadAll(CacheLoader loader, Collection<?> keys) throws CacheLoaderException {
+      if (loader instanceof BulkCacheLoader) return ((BulkCacheLoader) loader).loadAll(keys);
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      for (Object key : keys) {
+         InternalCacheEntry se = loader.load(key);
+         if (se != null) result.add(se);
+      }
+      return result;
+   }
+
+   public static void storeAll(CacheStore store, Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      if (store instanceof BulkCacheStore) {
+         ((BulkCacheStore) store).storeAll(entries);
+      } else {
+         for (InternalCacheEntry entry : entries) store.store(entry);
+      }
+   }
+}
@@ -24,6 +24,11 @@ package org.infinispan.loaders;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.infinispan.Cache;
@@ -101,6 +106,24 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
       locks.acquireLock(key, false);
    }
 
+   /**
+    * Acquires read (false) or write (true) locks on all the given keys, in a fixed order to avoid deadlocks.
+    *
+    * @throws CacheLoaderException if the locks could not be acquired within the lock acquisition timeout
+    */
+   protected final void lockAll(Collection<L> keys, boolean exclusive) throws CacheLoaderException {
+      if (!locks.acquireLocksInOrder(keys, exclusive, globalLockTimeoutMillis))
+         throw new CacheLoaderException("Unable to acquire " + (exclusive ? "write" : "read") + " locks on " + keys.size()
+                                              + " keys within " + globalLockTimeoutMillis + " milliseconds");
+   }
+
+   /**
+    * Releases the locks acquired on the given keys by {@link #lockAll(java.util.Collection, boolean)}.
+    */
+   protected final void unlockAll(Collection<L> keys) {
+      locks.releaseLocksInOrder(keys);
+   }
+
    /**
     * Same as {@link #lockForWriting(Object)}, but with 0 timeout.
     */
@@ -143,6 +166,24 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
       }
    }
 
+   @Override
+   public final Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      if (keys.isEmpty()) {
+         return Collections.emptySet();
+      }
+      List<Object> keyList = new ArrayList<Object>(keys);
+      List<L> lockingKeys = new ArrayList<L>(keyList.size());
+      for (Object key : keyList) {
+         lockingKeys.add(getLockFromKey(key));
+      }
+      lockAll(lockingKeys, false);
+      try {
+         return loadAllLockSafe(keyList, lockingKeys);
+      } finally {
+         unlockAll(lockingKeys);
+      }
+   }
+
    @Override
    public final Set<InternalCacheEntry> load(int maxEntries) throws CacheLoaderException {
       if (maxEntries < 0) {
@@ -201,6 +242,36 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
       }
    }
 
+   @Override
+   public final void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      if (trace) {
+         log.tracef("storeAll(%s entries)", entries.size());
+      }
+      List<InternalCacheEntry> toStore = new ArrayList<InternalCacheEntry>(entries.size());
+      List<L> lockingKeys = new ArrayList<L>(entries.size());
+      for (InternalCacheEntry ed : entries) {
+         if (ed == null) {
+            continue;
+         }
+         if (ed.isExpired()) {
+            // handled exactly as a single store would, i.e. removing any previous value
+            store(ed);
+         } else {
+            toStore.add(ed);
+            lockingKeys.add(getLockFromKey(ed.getKey()));
+         }
+      }
+      if (toStore.isEmpty()) {
+         return;
+      }
+      lockAll(lockingKeys, true);
+      try {
+         storeAllLockSafe(toStore, lockingKeys);
+      } finally {
+         unlockAll(lockingKeys);
+      }
+   }
+
    @Override
    public final boolean remove(Object key) throws CacheLoaderException {
       if (trace) {
@@ -273,5 +344,37 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
 
    protected abstract InternalCacheEntry loadLockSafe(Object key, L lockingKey) throws CacheLoaderException;
 
+   /**
+    * Loads the given keys while the locks for all of them are held.  This implementation loads them one at a time
+    * through {@link #loadLockSafe(Object, Object)}; stores able to read several entries at once should override it.
+    *
+    * @param keys        keys to load
+    * @param lockingKeys the locking key of each of the keys, in the same order
+    */
+   protected Set<InternalCacheEntry> loadAllLockSafe(List<Object> keys, List<L> lockingKeys) throws CacheLoaderException {
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      for (int i = 0; i < keys.size(); i++) {
+         InternalCacheEntry se = loadLockSafe(keys.get(i), lockingKeys.get(i));
+         if (se != null) {
+            result.add(se);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Stores the given non-expired entries while the locks for all of them are held.  This implementation stores them
+    * one at a time through {@link #storeLockSafe(InternalCacheEntry, Object)}; stores able to write several entries at
+    * once should override it.
+    *
+    * @param entries     entries to store
+    * @param lockingKeys the locking key of each of the entries, in the same order
+    */
+   protected void storeAllLockSafe(List<InternalCacheEntry> entries, List<L> lockingKeys) throws CacheLoaderException {
+      for (int i = 0; i < entries.size(); i++) {
+         storeLockSafe(entries.get(i), lockingKeys.get(i));
+      }
+   }
+
    protected abstract L getLockFromKey(Object key) throws CacheLoaderException;
 }
@@ -35,13 +35,13 @@ import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.marshall.StreamingMarshaller;
-import org.infinispan.remoting.responses.ClusteredGetResponseValidityFilter;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.SuccessfulResponse;
-import org.infinispan.remoting.rpc.ResponseFilter;
+import org.infinispan.remoting.rpc.NearestFirstClusteredGet;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyDistanceComparator;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -129,10 +129,12 @@ public class ClusterCacheLoader extends AbstractCacheLoader {
 
    private Collection<Response> doRemoteCall(ClusteredGetCommand clusteredGetCommand) throws CacheLoaderException {
       Set<Address> validMembers = new HashSet<Address>(rpcManager.getTransport().getMembers());
-      validMembers.remove(rpcManager.getTransport().getAddress());
-      ResponseFilter filter = new ClusteredGetResponseValidityFilter(validMembers);
+      Address self = rpcManager.getTransport().getAddress();
+      validMembers.remove(self);
       try {
-         return rpcManager.invokeRemotely(null, clusteredGetCommand, ResponseMode.WAIT_FOR_VALID_RESPONSE, config.getRemoteCallTimeout(), false, filter).values();
+         return new NearestFirstClusteredGet(rpcManager, new TopologyDistanceComparator(self), distributionManager)
+               .invoke(validMembers, clusteredGetCommand, ResponseMode.WAIT_FOR_VALID_RESPONSE,
+                       config.getRemoteCallTimeout()).values();
       } catch (Exception e) {
          log.errorDoingRemoteCall(e);
          throw new CacheLoaderException(e);
@@ -26,6 +26,8 @@ import org.infinispan.Cache;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.BulkCacheStore;
+import org.infinispan.loaders.BulkOperations;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
@@ -34,6 +36,7 @@ import org.infinispan.loaders.modifications.Modification;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -44,7 +47,7 @@ import java.util.Set;
  * @author Manik Surtani
  * @since 4.0
  */
-public class AbstractDelegatingStore implements CacheStore {
+public class AbstractDelegatingStore implements BulkCacheStore {
 
    CacheStore delegate;
 
@@ -68,6 +71,10 @@ public class AbstractDelegatingStore implements CacheStore {
       delegate.store(ed);
    }
 
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      BulkOperations.storeAll(delegate, entries);
+   }
+
    public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
       delegate.fromStream(inputStream);
    }
@@ -112,6 +119,10 @@ public class AbstractDelegatingStore implements CacheStore {
       return delegate.loadAll();
    }
 
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      return BulkOperations.loadAll(delegate, keys);
+   }
+
    @Override
    public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
       return delegate.load(numEntries);
@@ -27,6 +27,7 @@ import org.infinispan.Cache;
 import org.infinispan.CacheException;
 import org.infinispan.config.Configuration;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.AbstractCacheStore;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
@@ -41,6 +42,8 @@ import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockCont
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +58,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -77,6 +81,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * <p/>
  * Write operations affecting same key are now coalesced so that only the final state is actually stored.
  * <p/>
+ * If a <tt>batchWindow</tt> is configured, modifications are collected for up to that many milliseconds (or until
+ * <tt>maxBatchSize</tt> distinct keys are pending) before being flushed.  Each flush hands the coalesced modifications
+ * to the underlying store as a single batch, through a one phase {@link CacheStore#prepare(java.util.List,
+ * org.infinispan.transaction.xa.GlobalTransaction, boolean)} if it extends {@link AbstractCacheStore}, or one
+ * modification at a time otherwise.
+ * <p/>
  *
  * @author Manik Surtani
  * @author Galder Zamarreño
@@ -114,8 +124,15 @@ public class AsyncStore extends AbstractDelegatingStore {
    private final LinkedBlockingQueue<Modification> changesDeque = new LinkedBlockingQueue<Modification>();
    public volatile boolean lastAsyncProcessorShutsDownExecutor = false;
    private long shutdownTimeout;
+   private long batchWindowNanos;
+   private int maxBatchSize;
    private String cacheName;
 
+   private final AtomicLong flushes = new AtomicLong(0);
+   private final AtomicLong flushedModifications = new AtomicLong(0);
+   private final AtomicLong flushTimes = new AtomicLong(0);
+   private final AtomicLong maxFlushTime = new AtomicLong(0);
+
    public AsyncStore(CacheStore delegate, AsyncStoreConfig asyncStoreConfig) {
       super(delegate);
       this.asyncStoreConfig = asyncStoreConfig;
@@ -139,6 +156,9 @@ public class AsyncStore extends AbstractDelegatingStore {
          shutdownTimeout = configuredAsyncStopTimeout;
       }
 
+      batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(asyncStoreConfig.getBatchWindow());
+      maxBatchSize = asyncStoreConfig.getMaxBatchSize();
+
       lockContainer = new ReleaseAllLockContainer(concurrencyLevel);
       transactions = new ConcurrentHashMap<GlobalTransaction, List<? extends Modification>>(64, 0.75f, concurrencyLevel);
    }
@@ -148,6 +168,13 @@ public class AsyncStore extends AbstractDelegatingStore {
       enqueue(new Store(ed));
    }
 
+   @Override
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      List<Modification> mods = new ArrayList<Modification>(entries.size());
+      for (InternalCacheEntry entry : entries) mods.add(new Store(entry));
+      enqueueModificationsList(mods);
+   }
+
    @Override
    public boolean remove(Object key) {
       enqueue(new Remove(key));
@@ -235,20 +262,92 @@ public class AsyncStore extends AbstractDelegatingStore {
    }
 
    protected void applyModificationsSync(ConcurrentMap<Object, Modification> mods) throws CacheLoaderException {
-      Set<Map.Entry<Object, Modification>> entries = mods.entrySet();
-      for (Map.Entry<Object, Modification> entry : entries) {
-         Modification mod = entry.getValue();
+      List<Modification> batch = new ArrayList<Modification>(mods.size());
+      for (Modification mod : mods.values()) {
          switch (mod.getType()) {
             case STORE:
-               super.store(((Store) mod).getStoredEntry());
-               break;
             case REMOVE:
-               super.remove(entry.getKey());
+               batch.add(mod);
                break;
             default:
                throw new IllegalArgumentException("Unexpected modification type " + mod.getType());
          }
       }
+      long start = System.nanoTime();
+      CacheStore delegate = getDelegate();
+      if (delegate instanceof AbstractCacheStore) {
+         // a one phase prepare hands the whole batch to AbstractCacheStore.applyModifications(), which stores
+         // override to write it in a single round trip or storage transaction
+         delegate.prepare(batch, null, true);
+      } else {
+         for (Modification mod : batch) {
+            if (mod.getType() == Modification.Type.STORE)
+               super.store(((Store) mod).getStoredEntry());
+            else
+               super.remove(((Remove) mod).getKey());
+         }
+      }
+      recordFlush(batch.size(), System.nanoTime() - start);
+   }
+
+   private void recordFlush(int batchSize, long duration) {
+      flushes.incrementAndGet();
+      flushedModifications.addAndGet(batchSize);
+      flushTimes.addAndGet(duration);
+      long max;
+      do {
+         max = maxFlushTime.get();
+      } while (duration > max && !maxFlushTime.compareAndSet(max, duration));
+   }
+
+   /**
+    * @return the number of modifications waiting to be picked up by the coordinator thread
+    */
+   public int getQueueDepth() {
+      return changesDeque.size();
+   }
+
+   /**
+    * @return the number of keys whose coalesced modifications are waiting to be flushed
+    */
+   public int getPendingModifications() {
+      ConcurrentMap<Object, Modification> s = state;
+      return s == null ? 0 : s.size();
+   }
+
+   /**
+    * @return the number of batches flushed to the underlying store
+    */
+   public long getFlushCount() {
+      return flushes.get();
+   }
+
+   /**
+    * @return the number of modifications flushed to the underlying store
+    */
+   public long getFlushedModificationCount() {
+      return flushedModifications.get();
+   }
+
+   /**
+    * @return the total time, in nanoseconds, spent applying batches to the underlying store
+    */
+   public long getTotalFlushTime() {
+      return flushTimes.get();
+   }
+
+   /**
+    * @return the longest time, in nanoseconds, spent applying a single batch to the underlying store
+    */
+   public long getMaxFlushTime() {
+      return maxFlushTime.get();
+   }
+
+   public void resetStatistics() {
+      flushes.set(0);
+      flushedModifications.set(0);
+      flushTimes.set(0);
+      maxFlushTime.set(0);
    }
    
    protected boolean applyClear() {
@@ -437,16 +536,36 @@ public class AsyncStore extends AbstractDelegatingStore {
       public void run() {
          LogFactory.pushNDC(cacheName, trace);
          try {
+            // when a batch window is configured, the time by which pending work must be flushed; -1 if nothing pending
+            long flushDeadline = -1;
             while (true) {
                try {
-                  Modification take = changesDeque.take();
+                  Modification take;
+                  if (flushDeadline < 0) {
+                     take = changesDeque.take();
+                  } else {
+                     long remaining = flushDeadline - System.nanoTime();
+                     take = remaining > 0 ? changesDeque.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                     if (take == null) {
+                        flushDeadline = -1;
+                        ensureMoreWorkIsHandled();
+                        continue;
+                     }
+                  }
                   if (take == QUIT_SIGNAL) {
                      lastAsyncProcessorShutsDownExecutor = true;
                      ensureMoreWorkIsHandled();
                      return;
                   }
-                  else {
-                     handleSafely(take);
+                  else if (handleSafely(take)) {
+                     if (batchWindowNanos <= 0 || state.size() >= maxBatchSize) {
+                        // we know when it's possible for some work to be done, starting short-lived
+                        // AsyncProcessor(s) simplifies shutdown process.
+                        flushDeadline = -1;
+                        ensureMoreWorkIsHandled();
+                     } else if (flushDeadline < 0) {
+                        flushDeadline = System.nanoTime() + batchWindowNanos;
+                     }
                   }
                } catch (InterruptedException e) {
                   log.asyncStoreCoordinatorInterrupted(e);
@@ -460,16 +579,20 @@ public class AsyncStore extends AbstractDelegatingStore {
          }
       }
 
-      private void handleSafely(Modification mod) {
+      private boolean handleSafely(Modification mod) {
          try {
             if (trace) log.tracef("taking from modification queue: %s", mod);
-            handle(mod, false);
+            return handle(mod);
          } catch (Exception e) {
             log.errorModifyingAsyncStore(e);
+            return false;
          }
       }
 
-      private void handle(Modification mod, boolean nested) {
+      /**
+       * @return true if the modification left work in the state map to be flushed by an AsyncProcessor
+       */
+      private boolean handle(Modification mod) {
          boolean asyncProcessorNeeded = false;
          switch (mod.getType()) {
             case STORE:
@@ -499,16 +622,12 @@ public class AsyncStore extends AbstractDelegatingStore {
             default:
                throw new IllegalArgumentException("Unexpected modification type " + mod.getType());
          }
-         if (asyncProcessorNeeded && !nested) {
-            // we know when it's possible for some work to be done, starting short-lived
-            // AsyncProcessor(s) simplifies shutdown process.
-             ensureMoreWorkIsHandled();
-         }
+         return asyncProcessorNeeded;
       }
 
       private void applyModificationsList(ModificationsList mod) {
          for (Modification m : mod.getList()) {
-            handle(m, true);
+            handle(m);
          }
       }
 
@@ -67,6 +67,12 @@ public class AsyncStoreConfig extends AbstractDecoratorConfigurationBean {
    @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setShutdownTimeout")
    protected Long shutdownTimeout = 25000L;
 
+   @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setBatchWindow")
+   protected Long batchWindow = 0L;
+
+   @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setMaxBatchSize")
+   protected Integer maxBatchSize = 1000;
+
    @XmlAttribute
    public Boolean isEnabled() {
       return enabled;
@@ -175,6 +181,68 @@ public class AsyncStoreConfig extends AbstractDecoratorConfigurationBean {
       return this;
    }
 
+   @XmlAttribute
+   public Long getBatchWindow() {
+      return batchWindow;
+   }
+
+   /**
+    * Time, in milliseconds, during which modifications are collected and coalesced per key before being handed to
+    * the underlying cache store as a single batch. Defaults to 0, which flushes modifications as soon as they are
+    * dequeued.
+    * 
+    * @param batchWindow
+    * @deprecated The visibility of this method will be reduced. Use {@link #batchWindow(Long)} instead.
+    */
+   @Deprecated
+   public void setBatchWindow(Long batchWindow) {
+      testImmutability("batchWindow");
+      this.batchWindow = batchWindow;
+   }
+
+   /**
+    * Time, in milliseconds, during which modifications are collected and coalesced per key before being handed to
+    * the underlying cache store as a single batch. Defaults to 0, which flushes modifications as soon as they are
+    * dequeued.
+    * 
+    * @param batchWindow
+    */
+   public AsyncStoreConfig batchWindow(Long batchWindow) {
+      testImmutability("batchWindow");
+      this.batchWindow = batchWindow;
+      return this;
+   }
+
+   @XmlAttribute
+   public Integer getMaxBatchSize() {
+      return maxBatchSize;
+   }
+
+   /**
+    * Maximum number of distinct keys collected within a batch window. Once this many keys have pending
+    * modifications, the batch is flushed without waiting for the window to elapse.
+    * 
+    * @param maxBatchSize
+    * @deprecated The visibility of this method will be reduced. Use {@link #maxBatchSize(Integer)} instead.
+    */
+   @Deprecated
+   public void setMaxBatchSize(Integer maxBatchSize) {
+      testImmutability("maxBatchSize");
+      this.maxBatchSize = maxBatchSize;
+   }
+
+   /**
+    * Maximum number of distinct keys collected within a batch window. Once this many keys have pending
+    * modifications, the batch is flushed without waiting for the window to elapse.
+    * 
+    * @param maxBatchSize
+    */
+   public AsyncStoreConfig maxBatchSize(Integer maxBatchSize) {
+      testImmutability("maxBatchSize");
+      this.maxBatchSize = maxBatchSize;
+      return this;
+   }
+
    @Override
    public AsyncStoreConfig clone() {
       return (AsyncStoreConfig) super.clone();
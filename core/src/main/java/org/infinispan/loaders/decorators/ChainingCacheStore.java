@@ -27,6 +27,8 @@ import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.CacheLoader;
+import org.infinispan.loaders.BulkCacheStore;
+import org.infinispan.loaders.BulkOperations;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
@@ -35,6 +37,7 @@ import org.infinispan.loaders.modifications.Modification;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -55,7 +58,7 @@ import java.util.Set;
  * @author Manik Surtani
  * @since 4.0
  */
-public class ChainingCacheStore implements CacheStore {
+public class ChainingCacheStore implements BulkCacheStore {
 
    // linked hash sets used since it provides fast (O(1)) iteration, maintains order and provides O(1) lookups to values as well.
    LinkedHashMap<CacheLoader, CacheLoaderConfig> loaders = new LinkedHashMap<CacheLoader, CacheLoaderConfig>();
@@ -65,6 +68,10 @@ public class ChainingCacheStore implements CacheStore {
       for (CacheStore s : stores.keySet()) s.store(ed);
    }
 
+   public void storeAll(Collection<InternalCacheEntry> entries) throws CacheLoaderException {
+      for (CacheStore s : stores.keySet()) BulkOperations.storeAll(s, entries);
+   }
+
    public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
       // loading and storing state via streams is *only* supported on the *first* store that has fetchPersistentState set.
       for (Map.Entry<CacheStore, CacheLoaderConfig> e : stores.entrySet()) {
@@ -140,6 +147,19 @@ public class ChainingCacheStore implements CacheStore {
       return set;
    }
 
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      Set<InternalCacheEntry> set = new HashSet<InternalCacheEntry>();
+      Set<Object> remaining = new HashSet<Object>(keys);
+      for (CacheLoader l : loaders.keySet()) {
+         if (remaining.isEmpty()) break;
+         for (InternalCacheEntry se : BulkOperations.loadAll(l, remaining)) {
+            // as with load(Object), the first loader holding an entry wins
+            if (remaining.remove(se.getKey())) set.add(se);
+         }
+      }
+      return set;
+   }
+
    @Override
    public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
       if (numEntries < 0) return loadAll();
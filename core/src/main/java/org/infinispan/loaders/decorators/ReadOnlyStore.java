@@ -30,6 +30,7 @@ import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.io.ObjectInput;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -51,6 +52,11 @@ public class ReadOnlyStore extends AbstractDelegatingStore {
       if (log.isTraceEnabled()) log.trace("Ignoring store invocation"); 
    }
 
+   @Override
+   public void storeAll(Collection<InternalCacheEntry> entries) {
+      if (log.isTraceEnabled()) log.trace("Ignoring storeAll invocation");
+   }
+
    @Override
    public void fromStream(ObjectInput inputStream) {
       if (log.isTraceEnabled()) log.trace("Ignoring writing contents of stream to store");
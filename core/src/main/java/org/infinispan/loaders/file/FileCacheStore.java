@@ -24,6 +24,7 @@ package org.infinispan.loaders.file;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -34,6 +35,8 @@ import java.util.concurrent.TimeUnit;
 
 import org.infinispan.Cache;
 import org.infinispan.config.ConfigurationException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.io.ExposedByteArrayOutputStream;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
@@ -42,12 +45,17 @@ import org.infinispan.loaders.bucket.Bucket;
 import org.infinispan.loaders.bucket.BucketBasedCacheStore;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 /**
  * A filesystem-based implementation of a {@link org.infinispan.loaders.bucket.BucketBasedCacheStore}.  This file store
  * stores stuff in the following format: <tt>/{location}/cache name/bucket_number.bucket</tt>
+ * <p/>
+ * If {@link FileCacheStoreConfig#isMemoryMappedReads()} is enabled, buckets are written as a sequence of separately
+ * marshalled keys and values, each prefixed by its length, and read through memory mapped regions.  Loading a single
+ * key then only unmarshalls that key's value, rather than the whole bucket.
  *
  * @author Manik Surtani
  * @author Mircea.Markus@jboss.com
@@ -61,11 +69,16 @@ public class FileCacheStore extends BucketBasedCacheStore {
 
    static final Log log = LogFactory.getLog(FileCacheStore.class);
    private static final boolean trace = log.isTraceEnabled();
+   private static final int INDEXED_BUCKET_MAGIC = 0x49535042;
    private int streamBufferSize;
 
    FileCacheStoreConfig config;
    File root;
    FileSync fileSync;
+   /**
+    * Bucket files mapped in memory, keyed by path; only used if memory mapped reads are enabled.
+    */
+   BoundedConcurrentHashMap<String, MappedByteBuffer> mappedBuckets;
 
    /**
     * @return root directory where all files for this {@link org.infinispan.loaders.CacheStore CacheStore} are written.
@@ -134,6 +147,8 @@ public class FileCacheStore extends BucketBasedCacheStore {
                safeClose(fos);
             }
          }
+         // Files have been overwritten in place, so mapped regions can't be trusted anymore
+         if (mappedBuckets != null) mappedBuckets.clear();
       } catch (IOException e) {
          throw new CacheLoaderException("I/O error", e);
       } catch (ClassNotFoundException e) {
@@ -193,6 +208,7 @@ public class FileCacheStore extends BucketBasedCacheStore {
             log.problemsRemovingFile(f);
          }
       }
+      if (mappedBuckets != null) mappedBuckets.clear();
    }
 
    @Override
@@ -253,6 +269,29 @@ public class FileCacheStore extends BucketBasedCacheStore {
       }
    }
 
+   @Override
+   protected InternalCacheEntry loadLockSafe(Object key, Integer lockingKey) throws CacheLoaderException {
+      if (mappedBuckets == null) {
+         return super.loadLockSafe(key, lockingKey);
+      }
+      File bucketFile = new File(root, String.valueOf(lockingKey));
+      InternalCacheEntry se;
+      try {
+         se = loadEntry(key, bucketFile);
+      } catch (InterruptedException ie) {
+         if (log.isDebugEnabled()) {
+            log.debug("Interrupted, so stop loading entry and return null.");
+         }
+         Thread.currentThread().interrupt();
+         return null;
+      } catch (Exception e) {
+         log.errorReadingFromFile(bucketFile.getAbsoluteFile(), e);
+         throw new CacheLoaderException("Error while reading from file", e);
+      }
+      // As for buckets, expired entries are not removed on load but left to the purger
+      return se == null || se.isExpired() ? null : se;
+   }
+
    @Override
    protected Bucket loadBucket(Integer hash) throws CacheLoaderException {
       try {
@@ -277,8 +316,15 @@ public class FileCacheStore extends BucketBasedCacheStore {
             // It could happen that the output buffer might not have been
             // flushed, so just in case, flush it to be able to read it.
             fileSync.flush(bucketFile);
-            is = new FileInputStream(bucketFile);
-            bucket = (Bucket) objectFromInputStreamInReentrantMode(is);
+            if (mappedBuckets != null) {
+               ByteBuffer buf = mapBucket(bucketFile);
+               if (buf != null) {
+                  bucket = isIndexedBucket(buf) ? readIndexedBucket(buf) : (Bucket) objectFromBufferInReentrantMode(buf);
+               }
+            } else {
+               is = new FileInputStream(bucketFile);
+               bucket = (Bucket) objectFromInputStreamInReentrantMode(is);
+            }
          } catch (InterruptedException ie) {
             throw ie;
          } catch (Exception e) {
@@ -297,7 +343,8 @@ public class FileCacheStore extends BucketBasedCacheStore {
    @Override
    public void updateBucket(Bucket b) throws CacheLoaderException {
       File f = new File(root, b.getBucketIdAsString());
-      if (f.exists()) {
+      // With memory mapped reads, bucket files are atomically replaced on write so there's no need to clear them first
+      if (f.exists() && (mappedBuckets == null || b.getEntries().isEmpty())) {
          if (!purgeFile(f)) {
             log.problemsRemovingFile(f);
          } else if (trace) {
@@ -307,7 +354,7 @@ public class FileCacheStore extends BucketBasedCacheStore {
 
       if (!b.getEntries().isEmpty()) {
         try {
-            byte[] bytes = marshaller.objectToByteBuffer(b);
+            byte[] bytes = mappedBuckets != null ? toIndexedBucket(b) : marshaller.objectToByteBuffer(b);
             fileSync.write(bytes, f);
          } catch (IOException ex) {
             log.errorSavingBucket(b, ex);
@@ -345,6 +392,16 @@ public class FileCacheStore extends BucketBasedCacheStore {
       }
       streamBufferSize = config.getStreamBufferSize();
 
+      if (config.isMemoryMappedReads()) {
+         File tmpDir = new File(root.getParentFile(), cache.getName() + ".tmp");
+         if (!tmpDir.exists() && !tmpDir.mkdirs()) {
+            log.problemsCreatingDirectory(tmpDir);
+         }
+         mappedBuckets = new BoundedConcurrentHashMap<String, MappedByteBuffer>(config.getMappedFileCacheSize());
+         fileSync = new ReplacingFileSync(tmpDir, config.getFsyncMode() == FileCacheStoreConfig.FsyncMode.PER_WRITE);
+         return;
+      }
+
       switch(config.getFsyncMode()) {
          case DEFAULT :
             fileSync = new BufferedFileSync();
@@ -362,6 +419,7 @@ public class FileCacheStore extends BucketBasedCacheStore {
    public void stop() throws CacheLoaderException {
       super.stop();
       fileSync.stop();
+      if (mappedBuckets != null) mappedBuckets.clear();
    }
 
    public Bucket loadBucketContainingKey(String key) throws CacheLoaderException {
@@ -411,6 +469,149 @@ public class FileCacheStore extends BucketBasedCacheStore {
       return o;
    }
 
+   private Object objectFromBufferInReentrantMode(ByteBuffer buf) throws IOException, ClassNotFoundException, InterruptedException {
+      return objectFromBufferInReentrantMode(buf, buf.position(), buf.remaining());
+   }
+
+   private Object objectFromBufferInReentrantMode(ByteBuffer buf, int offset, int length) throws IOException, ClassNotFoundException, InterruptedException {
+      if (length == 0) {
+         return null;
+      }
+      byte[] bytes = new byte[length];
+      ByteBuffer region = buf.duplicate();
+      region.position(offset);
+      region.get(bytes);
+      ObjectInput unmarshaller = marshaller.startObjectInput(new ByteArrayInputStream(bytes), true);
+      try {
+         return marshaller.objectFromObjectStream(unmarshaller);
+      } finally {
+         marshaller.finishObjectInput(unmarshaller);
+      }
+   }
+
+   /**
+    * Maps a bucket file in memory, or reuses a mapping of it made by a previous read.
+    *
+    * @return a buffer over the whole bucket file, or null if it doesn't exist
+    */
+   private ByteBuffer mapBucket(File f) throws IOException {
+      String path = f.getPath();
+      MappedByteBuffer mapped = mappedBuckets.get(path);
+      if (mapped == null) {
+         RandomAccessFile raf;
+         try {
+            raf = new RandomAccessFile(f, "r");
+         } catch (FileNotFoundException e) {
+            return null;
+         }
+         try {
+            FileChannel channel = raf.getChannel();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         } finally {
+            Util.close(raf);
+         }
+         mappedBuckets.put(path, mapped);
+      }
+      return mapped.duplicate();
+   }
+
+   private static boolean isIndexedBucket(ByteBuffer buf) {
+      return buf.remaining() >= 8 && buf.getInt(buf.position()) == INDEXED_BUCKET_MAGIC;
+   }
+
+   /**
+    * Marshalls a bucket as a count of entries followed, for each entry, by the lengths of its marshalled key and value
+    * and then the marshalled key and value themselves.  This allows finding a key without unmarshalling any value.
+    */
+   private byte[] toIndexedBucket(Bucket b) throws IOException, InterruptedException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(INDEXED_BUCKET_MAGIC);
+      out.writeInt(b.getNumEntries());
+      for (InternalCacheEntry se : b.getStoredEntries()) {
+         byte[] key = marshaller.objectToByteBuffer(se.getKey());
+         byte[] value = marshaller.objectToByteBuffer(se.toInternalCacheValue());
+         out.writeInt(key.length);
+         out.writeInt(value.length);
+         out.write(key);
+         out.write(value);
+      }
+      out.flush();
+      return bytes.toByteArray();
+   }
+
+   private Bucket readIndexedBucket(ByteBuffer buf) throws IOException, ClassNotFoundException, InterruptedException {
+      Bucket bucket = new Bucket();
+      int numEntries = buf.getInt(buf.position() + 4);
+      int pos = buf.position() + 8;
+      for (int i = 0; i < numEntries; i++) {
+         int keyLength = buf.getInt(pos);
+         int valueLength = buf.getInt(pos + 4);
+         pos += 8;
+         Object key = objectFromBufferInReentrantMode(buf, pos, keyLength);
+         bucket.addEntry(readIndexedEntry(key, buf, pos + keyLength, valueLength));
+         pos += keyLength + valueLength;
+      }
+      return bucket;
+   }
+
+   private InternalCacheEntry readIndexedEntry(Object key, ByteBuffer buf, int offset, int length) throws IOException, ClassNotFoundException, InterruptedException {
+      InternalCacheValue value = (InternalCacheValue) objectFromBufferInReentrantMode(buf, offset, length);
+      return value.toInternalCacheEntry(key);
+   }
+
+   /**
+    * Loads a single entry from a bucket file, only unmarshalling the value of the requested key.
+    */
+   private InternalCacheEntry loadEntry(Object key, File bucketFile) throws IOException, ClassNotFoundException, InterruptedException {
+      ByteBuffer buf = mapBucket(bucketFile);
+      if (buf == null) {
+         return null;
+      }
+      if (!isIndexedBucket(buf)) {
+         // Written before memory mapped reads were enabled
+         Bucket bucket = (Bucket) objectFromBufferInReentrantMode(buf);
+         return bucket == null ? null : bucket.getEntry(key);
+      }
+      int numEntries = buf.getInt(buf.position() + 4);
+      int start = buf.position() + 8;
+
+      // Most of the time the key marshalls to the very same bytes as the stored one, so look for those first
+      byte[] keyBytes = marshaller.objectToByteBuffer(key);
+      int pos = start;
+      for (int i = 0; i < numEntries; i++) {
+         int keyLength = buf.getInt(pos);
+         int valueLength = buf.getInt(pos + 4);
+         pos += 8;
+         if (keyLength == keyBytes.length && regionEquals(buf, pos, keyBytes)) {
+            return readIndexedEntry(key, buf, pos + keyLength, valueLength);
+         }
+         pos += keyLength + valueLength;
+      }
+
+      // Equal keys aren't guaranteed to marshall identically though, so fall back on comparing unmarshalled keys
+      pos = start;
+      for (int i = 0; i < numEntries; i++) {
+         int keyLength = buf.getInt(pos);
+         int valueLength = buf.getInt(pos + 4);
+         pos += 8;
+         if (key.equals(objectFromBufferInReentrantMode(buf, pos, keyLength))) {
+            return readIndexedEntry(key, buf, pos + keyLength, valueLength);
+         }
+         pos += keyLength + valueLength;
+      }
+      return null;
+   }
+
+   private static boolean regionEquals(ByteBuffer buf, int offset, byte[] bytes) {
+      for (int i = 0; i < bytes.length; i++) {
+         if (buf.get(offset + i) != bytes[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
    /**
     * Specifies how the changes written to a file will be synched
     * with the underlying file system.
@@ -609,5 +810,55 @@ public class FileCacheStore extends BucketBasedCacheStore {
       }
    }
 
+   /**
+    * Writes each bucket to a temporary file which then replaces the bucket file, rather than rewriting it in place, so
+    * that regions of the previous file mapped by readers remain valid.  Replaced mappings are dropped from
+    * {@link #mappedBuckets}.
+    */
+   private class ReplacingFileSync implements FileSync {
+      private final File tmpDir;
+      private final boolean syncPerWrite;
+
+      private ReplacingFileSync(File tmpDir, boolean syncPerWrite) {
+         this.tmpDir = tmpDir;
+         this.syncPerWrite = syncPerWrite;
+      }
+
+      @Override
+      public void write(byte[] bytes, File f) throws IOException {
+         File tmp = File.createTempFile(f.getName(), null, tmpDir);
+         FileOutputStream fos = new FileOutputStream(tmp);
+         try {
+            fos.write(bytes);
+            if (syncPerWrite)
+               fos.getFD().sync();
+         } finally {
+            fos.close();
+         }
+         // Some platforms won't rename over an existing file
+         if (!tmp.renameTo(f) && !(f.delete() && tmp.renameTo(f))) {
+            tmp.delete();
+            throw new IOException("Unable to replace " + f + " with " + tmp);
+         }
+         mappedBuckets.remove(f.getPath());
+      }
+
+      @Override
+      public void flush(File f) throws IOException {
+         // No-op since files are complete as soon as they're visible
+      }
+
+      @Override
+      public void purge(File f) throws IOException {
+         mappedBuckets.remove(f.getPath());
+         if (f.exists() && !f.delete())
+            throw new IOException("Unable to delete " + f);
+      }
+
+      @Override
+      public void stop() {
+         // No-op
+      }
+   }
 
 }
@@ -63,6 +63,14 @@ import java.beans.PropertyEditorSupport;
  * changes in the cache need to be flushed. This option has only effect when
  * <tt>periodic<tt/> fsync mode is in use. The default fsync interval is 1
  * second.</li>
+ *   <li><tt>memoryMappedReads</tt> - if <tt>true</tt>, bucket files are read through memory mapped regions instead of
+ * being streamed and unmarshalled as a whole, and loading a single key only decodes that key's entry.  Buckets are then
+ * written with a layout that can be searched without unmarshalling the values, and bucket files are replaced rather
+ * than rewritten in place, so that regions mapped by concurrent readers stay valid.  Periodic fsync mode behaves like
+ * the default one when this is enabled.  By default, this is set to <tt>false</tt>.</li>
+ *   <li><tt>mappedFileCacheSize</tt> - maximum number of memory mapped bucket files to keep around for subsequent
+ * reads.  This option has only effect when <tt>memoryMappedReads</tt> is enabled.  By default, this is set to
+ * <tt>512</tt>.</li>
  *
  * </ul>
  *
@@ -79,6 +87,8 @@ public class FileCacheStoreConfig extends LockSupportCacheStoreConfig {
    private int streamBufferSize = 8192;
    private FsyncMode fsyncMode = FsyncMode.DEFAULT;
    private long fsyncInterval = 1000;
+   private boolean memoryMappedReads = false;
+   private int mappedFileCacheSize = 512;
 
    public FileCacheStoreConfig() {
       setCacheLoaderClassName(FileCacheStore.class.getName());
@@ -174,6 +184,34 @@ public class FileCacheStoreConfig extends LockSupportCacheStoreConfig {
       return this;
    }
 
+   public boolean isMemoryMappedReads() {
+      return memoryMappedReads;
+   }
+
+   public void setMemoryMappedReads(boolean memoryMappedReads) {
+      testImmutability("memoryMappedReads");
+      this.memoryMappedReads = memoryMappedReads;
+   }
+
+   public FileCacheStoreConfig memoryMappedReads(boolean memoryMappedReads) {
+      setMemoryMappedReads(memoryMappedReads);
+      return this;
+   }
+
+   public int getMappedFileCacheSize() {
+      return mappedFileCacheSize;
+   }
+
+   public void setMappedFileCacheSize(int mappedFileCacheSize) {
+      testImmutability("mappedFileCacheSize");
+      this.mappedFileCacheSize = mappedFileCacheSize;
+   }
+
+   public FileCacheStoreConfig mappedFileCacheSize(int mappedFileCacheSize) {
+      setMappedFileCacheSize(mappedFileCacheSize);
+      return this;
+   }
+
    public static enum FsyncMode {
       DEFAULT, PER_WRITE, PERIODIC
    }
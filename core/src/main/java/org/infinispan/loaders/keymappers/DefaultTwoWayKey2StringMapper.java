@@ -22,12 +22,14 @@
  */
 package org.infinispan.loaders.keymappers;
 
+import org.infinispan.util.Base64;
+import org.infinispan.util.ByteArrayKey;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 /**
  * Default implementation for {@link TwoWayKey2StringMapper} that knows how to
- * handle all primitive wrapper keys and Strings.
+ * handle all primitive wrapper keys, Strings and {@link ByteArrayKey}s, the latter being Base64 encoded.
  * 
  * @author Mircea.Markus@jboss.com
  * @author Tristan Tarrant
@@ -45,6 +47,7 @@ public class DefaultTwoWayKey2StringMapper implements TwoWayKey2StringMapper {
 	private static final char DOUBLE_IDENTIFIER = '5';
 	private static final char FLOAT_IDENTIFIER = '6';
 	private static final char BOOLEAN_IDENTIFIER = '7';
+	private static final char BYTEARRAYKEY_IDENTIFIER = '8';
 
 	@Override
 	public String getStringMapping(Object key) {
@@ -65,6 +68,8 @@ public class DefaultTwoWayKey2StringMapper implements TwoWayKey2StringMapper {
 			identifier = FLOAT_IDENTIFIER;
 		} else if (key.getClass().equals(Boolean.class)) {
 			identifier = BOOLEAN_IDENTIFIER;
+		} else if (key.getClass().equals(ByteArrayKey.class)) {
+			return generateString(BYTEARRAYKEY_IDENTIFIER, Base64.encodeBytes(((ByteArrayKey) key).getData(), Base64.DONT_BREAK_LINES));
 		} else {
 			throw new IllegalArgumentException("Unsupported key type: " + key.getClass().getName());
 		}
@@ -92,6 +97,8 @@ public class DefaultTwoWayKey2StringMapper implements TwoWayKey2StringMapper {
 				return Float.parseFloat(value);
 			case BOOLEAN_IDENTIFIER:
 				return Boolean.parseBoolean(value);
+			case BYTEARRAYKEY_IDENTIFIER:
+				return new ByteArrayKey(Base64.decode(value));
 			default:
 				throw new IllegalArgumentException("Unsupported type code: " + type);
 			}
@@ -102,7 +109,7 @@ public class DefaultTwoWayKey2StringMapper implements TwoWayKey2StringMapper {
 
 	@Override
 	public boolean isSupportedType(Class<?> keyType) {
-		return isPrimitive(keyType);
+		return isPrimitive(keyType) || keyType == ByteArrayKey.class;
 	}
 
 	private String generateString(char identifier, String s) {
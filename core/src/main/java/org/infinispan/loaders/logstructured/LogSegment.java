@@ -0,0 +1,238 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logstructured;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.infinispan.util.Util;
+
+/**
+ * A single append-only file of the {@link LogStructuredCacheStore} log.  Every record has the following layout:
+ * <pre>
+ *    int  key length
+ *    int  value length, or {@link #TOMBSTONE} if the record marks a removal
+ *    long expiry time, or -1 if the entry is immortal
+ *    int  CRC32 of the key and value bytes
+ *    byte[] marshalled key
+ *    byte[] marshalled {@link org.infinispan.container.entries.InternalCacheValue}
+ * </pre>
+ * Records are only ever appended to the segment currently at the head of the log; once sealed, a segment is read-only
+ * until it is deleted by compaction.  Reads are positional, so they never contend with appends.
+ *
+ * @since 5.0
+ */
+final class LogSegment {
+
+   static final int HEADER_SIZE = 20;
+   static final int TOMBSTONE = -1;
+   static final String SEGMENT_SUFFIX = ".log";
+   static final String HINT_SUFFIX = ".hint";
+
+   final int id;
+   final File file;
+   private final RandomAccessFile raf;
+   private final FileChannel channel;
+   private volatile long size;
+   private volatile MappedByteBuffer mapped;
+   /**
+    * Number of bytes taken by records which have been overwritten, removed or have expired.
+    */
+   private final AtomicLong garbage = new AtomicLong();
+
+   LogSegment(File root, int id) throws IOException {
+      this.id = id;
+      this.file = new File(root, id + SEGMENT_SUFFIX);
+      this.raf = new RandomAccessFile(file, "rw");
+      this.channel = raf.getChannel();
+      this.size = channel.size();
+   }
+
+   File hintFile() {
+      return new File(file.getParentFile(), id + HINT_SUFFIX);
+   }
+
+   long size() {
+      return size;
+   }
+
+   long garbage() {
+      return garbage.get();
+   }
+
+   void addGarbage(int bytes) {
+      garbage.addAndGet(bytes);
+   }
+
+   boolean isCompactable(float threshold) {
+      long s = size;
+      return s > 0 && garbage.get() >= threshold * s;
+   }
+
+   /**
+    * Appends a record at the end of this segment.  Callers must serialize appends.
+    *
+    * @return the offset the record was written at
+    */
+   long append(ByteBuffer[] record, int length) throws IOException {
+      long offset = size;
+      channel.position(offset);
+      long written = 0;
+      while (written < length) {
+         written += channel.write(record);
+      }
+      size = offset + length;
+      return offset;
+   }
+
+   /**
+    * Reads <tt>length</tt> bytes starting at <tt>offset</tt>, either from the mapped region if this segment has been
+    * mapped, or with a positional read on the file channel.
+    */
+   byte[] read(long offset, int length) throws IOException {
+      byte[] bytes = new byte[length];
+      MappedByteBuffer m = mapped;
+      if (m != null && offset + length <= m.limit()) {
+         ByteBuffer dup = m.duplicate();
+         dup.position((int) offset);
+         dup.get(bytes);
+      } else {
+         ByteBuffer buf = ByteBuffer.wrap(bytes);
+         while (buf.hasRemaining()) {
+            if (channel.read(buf, offset + buf.position()) < 0)
+               throw new IOException("Unexpected end of segment " + file + " at offset " + (offset + buf.position()));
+         }
+      }
+      return bytes;
+   }
+
+   /**
+    * Maps the current content of this segment in memory.  Only meaningful for sealed segments.
+    */
+   void map() throws IOException {
+      if (mapped == null && size > 0)
+         mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+   }
+
+   void truncate(long newSize) throws IOException {
+      channel.truncate(newSize);
+      size = newSize;
+   }
+
+   void force() throws IOException {
+      channel.force(false);
+   }
+
+   void close() {
+      mapped = null;
+      Util.close(channel);
+      Util.close(raf);
+   }
+
+   boolean delete() {
+      close();
+      hintFile().delete();
+      return file.delete();
+   }
+
+   static ByteBuffer header(int keyLength, int valueLength, long expiryTime, int checksum) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(keyLength).putInt(valueLength).putLong(expiryTime).putInt(checksum);
+      header.flip();
+      return header;
+   }
+
+   static int checksum(byte[] key, byte[] value) {
+      CRC32 crc = new CRC32();
+      crc.update(key);
+      if (value != null) crc.update(value);
+      return (int) crc.getValue();
+   }
+
+   static int recordLength(int keyLength, int valueLength) {
+      return HEADER_SIZE + keyLength + (valueLength == TOMBSTONE ? 0 : valueLength);
+   }
+
+   /**
+    * Reads the record starting at <tt>offset</tt>, verifying its checksum.
+    *
+    * @return the record, or null if the segment ends with a partially written or corrupt record at this offset
+    */
+   Record readRecord(long offset) throws IOException {
+      long s = size;
+      if (offset + HEADER_SIZE > s) return null;
+      ByteBuffer header = ByteBuffer.wrap(read(offset, HEADER_SIZE));
+      int keyLength = header.getInt();
+      int valueLength = header.getInt();
+      long expiryTime = header.getLong();
+      int checksum = header.getInt();
+      if (keyLength < 0 || valueLength < TOMBSTONE) return null;
+      int length = recordLength(keyLength, valueLength);
+      if (offset + length > s) return null;
+      byte[] key = read(offset + HEADER_SIZE, keyLength);
+      byte[] value = valueLength == TOMBSTONE ? null : read(offset + HEADER_SIZE + keyLength, valueLength);
+      if (checksum(key, value) != checksum) return null;
+      return new Record(offset, key, value, expiryTime);
+   }
+
+   @Override
+   public String toString() {
+      return "LogSegment{" +
+            "file=" + file +
+            ", size=" + size +
+            ", garbage=" + garbage +
+            '}';
+   }
+
+   static final class Record {
+      final long offset;
+      final byte[] key;
+      final byte[] value;
+      final long expiryTime;
+
+      Record(long offset, byte[] key, byte[] value, long expiryTime) {
+         this.offset = offset;
+         this.key = key;
+         this.value = value;
+         this.expiryTime = expiryTime;
+      }
+
+      boolean isTombstone() {
+         return value == null;
+      }
+
+      int valueLength() {
+         return value == null ? TOMBSTONE : value.length;
+      }
+
+      int length() {
+         return recordLength(key.length, valueLength());
+      }
+   }
+}
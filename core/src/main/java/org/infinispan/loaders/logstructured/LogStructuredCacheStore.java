@@ -0,0 +1,667 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logstructured;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.infinispan.Cache;
+import org.infinispan.config.ConfigurationException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.loaders.LockSupportCacheStore;
+import org.infinispan.loaders.file.FileCacheStoreConfig.FsyncMode;
+import org.infinispan.loaders.logstructured.LogSegment.Record;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import static org.infinispan.loaders.logstructured.LogSegment.HEADER_SIZE;
+import static org.infinispan.loaders.logstructured.LogSegment.HINT_SUFFIX;
+import static org.infinispan.loaders.logstructured.LogSegment.SEGMENT_SUFFIX;
+import static org.infinispan.loaders.logstructured.LogSegment.TOMBSTONE;
+
+/**
+ * A filesystem-based cache store which appends every modification to a log instead of rewriting per-bucket files.
+ * The log is made of numbered segment files, stored in <tt>/{location}/cache name/segment_number.log</tt>; only the
+ * segment with the highest number is appended to, the others are sealed.
+ * <p/>
+ * An in-memory index maps every stored key to the segment and offset of its latest record, so loads cost a single
+ * positional read of the marshalled value (straight from a memory mapped region if <tt>memoryMappedReads</tt> is
+ * enabled) and stores a single sequential append.  The flip side is that all stored keys are kept in memory.
+ * <p/>
+ * Overwritten, removed and expired records are accounted as garbage of the segment holding them.  Once the garbage of a
+ * sealed segment goes past the configured <tt>compactionThreshold</tt>, a background thread copies the segment's live
+ * records to the head of the log and deletes it.
+ * <p/>
+ * When a segment is sealed, a hint file listing its keys and record positions (but not values) is written next to it,
+ * so that on restart the index is rebuilt from the hint files without reading the values.  Segments without a valid
+ * hint, typically the head segment after a crash, are scanned instead and truncated at the first partially written or
+ * corrupt record.
+ *
+ * @see LogStructuredCacheStoreConfig
+ * @since 5.0
+ */
+@CacheLoaderMetadata(configurationClass = LogStructuredCacheStoreConfig.class)
+public class LogStructuredCacheStore extends LockSupportCacheStore<Integer> {
+
+   private static final Log log = LogFactory.getLog(LogStructuredCacheStore.class);
+   private static final boolean trace = log.isTraceEnabled();
+   private static final int HINT_END = -1;
+
+   private LogStructuredCacheStoreConfig config;
+   private File root;
+   private final ConcurrentMap<Object, IndexEntry> index = new ConcurrentHashMap<Object, IndexEntry>();
+   private final ConcurrentNavigableMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<Integer, LogSegment>();
+   /**
+    * Serializes appends to the head segment, as well as rolling it over.
+    */
+   private final Object appendLock = new Object();
+   /**
+    * Serializes compaction runs, whether triggered in the background or through {@link #compact()}.
+    */
+   private final Object compactionLock = new Object();
+   private volatile LogSegment head;
+   private ExecutorService compactor;
+   private ScheduledExecutorService flusher;
+   private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+   private volatile IOException flushError;
+
+   /**
+    * @return root directory where all files for this {@link org.infinispan.loaders.CacheStore CacheStore} are written.
+    */
+   public File getRoot() {
+      return root;
+   }
+
+   @Override
+   public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
+      super.init(config, cache, m);
+      this.config = (LogStructuredCacheStoreConfig) config;
+   }
+
+   @Override
+   public Class<? extends CacheLoaderConfig> getConfigurationClass() {
+      return LogStructuredCacheStoreConfig.class;
+   }
+
+   @Override
+   public void start() throws CacheLoaderException {
+      super.start();
+      String location = config.getLocation();
+      if (location == null || location.trim().length() == 0) {
+         location = "Infinispan-LogStructuredCacheStore"; // use relative path!
+      }
+      location += File.separator + cache.getName();
+      root = new File(location);
+      if (!root.exists()) {
+         if (!root.mkdirs()) {
+            log.problemsCreatingDirectory(root);
+         }
+      }
+      if (!root.exists()) {
+         throw new ConfigurationException("Directory " + root.getAbsolutePath() + " does not exist and cannot be created!");
+      }
+
+      final String threadPrefix = cache.getName() + '-' + getClass().getSimpleName();
+      compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, threadPrefix + "-Compactor");
+            t.setDaemon(true);
+            return t;
+         }
+      });
+      try {
+         recover();
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to recover log segments from " + root.getAbsolutePath(), e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unable to recover log segments from " + root.getAbsolutePath(), e);
+      }
+
+      if (config.getFsyncMode() == FsyncMode.PERIODIC) {
+         flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+               Thread t = new Thread(r, threadPrefix + "-Flusher");
+               t.setDaemon(true);
+               return t;
+            }
+         });
+         flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+               LogSegment s = head;
+               try {
+                  s.force();
+               } catch (IOException e) {
+                  if (trace) log.tracef(e, "Error flushing %s", s);
+                  // Reported back to the user on the next append
+                  flushError = e;
+               }
+            }
+         }, config.getFsyncInterval(), config.getFsyncInterval(), TimeUnit.MILLISECONDS);
+      }
+   }
+
+   @Override
+   public void stop() throws CacheLoaderException {
+      super.stop();
+      if (flusher != null) flusher.shutdown();
+      compactor.shutdown();
+      try {
+         compactor.awaitTermination(config.getLockAcquistionTimeout(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      if (head == null) return;
+      synchronized (appendLock) {
+         try {
+            head.force();
+            // Hints of segments sealed while stopping may not have been written by the compactor
+            for (LogSegment s : segments.values()) {
+               if (!s.hintFile().exists()) writeHint(s);
+            }
+         } catch (IOException e) {
+            throw new CacheLoaderException("Unable to flush " + head.file, e);
+         } finally {
+            for (LogSegment s : segments.values()) s.close();
+            segments.clear();
+            index.clear();
+         }
+      }
+   }
+
+   @Override
+   public boolean containsKey(Object key) throws CacheLoaderException {
+      IndexEntry e = index.get(key);
+      return e != null && !e.isExpired(System.currentTimeMillis());
+   }
+
+   @Override
+   protected Integer getLockFromKey(Object key) {
+      return key.hashCode();
+   }
+
+   @Override
+   protected InternalCacheEntry loadLockSafe(Object key, Integer lockingKey) throws CacheLoaderException {
+      IndexEntry e = index.get(key);
+      if (e == null || e.isExpired(System.currentTimeMillis())) return null;
+      return read(key, e);
+   }
+
+   @Override
+   protected Set<InternalCacheEntry> loadAllLockSafe() throws CacheLoaderException {
+      return loadLockSafe(Integer.MAX_VALUE);
+   }
+
+   @Override
+   protected Set<InternalCacheEntry> loadLockSafe(int maxEntries) throws CacheLoaderException {
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Object, IndexEntry> entry : index.entrySet()) {
+         if (result.size() >= maxEntries) break;
+         IndexEntry e = entry.getValue();
+         if (!e.isExpired(now)) result.add(read(entry.getKey(), e));
+      }
+      return result;
+   }
+
+   @Override
+   protected Set<Object> loadAllKeysLockSafe(Set<Object> keysToExclude) throws CacheLoaderException {
+      Set<Object> result = new HashSet<Object>();
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Object, IndexEntry> entry : index.entrySet()) {
+         Object key = entry.getKey();
+         if (!entry.getValue().isExpired(now) && (keysToExclude == null || !keysToExclude.contains(key)))
+            result.add(key);
+      }
+      return result;
+   }
+
+   @Override
+   protected void storeLockSafe(InternalCacheEntry ed, Integer lockingKey) throws CacheLoaderException {
+      try {
+         byte[] key = marshaller.objectToByteBuffer(ed.getKey());
+         byte[] value = marshaller.objectToByteBuffer(ed.toInternalCacheValue());
+         IndexEntry e = append(key, value, ed.canExpire() ? ed.getExpiryTime() : -1);
+         discard(index.put(ed.getKey(), e));
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append " + ed + " to the log", e);
+      } catch (InterruptedException e) {
+         if (trace) log.trace("Interrupted while marshalling entry");
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   @Override
+   protected boolean removeLockSafe(Object key, Integer lockingKey) throws CacheLoaderException {
+      IndexEntry prev = index.remove(key);
+      if (prev == null) return false;
+      try {
+         // The tombstone shadows older records of the key until they are compacted away, and is garbage itself
+         IndexEntry tombstone = append(marshaller.objectToByteBuffer(key), null, -1);
+         tombstone.segment.addGarbage(tombstone.length());
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append removal of " + key + " to the log", e);
+      } catch (InterruptedException e) {
+         if (trace) log.trace("Interrupted while marshalling key");
+         Thread.currentThread().interrupt();
+      }
+      discard(prev);
+      return true;
+   }
+
+   @Override
+   protected void clearLockSafe() throws CacheLoaderException {
+      synchronized (appendLock) {
+         // Never reuse segment numbers, so that a pending hint of a deleted segment cannot be mistaken for a new one's
+         int next = head.id + 1;
+         for (LogSegment s : segments.values()) {
+            if (!s.delete()) log.problemsRemovingFile(s.file);
+         }
+         segments.clear();
+         index.clear();
+         try {
+            head = openSegment(next);
+         } catch (IOException e) {
+            throw new CacheLoaderException("Unable to create a new log segment in " + root.getAbsolutePath(), e);
+         }
+      }
+   }
+
+   @Override
+   protected void toStreamLockSafe(ObjectOutput oos) throws CacheLoaderException {
+      try {
+         for (InternalCacheEntry entry : loadLockSafe(Integer.MAX_VALUE))
+            marshaller.objectToObjectStream(entry, oos);
+         marshaller.objectToObjectStream(null, oos);
+      } catch (IOException e) {
+         throw new CacheLoaderException(e);
+      }
+   }
+
+   @Override
+   protected void fromStreamLockSafe(ObjectInput ois) throws CacheLoaderException {
+      try {
+         while (true) {
+            InternalCacheEntry entry = (InternalCacheEntry) marshaller.objectFromObjectStream(ois);
+            if (entry == null) break;
+            // The global lock is held already, so go straight to the lock safe variant
+            if (!entry.isExpired()) storeLockSafe(entry, getLockFromKey(entry.getKey()));
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException(e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException(e);
+      } catch (InterruptedException ie) {
+         if (trace) log.trace("Interrupted while reading from stream");
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   @Override
+   protected void purgeInternal() throws CacheLoaderException {
+      if (trace) log.trace("purgeInternal()");
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Object, IndexEntry> entry : index.entrySet()) {
+         IndexEntry e = entry.getValue();
+         if (!e.isExpired(now)) continue;
+         // Expired records need no tombstone: replaying them on recovery is enough to know they're gone
+         Integer lockingKey = getLockFromKey(entry.getKey());
+         lockForWriting(lockingKey);
+         try {
+            if (index.remove(entry.getKey(), e)) discard(e);
+         } finally {
+            unlock(lockingKey);
+         }
+      }
+   }
+
+   /**
+    * Compacts, in the calling thread, every sealed segment whose proportion of garbage is above the configured
+    * compaction threshold.  This normally happens in the background whenever a segment goes past the threshold.
+    */
+   public void compact() throws CacheLoaderException {
+      synchronized (compactionLock) {
+         for (LogSegment s : segments.values()) {
+            if (s != head && s.isCompactable(config.getCompactionThreshold())) {
+               try {
+                  compact(s);
+               } catch (IOException e) {
+                  // Not an error if the segment was deleted underneath by clear()
+                  if (segments.get(s.id) == s) log.errorCompactingLogSegment(s.file, e);
+               } catch (ClassNotFoundException e) {
+                  throw new CacheLoaderException("Unable to compact " + s.file, e);
+               }
+            }
+         }
+      }
+   }
+
+   private void compact(LogSegment s) throws IOException, ClassNotFoundException, CacheLoaderException {
+      if (trace) log.tracef("Compacting %s", s);
+      long now = System.currentTimeMillis();
+      // Removal markers only matter as long as older segments may hold records for the same keys
+      boolean olderSegments = segments.firstKey() < s.id;
+      long offset = 0;
+      Record r;
+      while ((r = s.readRecord(offset)) != null) {
+         Object key = marshaller.objectFromByteBuffer(r.key);
+         Integer lockingKey = getLockFromKey(key);
+         lockForWriting(lockingKey);
+         try {
+            if (segments.get(s.id) != s) return;
+            IndexEntry e = index.get(key);
+            boolean live = e != null && e.segment == s && e.offset == r.offset;
+            boolean expired = r.expiryTime >= 0 && now > r.expiryTime;
+            if (live && !expired) {
+               index.put(key, append(r.key, r.value, r.expiryTime));
+            } else {
+               if (live) index.remove(key);
+               // Carried over tombstones are not accounted as garbage, or they would keep bouncing from one
+               // compaction to the next until the older segments are gone
+               if ((r.isTombstone() || expired) && olderSegments && !index.containsKey(key))
+                  append(r.key, null, -1);
+            }
+         } finally {
+            unlock(lockingKey);
+         }
+         offset += r.length();
+      }
+      segments.remove(s.id, s);
+      if (!s.delete()) log.problemsRemovingFile(s.file);
+   }
+
+   private void scheduleCompaction() {
+      if (compactionScheduled.compareAndSet(false, true)) {
+         boolean scheduled = runInBackground(new Runnable() {
+            @Override
+            public void run() {
+               compactionScheduled.set(false);
+               try {
+                  compact();
+               } catch (CacheLoaderException e) {
+                  log.errorCompactingLogSegment(root, e);
+               }
+            }
+         });
+         if (!scheduled) compactionScheduled.set(false);
+      }
+   }
+
+   private boolean runInBackground(Runnable task) {
+      try {
+         compactor.execute(task);
+         return true;
+      } catch (RejectedExecutionException e) {
+         // The store is stopping, whatever the task was meant to do is either done by stop() or not needed
+         if (trace) log.tracef("Not running %s, the store is stopping", task);
+         return false;
+      }
+   }
+
+   private InternalCacheEntry read(Object key, IndexEntry e) throws CacheLoaderException {
+      try {
+         byte[] bytes = e.segment.read(e.valueOffset(), e.valueLength);
+         InternalCacheValue value = (InternalCacheValue) marshaller.objectFromByteBuffer(bytes);
+         return value.toInternalCacheEntry(key);
+      } catch (IOException ioe) {
+         log.errorReadingFromFile(e.segment.file, ioe);
+         throw new CacheLoaderException("Error while reading from file", ioe);
+      } catch (ClassNotFoundException cnfe) {
+         throw new CacheLoaderException("Unable to unmarshall entry stored in " + e.segment.file, cnfe);
+      }
+   }
+
+   private IndexEntry append(byte[] key, byte[] value, long expiryTime) throws IOException {
+      IOException error = flushError;
+      if (error != null) {
+         flushError = null;
+         throw new IOException("Periodic flush of the log failed", error);
+      }
+      int valueLength = value == null ? TOMBSTONE : value.length;
+      int length = LogSegment.recordLength(key.length, valueLength);
+      ByteBuffer header = LogSegment.header(key.length, valueLength, expiryTime, LogSegment.checksum(key, value));
+      ByteBuffer[] record = value == null ?
+            new ByteBuffer[]{header, ByteBuffer.wrap(key)} :
+            new ByteBuffer[]{header, ByteBuffer.wrap(key), ByteBuffer.wrap(value)};
+      synchronized (appendLock) {
+         LogSegment s = head;
+         if (s.size() > 0 && s.size() + length > config.getMaxSegmentSize()) s = roll();
+         long offset = s.append(record, length);
+         if (config.getFsyncMode() == FsyncMode.PER_WRITE) s.force();
+         return new IndexEntry(s, offset, key.length, valueLength, expiryTime);
+      }
+   }
+
+   /**
+    * Seals the head segment and starts a new one.  Must be called with the append lock held.
+    */
+   private LogSegment roll() throws IOException {
+      final LogSegment sealed = head;
+      head = openSegment(sealed.id + 1);
+      if (trace) log.tracef("Sealed %s", sealed);
+      runInBackground(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               writeHint(sealed);
+               if (config.isMemoryMappedReads()) sealed.map();
+            } catch (IOException e) {
+               // Hints are only an optimisation, the segment will be scanned on recovery instead
+               if (trace) log.tracef(e, "Unable to write hint for %s", sealed);
+            }
+            if (sealed.isCompactable(config.getCompactionThreshold())) scheduleCompaction();
+         }
+      });
+      return head;
+   }
+
+   private LogSegment openSegment(int id) throws IOException {
+      LogSegment s = new LogSegment(root, id);
+      segments.put(id, s);
+      return s;
+   }
+
+   private void discard(IndexEntry prev) {
+      if (prev == null) return;
+      LogSegment s = prev.segment;
+      s.addGarbage(prev.length());
+      if (s != head && s.isCompactable(config.getCompactionThreshold())) scheduleCompaction();
+   }
+
+   private void recover() throws IOException, ClassNotFoundException {
+      SortedMap<Integer, File> files = new TreeMap<Integer, File>();
+      File[] listFiles = root.listFiles();
+      if (listFiles != null) {
+         for (File f : listFiles) {
+            String name = f.getName();
+            if (!name.endsWith(SEGMENT_SUFFIX)) continue;
+            try {
+               files.put(Integer.valueOf(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), f);
+            } catch (NumberFormatException e) {
+               if (trace) log.tracef("Ignoring %s", f);
+            }
+         }
+      }
+
+      long now = System.currentTimeMillis();
+      int next = 0;
+      for (Integer id : files.keySet()) {
+         next = id + 1;
+         LogSegment s = new LogSegment(root, id);
+         if (s.size() == 0) {
+            s.delete();
+            continue;
+         }
+         segments.put(id, s);
+         if (!recoverFromHint(s, now)) {
+            recoverFromSegment(s, now);
+            writeHint(s);
+         }
+         if (config.isMemoryMappedReads()) s.map();
+      }
+      if (trace) log.tracef("Recovered %d entries from %d segments", index.size(), segments.size());
+      head = openSegment(next);
+      scheduleCompaction();
+   }
+
+   private boolean recoverFromHint(LogSegment s, long now) throws IOException, ClassNotFoundException {
+      File hint = s.hintFile();
+      if (!hint.exists()) return false;
+      byte[] bytes = new byte[(int) hint.length()];
+      DataInputStream in = new DataInputStream(new FileInputStream(hint));
+      try {
+         in.readFully(bytes);
+      } finally {
+         in.close();
+      }
+      ByteBuffer buf = ByteBuffer.wrap(bytes);
+      // A hint is only valid if it was completely written, and covers the whole segment
+      if (bytes.length < 12 || buf.getLong() != s.size() || buf.getInt(bytes.length - 4) != HINT_END) return false;
+      long offset = 0;
+      int keyLength;
+      while ((keyLength = buf.getInt()) != HINT_END) {
+         int valueLength = buf.getInt();
+         long expiryTime = buf.getLong();
+         Object key = marshaller.objectFromByteBuffer(bytes, buf.position(), keyLength);
+         buf.position(buf.position() + keyLength);
+         replay(s, key, offset, keyLength, valueLength, expiryTime, now);
+         offset += LogSegment.recordLength(keyLength, valueLength);
+      }
+      return true;
+   }
+
+   private void recoverFromSegment(LogSegment s, long now) throws IOException, ClassNotFoundException {
+      long offset = 0;
+      Record r;
+      while ((r = s.readRecord(offset)) != null) {
+         replay(s, marshaller.objectFromByteBuffer(r.key), offset, r.key.length, r.valueLength(), r.expiryTime, now);
+         offset += r.length();
+      }
+      if (offset < s.size()) {
+         log.truncatingLogSegment(s.file, offset);
+         s.truncate(offset);
+      }
+   }
+
+   private void replay(LogSegment s, Object key, long offset, int keyLength, int valueLength, long expiryTime, long now) {
+      IndexEntry prev;
+      if (valueLength == TOMBSTONE || (expiryTime >= 0 && now > expiryTime)) {
+         prev = index.remove(key);
+         s.addGarbage(LogSegment.recordLength(keyLength, valueLength));
+      } else {
+         prev = index.put(key, new IndexEntry(s, offset, keyLength, valueLength, expiryTime));
+      }
+      if (prev != null) prev.segment.addGarbage(prev.length());
+   }
+
+   /**
+    * Writes the hint file of a segment, listing the key, position and expiry time of each of its records.
+    */
+   private void writeHint(LogSegment s) throws IOException {
+      long size = s.size();
+      if (size == 0) return;
+      File tmp = new File(root, s.id + HINT_SUFFIX + ".tmp");
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      long offset = 0;
+      try {
+         out.writeLong(size);
+         Record r;
+         while (offset < size && (r = s.readRecord(offset)) != null) {
+            out.writeInt(r.key.length);
+            out.writeInt(r.valueLength());
+            out.writeLong(r.expiryTime);
+            out.write(r.key);
+            offset += r.length();
+         }
+         out.writeInt(HINT_END);
+      } finally {
+         out.close();
+      }
+      File hint = s.hintFile();
+      if (offset != size || segments.get(s.id) != s || (hint.exists() && !hint.delete()) || !tmp.renameTo(hint)) {
+         if (!tmp.delete()) log.problemsRemovingFile(tmp);
+      }
+   }
+
+   /**
+    * Position of the latest record of a key in the log.
+    */
+   static final class IndexEntry {
+      final LogSegment segment;
+      final long offset;
+      final int keyLength;
+      final int valueLength;
+      final long expiryTime;
+
+      IndexEntry(LogSegment segment, long offset, int keyLength, int valueLength, long expiryTime) {
+         this.segment = segment;
+         this.offset = offset;
+         this.keyLength = keyLength;
+         this.valueLength = valueLength;
+         this.expiryTime = expiryTime;
+      }
+
+      long valueOffset() {
+         return offset + HEADER_SIZE + keyLength;
+      }
+
+      int length() {
+         return LogSegment.recordLength(keyLength, valueLength);
+      }
+
+      boolean isExpired(long now) {
+         return expiryTime >= 0 && now > expiryTime;
+      }
+   }
+}
@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logstructured;
+
+import org.infinispan.loaders.LockSupportCacheStoreConfig;
+import org.infinispan.loaders.file.FileCacheStoreConfig.FsyncMode;
+
+/**
+ * Configures {@link LogStructuredCacheStore}.
+ * <p/>
+ *    <ul>
+ *       <li><tt>location</tt> - a location on disk where the store can write its segment files.  This defaults to
+ * <tt>Infinispan-LogStructuredCacheStore</tt> in the current working directory.</li>
+ *       <li><tt>maxSegmentSize</tt> - the size, in bytes, after which the segment currently being appended to is
+ * sealed and a new one is started.  Sealed segments are never written to again, only compacted.  By default, this
+ * is set to <tt>16777216</tt> (16MB).</li>
+ *       <li><tt>compactionThreshold</tt> - the ratio of obsolete bytes (overwritten, removed or expired entries) to
+ * total bytes in a sealed segment above which the segment is compacted in the background, by copying its live entries
+ * to the head of the log and deleting it.  By default, this is set to <tt>0.5</tt>.</li>
+ *       <li><tt>memoryMappedReads</tt> - if <tt>true</tt>, sealed segments are memory mapped and entries are read
+ * straight from the mapped region, otherwise positional {@link java.nio.channels.FileChannel} reads are used.
+ * By default, this is set to <tt>false</tt>.</li>
+ *       <li><tt>fsyncMode</tt> - configures how appends are synchronized with the underlying file system; same values
+ * as {@link org.infinispan.loaders.file.FileCacheStoreConfig#getFsyncMode()}.  By default, this is set to
+ * <tt>default</tt>.</li>
+ *       <li><tt>fsyncInterval</tt> - specifies the time after which appends are flushed when <tt>periodic</tt> fsync
+ * mode is in use. The default fsync interval is 1 second.</li>
+ *       <li><tt>lockConcurrencyLevel</tt> - the number of shared locks used to guard keys.  By default, this is set to
+ * <tt>2048</tt>.</li>
+ *       <li><tt>lockAcquistionTimeout</tt> - the length of time, in milliseconds, to wait for locks
+ * before timing out and throwing an exception.  By default, this is set to <tt>60000</tt>.</li>
+ *    </ul>
+ *
+ * @since 5.0
+ */
+public class LogStructuredCacheStoreConfig extends LockSupportCacheStoreConfig {
+
+   private static final long serialVersionUID = -6305453742382451539L;
+
+   private String location = "Infinispan-LogStructuredCacheStore";
+   private int maxSegmentSize = 16 * 1024 * 1024;
+   private float compactionThreshold = 0.5f;
+   private boolean memoryMappedReads = false;
+   private FsyncMode fsyncMode = FsyncMode.DEFAULT;
+   private long fsyncInterval = 1000;
+
+   public LogStructuredCacheStoreConfig() {
+      setCacheLoaderClassName(LogStructuredCacheStore.class.getName());
+   }
+
+   public String getLocation() {
+      return location;
+   }
+
+   public void setLocation(String location) {
+      testImmutability("location");
+      this.location = location;
+   }
+
+   public LogStructuredCacheStoreConfig location(String location) {
+      setLocation(location);
+      return this;
+   }
+
+   public int getMaxSegmentSize() {
+      return maxSegmentSize;
+   }
+
+   public void setMaxSegmentSize(int maxSegmentSize) {
+      testImmutability("maxSegmentSize");
+      this.maxSegmentSize = maxSegmentSize;
+   }
+
+   public LogStructuredCacheStoreConfig maxSegmentSize(int maxSegmentSize) {
+      setMaxSegmentSize(maxSegmentSize);
+      return this;
+   }
+
+   public float getCompactionThreshold() {
+      return compactionThreshold;
+   }
+
+   public void setCompactionThreshold(float compactionThreshold) {
+      testImmutability("compactionThreshold");
+      this.compactionThreshold = compactionThreshold;
+   }
+
+   public LogStructuredCacheStoreConfig compactionThreshold(float compactionThreshold) {
+      setCompactionThreshold(compactionThreshold);
+      return this;
+   }
+
+   public boolean isMemoryMappedReads() {
+      return memoryMappedReads;
+   }
+
+   public void setMemoryMappedReads(boolean memoryMappedReads) {
+      testImmutability("memoryMappedReads");
+      this.memoryMappedReads = memoryMappedReads;
+   }
+
+   public LogStructuredCacheStoreConfig memoryMappedReads(boolean memoryMappedReads) {
+      setMemoryMappedReads(memoryMappedReads);
+      return this;
+   }
+
+   public FsyncMode getFsyncMode() {
+      return fsyncMode;
+   }
+
+   public void setFsyncMode(FsyncMode fsyncMode) {
+      testImmutability("fsyncMode");
+      this.fsyncMode = fsyncMode;
+   }
+
+   public LogStructuredCacheStoreConfig fsyncMode(FsyncMode fsyncMode) {
+      setFsyncMode(fsyncMode);
+      return this;
+   }
+
+   public long getFsyncInterval() {
+      return fsyncInterval;
+   }
+
+   public void setFsyncInterval(long fsyncInterval) {
+      testImmutability("fsyncInterval");
+      this.fsyncInterval = fsyncInterval;
+   }
+
+   public LogStructuredCacheStoreConfig fsyncInterval(long fsyncInterval) {
+      setFsyncInterval(fsyncInterval);
+      return this;
+   }
+
+   // Method overrides below are used to make configuration more fluent.
+
+   @Override
+   public LogStructuredCacheStoreConfig purgeOnStartup(Boolean purgeOnStartup) {
+      super.purgeOnStartup(purgeOnStartup);
+      return this;
+   }
+
+   @Override
+   public LogStructuredCacheStoreConfig purgeSynchronously(Boolean purgeSynchronously) {
+      super.purgeSynchronously(purgeSynchronously);
+      return this;
+   }
+
+   @Override
+   public LogStructuredCacheStoreConfig fetchPersistentState(Boolean fetchPersistentState) {
+      super.fetchPersistentState(fetchPersistentState);
+      return this;
+   }
+
+   @Override
+   public LogStructuredCacheStoreConfig ignoreModifications(Boolean ignoreModifications) {
+      super.ignoreModifications(ignoreModifications);
+      return this;
+   }
+}
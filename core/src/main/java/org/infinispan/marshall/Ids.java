@@ -88,4 +88,5 @@ public interface Ids {
    int XID_GLOBAL_TRANSACTION = 68;
 
    int IN_DOUBT_TX_INFO = 70;
+   int SEGMENTED_CONSISTENT_HASH = 71;
 }
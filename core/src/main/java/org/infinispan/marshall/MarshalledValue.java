@@ -28,6 +28,7 @@ import org.infinispan.io.ExposedByteArrayOutputStream;
 import org.infinispan.io.UnsignedNumeric;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.ByteArrayKey;
 import org.infinispan.util.Util;
 
 import java.io.IOException;
@@ -204,6 +205,16 @@ public class MarshalledValue {
       return rawValue;
    }
 
+   /**
+    * Unlike {@link #getRaw()}, never serializes the instance.
+    *
+    * @return the length of the serialized form, or -1 if the instance has not been serialized yet
+    */
+   public int getSerializedSizeIfKnown() {
+      byte[] rawValue = raw;
+      return rawValue == null ? -1 : rawValue.length;
+   }
+
    /**
     * Returns the 'cached' instance
     */
@@ -299,7 +310,8 @@ public class MarshalledValue {
             type.equals(Byte.class) || type.equals(Short.class) || type.equals(Integer.class) ||
             type.equals(Long.class) || type.equals(Float.class) || type.equals(Double.class) ||
             (type.isArray() && isTypeExcluded(type.getComponentType())) || type.equals(GlobalTransaction.class) || Address.class.isAssignableFrom(type) ||
-            ReplicableCommand.class.isAssignableFrom(type) || type.equals(MarshalledValue.class);
+            ReplicableCommand.class.isAssignableFrom(type) || type.equals(MarshalledValue.class) ||
+            type.equals(ByteArrayKey.class);
    }
 
    public static class Externalizer extends AbstractExternalizer<MarshalledValue> {
@@ -45,6 +45,7 @@ import org.infinispan.container.entries.TransientMortalCacheValue;
 import org.infinispan.distribution.RemoteTransactionLogDetails;
 import org.infinispan.distribution.ch.AbstractWheelConsistentHash;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
 import org.infinispan.distribution.ch.UnionConsistentHash;
 import org.infinispan.io.UnsignedNumeric;
@@ -165,6 +166,7 @@ class ExternalizerTable implements ObjectTable {
       internalExternalizers.add(new RemoveOperation.Externalizer());
       internalExternalizers.add(new ClearOperation.Externalizer());
       internalExternalizers.add(new DefaultConsistentHash.Externalizer());
+      internalExternalizers.add(new SegmentedConsistentHash.Externalizer());
       internalExternalizers.add(new UnionConsistentHash.Externalizer());
       internalExternalizers.add(new JGroupsTopologyAwareAddress.Externalizer());
       internalExternalizers.add(new TopologyAwareConsistentHash.Externalizer());
@@ -0,0 +1,313 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.MultipleRpcCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link ReplicationQueue} that coalesces writes to the same key within a flush interval, so that a key overwritten
+ * many times is only replicated once, with its latest value.
+ * <p/>
+ * Only unconditional single-key writes (plain puts and removes) supersede earlier queued writes to their key, since
+ * the state they leave on the remote nodes does not depend on what was applied before them. Every other command is
+ * replicated as-is, in order. Note that remote listeners are not notified of the superseded writes.
+ * <p/>
+ * Producers never block each other: commands are appended to a lock-free queue and an index of the latest write to
+ * each key, and a single thread at a time drains the queue. Besides the element count and the interval, the queue is
+ * flushed once the estimated size of the queued keys and values reaches
+ * {@link org.infinispan.config.Configuration#getReplQueueMaxBytes()}, which also caps the size of each batch sent.
+ * <p/>
+ * Enable it by setting <code>replQueueClass</code> to this class.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class CoalescingReplicationQueue implements ReplicationQueue {
+   private static final Log log = LogFactory.getLog(CoalescingReplicationQueue.class);
+
+   /**
+    * Size assumed for commands, keys and values whose size cannot be told without marshalling them.
+    */
+   static final int UNKNOWN_SIZE = 128;
+
+   private final ConcurrentLinkedQueue<Slot> slots = new ConcurrentLinkedQueue<Slot>();
+   private final ConcurrentHashMap<Object, Slot> latestWrites = new ConcurrentHashMap<Object, Slot>();
+   private final AtomicInteger pendingElements = new AtomicInteger();
+   private final AtomicLong pendingBytes = new AtomicLong();
+   private final AtomicBoolean flushing = new AtomicBoolean();
+
+   private ScheduledExecutorService scheduledExecutor;
+   private RpcManager rpcManager;
+   private Configuration configuration;
+   private CommandsFactory commandsFactory;
+   private volatile ScheduledFuture<?> scheduledFuture;
+   private boolean enabled;
+   private long maxElements;
+   private long maxBytes;
+   private boolean trace;
+
+   /**
+    * A queued command. The command is cleared when it is either sent or superseded, whichever happens first.
+    */
+   private static final class Slot extends AtomicReference<ReplicableCommand> {
+      final Object key;
+      final int size;
+
+      Slot(ReplicableCommand command, Object key, int size) {
+         super(command);
+         this.key = key;
+         this.size = size;
+      }
+   }
+
+   @Inject
+   public void injectDependencies(@ComponentName(KnownComponentNames.ASYNC_REPLICATION_QUEUE_EXECUTOR) ScheduledExecutorService executor,
+                                  RpcManager rpcManager, Configuration configuration, CommandsFactory commandsFactory) {
+      this.rpcManager = rpcManager;
+      this.configuration = configuration;
+      this.commandsFactory = commandsFactory;
+      this.scheduledExecutor = executor;
+   }
+
+   @Start
+   public void start() {
+      long interval = configuration.getReplQueueInterval();
+      trace = log.isTraceEnabled();
+      maxElements = configuration.getReplQueueMaxElements();
+      maxBytes = configuration.getReplQueueMaxBytes();
+      if (trace)
+         log.tracef("Starting coalescing replication queue, with interval %d, maxElements %d and maxBytes %d",
+                    interval, maxElements, maxBytes);
+
+      enabled = configuration.isUseReplQueue();
+      if (enabled && interval > 0) {
+         scheduledFuture = scheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+               LogFactory.pushNDC(configuration.getName(), trace);
+               try {
+                  flush();
+               } finally {
+                  LogFactory.popNDC(trace);
+               }
+            }
+         }, interval, interval, TimeUnit.MILLISECONDS);
+      }
+   }
+
+   @Stop(priority = 9)
+   // Stop before transport
+   public void stop() {
+      if (scheduledFuture != null) scheduledFuture.cancel(true);
+      try {
+         // wait for a flush in progress instead of skipping the final flush
+         while (!flushing.compareAndSet(false, true)) Thread.yield();
+         try {
+            drain();
+         } finally {
+            flushing.set(false);
+         }
+      } catch (Exception e) {
+         log.debug("Unable to perform final flush before shutting down", e);
+      }
+      scheduledExecutor = null;
+   }
+
+   @Override
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   @Override
+   public void add(ReplicableCommand job) {
+      if (job == null)
+         throw new NullPointerException("job is null");
+
+      Object key = getCoalescingKey(job);
+      Slot slot = new Slot(job, key, estimateSize(job));
+      pendingElements.incrementAndGet();
+      pendingBytes.addAndGet(slot.size);
+      if (key != null) {
+         // writes to the same key are serialized by the key's lock, so the index and the queue see them in order
+         Slot previous = latestWrites.put(key, slot);
+         if (previous != null) supersede(previous);
+      }
+      slots.offer(slot);
+
+      if (pendingElements.get() >= maxElements || (maxBytes > 0 && pendingBytes.get() >= maxBytes)) flush();
+   }
+
+   private void supersede(Slot slot) {
+      ReplicableCommand superseded = slot.getAndSet(null);
+      if (superseded != null) {
+         pendingElements.decrementAndGet();
+         pendingBytes.addAndGet(-slot.size);
+         if (trace) log.tracef("Coalesced %s", superseded);
+      }
+   }
+
+   /**
+    * Flushes the queue, unless another thread is already doing so.
+    *
+    * @return the number of commands replicated, which does not include superseded commands
+    */
+   @Override
+   public int flush() {
+      if (!flushing.compareAndSet(false, true)) {
+         if (trace) log.trace("flush(): another thread is already flushing the repl queue");
+         return 0;
+      }
+      try {
+         return drain();
+      } finally {
+         flushing.set(false);
+      }
+   }
+
+   private int drain() {
+      int flushed = 0;
+      List<ReplicableCommand> batch = new ArrayList<ReplicableCommand>();
+      long batchBytes = 0;
+      Slot slot;
+      while ((slot = slots.poll()) != null) {
+         if (slot.key != null) latestWrites.remove(slot.key, slot);
+         ReplicableCommand command = slot.getAndSet(null);
+         if (command == null) continue; // superseded by a later write to the same key
+
+         pendingElements.decrementAndGet();
+         pendingBytes.addAndGet(-slot.size);
+         batch.add(command);
+         batchBytes += slot.size;
+         if (batch.size() >= maxElements || (maxBytes > 0 && batchBytes >= maxBytes)) {
+            flushed += replicate(batch);
+            batch = new ArrayList<ReplicableCommand>();
+            batchBytes = 0;
+         }
+      }
+      if (!batch.isEmpty()) flushed += replicate(batch);
+      if (trace) log.tracef("flush(): flushed %d elements", flushed);
+      return flushed;
+   }
+
+   private int replicate(List<ReplicableCommand> toReplicate) {
+      try {
+         log.tracef("Flushing %s elements", toReplicate.size());
+         MultipleRpcCommand multipleRpcCommand = commandsFactory.buildReplicateCommand(toReplicate);
+         // send to all live caches in the cluster
+         rpcManager.invokeRemotely(null, multipleRpcCommand, ResponseMode.getAsyncResponseMode(configuration), configuration.getSyncReplTimeout());
+      } catch (Throwable t) {
+         log.failedReplicatingQueue(toReplicate.size(), t);
+      }
+      return toReplicate.size();
+   }
+
+   /**
+    * @return the key whose earlier writes the command supersedes, or <code>null</code> if it must not supersede any
+    */
+   static Object getCoalescingKey(ReplicableCommand command) {
+      if (command instanceof PutKeyValueCommand) {
+         PutKeyValueCommand put = (PutKeyValueCommand) command;
+         return put.isConditional() ? null : put.getKey();
+      } else if (command instanceof RemoveCommand) {
+         RemoveCommand remove = (RemoveCommand) command;
+         return remove.isConditional() ? null : remove.getKey();
+      }
+      return null;
+   }
+
+   /**
+    * A cheap estimate of the marshalled size of a command, counting keys and values that are already in binary form
+    * or are strings, and {@link #UNKNOWN_SIZE} for anything else.
+    */
+   static int estimateSize(ReplicableCommand command) {
+      if (command instanceof PutKeyValueCommand) {
+         PutKeyValueCommand put = (PutKeyValueCommand) command;
+         return sizeOf(put.getKey()) + sizeOf(put.getValue());
+      } else if (command instanceof RemoveCommand) {
+         return sizeOf(((RemoveCommand) command).getKey());
+      } else if (command instanceof PutMapCommand) {
+         long size = 0;
+         for (Map.Entry<Object, Object> e : ((PutMapCommand) command).getMap().entrySet())
+            size += sizeOf(e.getKey()) + sizeOf(e.getValue());
+         return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+      }
+      return UNKNOWN_SIZE;
+   }
+
+   private static int sizeOf(Object o) {
+      if (o == null) {
+         return 0;
+      } else if (o instanceof byte[]) {
+         return ((byte[]) o).length;
+      } else if (o instanceof MarshalledValue) {
+         // the value is marshalled anyway when the command is replicated
+         return ((MarshalledValue) o).getRaw().length;
+      } else if (o instanceof String) {
+         return ((String) o).length();
+      }
+      return UNKNOWN_SIZE;
+   }
+
+   @Override
+   public int getElementsCount() {
+      return pendingElements.get();
+   }
+
+   @Override
+   public void reset() {
+      Slot slot;
+      while ((slot = slots.poll()) != null) {
+         if (slot.key != null) latestWrites.remove(slot.key, slot);
+         supersede(slot);
+      }
+   }
+}
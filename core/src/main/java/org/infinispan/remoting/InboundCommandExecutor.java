@@ -0,0 +1,377 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.commands.DataCommand;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.remote.MultipleRpcCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.tx.CommitCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.tx.RollbackCommand;
+import org.infinispan.commands.tx.TransactionBoundaryCommand;
+import org.infinispan.commands.write.ClearCommand;
+import org.infinispan.commands.write.InvalidateCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes inbound {@link CacheRpcCommand}s on worker threads, while preserving the order in which commands from the
+ * same sender touching the same keys were received.
+ * <p/>
+ * Every sender has its own fixed set of queues, called lanes, so commands from different senders never wait for each
+ * other here, as with JGroups delivering regular messages.  A command is routed to the lanes its keys hash to: commands
+ * on a single key, such as a replicated put, therefore run in arrival order with respect to each other but in parallel
+ * with commands on other keys.  A command spanning several lanes, such as a one phase prepare or a putAll, is only
+ * executed once it has reached the head of every lane it maps to, with those lanes waiting for it to complete.
+ * Commands whose keys cannot be determined, e.g. a clear or the prepare of a two phase transaction, span all the lanes
+ * of their sender and act as a full barrier.  Lanes do not hold on to a thread while they are empty.
+ * <p/>
+ * Commits and rollbacks never enter the lanes: they release the locks queued commands may be waiting for, so queueing
+ * them behind such commands would stall both until the lock acquisition timeout.  They are executed straight away by
+ * the calling thread, once the commands of their transaction received earlier have completed.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class InboundCommandExecutor {
+
+   private static final Log log = LogFactory.getLog(InboundCommandExecutor.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final int numLanes;
+   private final BitSet allLanes;
+   private final ExecutorService executor;
+   private final ConcurrentMap<Address, SenderLanes> lanesBySender = new ConcurrentHashMap<Address, SenderLanes>();
+   // the latest command of each transaction that is still queued or running, see submit()
+   private final ConcurrentMap<GlobalTransaction, Future<?>> pendingTransactions = new ConcurrentHashMap<GlobalTransaction, Future<?>>();
+   private volatile boolean running = true;
+
+   public InboundCommandExecutor(int numLanes, final String threadNamePrefix) {
+      if (numLanes < 1) throw new IllegalArgumentException("Number of lanes must be positive, was " + numLanes);
+      this.numLanes = numLanes;
+      allLanes = new BitSet(numLanes);
+      allLanes.set(0, numLanes);
+      executor = Executors.newCachedThreadPool(new ThreadFactory() {
+         private final AtomicInteger counter = new AtomicInteger(0);
+
+         public Thread newThread(Runnable r) {
+            Thread th = new Thread(r, threadNamePrefix + "-" + counter.getAndIncrement());
+            th.setDaemon(true);
+            return th;
+         }
+      });
+   }
+
+   /**
+    * Schedules a task executing the given command.  Commits and rollbacks are executed before this method returns.
+    *
+    * @param sender  member the command was received from
+    * @param command command, used to determine the keys the task must be ordered against
+    * @param task    task executing the command
+    * @return a future holding the result of the task
+    * @throws RejectedExecutionException if this executor has been stopped
+    */
+   public <T> Future<T> submit(Address sender, CacheRpcCommand command, Callable<T> task) {
+      if (!running) throw new RejectedExecutionException("Inbound command executor has been stopped");
+      if (command instanceof CommitCommand || command instanceof RollbackCommand) {
+         FutureTask<T> future = new FutureTask<T>(task);
+         awaitTransaction(((TransactionBoundaryCommand) command).getGlobalTransaction());
+         future.run();
+         return future;
+      }
+
+      FutureTask<T> future;
+      if (command instanceof TransactionBoundaryCommand) {
+         // prepares and lock commands span all the lanes, so the latest one completing implies the earlier ones did
+         GlobalTransaction gtx = ((TransactionBoundaryCommand) command).getGlobalTransaction();
+         future = new TransactionTask<T>(task, gtx);
+         pendingTransactions.put(gtx, future);
+      } else {
+         future = new FutureTask<T>(task);
+      }
+
+      SenderLanes lanes = getSenderLanes(sender);
+      BitSet targets = getLanes(command);
+      if (targets.cardinality() == 1) {
+         lanes.lanes[targets.nextSetBit(0)].add(future);
+      } else {
+         Fence fence = new Fence(future, targets.cardinality());
+         synchronized (lanes) {
+            for (int i = targets.nextSetBit(0); i >= 0; i = targets.nextSetBit(i + 1)) lanes.lanes[i].add(fence);
+         }
+      }
+      // if stop() raced with us the lanes may have cancelled their queued commands already
+      if (!running) future.cancel(false);
+      if (trace) log.tracef("Scheduled %s from %s on lanes %s", command, sender, targets);
+      return future;
+   }
+
+   public int getNumLanes() {
+      return numLanes;
+   }
+
+   /**
+    * Discards the lanes of members that left the cluster.
+    *
+    * @param members current members of the cluster
+    */
+   public void retainSenders(Collection<Address> members) {
+      lanesBySender.keySet().retainAll(members);
+   }
+
+   /**
+    * Stops the lanes.  Commands still queued are cancelled, so callers waiting on their futures are released.
+    */
+   public void stop() {
+      running = false;
+      executor.shutdownNow();
+      for (SenderLanes lanes : lanesBySender.values()) {
+         for (Lane lane : lanes.lanes) lane.cancelQueued();
+      }
+   }
+
+   BitSet getLanes(CacheRpcCommand command) {
+      BitSet targets = new BitSet(numLanes);
+      if (!addLanes(command.getCacheName(), command, targets)) return allLanes;
+      return targets;
+   }
+
+   int getLane(String cacheName, Object key) {
+      int h = 31 * (cacheName == null ? 0 : cacheName.hashCode()) + (key == null ? 0 : key.hashCode());
+      // spread the bits, as keys' hash codes are frequently poorly distributed in the lower bits
+      h ^= (h >>> 20) ^ (h >>> 12);
+      h ^= (h >>> 7) ^ (h >>> 4);
+      return (h & Integer.MAX_VALUE) % numLanes;
+   }
+
+   private SenderLanes getSenderLanes(Address sender) {
+      SenderLanes lanes = lanesBySender.get(sender);
+      if (lanes == null) {
+         SenderLanes existing = lanesBySender.putIfAbsent(sender, lanes = new SenderLanes());
+         if (existing != null) lanes = existing;
+      }
+      return lanes;
+   }
+
+   private void awaitTransaction(GlobalTransaction gtx) {
+      Future<?> pending = pendingTransactions.get(gtx);
+      if (pending == null) return;
+      if (trace) log.tracef("Waiting for the earlier commands of %s to complete", gtx);
+      try {
+         pending.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+         // the failure is reported to the sender of the failed command
+      } catch (CancellationException e) {
+         // the executor has been stopped
+      }
+   }
+
+   /**
+    * @return false if the keys of the command could not be determined
+    */
+   private boolean addLanes(String cacheName, ReplicableCommand command, BitSet targets) {
+      if (command instanceof SingleRpcCommand) {
+         return addLanes(cacheName, ((SingleRpcCommand) command).getCommand(), targets);
+      } else if (command instanceof MultipleRpcCommand) {
+         for (ReplicableCommand c : ((MultipleRpcCommand) command).getCommands())
+            if (!addLanes(cacheName, c, targets)) return false;
+         return true;
+      } else if (command instanceof PrepareCommand) {
+         PrepareCommand prepare = (PrepareCommand) command;
+         // a two phase prepare spans every lane, so that its commit, which bypasses the lanes, only needs to wait for
+         // the latest command of the transaction, see submit()
+         if (!prepare.isOnePhaseCommit()) return false;
+         for (WriteCommand c : prepare.getModifications())
+            if (!addLanes(cacheName, c, targets)) return false;
+         return true;
+      } else if (command instanceof InvalidateCommand) {
+         for (Object key : ((InvalidateCommand) command).getKeys()) targets.set(getLane(cacheName, key));
+         return true;
+      } else if (command instanceof ClearCommand) {
+         return false;
+      } else if (command instanceof WriteCommand) {
+         for (Object key : ((WriteCommand) command).getAffectedKeys()) targets.set(getLane(cacheName, key));
+         return !targets.isEmpty();
+      } else if (command instanceof DataCommand) {
+         targets.set(getLane(cacheName, ((DataCommand) command).getKey()));
+         return true;
+      } else if (command instanceof ClusteredGetCommand) {
+         targets.set(getLane(cacheName, ((ClusteredGetCommand) command).getKey()));
+         return true;
+      }
+      return false;
+   }
+
+
+   private static void cancel(Runnable r) {
+      if (r instanceof Fence) ((Fence) r).cancel();
+      else ((Future<?>) r).cancel(false);
+   }
+
+   /**
+    * Runs a command spanning several lanes.  Every lane but the last one to reach the fence waits for the last one to
+    * execute the command.
+    */
+   private static class Fence implements Runnable {
+      private final FutureTask<?> task;
+      private final AtomicInteger pendingLanes;
+      private final CountDownLatch done = new CountDownLatch(1);
+
+      Fence(FutureTask<?> task, int lanes) {
+         this.task = task;
+         this.pendingLanes = new AtomicInteger(lanes);
+      }
+
+      @Override
+      public void run() {
+         if (pendingLanes.decrementAndGet() == 0) {
+            try {
+               task.run();
+            } finally {
+               done.countDown();
+            }
+         } else {
+            try {
+               done.await();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }
+      }
+
+      void cancel() {
+         task.cancel(false);
+         // release the lanes already waiting at the fence
+         done.countDown();
+      }
+   }
+
+   /**
+    * A command of a transaction, which its commit or rollback waits for.
+    */
+   private class TransactionTask<T> extends FutureTask<T> {
+      private final GlobalTransaction gtx;
+
+      TransactionTask(Callable<T> task, GlobalTransaction gtx) {
+         super(task);
+         this.gtx = gtx;
+      }
+
+      @Override
+      protected void done() {
+         pendingTransactions.remove(gtx, this);
+      }
+   }
+
+   private class SenderLanes {
+      final Lane[] lanes = new Lane[numLanes];
+
+      SenderLanes() {
+         for (int i = 0; i < numLanes; i++) lanes[i] = new Lane();
+      }
+   }
+
+   /**
+    * Runs the commands queued in it one at a time, on a thread of the executor it only holds on to while it is not
+    * empty.
+    */
+   private class Lane implements Runnable {
+      final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+      final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+      void add(Runnable r) {
+         queue.add(r);
+         schedule();
+      }
+
+      private void schedule() {
+         if (scheduled.compareAndSet(false, true)) {
+            try {
+               executor.execute(this);
+            } catch (RejectedExecutionException e) {
+               // stopped
+               scheduled.set(false);
+               cancelQueued();
+            }
+         }
+      }
+
+      @Override
+      public void run() {
+         try {
+            Runnable r;
+            while (running && (r = queue.poll()) != null) {
+               try {
+                  r.run();
+               } catch (Throwable t) {
+                  // FutureTask captures the task's own failures, so this is unexpected
+                  log.problemExecutingInboundCommand(r, t);
+               }
+            }
+         } finally {
+            scheduled.set(false);
+         }
+         if (!running) cancelQueued();
+         // a command may have been added after the queue was found empty, but before the lane was unscheduled
+         else if (!queue.isEmpty()) schedule();
+      }
+
+      void cancelQueued() {
+         Runnable r;
+         int cancelled = 0;
+         while ((r = queue.poll()) != null) {
+            cancel(r);
+            cancelled++;
+         }
+         if (trace && cancelled > 0) log.tracef("Cancelled %s queued commands", cancelled);
+      }
+   }
+}
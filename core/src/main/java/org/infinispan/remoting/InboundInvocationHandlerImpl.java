@@ -96,7 +96,7 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
     * How to handle an invocation based on the join status of a given cache *
     */
    private enum JoinHandle {
-      QUEUE, OK, IGNORE
+      QUEUE, OK, IGNORE, LOGGED
    }
 
    @Inject
@@ -214,8 +214,14 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
          }
       } else {
          long giveupTime = System.currentTimeMillis() + localConfig.getStateRetrievalTimeout();
-         while (cr.getStatus().startingUp() && System.currentTimeMillis() < giveupTime)
+         while (cr.getStatus().startingUp() && System.currentTimeMillis() < giveupTime) {
+            // don't hold up the sender while a non-blocking state transfer is in progress, the command is applied
+            // once the state has been received; prepares still wait for that, and fail if they could not be applied
+            StateTransferManager stm = cr.getComponent(StateTransferManager.class);
+            if (stm != null && stm.logIfStateTransferInProgress(cmd))
+               return JoinHandle.LOGGED;
             LockSupport.parkNanos(MILLISECONDS.toNanos(100));
+         }
          if (!cr.getStatus().allowInvocations()) {
             log.cacheCanNotHandleInvocations(cmd.getCacheName(), cr.getStatus());
             return JoinHandle.IGNORE;
@@ -297,6 +303,8 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
                            return handleWithWaitForBlocks(cmd, distributedSyncTimeout);
                         case QUEUE:
                            return enqueueCommand(cmd);
+                        case LOGGED:
+                           return null;
                         default:
                            return RequestIgnoredResponse.INSTANCE;
                      }
@@ -358,10 +366,13 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
                return RequestIgnoredResponse.INSTANCE;
             } else {
                try {
-                  if (howToHandle(command) == JoinHandle.QUEUE) {
+                  JoinHandle joinHandle = howToHandle(command);
+                  if (joinHandle == JoinHandle.QUEUE) {
                      enqueueing = true;
                      enqueuedBlocker.close();
                      return enqueue(command);
+                  } else if (joinHandle == JoinHandle.LOGGED) {
+                     return null;
                   } else {
                      distributedSync.acquireProcessingLock(false, timeBeforeWeEnqueueCallForRetry, MILLISECONDS);
                      unlock = true;
@@ -38,6 +38,8 @@ public class ClusteredGetResponseValidityFilter implements ResponseFilter {
 
    private int numValidResponses = 0;
 
+   private boolean unsureResponseReceived = false;
+
    private Collection<Address> pendingResponders;
 
    public ClusteredGetResponseValidityFilter(Collection<Address> pendingResponders) {
@@ -48,6 +50,7 @@ public class ClusteredGetResponseValidityFilter implements ResponseFilter {
       pendingResponders.remove(address);
 
       if (response instanceof SuccessfulResponse) numValidResponses++;
+      else if (response instanceof UnsureResponse) unsureResponseReceived = true;
 
       // always return true to make sure a response is logged by the JGroups RpcDispatcher.
       return true;
@@ -57,4 +60,12 @@ public class ClusteredGetResponseValidityFilter implements ResponseFilter {
       return numValidResponses < 1 && !pendingResponders.isEmpty();
    }
 
+   /**
+    * @return true if every member replied and none of them was unsure whether it has the entry, so the lack of a
+    *         valid response means the entry does not exist
+    */
+   public boolean isMissAuthoritative() {
+      return pendingResponders.isEmpty() && !unsureResponseReceived;
+   }
+
 }
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting.rpc;
+
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.remoting.responses.ClusteredGetResponseValidityFilter;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyDistanceComparator;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends a {@link ClusteredGetCommand} to the members nearest to us in the cluster topology first, one distance group
+ * at a time.  The lookup stops at the first group that returns the entry, or in which every member replied that it
+ * does not have it.  The next group is only asked if some members of the current one did not reply, replied with an
+ * {@link org.infinispan.remoting.responses.UnsureResponse}, or state is still being moved around by a join or rehash.
+ *
+ * @since 5.0
+ */
+public class NearestFirstClusteredGet {
+
+   private final RpcManager rpcManager;
+   private final TopologyDistanceComparator nearestFirst;
+   private final DistributionManager distributionManager;
+
+   /**
+    * @param distributionManager used to find out whether a join or rehash is in progress, may be null if the cache is
+    *                            not distributed
+    */
+   public NearestFirstClusteredGet(RpcManager rpcManager, TopologyDistanceComparator nearestFirst,
+                                   DistributionManager distributionManager) {
+      this.rpcManager = rpcManager;
+      this.nearestFirst = nearestFirst;
+      this.distributionManager = distributionManager;
+   }
+
+   /**
+    * @param members the members to ask, not including the local node
+    * @return the responses of the group that ended the lookup, or of all the groups asked if none did
+    */
+   public Map<Address, Response> invoke(Collection<Address> members, ClusteredGetCommand get, ResponseMode mode,
+                                        long timeout) {
+      Map<Address, Response> responses = new HashMap<Address, Response>();
+      for (List<Address> group : nearestFirst.groupByDistance(members)) {
+         ClusteredGetResponseValidityFilter filter = new ClusteredGetResponseValidityFilter(group);
+         Map<Address, Response> groupResponses = rpcManager.invokeRemotely(group, get, mode, timeout, false, filter);
+         for (Response r : groupResponses.values()) {
+            if (r instanceof SuccessfulResponse) return groupResponses;
+         }
+         if (filter.isMissAuthoritative() && !isStateInTransit()) return groupResponses;
+         responses.putAll(groupResponses);
+      }
+      return responses;
+   }
+
+   private boolean isStateInTransit() {
+      return distributionManager != null &&
+            (distributionManager.isRehashInProgress() || !distributionManager.isJoinComplete());
+   }
+}
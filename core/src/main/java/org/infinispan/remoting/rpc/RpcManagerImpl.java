@@ -43,6 +43,7 @@ import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
 import org.infinispan.statetransfer.StateTransferException;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.concurrent.StripedCounter;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
@@ -61,7 +62,6 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This component really is just a wrapper around a {@link org.infinispan.remoting.transport.Transport} implementation,
@@ -80,9 +80,9 @@ public class RpcManagerImpl implements RpcManager {
    private static final boolean trace = log.isTraceEnabled();
 
    private Transport t;
-   private final AtomicLong replicationCount = new AtomicLong(0);
-   private final AtomicLong replicationFailures = new AtomicLong(0);
-   private final AtomicLong totalReplicationTime = new AtomicLong(0);
+   private final StripedCounter replicationCount = new StripedCounter();
+   private final StripedCounter replicationFailures = new StripedCounter();
+   private final StripedCounter totalReplicationTime = new StripedCounter();
 
    @ManagedAttribute(description = "Enables or disables the gathering of statistics by this component", writable = true)
    boolean statisticsEnabled = false; // by default, don't gather statistics.
@@ -130,23 +130,23 @@ public class RpcManagerImpl implements RpcManager {
          if (statisticsEnabled) startTime = System.currentTimeMillis();
          try {
             Map<Address, Response> result = t.invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, stateTransferEnabled);
-            if (isStatisticsEnabled()) replicationCount.incrementAndGet();
+            if (isStatisticsEnabled()) replicationCount.increment();
             return result;
          } catch (CacheException e) {
             if (log.isTraceEnabled()) {
                log.trace("replication exception: ", e);
             }
 
-            if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
+            if (isStatisticsEnabled()) replicationFailures.increment();
             throw e;
          } catch (Throwable th) {
             log.unexpectedErrorReplicating(th);
-            if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
+            if (isStatisticsEnabled()) replicationFailures.increment();
             throw new CacheException(th);
          } finally {
             if (statisticsEnabled) {
                long timeTaken = System.currentTimeMillis() - startTime;
-               totalReplicationTime.getAndAdd(timeTaken);
+               totalReplicationTime.add(timeTaken);
             }
          }
       }
@@ -354,9 +354,9 @@ public class RpcManagerImpl implements RpcManager {
    @ManagedOperation(description = "Resets statistics gathered by this component")
    @Operation(displayName = "Reset statistics")
    public void resetStatistics() {
-      replicationCount.set(0);
-      replicationFailures.set(0);
-      totalReplicationTime.set(0);
+      replicationCount.reset();
+      replicationFailures.reset();
+      totalReplicationTime.reset();
    }
 
    @ManagedAttribute(description = "Number of successful replications")
@@ -404,17 +404,19 @@ public class RpcManagerImpl implements RpcManager {
    }
 
    private double calculateSuccessRatio() {
-      double totalCount = replicationCount.get() + replicationFailures.get();
-      return replicationCount.get() / totalCount;
+      double count = replicationCount.get();
+      double totalCount = count + replicationFailures.get();
+      return totalCount == 0 ? 0 : count / totalCount;
    }
 
    @ManagedAttribute(description = "The average time spent in the transport layer, in milliseconds")
    @Metric(displayName = "Average time spent in the transport layer", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
    public long getAverageReplicationTime() {
-      if (replicationCount.get() == 0) {
+      long count = replicationCount.get();
+      if (count == 0) {
          return 0;
       }
-      return totalReplicationTime.get() / replicationCount.get();
+      return totalReplicationTime.get() / count;
    }
 
    // mainly for unit testing
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting.transport;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders addresses by their distance, in the cluster topology, from an origin address: the origin itself first, then
+ * members on the same machine, then on the same rack, then on the same site, and lastly members on other sites.
+ * <p/>
+ * Members that are not {@link TopologyAwareAddress}es, or an origin that isn't, are all considered equally far away,
+ * so sorting with this comparator has no effect on clusters without topology information.
+ *
+ * @since 5.0
+ */
+public class TopologyDistanceComparator implements Comparator<Address> {
+
+   public static final int SAME_NODE = 0;
+   public static final int SAME_MACHINE = 1;
+   public static final int SAME_RACK = 2;
+   public static final int SAME_SITE = 3;
+   public static final int REMOTE_SITE = 4;
+
+   private final Address origin;
+
+   public TopologyDistanceComparator(Address origin) {
+      this.origin = origin;
+   }
+
+   public int compare(Address a1, Address a2) {
+      return distance(origin, a1) - distance(origin, a2);
+   }
+
+   /**
+    * @return one of {@link #SAME_NODE}, {@link #SAME_MACHINE}, {@link #SAME_RACK}, {@link #SAME_SITE} or {@link
+    *         #REMOTE_SITE}
+    */
+   public static int distance(Address from, Address to) {
+      if (from == null || to == null) return REMOTE_SITE;
+      if (from.equals(to)) return SAME_NODE;
+      if (!(from instanceof TopologyAwareAddress) || !(to instanceof TopologyAwareAddress)) return REMOTE_SITE;
+      TopologyAwareAddress f = (TopologyAwareAddress) from;
+      TopologyAwareAddress t = (TopologyAwareAddress) to;
+      if (f.isSameMachine(t)) return SAME_MACHINE;
+      if (f.isSameRack(t)) return SAME_RACK;
+      if (f.isSameSite(t)) return SAME_SITE;
+      return REMOTE_SITE;
+   }
+
+   /**
+    * Sorts addresses nearest first.  The sort is stable, so addresses at the same distance keep their relative order,
+    * e.g. the order in which the consistent hash returned them.
+    *
+    * @return a new list containing the same addresses
+    */
+   public List<Address> sort(Collection<Address> addresses) {
+      List<Address> sorted = new ArrayList<Address>(addresses);
+      Collections.sort(sorted, this);
+      return sorted;
+   }
+
+   /**
+    * Splits addresses into groups of equal distance from the origin, nearest group first.
+    */
+   public List<List<Address>> groupByDistance(Collection<Address> addresses) {
+      List<List<Address>> groups = new ArrayList<List<Address>>();
+      int lastDistance = -1;
+      for (Address a : sort(addresses)) {
+         int d = distance(origin, a);
+         if (d != lastDistance) {
+            groups.add(new ArrayList<Address>());
+            lastDistance = d;
+         }
+         groups.get(groups.size() - 1).add(a);
+      }
+      return groups;
+   }
+}
@@ -25,6 +25,7 @@ package org.infinispan.remoting.transport.jgroups;
 import org.infinispan.CacheException;
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.remoting.InboundCommandExecutor;
 import org.infinispan.remoting.InboundInvocationHandler;
 import org.infinispan.remoting.RpcException;
 import org.infinispan.remoting.responses.ExceptionResponse;
@@ -39,9 +40,11 @@ import org.jgroups.Address;
 import org.jgroups.Channel;
 import org.jgroups.Message;
 import org.jgroups.blocks.GroupRequest;
+import org.jgroups.blocks.RequestCorrelator;
 import org.jgroups.blocks.RequestOptions;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.blocks.RspFilter;
+import org.jgroups.conf.ClassConfigurator;
 import org.jgroups.util.Buffer;
 import org.jgroups.util.FutureListener;
 import org.jgroups.util.NotifyingFuture;
@@ -73,20 +76,36 @@ import static org.infinispan.util.Util.*;
 public class CommandAwareRpcDispatcher extends RpcDispatcher {
    ExecutorService asyncExecutor;
    InboundInvocationHandler inboundInvocationHandler;
+   InboundCommandExecutor inboundExecutor;
    JGroupsDistSync distributedSync;
    long distributedSyncTimeout;
    private static final Log log = LogFactory.getLog(CommandAwareRpcDispatcher.class);
    private static final boolean trace = log.isTraceEnabled();
    private static final boolean FORCE_MCAST = Boolean.getBoolean("infinispan.unsafe.force_multicast");
+   private static final short CORRELATOR_ID = ClassConfigurator.getProtocolId(RequestCorrelator.class);
 
    public CommandAwareRpcDispatcher(Channel channel,
                                     JGroupsTransport transport,
                                     ExecutorService asyncExecutor,
                                     InboundInvocationHandler inboundInvocationHandler,
                                     JGroupsDistSync distributedSync, long distributedSyncTimeout) {
+      this(channel, transport, asyncExecutor, inboundInvocationHandler, null, distributedSync, distributedSyncTimeout);
+   }
+
+   /**
+    * @param inboundExecutor if not null, commands received as regular, i.e. non OOB, messages are executed by this
+    *                        executor, ordered by key, instead of on the JGroups thread delivering them
+    */
+   public CommandAwareRpcDispatcher(Channel channel,
+                                    JGroupsTransport transport,
+                                    ExecutorService asyncExecutor,
+                                    InboundInvocationHandler inboundInvocationHandler,
+                                    InboundCommandExecutor inboundExecutor,
+                                    JGroupsDistSync distributedSync, long distributedSyncTimeout) {
       super(channel, transport, transport, transport);
       this.asyncExecutor = asyncExecutor;
       this.inboundInvocationHandler = inboundInvocationHandler;
+      this.inboundExecutor = inboundExecutor;
       this.distributedSync = distributedSync;
       this.distributedSyncTimeout = distributedSyncTimeout;
    }
@@ -140,8 +159,11 @@ public class CommandAwareRpcDispatcher extends RpcDispatcher {
       if (isValid(req)) {
          try {
             ReplicableCommand cmd = (ReplicableCommand) req_marshaller.objectFromByteBuffer(req.getBuffer(), req.getOffset(), req.getLength());
-            if (cmd instanceof CacheRpcCommand)
+            if (cmd instanceof CacheRpcCommand) {
+               if (inboundExecutor != null && !req.isFlagSet(Message.OOB))
+                  return executeOrdered((CacheRpcCommand) cmd, req);
                return executeCommand((CacheRpcCommand) cmd, req);
+            }
             else
                return cmd.perform(null);
          } catch (Throwable x) {
@@ -153,6 +175,32 @@ public class CommandAwareRpcDispatcher extends RpcDispatcher {
       }
    }
 
+   /**
+    * Regular messages from a given member are delivered one at a time, so a command blocking on a lock or a cache
+    * store would hold up every command sent after it.  Hands the command over to the inbound executor instead, which
+    * only orders it against commands from the same sender on the same keys.  JGroups cannot send a response asynchronously, so if the
+    * sender waits for one the delivering thread still waits for the command to complete; otherwise it returns
+    * straight away.
+    */
+   private Response executeOrdered(final CacheRpcCommand cmd, final Message req) throws Throwable {
+      // the request correlator that delivered the message knows whether the sender waits for a response
+      RequestCorrelator.Header hdr = (RequestCorrelator.Header) req.getHeader(CORRELATOR_ID);
+      final boolean responseExpected = hdr == null || hdr.rsp_expected;
+      Future<Response> future = inboundExecutor.submit(JGroupsTransport.fromJGroupsAddress(req.getSrc()), cmd, new Callable<Response>() {
+         @Override
+         public Response call() {
+            try {
+               return executeCommand(cmd, req);
+            } catch (Throwable x) {
+               if (!responseExpected) log.problemExecutingInboundCommand(cmd, x);
+               else if (trace) log.trace("Problems invoking command.", x);
+               return new ExceptionResponse(new CacheException("Problems invoking command.", x));
+            }
+         }
+      });
+      return responseExpected ? future.get() : null;
+   }
+
    private Response executeCommand(CacheRpcCommand cmd, Message req) throws Throwable {
       if (cmd == null) throw new NullPointerException("Unable to execute a null command!  Message was " + req);
       if (trace) log.tracef("Attempting to execute command: %s [sender=%s]", cmd, req.getSrc());
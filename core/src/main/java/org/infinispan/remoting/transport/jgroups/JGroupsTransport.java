@@ -28,6 +28,7 @@ import org.infinispan.config.parsing.XmlConfigHelper;
 import org.infinispan.jmx.JmxUtil;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifier;
+import org.infinispan.remoting.InboundCommandExecutor;
 import org.infinispan.remoting.InboundInvocationHandler;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.rpc.ResponseFilter;
@@ -66,7 +67,11 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  * passing in one of the following properties: <ul> <li><tt>configurationString</tt> - a JGroups configuration
  * String</li> <li><tt>configurationXml</tt> - JGroups configuration XML as a String</li> <li><tt>configurationFile</tt>
  * - String pointing to a JGroups XML configuration file</li> <li><tt>channelLookup</tt> - Fully qualified class name of
- * a {@link org.infinispan.remoting.transport.jgroups.JGroupsChannelLookup} instance</li> </ul> These are normally
+ * a {@link org.infinispan.remoting.transport.jgroups.JGroupsChannelLookup} instance</li> </ul> In addition, the
+ * <tt>inboundThreads</tt> property enables executing commands received as regular messages on up to that many threads
+ * per sender, ordered by key, rather than on the JGroups threads delivering them (see
+ * {@link org.infinispan.remoting.InboundCommandExecutor}).
+ * It defaults to 0, which disables this.  These are normally
  * passed in as Properties in {@link org.infinispan.config.GlobalConfiguration#setTransportProperties(java.util.Properties)}
  * or in the Infinispan XML configuration file.
  *
@@ -79,6 +84,7 @@ public class JGroupsTransport extends AbstractTransport implements ExtendedMembe
    public static final String CONFIGURATION_XML = "configurationXml";
    public static final String CONFIGURATION_FILE = "configurationFile";
    public static final String CHANNEL_LOOKUP = "channelLookup";
+   public static final String INBOUND_THREADS = "inboundThreads";
    protected static final String DEFAULT_JGROUPS_CONFIGURATION_FILE = "jgroups-udp.xml";
 
    static final Log log = LogFactory.getLog(JGroupsTransport.class);
@@ -87,6 +93,7 @@ public class JGroupsTransport extends AbstractTransport implements ExtendedMembe
 
    protected boolean startChannel = true, stopChannel = true;
    private CommandAwareRpcDispatcher dispatcher;
+   private InboundCommandExecutor inboundExecutor;
    protected TypedProperties props;
    protected InboundInvocationHandler inboundInvocationHandler;
    protected StreamingMarshaller marshaller;
@@ -213,6 +220,11 @@ public class JGroupsTransport extends AbstractTransport implements ExtendedMembe
          dispatcher.stop();
       }
 
+      if (inboundExecutor != null) {
+         inboundExecutor.stop();
+         inboundExecutor = null;
+      }
+
       asyncExecutor.shutdown();
 
       members = Collections.emptyList();
@@ -252,8 +264,11 @@ public class JGroupsTransport extends AbstractTransport implements ExtendedMembe
 
    private void initChannelAndRPCDispatcher() throws CacheException {
       initChannel();
+      int inboundThreads = props == null ? 0 : props.getIntProperty(INBOUND_THREADS, 0);
+      if (inboundThreads > 0)
+         inboundExecutor = new InboundCommandExecutor(inboundThreads, "InboundCommandExecutor-" + configuration.getClusterName());
       dispatcher = new CommandAwareRpcDispatcher(channel, this,
-              asyncExecutor, inboundInvocationHandler, flushTracker, distributedSyncTimeout);
+              asyncExecutor, inboundInvocationHandler, inboundExecutor, flushTracker, distributedSyncTimeout);
       MarshallerAdapter adapter = new MarshallerAdapter(marshaller);
       dispatcher.setRequestMarshaller(adapter);
       dispatcher.setResponseMarshaller(adapter);
@@ -519,6 +534,9 @@ public class JGroupsTransport extends AbstractTransport implements ExtendedMembe
       // we need a defensive copy anyway
       members = fromJGroupsAddressList(newMembers);
 
+      InboundCommandExecutor inboundExecutor = this.inboundExecutor;
+      if (inboundExecutor != null) inboundExecutor.retainSenders(members);
+
       // Now that we have a view, figure out if we are the coordinator
       coordinator = members.get(0).equals(getAddress());
 
@@ -22,6 +22,7 @@
  */
 package org.infinispan.statetransfer;
 
+import org.infinispan.commands.remote.CacheRpcCommand;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
 
@@ -37,4 +38,15 @@ public interface StateTransferManager {
    void generateState(OutputStream out) throws StateTransferException;
 
    void applyState(InputStream in) throws StateTransferException;
+
+   /**
+    * Logs a command received while this node is fetching state in non-blocking mode, so that it is applied after the
+    * state instead of blocking its sender until the state transfer completes.  A prepare is the exception: its sender
+    * needs to know whether it could be applied, so this method only returns once it has been replayed.
+    *
+    * @param command the command to log
+    * @return true if the command was logged, false if no non-blocking state transfer is in progress
+    * @throws org.infinispan.CacheException if the command is a prepare which could not be applied
+    */
+   boolean logIfStateTransferInProgress(CacheRpcCommand command);
 }
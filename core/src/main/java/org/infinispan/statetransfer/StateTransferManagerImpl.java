@@ -23,7 +23,9 @@
 package org.infinispan.statetransfer;
 
 import org.infinispan.AdvancedCache;
+import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.remote.CacheRpcCommand;
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.config.Configuration;
@@ -57,9 +59,14 @@ import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.infinispan.context.Flag.CACHE_MODE_LOCAL;
@@ -83,11 +90,17 @@ public class StateTransferManagerImpl implements StateTransferManager {
    private static final boolean trace = log.isTraceEnabled();
    private static final Byte DELIMITER = (byte) 123;
 
-   boolean transientState, persistentState, alwaysProvideTransientState;
+   boolean transientState, persistentState, alwaysProvideTransientState, nonBlocking;
    int maxNonProgressingLogWrites;
+   int chunkSize;
    long flushTimeout;
    volatile Address stateSender;
 
+   // commands received while a non-blocking state transfer is in progress, replayed in arrival order afterwards
+   private final Queue<LoggedCommand> modificationLog = new LinkedList<LoggedCommand>();
+   // guarded by modificationLog
+   private boolean loggingModifications;
+
    @Inject
    @SuppressWarnings("unchecked")
    public void injectDependencies(RpcManager rpcManager, AdvancedCache cache, Configuration configuration,
@@ -117,6 +130,8 @@ public class StateTransferManagerImpl implements StateTransferManager {
       persistentState = cs != null && clm.isEnabled() && clm.isFetchPersistentState() && !clm.isShared();
       maxNonProgressingLogWrites = configuration.getStateRetrievalMaxNonProgressingLogWrites();
       flushTimeout = configuration.getStateRetrievalLogFlushTimeout();
+      nonBlocking = configuration.isStateRetrievalNonBlocking();
+      chunkSize = configuration.getStateRetrievalChunkSize();
 
       if (transientState || persistentState) {
          long startTime = 0;
@@ -125,7 +140,20 @@ public class StateTransferManagerImpl implements StateTransferManager {
             startTime = System.currentTimeMillis();
          }
 
-         rpcManager.retrieveState(cache.getName(), configuration.getStateRetrievalTimeout());
+         if (nonBlocking) {
+            // start logging before asking for state, anything the provider misses will be sent to us directly
+            synchronized (modificationLog) {
+               loggingModifications = true;
+            }
+            try {
+               rpcManager.retrieveState(cache.getName(), configuration.getStateRetrievalTimeout());
+               replayLoggedModifications();
+            } finally {
+               abortLoggedModifications();
+            }
+         } else {
+            rpcManager.retrieveState(cache.getName(), configuration.getStateRetrievalTimeout());
+         }
 
          if (log.isDebugEnabled()) {
             long duration = System.currentTimeMillis() - startTime;
@@ -140,7 +168,8 @@ public class StateTransferManagerImpl implements StateTransferManager {
       try {
          boolean canProvideState = (txLogActivated = transactionLog.activate());
          if (log.isDebugEnabled()) log.debugf("Generating state.  Can provide? %s", canProvideState);
-         oo = marshaller.startObjectOutput(out, false);
+         // chunks are marshalled separately while this stream is open, so it cannot use the thread's marshaller
+         oo = marshaller.startObjectOutput(out, nonBlocking);
 
          // If we can generate state, we've started up 
          marshaller.objectToObjectStream(true, oo);
@@ -148,11 +177,19 @@ public class StateTransferManagerImpl implements StateTransferManager {
 
          if (canProvideState) {
             delimit(oo);
-            if (transientState || alwaysProvideTransientState) generateInMemoryState(oo); // always provide in-memory state if requested.  ISPN-610.
+            if (transientState || alwaysProvideTransientState) { // always provide in-memory state if requested.  ISPN-610.
+               if (nonBlocking)
+                  generateInMemoryStateInChunks(oo);
+               else
+                  generateInMemoryState(oo);
+            }
             delimit(oo);
             if (persistentState) generatePersistentState(oo);
             delimit(oo);
-            generateTransactionLog(oo);
+            if (nonBlocking)
+               generateTransactionLogWithoutFlush(oo);
+            else
+               generateTransactionLog(oo);
 
             if (log.isDebugEnabled()) log.debug("State generated, closing object stream");
          } else {
@@ -169,23 +206,42 @@ public class StateTransferManagerImpl implements StateTransferManager {
       }
    }
 
+   private void writeCommitLog(ObjectOutput oo) throws Exception {
+      if (trace) log.tracef("Transaction log size is %s", transactionLog.size());
+      for (int nonProgress = 0, size = transactionLog.size(); size > 0;) {
+         if (trace) log.tracef("Tx Log remaining entries = %d", size);
+         transactionLog.writeCommitLog(marshaller, oo);
+         int newSize = transactionLog.size();
+
+         // If size did not decrease then we did not make progress, and could be wasting
+         // our time. Limit this to the specified max.
+         if (newSize >= size && ++nonProgress >= maxNonProgressingLogWrites)
+            break;
+
+         size = newSize;
+      }
+   }
+
+   /**
+    * Writes the transaction log in the same format as {@link #generateTransactionLog(java.io.ObjectOutput)}, but
+    * without blocking the cluster: transactions committed after the log was written reach the joiner directly, and
+    * the joiner replays them once the state has been applied.
+    */
+   private void generateTransactionLogWithoutFlush(ObjectOutput oo) throws Exception {
+      writeCommitLog(oo);
+      delimit(oo);
+      // nothing is committed after a flush, since there is none
+      delimit(oo);
+      transactionLog.writePendingPrepares(marshaller, oo);
+      delimit(oo);
+      oo.flush();
+   }
+
    private void generateTransactionLog(ObjectOutput oo) throws Exception {
       DistributedSync distributedSync = rpcManager.getTransport().getDistributedSync();
 
       try {
-         if (trace) log.tracef("Transaction log size is %s", transactionLog.size());
-         for (int nonProgress = 0, size = transactionLog.size(); size > 0;) {
-            if (trace) log.tracef("Tx Log remaining entries = %d", size);
-            transactionLog.writeCommitLog(marshaller, oo);
-            int newSize = transactionLog.size();
-
-            // If size did not decrease then we did not make progress, and could be wasting
-            // our time. Limit this to the specified max.
-            if (newSize >= size && ++nonProgress >= maxNonProgressingLogWrites)
-               break;
-
-            size = newSize;
-         }
+         writeCommitLog(oo);
 
          // Wait on incoming and outgoing threads to line-up in front of
          // the distributed sync.
@@ -270,14 +326,19 @@ public class StateTransferManagerImpl implements StateTransferManager {
       if (log.isDebugEnabled()) log.debug("Applying state");
       ObjectInput oi = null;
       try {
-         oi = marshaller.startObjectInput(in, false);
+         oi = marshaller.startObjectInput(in, nonBlocking);
          // Started flag controls whether remote cache was started and hence provided state
          boolean started = (Boolean) marshaller.objectFromObjectStream(oi);
          if (started) {
             boolean canProvideState = (Boolean) marshaller.objectFromObjectStream(oi);
             if (canProvideState) {
                assertDelimited(oi);
-               if (transientState) applyInMemoryState(oi);
+               if (transientState) {
+                  if (nonBlocking)
+                     applyInMemoryStateInChunks(oi);
+                  else
+                     applyInMemoryState(oi);
+               }
                assertDelimited(oi);
                if (persistentState) applyPersistentState(oi);
                assertDelimited(oi);
@@ -327,6 +388,127 @@ public class StateTransferManagerImpl implements StateTransferManager {
       }
    }
 
+   /**
+    * Writes the in-memory state as a sequence of independently marshalled chunks of at most <code>chunkSize</code>
+    * entries, terminated by an empty chunk. Each chunk is written as raw bytes so that the stream does not keep
+    * references to the entries already sent.
+    */
+   private void generateInMemoryStateInChunks(ObjectOutput oo) throws StateTransferException {
+      try {
+         int numEntries = 0;
+         List<InternalCacheEntry> chunk = new ArrayList<InternalCacheEntry>(chunkSize);
+         for (InternalCacheEntry e : dataContainer) {
+            if (!e.isExpired()) {
+               chunk.add(e);
+               if (chunk.size() >= chunkSize) {
+                  numEntries += writeChunk(chunk, oo);
+                  chunk = new ArrayList<InternalCacheEntry>(chunkSize);
+               }
+            }
+         }
+         if (!chunk.isEmpty()) numEntries += writeChunk(chunk, oo);
+         oo.writeInt(0);
+         if (log.isDebugEnabled()) log.debugf("Wrote %s StoredEntries to stream", numEntries);
+      } catch (Exception e) {
+         throw new StateTransferException(e);
+      }
+   }
+
+   private int writeChunk(List<InternalCacheEntry> chunk, ObjectOutput oo) throws Exception {
+      byte[] bytes = marshaller.objectToByteBuffer(chunk);
+      oo.writeInt(bytes.length);
+      oo.write(bytes);
+      oo.flush();
+      return chunk.size();
+   }
+
+   @SuppressWarnings("unchecked")
+   private void applyInMemoryStateInChunks(ObjectInput i) throws StateTransferException {
+      dataContainer.clear();
+      try {
+         for (int length = i.readInt(); length > 0; length = i.readInt()) {
+            byte[] bytes = new byte[length];
+            i.readFully(bytes);
+            List<InternalCacheEntry> chunk = (List<InternalCacheEntry>) marshaller.objectFromByteBuffer(bytes);
+            for (InternalCacheEntry se : chunk)
+               cache.withFlags(CACHE_MODE_LOCAL, SKIP_SHARED_CACHE_STORE).put(se.getKey(), se.getValue(), se.getLifespan(), MILLISECONDS, se.getMaxIdle(), MILLISECONDS);
+            if (trace) log.tracef("Applied a chunk of %d entries", chunk.size());
+         }
+      } catch (Exception e) {
+         dataContainer.clear();
+         throw new StateTransferException(e);
+      }
+   }
+
+   @Override
+   public boolean logIfStateTransferInProgress(CacheRpcCommand command) {
+      LoggedCommand logged = new LoggedCommand(command);
+      synchronized (modificationLog) {
+         if (!loggingModifications) return false;
+         modificationLog.add(logged);
+      }
+      if (trace) log.tracef("Logged %s received during state transfer", command);
+      // the sender must learn whether the prepare could be applied here, so that it rolls the transaction back if not
+      if (command instanceof PrepareCommand) logged.awaitReplay(configuration.getStateRetrievalTimeout());
+      return true;
+   }
+
+   /**
+    * Applies the commands logged during a non-blocking state transfer, in the order they were received, and stops
+    * logging once the log is empty. Commands arriving after that are handled normally once the cache has started.
+    */
+   private void replayLoggedModifications() throws StateTransferException {
+      int replayed = 0;
+      while (true) {
+         LoggedCommand logged;
+         synchronized (modificationLog) {
+            logged = modificationLog.poll();
+            if (logged == null) {
+               loggingModifications = false;
+               break;
+            }
+         }
+         replay(logged);
+         replayed++;
+      }
+      if (log.isDebugEnabled()) log.debugf("Replayed %d modifications received during state transfer", replayed);
+   }
+
+   /**
+    * Stops logging, and fails the commands still logged, if the state transfer did not complete.
+    */
+   private void abortLoggedModifications() {
+      synchronized (modificationLog) {
+         loggingModifications = false;
+         for (LoggedCommand logged : modificationLog)
+            logged.replayed(new CacheException("State transfer failed before " + logged.command + " could be applied"));
+         modificationLog.clear();
+      }
+   }
+
+   private void replay(LoggedCommand logged) throws StateTransferException {
+      CacheRpcCommand command = logged.command;
+      // the provider may already have sent this transaction as a pending prepare
+      if (command instanceof PrepareCommand
+            && txTable.getRemoteTransaction(((PrepareCommand) command).getGlobalTransaction()) != null) {
+         if (trace) log.tracef("Not replaying %s, the transaction was part of the state", command);
+         logged.replayed(null);
+         return;
+      }
+      try {
+         commandsFactory.initializeReplicableCommand(command, true);
+         command.perform(null);
+         logged.replayed(null);
+      } catch (Throwable t) {
+         logged.replayed(t);
+         // the sender of a prepare is told it failed, but any other command has already been applied by the rest of
+         // the cluster, so this node cannot join with the state it has
+         if (!(command instanceof PrepareCommand))
+            throw new StateTransferException("Unable to apply " + command + " received during state transfer", t);
+         log.problemReplayingLoggedModification(command, t);
+      }
+   }
+
    private void applyPersistentState(ObjectInput i) throws StateTransferException {
       try {
          // always use the unclosable stream delegate to ensure the impl doesn't close the stream
@@ -364,4 +546,34 @@ public class StateTransferManagerImpl implements StateTransferManager {
       if (o instanceof Exception) throw new StateTransferException((Exception) o);
       if (!DELIMITER.equals(o)) throw new StateTransferException("Expected a delimiter, recieved " + o);
    }
+
+   /**
+    * A command received during a non-blocking state transfer, which the thread that received it may wait for.
+    */
+   private static class LoggedCommand {
+      final CacheRpcCommand command;
+      final CountDownLatch replayed = new CountDownLatch(1);
+      volatile Throwable failure;
+
+      LoggedCommand(CacheRpcCommand command) {
+         this.command = command;
+      }
+
+      void replayed(Throwable failure) {
+         this.failure = failure;
+         replayed.countDown();
+      }
+
+      void awaitReplay(long timeout) {
+         try {
+            if (!replayed.await(timeout, MILLISECONDS))
+               throw new CacheException("Timed out waiting for " + command + " to be applied after state transfer");
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted waiting for " + command + " to be applied after state transfer", e);
+         }
+         if (failure != null)
+            throw new CacheException("Unable to apply " + command + " after state transfer", failure);
+      }
+   }
 }
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of latencies in nanoseconds, cheap enough to be updated on every cache operation.
+ * <p/>
+ * Values are bucketed by their highest set bit, and each power of two is further split into {@link #SUB_BUCKETS}
+ * linear sub-buckets, so percentiles are reported with a relative error of at most 1/{@link #SUB_BUCKETS} over the
+ * whole range of a long.
+ * <p/>
+ * To avoid contention between recording threads, counts are kept in a number of stripes, each selected by the id of
+ * the recording thread.  Stripes are only allocated once a thread records into them, and are merged when a {@link
+ * Snapshot} is taken.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class LatencyHistogram {
+
+   static final int SUB_BUCKET_BITS = 4;
+   static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+   // the slot after the last bucket holds the sum of all recorded values
+   private static final int SUM = BUCKETS;
+
+   private final AtomicReferenceArray<AtomicLongArray> stripes;
+   private final int stripeMask;
+
+   public LatencyHistogram() {
+      this(Runtime.getRuntime().availableProcessors());
+   }
+
+   public LatencyHistogram(int concurrencyLevel) {
+      int numStripes = 1;
+      while (numStripes < concurrencyLevel && numStripes < 16) numStripes <<= 1;
+      stripes = new AtomicReferenceArray<AtomicLongArray>(numStripes);
+      stripeMask = numStripes - 1;
+   }
+
+   /**
+    * Records a latency.
+    *
+    * @param nanos latency in nanoseconds.  Negative values, which can be reported by {@link System#nanoTime()} on some
+    *              platforms, are recorded as 0.
+    */
+   public void record(long nanos) {
+      if (nanos < 0) nanos = 0;
+      AtomicLongArray stripe = stripe((int) Thread.currentThread().getId() & stripeMask);
+      stripe.incrementAndGet(bucketFor(nanos));
+      stripe.addAndGet(SUM, nanos);
+   }
+
+   private AtomicLongArray stripe(int index) {
+      AtomicLongArray stripe = stripes.get(index);
+      if (stripe == null) {
+         stripe = new AtomicLongArray(BUCKETS + 1);
+         if (!stripes.compareAndSet(index, null, stripe)) stripe = stripes.get(index);
+      }
+      return stripe;
+   }
+
+   /**
+    * @return a merged view of all latencies recorded so far
+    */
+   public Snapshot snapshot() {
+      long[] counts = new long[BUCKETS];
+      long sum = 0;
+      for (int i = 0; i < stripes.length(); i++) {
+         AtomicLongArray stripe = stripes.get(i);
+         if (stripe == null) continue;
+         for (int b = 0; b < BUCKETS; b++) counts[b] += stripe.get(b);
+         sum += stripe.get(SUM);
+      }
+      return new Snapshot(counts, sum);
+   }
+
+   /**
+    * Clears all recorded latencies.  Latencies recorded concurrently with a reset may or may not be cleared.
+    */
+   public void reset() {
+      for (int i = 0; i < stripes.length(); i++) {
+         AtomicLongArray stripe = stripes.get(i);
+         if (stripe == null) continue;
+         for (int b = 0; b <= BUCKETS; b++) stripe.set(b, 0);
+      }
+   }
+
+   static int bucketFor(long value) {
+      if (value < SUB_BUCKETS) return (int) value;
+      int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+      int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+   }
+
+   static long lowestValueIn(int bucket) {
+      if (bucket < SUB_BUCKETS) return bucket;
+      int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      long subBucket = bucket % SUB_BUCKETS;
+      return (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+   }
+
+   static long highestValueIn(int bucket) {
+      if (bucket < SUB_BUCKETS) return bucket;
+      int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      return lowestValueIn(bucket) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+   }
+
+   /**
+    * An immutable, merged view of a {@link LatencyHistogram}.
+    */
+   @Immutable
+   public static class Snapshot {
+      private final long[] counts;
+      private final long count;
+      private final long sum;
+
+      Snapshot(long[] counts, long sum) {
+         this.counts = counts;
+         this.sum = sum;
+         long c = 0;
+         for (long bucketCount : counts) c += bucketCount;
+         this.count = c;
+      }
+
+      /**
+       * @return number of latencies recorded
+       */
+      public long getCount() {
+         return count;
+      }
+
+      /**
+       * @return mean latency, in nanoseconds, or 0 if nothing was recorded
+       */
+      public long getMean() {
+         return count == 0 ? 0 : sum / count;
+      }
+
+      /**
+       * Returns the latency below which the given percentage of recorded latencies fall.  The value reported is the
+       * upper bound of the bucket containing the percentile, so it may overestimate the actual latency by up to
+       * 1/{@link LatencyHistogram#SUB_BUCKETS}.
+       *
+       * @param percentile a percentile between 0 and 100, e.g. 99.9
+       * @return latency in nanoseconds, or 0 if nothing was recorded
+       */
+      public long getPercentile(double percentile) {
+         if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, but was " + percentile);
+         if (count == 0) return 0;
+         long rank = (long) Math.ceil(count * percentile / 100);
+         if (rank < 1) rank = 1;
+         long seen = 0;
+         for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) return highestValueIn(b);
+         }
+         return highestValueIn(counts.length - 1);
+      }
+
+      @Override
+      public String toString() {
+         return "count=" + count + ", mean=" + getMean() + "ns, p50=" + getPercentile(50) + "ns, p99=" +
+               getPercentile(99) + "ns, p99.9=" + getPercentile(99.9) + "ns";
+      }
+   }
+}
@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Holds the {@link LatencyHistogram}s of a cache, one per {@link Operation}.  Components measuring an operation should
+ * check {@link #isEnabled()} before reading the clock, so that no overhead is incurred when latency histograms are
+ * disabled.
+ *
+ * @since 5.0
+ * @see org.infinispan.config.Configuration#isLatencyHistogramsEnabled()
+ */
+public class LatencyStatistics {
+
+   /**
+    * Operations whose latencies are recorded
+    */
+   public static enum Operation {
+      GET_HIT, GET_MISS, PUT, REMOVE, REMOTE_GET, PREPARE, COMMIT, CACHE_LOAD, CACHE_STORE
+   }
+
+   private static final Operation[] OPERATIONS = Operation.values();
+
+   private final LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+   private Configuration configuration;
+   private volatile boolean enabled;
+
+   public LatencyStatistics() {
+      for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+   }
+
+   @Inject
+   public void injectDependencies(Configuration configuration) {
+      this.configuration = configuration;
+   }
+
+   @Start
+   public void start() {
+      enabled = configuration.isLatencyHistogramsEnabled();
+   }
+
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+   }
+
+   /**
+    * Records the latency of an operation.
+    *
+    * @param operation operation measured
+    * @param nanos     latency in nanoseconds
+    */
+   public void record(Operation operation, long nanos) {
+      if (enabled) histograms[operation.ordinal()].record(nanos);
+   }
+
+   /**
+    * Records the latency of an operation started at the given time.
+    *
+    * @param operation operation measured
+    * @param start     value of {@link System#nanoTime()} when the operation started
+    */
+   public void recordSince(Operation operation, long start) {
+      if (enabled) histograms[operation.ordinal()].record(System.nanoTime() - start);
+   }
+
+   public LatencyHistogram.Snapshot snapshot(Operation operation) {
+      return histograms[operation.ordinal()].snapshot();
+   }
+
+   public Map<Operation, LatencyHistogram.Snapshot> snapshots() {
+      Map<Operation, LatencyHistogram.Snapshot> snapshots = new EnumMap<Operation, LatencyHistogram.Snapshot>(Operation.class);
+      for (Operation operation : OPERATIONS) snapshots.put(operation, snapshot(operation));
+      return snapshots;
+   }
+
+   public void reset() {
+      for (LatencyHistogram histogram : histograms) histogram.reset();
+   }
+}
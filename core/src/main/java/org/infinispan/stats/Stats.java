@@ -85,4 +85,16 @@ public interface Stats {
     * @return Number of cache eviction.
     */   
    long getEvictions();
+
+   /**
+    * Returns a latency percentile of an operation, as recorded by the cache's latency histograms.  The value returned
+    * is the upper bound of the histogram bucket the percentile falls into, so it overestimates the exact percentile by
+    * at most 1/16th.
+    *
+    * @param operation  operation whose latency is requested
+    * @param percentile percentile between 0 and 100, e.g. 99.9
+    * @return latency in nanoseconds, 0 if no operation was recorded, or -1 if latency histograms are disabled
+    * @since 5.0
+    */
+   long getLatencyPercentile(LatencyStatistics.Operation operation, double percentile);
 }
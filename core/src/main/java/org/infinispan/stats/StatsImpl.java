@@ -22,7 +22,9 @@
  */
 package org.infinispan.stats;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import net.jcip.annotations.Immutable;
 
@@ -48,6 +50,7 @@ public class StatsImpl implements Stats {
    final long removeHits;
    final long removeMisses;
    final long evictions;
+   final Map<LatencyStatistics.Operation, LatencyHistogram.Snapshot> latencies;
    
    public StatsImpl(InterceptorChain chain) {
       List<CommandInterceptor> interceptors = chain.getInterceptorsWhichExtend(CacheMgmtInterceptor.class);
@@ -63,6 +66,11 @@ public class StatsImpl implements Stats {
          removeHits = mgmtInterceptor.getRemoveHits();
          removeMisses = mgmtInterceptor.getRemoveMisses();
          evictions = mgmtInterceptor.getEvictions();
+         latencies = new EnumMap<LatencyStatistics.Operation, LatencyHistogram.Snapshot>(LatencyStatistics.Operation.class);
+         if (mgmtInterceptor.isLatencyHistogramsEnabled()) {
+            for (LatencyStatistics.Operation operation : LatencyStatistics.Operation.values())
+               latencies.put(operation, mgmtInterceptor.getLatencySnapshot(operation));
+         }
       } else {
          timeSinceStart = -1;
          currentNumberOfEntries = -1;
@@ -74,6 +82,7 @@ public class StatsImpl implements Stats {
          removeHits = -1;
          removeMisses = -1;
          evictions = -1;
+         latencies = null;
       }
    }
 
@@ -117,4 +126,9 @@ public class StatsImpl implements Stats {
       return evictions;
    }
 
+   public long getLatencyPercentile(LatencyStatistics.Operation operation, double percentile) {
+      if (latencies == null || latencies.isEmpty()) return -1;
+      return latencies.get(operation).getPercentile(percentile);
+   }
+
 }
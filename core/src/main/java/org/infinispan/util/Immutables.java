@@ -509,6 +509,14 @@ public class Immutables {
          throw new UnsupportedOperationException();
       }
 
+      public long getVersion() {
+         return entry.getVersion();
+      }
+
+      public void setVersion(long version) {
+         throw new UnsupportedOperationException();
+      }
+
       public void commit(DataContainer container) {
          throw new UnsupportedOperationException();
       }
@@ -602,6 +610,10 @@ public class Immutables {
          return entry.getMaxIdle();
       }
 
+      public long getVersion() {
+         return entry.getVersion();
+      }
+
       public Object getValue() {
          return entry.getValue();
       }
@@ -40,9 +40,11 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Map;
@@ -136,6 +138,12 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
     */
    static final float DEFAULT_LOAD_FACTOR = 0.75f;
 
+   /**
+    * The initial per-segment table capacity of maps bounded by weight,
+    * whose tables grow as needed.
+    */
+   static final int DEFAULT_WEIGHTED_SEGMENT_CAPACITY = 64;
+
    /**
     * The default concurrency level for this table, used when not
     * otherwise specified in a constructor.
@@ -182,6 +190,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
     */
    final Segment<K,V>[] segments;
 
+   /**
+    * Estimates the weight of mappings when the map is bounded by weight rather than by number of entries, or null
+    */
+   final transient EntrySizeEstimator<K, V> sizeEstimator;
+
    transient Set<K> keySet;
    transient Set<Map.Entry<K,V>> entrySet;
    transient Collection<V> values;
@@ -235,6 +248,14 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       volatile V value;
       final HashEntry<K, V> next;
       volatile Recency state;
+      /**
+       * Weight of this mapping, always 1 unless the map is bounded by weight. Only accessed under the segment lock.
+       */
+      int weight = 1;
+      /**
+       * Set on every read when the map uses {@link Eviction#CLOCK}, cleared by the eviction sweep.
+       */
+      volatile boolean referenced;
 
       HashEntry(K key, int hash, HashEntry<K, V> next, V value) {
          this.key = key;
@@ -281,6 +302,17 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return state;
       }
 
+      /**
+       * Creates a copy of this entry with a different successor, carrying over the weight and recency state.
+       */
+      HashEntry<K, V> copy(HashEntry<K, V> newNext) {
+         HashEntry<K, V> copy = new HashEntry<K, V>(key, hash, newNext, value);
+         copy.weight = weight;
+         copy.state = state;
+         copy.referenced = referenced;
+         return copy;
+      }
+
       @SuppressWarnings("unchecked")
       static <K, V> HashEntry<K, V>[] newArray(int i) {
          return new HashEntry[i];
@@ -309,6 +341,24 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
             return new LIRS<K,V>(s,capacity,capacity*10,lf);
          }
+      },
+      FIFO {
+         @Override
+         public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
+            return new FIFO<K, V>(s,capacity,lf);
+         }
+      },
+      UNORDERED {
+         @Override
+         public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
+            return new Unordered<K, V>(s,capacity,lf);
+         }
+      },
+      CLOCK {
+         @Override
+         public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
+            return new CLOCK<K, V>(s,capacity,lf);
+         }
       };
 
       abstract <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf);
@@ -319,6 +369,17 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       void onEntryChosenForEviction(V internalCacheEntry);
    }
 
+   /**
+    * Estimates the weight of a mapping, typically the number of bytes it retains, so that the map can be bounded by
+    * total weight instead of by number of entries.
+    */
+   public interface EntrySizeEstimator<K, V> {
+      /**
+       * @return the estimated weight of the mapping, a positive number
+       */
+      int estimateSize(K key, V value);
+   }
+
    static final class NullEvictionListener<K, V> implements EvictionListener<K, V> {
       @Override
       public void onEntryEviction(Map<K, V> evicted) {
@@ -377,6 +438,15 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       void onEntryRemove(HashEntry<K, V> e);
 
+      /**
+       * Invoked to notify EvictionPolicy implementation that Segment entries have been replaced by
+       * copies, either while rehashing or while removing an entry further down the same bin.
+       *
+       * @param replacements
+       *            copies keyed by the (identity of the) entries they replace
+       */
+      void onEntriesReplaced(Map<HashEntry<K, V>, HashEntry<K, V>> replacements);
+
       /**
        * Invoked to notify EvictionPolicy implementation that all Segment entries have been
        * cleared.
@@ -428,6 +498,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          // Do nothing.
       }
 
+      @Override
+      public void onEntriesReplaced(Map<HashEntry<K, V>, HashEntry<K, V>> replacements) {
+         // Do nothing.
+      }
+
       @Override
       public boolean thresholdExpired() {
          return false;
@@ -444,12 +519,12 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       private final Segment<K,V> segment;
       private final LinkedList<HashEntry<K, V>> lruQueue;
       private final int maxBatchQueueSize;
-      private final int trimDownSize;
+      private final long trimDownSize;
       private final float batchThresholdFactor;
 
       public LRU(Segment<K,V> s, int capacity, float lf, int maxBatchSize, float batchThresholdFactor) {
          this.segment = s;
-         this.trimDownSize = (int) (capacity * lf);
+         this.trimDownSize = s.isWeighted() ? (long) (s.maxWeight * lf) : (long) (capacity * lf);
          this.maxBatchQueueSize = maxBatchSize > MAX_BATCH_SIZE ? MAX_BATCH_SIZE : maxBatchSize;
          this.batchThresholdFactor = batchThresholdFactor;
          this.accessQueue = new ConcurrentLinkedQueue<HashEntry<K, V>>();
@@ -463,12 +538,13 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             evicted = new HashSet<HashEntry<K, V>>();
          }
          try {
-            for (HashEntry<K, V> e : accessQueue) {
-               if (lruQueue.remove(e)) {
+            for (HashEntry<K, V> accessed : accessQueue) {
+               HashEntry<K, V> e = segment.liveEntry(accessed);
+               if (e != null && lruQueue.remove(e)) {
                   lruQueue.addFirst(e);
                }
             }
-            while (isOverflow()) {
+            while (isOverflow() && !lruQueue.isEmpty()) {
                HashEntry<K, V> first = lruQueue.getLast();
                segment.evictionListener.onEntryChosenForEviction(first.value);
                segment.remove(first.key, first.hash, null);
@@ -481,7 +557,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
 
       private boolean isOverflow() {
-         return lruQueue.size() > trimDownSize;
+         return segment.isWeighted() ? segment.weight > trimDownSize : lruQueue.size() > trimDownSize;
       }
 
       @Override
@@ -516,6 +592,16 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          }
       }
 
+      @Override
+      public void onEntriesReplaced(Map<HashEntry<K, V>, HashEntry<K, V>> replacements) {
+         for (ListIterator<HashEntry<K, V>> i = lruQueue.listIterator(); i.hasNext();) {
+            HashEntry<K, V> replacement = replacements.get(i.next());
+            if (replacement != null) {
+               i.set(replacement);
+            }
+         }
+      }
+
       @Override
       public void clear() {
          lruQueue.clear();
@@ -535,18 +621,20 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       private final LinkedHashMap<K, HashEntry<K, V>> stack;
       private final LinkedList<HashEntry<K, V>> queue;
       private final int maxBatchQueueSize;
-      private final int lirSizeLimit;
-      private final int hirSizeLimit;
-      private int currentLIRSize;
+      private final long lirSizeLimit;
+      private final long hirSizeLimit;
+      private long currentLIRSize;
+      private long currentHIRSize;
       private final float batchThresholdFactor;
 
       public LIRS(Segment<K,V> s, int capacity, int maxBatchSize, float batchThresholdFactor) {
          this.segment = s;
-         int tmpLirSize = (int) (capacity * 0.9);
-         int tmpHirSizeLimit = capacity - tmpLirSize;
+         long size = s.isWeighted() ? s.maxWeight : capacity;
+         long tmpLirSize = (long) (size * 0.9);
+         long tmpHirSizeLimit = size - tmpLirSize;
          if (tmpHirSizeLimit < MIN_HIR_SIZE) {
             hirSizeLimit = MIN_HIR_SIZE;
-            lirSizeLimit = capacity - hirSizeLimit;
+            lirSizeLimit = size - hirSizeLimit;
          } else {
             hirSizeLimit = tmpHirSizeLimit;
             lirSizeLimit = tmpLirSize;
@@ -562,7 +650,8 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       public Set<HashEntry<K, V>> execute() {
          Set<HashEntry<K, V>> evicted = new HashSet<HashEntry<K, V>>();
          try {
-            for (HashEntry<K, V> e : accessQueue) {
+            for (HashEntry<K, V> accessed : accessQueue) {
+               HashEntry<K, V> e = segment.liveEntry(accessed);
                if (present(e)) {
                   if (e.recency() == Recency.LIR_RESIDENT) {
                      handleLIRHit(e, evicted);
@@ -571,6 +660,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   }
                }
             }
+            trimHIRQueue(evicted);
             removeFromSegment(evicted);
          } finally {
             accessQueue.clear();
@@ -588,9 +678,12 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          stack.put(e.key, e);
 
          if (inStack) {
-            queue.remove(e);
+            if (queue.remove(e)) {
+               currentHIRSize -= e.weight;
+            }
             e.transitionToLIRResident();
-            switchBottomostLIRtoHIRAndPrune(evicted);
+            currentLIRSize += e.weight;
+            demoteBottomostLIRs(evicted);
          } else {
             queue.remove(e);
             queue.addLast(e);
@@ -612,36 +705,37 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
 
       private boolean present(HashEntry<K, V> e) {
-         return stack.containsKey(e.key) || queue.contains(e);
+         return e != null && (stack.containsKey(e.key) || queue.contains(e));
       }
 
       @Override
       public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
          // initialization
          Set<HashEntry<K, V>> evicted = Collections.emptySet();
-         if (currentLIRSize + 1 < lirSizeLimit) {
-            currentLIRSize++;
+         if (currentLIRSize + e.weight < lirSizeLimit) {
+            currentLIRSize += e.weight;
             e.transitionToLIRResident();
             stack.put(e.key, e);
          } else {
-            if (queue.size() < hirSizeLimit) {
+            if (currentHIRSize + e.weight <= hirSizeLimit) {
                queue.addLast(e);
+               currentHIRSize += e.weight;
             } else {
                boolean inStack = stack.containsKey(e.key);
-               HashEntry<K, V> first = queue.removeFirst();
-               first.transitionHIRResidentToHIRNonResident();
 
                stack.put(e.key, e);
 
                evicted = new HashSet<HashEntry<K, V>>();
                if (inStack) {
                   e.transitionToLIRResident();
-                  switchBottomostLIRtoHIRAndPrune(evicted);
+                  currentLIRSize += e.weight;
+                  demoteBottomostLIRs(evicted);
                } else {
                   queue.addLast(e);
-                  evicted.add(first);
+                  currentHIRSize += e.weight;
                }
-               // evict from segment
+               // make room in the HIR queue and evict from segment
+               trimHIRQueue(evicted);
                removeFromSegment(evicted);
             }
          }
@@ -655,6 +749,31 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          }
       }
 
+      /**
+       * Evicts resident HIR entries from the front of the queue until it fits its size limit again. The most
+       * recently added entry is always kept, even if on its own it outweighs the limit.
+       */
+      private void trimHIRQueue(Set<HashEntry<K, V>> evicted) {
+         while (currentHIRSize > hirSizeLimit && queue.size() > 1) {
+            HashEntry<K, V> first = queue.removeFirst();
+            currentHIRSize -= first.weight;
+            first.transitionHIRResidentToHIRNonResident();
+            evicted.add(first);
+         }
+      }
+
+      /**
+       * Switches LIR entries at the bottom of the stack to HIR until the LIR entries fit their size limit again.
+       * Unless the map is bounded by weight a single switch is all it takes.
+       */
+      private void demoteBottomostLIRs(Set<HashEntry<K, V>> evicted) {
+         long lirSize;
+         do {
+            lirSize = currentLIRSize;
+            switchBottomostLIRtoHIRAndPrune(evicted);
+         } while (currentLIRSize > lirSizeLimit && currentLIRSize != lirSize);
+      }
+
       private void switchBottomostLIRtoHIRAndPrune(Set<HashEntry<K, V>> evicted) {
          boolean seenFirstLIR = false;
          for (Iterator<HashEntry<K, V>> i = stack.values().iterator(); i.hasNext();) {
@@ -664,7 +783,9 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   seenFirstLIR = true;
                   i.remove();
                   next.transitionLIRResidentToHIRResident();
+                  currentLIRSize -= next.weight;
                   queue.addLast(next);
+                  currentHIRSize += next.weight;
                } else {
                   break;
                }
@@ -696,19 +817,40 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       public void onEntryRemove(HashEntry<K, V> e) {
          HashEntry<K, V> removed = stack.remove(e.key);
          if (removed != null && removed.recency() == Recency.LIR_RESIDENT) {
-            currentLIRSize--;
+            currentLIRSize -= removed.weight;
+         }
+         if (queue.remove(e)) {
+            currentHIRSize -= e.weight;
          }
-         queue.remove(e);
          // we could have multiple instances of e in accessQueue; remove them all
          while (accessQueue.remove(e)) {
             continue;
          }
       }
 
+      @Override
+      public void onEntriesReplaced(Map<HashEntry<K, V>, HashEntry<K, V>> replacements) {
+         for (Map.Entry<K, HashEntry<K, V>> entry : stack.entrySet()) {
+            HashEntry<K, V> replacement = replacements.get(entry.getValue());
+            if (replacement != null) {
+               entry.setValue(replacement);
+            }
+         }
+         for (ListIterator<HashEntry<K, V>> i = queue.listIterator(); i.hasNext();) {
+            HashEntry<K, V> replacement = replacements.get(i.next());
+            if (replacement != null) {
+               i.set(replacement);
+            }
+         }
+      }
+
       @Override
       public void clear() {
          stack.clear();
+         queue.clear();
          accessQueue.clear();
+         currentLIRSize = 0;
+         currentHIRSize = 0;
       }
 
       @Override
@@ -717,6 +859,259 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
    }
 
+   /**
+    * Evicts entries in insertion order. Reads are not recorded at all, so neither the eviction
+    * order nor the segment lock is ever touched by {@code get()}.
+    */
+   static final class FIFO<K, V> implements EvictionPolicy<K, V> {
+      private final Segment<K,V> segment;
+      private final LinkedHashMap<K, HashEntry<K, V>> queue;
+      private final long trimDownSize;
+
+      public FIFO(Segment<K,V> s, int capacity, float lf) {
+         this.segment = s;
+         this.trimDownSize = s.isWeighted() ? (long) (s.maxWeight * lf) : (long) (capacity * lf);
+         this.queue = new LinkedHashMap<K, HashEntry<K, V>>();
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> execute() {
+         Set<HashEntry<K, V>> evicted = Collections.emptySet();
+         if (isOverflow()) {
+            evicted = new HashSet<HashEntry<K, V>>();
+         }
+         while (isOverflow() && !queue.isEmpty()) {
+            HashEntry<K, V> first = queue.values().iterator().next();
+            segment.evictionListener.onEntryChosenForEviction(first.value);
+            segment.remove(first.key, first.hash, null);
+            evicted.add(first);
+         }
+         return evicted;
+      }
+
+      private boolean isOverflow() {
+         return segment.isWeighted() ? segment.weight > trimDownSize : queue.size() > trimDownSize;
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
+         queue.put(e.key, e);
+         return Collections.emptySet();
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean onEntryHit(HashEntry<K, V> e) {
+         return false;
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean thresholdExpired() {
+         return false;
+      }
+
+      @Override
+      public void onEntryRemove(HashEntry<K, V> e) {
+         queue.remove(e.key);
+      }
+
+      @Override
+      public void onEntriesReplaced(Map<HashEntry<K, V>, HashEntry<K, V>> replacements) {
+         for (HashEntry<K, V> replacement : replacements.values()) {
+            // replacing the value of a key does not change its insertion order
+            queue.put(replacement.key, replacement);
+         }
+      }
+
+      @Override
+      public void clear() {
+         queue.clear();
+      }
+
+      @Override
+      public Eviction strategy() {
+         return Eviction.FIFO;
+      }
+   }
+
+   /**
+    * Evicts whatever entries a sweep over the segment's table comes across first. Keeps no
+    * bookkeeping of its own, neither on reads nor on writes.
+    */
+   static final class Unordered<K, V> implements EvictionPolicy<K, V> {
+      private final Segment<K,V> segment;
+      private final long trimDownSize;
+      /**
+       * Table index the next sweep starts at, so that sweeps do not keep hitting the same bins.
+       */
+      private int cursor;
+
+      public Unordered(Segment<K,V> s, int capacity, float lf) {
+         this.segment = s;
+         this.trimDownSize = s.isWeighted() ? (long) (s.maxWeight * lf) : (long) (capacity * lf);
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> execute() {
+         Set<HashEntry<K, V>> evicted = Collections.emptySet();
+         if (!isOverflow()) {
+            return evicted;
+         }
+         evicted = new HashSet<HashEntry<K, V>>();
+         HashEntry<K, V>[] tab = segment.table;
+         for (int scanned = 0; scanned < tab.length && isOverflow(); scanned++) {
+            int index = cursor++ & (tab.length - 1);
+            // removal clones the preceding nodes of a bin, the old chain stays intact for traversal
+            for (HashEntry<K, V> e = tab[index]; e != null && isOverflow(); e = e.next) {
+               segment.evictionListener.onEntryChosenForEviction(e.value);
+               if (segment.remove(e.key, e.hash, null) != null) {
+                  evicted.add(e);
+               }
+            }
+         }
+         return evicted;
+      }
+
+      private boolean isOverflow() {
+         return segment.isWeighted() ? segment.weight > trimDownSize : segment.count > trimDownSize;
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
+         return Collections.emptySet();
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean onEntryHit(HashEntry<K, V> e) {
+         return false;
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean thresholdExpired() {
+         return false;
+      }
+
+      @Override
+      public void onEntryRemove(HashEntry<K, V> e) {
+         // Do nothing.
+      }
+
+      @Override
+      public void onEntriesReplaced(Map<HashEntry<K, V>, HashEntry<K, V>> replacements) {
+         // Do nothing.
+      }
+
+      @Override
+      public void clear() {
+         // Do nothing.
+      }
+
+      @Override
+      public Eviction strategy() {
+         return Eviction.UNORDERED;
+      }
+   }
+
+   /**
+    * Approximates LRU with the CLOCK algorithm: a read merely sets the referenced bit of the
+    * entry, without locking or enqueuing anything. Eviction sweeps the entries in insertion
+    * order, giving those referenced since the last sweep a second chance.
+    */
+   static final class CLOCK<K, V> implements EvictionPolicy<K, V> {
+      private final Segment<K,V> segment;
+      private final LinkedHashMap<K, HashEntry<K, V>> clock;
+      private final long trimDownSize;
+
+      public CLOCK(Segment<K,V> s, int capacity, float lf) {
+         this.segment = s;
+         this.trimDownSize = s.isWeighted() ? (long) (s.maxWeight * lf) : (long) (capacity * lf);
+         this.clock = new LinkedHashMap<K, HashEntry<K, V>>();
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> execute() {
+         Set<HashEntry<K, V>> evicted = Collections.emptySet();
+         if (isOverflow()) {
+            evicted = new HashSet<HashEntry<K, V>>();
+         }
+         // every entry gets at most one second chance per sweep, so this terminates
+         int chances = clock.size();
+         while (isOverflow() && !clock.isEmpty()) {
+            HashEntry<K, V> hand = clock.values().iterator().next();
+            if (hand.referenced && chances-- > 0) {
+               hand.referenced = false;
+               clock.remove(hand.key);
+               clock.put(hand.key, hand);
+            } else {
+               segment.evictionListener.onEntryChosenForEviction(hand.value);
+               segment.remove(hand.key, hand.hash, null);
+               evicted.add(hand);
+            }
+         }
+         return evicted;
+      }
+
+      private boolean isOverflow() {
+         return segment.isWeighted() ? segment.weight > trimDownSize : clock.size() > trimDownSize;
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
+         clock.put(e.key, e);
+         return Collections.emptySet();
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean onEntryHit(HashEntry<K, V> e) {
+         e.referenced = true;
+         return false;
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean thresholdExpired() {
+         return false;
+      }
+
+      @Override
+      public void onEntryRemove(HashEntry<K, V> e) {
+         clock.remove(e.key);
+      }
+
+      @Override
+      public void onEntriesReplaced(Map<HashEntry<K, V>, HashEntry<K, V>> replacements) {
+         for (HashEntry<K, V> replacement : replacements.values()) {
+            clock.put(replacement.key, replacement);
+         }
+      }
+
+      @Override
+      public void clear() {
+         clock.clear();
+      }
+
+      @Override
+      public Eviction strategy() {
+         return Eviction.CLOCK;
+      }
+   }
+
    /**
     * Segments are specialized versions of hash tables.  This
     * subclasses from ReentrantLock opportunistically, just to
@@ -801,13 +1196,83 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
       transient final EvictionListener<K, V> evictionListener;
 
+      /**
+       * The upper bound for the summed up weight of this segment's entries, or -1 if the segment is bounded
+       * by entry count.
+       */
+      transient final long maxWeight;
+
+      transient final EntrySizeEstimator<K, V> sizeEstimator;
+
+      /**
+       * The summed up weight of all entries in this segment's region.
+       */
+      transient volatile long weight;
+
       Segment(int cap, float lf, Eviction es, EvictionListener<K, V> listener) {
+         this(cap, lf, es, listener, -1, null);
+      }
+
+      Segment(int cap, float lf, Eviction es, EvictionListener<K, V> listener, long maxWeight,
+            EntrySizeEstimator<K, V> sizeEstimator) {
          loadFactor = lf;
+         this.maxWeight = maxWeight;
+         this.sizeEstimator = sizeEstimator;
          eviction = es.make(this, cap, lf);
          evictionListener = listener;
          setTable(HashEntry.<K, V> newArray(cap));
       }
 
+      boolean isWeighted() {
+         return sizeEstimator != null;
+      }
+
+      private boolean isOverweight() {
+         return isWeighted() && weight > maxWeight;
+      }
+
+      /**
+       * Returns the entry currently mapped for the key of the given, possibly stale, entry or null if there is
+       * none. Call only while holding lock.
+       */
+      HashEntry<K, V> liveEntry(HashEntry<K, V> e) {
+         HashEntry<K, V> live = getFirst(e.hash);
+         while (live != null && (live.hash != e.hash || !e.key.equals(live.key))) {
+            live = live.next;
+         }
+         return live;
+      }
+
+      private static <T> Set<T> merge(Set<T> evicted, Set<T> newlyEvicted) {
+         if (newlyEvicted == null || newlyEvicted.isEmpty()) {
+            return evicted;
+         }
+         if (evicted == null || evicted.isEmpty()) {
+            return newlyEvicted;
+         }
+         evicted.addAll(newlyEvicted);
+         return evicted;
+      }
+
+      /**
+       * Replaces the value of an existing entry in a weighted segment. The entry is handed to the eviction
+       * policy as a new one, as its weight is likely to change. Call only while holding lock.
+       */
+      private Set<HashEntry<K, V>> reweigh(HashEntry<K, V> e, V value, int w) {
+         eviction.onEntryRemove(e);
+         weight += w - e.weight;
+         e.weight = w;
+         e.value = value;
+         if (e.recency() == Recency.LIR_RESIDENT) {
+            e.transitionLIRResidentToHIRResident();
+         }
+         Set<HashEntry<K, V>> evicted = eviction.onEntryMiss(e);
+         if (isOverweight()) {
+            evicted = merge(evicted, eviction.execute());
+         }
+         return evicted;
+      }
+
       @SuppressWarnings("unchecked")
       static final <K,V> Segment<K,V>[] newArray(int i) {
          return new Segment[i];
@@ -882,6 +1347,20 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return null;
       }
 
+      V peek(Object key, int hash) {
+         if (count != 0) { // read-volatile
+            HashEntry<K, V> e = getFirst(hash);
+            while (e != null) {
+               if (e.hash == hash && key.equals(e.key)) {
+                  V v = e.value;
+                  return v != null ? v : readValueUnderLock(e); // recheck
+               }
+               e = e.next;
+            }
+         }
+         return null;
+      }
+
       boolean containsKey(Object key, int hash) {
          if (count != 0) { // read-volatile
             HashEntry<K,V> e = getFirst(hash);
@@ -914,7 +1393,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return false;
       }
 
-      boolean replace(K key, int hash, V oldValue, V newValue) {
+      boolean replace(K key, int hash, V oldValue, V newValue, int w) {
          lock();
          Set<HashEntry<K, V>> evicted = null;
          try {
@@ -926,9 +1405,13 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             boolean replaced = false;
             if (e != null && oldValue.equals(e.value)) {
                replaced = true;
-               e.value = newValue;
-               if (eviction.onEntryHit(e)) {
-                  evicted = attemptEviction(true);
+               if (isWeighted()) {
+                  evicted = reweigh(e, newValue, w);
+               } else {
+                  e.value = newValue;
+                  if (eviction.onEntryHit(e)) {
+                     evicted = attemptEviction(true);
+                  }
                }
             }
             return replaced;
@@ -938,7 +1421,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          }
       }
 
-      V replace(K key, int hash, V newValue) {
+      V replace(K key, int hash, V newValue, int w) {
          lock();
          Set<HashEntry<K, V>> evicted = null;
          try {
@@ -950,9 +1433,13 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             V oldValue = null;
             if (e != null) {
                oldValue = e.value;
-               e.value = newValue;
-               if (eviction.onEntryHit(e)) {
-                  evicted = attemptEviction(true);
+               if (isWeighted()) {
+                  evicted = reweigh(e, newValue, w);
+               } else {
+                  e.value = newValue;
+                  if (eviction.onEntryHit(e)) {
+                     evicted = attemptEviction(true);
+                  }
                }
             }
             return oldValue;
@@ -962,12 +1449,13 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          }
       }
 
-      V put(K key, int hash, V value, boolean onlyIfAbsent) {
+      V put(K key, int hash, V value, int w, boolean onlyIfAbsent) {
          lock();
          Set<HashEntry<K, V>> evicted = null;
          try {
             int c = count;
-            if (c++ > threshold && eviction.strategy() == Eviction.NONE) {
+            // weighted segments cannot tell the number of entries upfront, so they grow like unbounded ones
+            if (c++ > threshold && (eviction.strategy() == Eviction.NONE || isWeighted())) {
                rehash();
             }
             HashEntry<K, V>[] tab = table;
@@ -982,33 +1470,38 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             if (e != null) {
                oldValue = e.value;
                if (!onlyIfAbsent) {
-                  e.value = value;
-                  eviction.onEntryHit(e);
+                  if (isWeighted()) {
+                     evicted = reweigh(e, value, w);
+                  } else {
+                     e.value = value;
+                     eviction.onEntryHit(e);
+                  }
                }
             } else {
                oldValue = null;
                ++modCount;
                count = c; // write-volatile
                if (eviction.strategy() != Eviction.NONE) {
-                  if (c > tab.length) {
+                  if (isWeighted() ? weight + w > maxWeight : c > tab.length) {
                      // remove entries;lower count
                      evicted = eviction.execute();
                      // re-read first
                      first = tab[index];
                   }
                   // add a new entry
-                  tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  HashEntry<K, V> added = new HashEntry<K, V>(key, hash, first, value);
+                  added.weight = w;
+                  tab[index] = added;
+                  weight += w;
                   // notify a miss
-                  Set<HashEntry<K, V>> newlyEvicted = eviction.onEntryMiss(tab[index]);
-                  if (!newlyEvicted.isEmpty()) {
-                     if (evicted != null) {
-                        evicted.addAll(newlyEvicted);
-                     } else {
-                        evicted = newlyEvicted;
-                     }
+                  evicted = merge(evicted, eviction.onEntryMiss(added));
+                  if (isOverweight()) {
+                     evicted = merge(evicted, eviction.execute());
                   }
                } else {
                   tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  tab[index].weight = w;
+                  weight += w;
                }
             }
             return oldValue;
@@ -1041,6 +1534,8 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
          HashEntry<K,V>[] newTable = HashEntry.newArray(oldCapacity<<1);
          threshold = (int)(newTable.length * loadFactor);
+         Map<HashEntry<K, V>, HashEntry<K, V>> replacements = eviction.strategy() == Eviction.NONE ? null
+               : new IdentityHashMap<HashEntry<K, V>, HashEntry<K, V>>();
          int sizeMask = newTable.length - 1;
          for (int i = 0; i < oldCapacity ; i++) {
             // We need to guarantee that any existing reads of old Map can
@@ -1073,13 +1568,19 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   for (HashEntry<K,V> p = e; p != lastRun; p = p.next) {
                      int k = p.hash & sizeMask;
                      HashEntry<K,V> n = newTable[k];
-                     newTable[k] = new HashEntry<K,V>(p.key, p.hash,
-                           n, p.value);
+                     newTable[k] = p.copy(n);
+                     if (replacements != null) {
+                        replacements.put(p, newTable[k]);
+                     }
                   }
                }
             }
          }
          table = newTable;
+         if (replacements != null && !replacements.isEmpty()) {
+            // the eviction policy must track the clones rather than the nodes they replace
+            eviction.onEntriesReplaced(replacements);
+         }
       }
 
       /**
@@ -1111,15 +1612,21 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   eviction.onEntryRemove(e);
 
                   HashEntry<K, V> newFirst = e.next;
+                  Map<HashEntry<K, V>, HashEntry<K, V>> replacements = null;
                   for (HashEntry<K, V> p = first; p != e; p = p.next) {
-                     // allow p to be GC-ed
-                     eviction.onEntryRemove(p);
-                     newFirst = new HashEntry<K, V>(p.key, p.hash, newFirst, p.value);
-                     // and notify eviction algorithm about new hash entries
-                     eviction.onEntryMiss(newFirst);
+                     newFirst = p.copy(newFirst);
+                     if (replacements == null) {
+                        replacements = new IdentityHashMap<HashEntry<K, V>, HashEntry<K, V>>();
+                     }
+                     replacements.put(p, newFirst);
+                  }
+                  if (replacements != null) {
+                     // allow the cloned nodes to be GC-ed, keeping their position in the eviction order
+                     eviction.onEntriesReplaced(replacements);
                   }
 
                   tab[index] = newFirst;
+                  weight -= e.weight;
                   count = c; // write-volatile
                }
             }
@@ -1139,6 +1646,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                }
                ++modCount;
                eviction.clear();
+               weight = 0;
                count = 0; // write-volatile
             } finally {
                unlock();
@@ -1257,6 +1765,69 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       for (int i = 0; i < this.segments.length; ++i) {
          this.segments[i] = new Segment<K, V>(cap, DEFAULT_LOAD_FACTOR, evictionStrategy, evictionListener);
       }
+      this.sizeEstimator = null;
+   }
+
+   /**
+    * Creates a new, empty map bounded by the summed up weight of its mappings rather than by their number.
+    * The weight of each mapping is computed once, when it is stored, by the given size estimator.
+    *
+    * @param maxWeight
+    *            is the upper bound for the summed up weight of all mappings in this map
+    *
+    * @param concurrencyLevel
+    *            the estimated number of concurrently updating threads. The implementation performs
+    *            internal sizing to try to accommodate this many threads.
+    *
+    * @param evictionStrategy
+    *            the algorithm used to evict elements from this map
+    *
+    * @param evictionListener
+    *            the evicton listener callback to be notified about evicted elements
+    *
+    * @param sizeEstimator
+    *            computes the weight of a mapping
+    *
+    * @throws IllegalArgumentException
+    *             if the maximum weight or the concurrencyLevel are nonpositive, or any of the other arguments
+    *             is null.
+    */
+   public BoundedConcurrentHashMap(long maxWeight, int concurrencyLevel, Eviction evictionStrategy,
+         EvictionListener<K, V> evictionListener, EntrySizeEstimator<K, V> sizeEstimator) {
+      if (maxWeight <= 0 || concurrencyLevel <= 0) {
+         throw new IllegalArgumentException();
+      }
+
+      if (evictionStrategy == null || evictionListener == null || sizeEstimator == null) {
+         throw new IllegalArgumentException();
+      }
+
+      if (concurrencyLevel > MAX_SEGMENTS) {
+         concurrencyLevel = MAX_SEGMENTS;
+      }
+
+      // Find power-of-two sizes best matching arguments
+      int sshift = 0;
+      int ssize = 1;
+      while (ssize < concurrencyLevel) {
+         ++sshift;
+         ssize <<= 1;
+      }
+      segmentShift = 32 - sshift;
+      segmentMask = ssize - 1;
+      this.segments = Segment.newArray(ssize);
+
+      long w = maxWeight / ssize;
+      if (w * ssize < maxWeight) {
+         ++w;
+      }
+
+      // tables grow on demand as the number of entries fitting into the weight limit is not known
+      for (int i = 0; i < this.segments.length; ++i) {
+         this.segments[i] = new Segment<K, V>(DEFAULT_WEIGHTED_SEGMENT_CAPACITY, DEFAULT_LOAD_FACTOR,
+               evictionStrategy, evictionListener, w, sizeEstimator);
+      }
+      this.sizeEstimator = sizeEstimator;
    }
 
    /**
@@ -1438,6 +2009,17 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       return segmentFor(hash).get(key, hash);
    }
 
+   /**
+    * Returns the value to which the specified key is mapped, like {@link #get(Object)}, but without counting as an
+    * access to the entry, so the eviction order is left untouched.
+    *
+    * @throws NullPointerException if the specified key is null
+    */
+   public V peek(Object key) {
+      int hash = hash(key.hashCode());
+      return segmentFor(hash).peek(key, hash);
+   }
+
    /**
     * Tests if the specified object is a key in this table.
     *
@@ -1559,7 +2141,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          throw new NullPointerException();
       }
       int hash = hash(key.hashCode());
-      return segmentFor(hash).put(key, hash, value, false);
+      return segmentFor(hash).put(key, hash, value, weigh(key, value), false);
    }
 
    /**
@@ -1575,7 +2157,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          throw new NullPointerException();
       }
       int hash = hash(key.hashCode());
-      return segmentFor(hash).put(key, hash, value, true);
+      return segmentFor(hash).put(key, hash, value, weigh(key, value), true);
    }
 
    /**
@@ -1632,7 +2214,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          throw new NullPointerException();
       }
       int hash = hash(key.hashCode());
-      return segmentFor(hash).replace(key, hash, oldValue, newValue);
+      return segmentFor(hash).replace(key, hash, oldValue, newValue, weigh(key, newValue));
    }
 
    /**
@@ -1648,7 +2230,35 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          throw new NullPointerException();
       }
       int hash = hash(key.hashCode());
-      return segmentFor(hash).replace(key, hash, value);
+      return segmentFor(hash).replace(key, hash, value, weigh(key, value));
+   }
+
+   /**
+    * Computes the weight of a mapping outside of any segment lock.
+    */
+   private int weigh(K key, V value) {
+      return sizeEstimator == null ? 1 : sizeEstimator.estimateSize(key, value);
+   }
+
+   /**
+    * Returns true if this map is bounded by the weight of its mappings rather than by their number.
+    */
+   public boolean isWeighted() {
+      return sizeEstimator != null;
+   }
+
+   /**
+    * Returns the summed up weight of all mappings in this map. Unless the map was created with an
+    * {@link EntrySizeEstimator} this is the same as the number of mappings.
+    *
+    * @return the weight of this map
+    */
+   public long weight() {
+      long w = 0;
+      for (Segment<K, V> segment : segments) {
+         w += segment.weight;
+      }
+      return w;
    }
 
    /**
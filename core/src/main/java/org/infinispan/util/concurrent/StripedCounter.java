@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter optimised for frequent concurrent updates and infrequent reads, such as the statistics gathered by
+ * interceptors on every invocation.
+ * <p/>
+ * Instead of a single {@link java.util.concurrent.atomic.AtomicLong}, whose cache line bounces between all cores
+ * updating it, the count is spread over a number of cells, each on its own cache line.  A thread always updates the
+ * cell selected by its id, so threads on different cores rarely contend.  The cells are only summed when the counter
+ * is read, which makes {@link #get()} comparatively expensive and not an atomic snapshot of concurrent updates.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public final class StripedCounter {
+
+   // longs per cache line; cells are spaced this far apart so no two share a line
+   private static final int PADDING = 8;
+   private static final int MAX_STRIPES = 64;
+   private static final int DEFAULT_STRIPES = stripesFor(Runtime.getRuntime().availableProcessors());
+
+   private final AtomicLongArray cells;
+   private final int stripeMask;
+
+   public StripedCounter() {
+      this(DEFAULT_STRIPES, 0);
+   }
+
+   public StripedCounter(long initialValue) {
+      this(DEFAULT_STRIPES, initialValue);
+   }
+
+   /**
+    * @param concurrencyLevel expected number of concurrently updating threads, rounded up to a power of two and capped
+    *                         at {@value #MAX_STRIPES}
+    * @param initialValue     initial value of the counter
+    */
+   public StripedCounter(int concurrencyLevel, long initialValue) {
+      int stripes = stripesFor(concurrencyLevel);
+      cells = new AtomicLongArray(stripes * PADDING);
+      stripeMask = stripes - 1;
+      cells.set(0, initialValue);
+   }
+
+   private static int stripesFor(int concurrencyLevel) {
+      int stripes = 1;
+      while (stripes < concurrencyLevel && stripes < MAX_STRIPES) stripes <<= 1;
+      return stripes;
+   }
+
+   private int cell() {
+      return ((int) Thread.currentThread().getId() & stripeMask) * PADDING;
+   }
+
+   public void increment() {
+      cells.incrementAndGet(cell());
+   }
+
+   public void decrement() {
+      cells.decrementAndGet(cell());
+   }
+
+   public void add(long delta) {
+      cells.addAndGet(cell(), delta);
+   }
+
+   /**
+    * @return the sum of all cells.  Updates made concurrently with this call may or may not be included.
+    */
+   public long get() {
+      long sum = 0;
+      for (int i = 0; i < cells.length(); i += PADDING) sum += cells.get(i);
+      return sum;
+   }
+
+   /**
+    * Resets the counter to the given value.  Updates made concurrently with this call may or may not be lost.
+    */
+   public void set(long value) {
+      for (int i = PADDING; i < cells.length(); i += PADDING) cells.set(i, 0);
+      cells.set(0, value);
+   }
+
+   public void reset() {
+      set(0);
+   }
+
+   @Override
+   public String toString() {
+      return Long.toString(get());
+   }
+}
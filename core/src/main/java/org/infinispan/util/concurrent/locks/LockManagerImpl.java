@@ -63,6 +63,7 @@ public class LockManagerImpl implements LockManager {
    protected LockContainer lockContainer;
    private TransactionManager transactionManager;
    private InvocationContextContainer invocationContextContainer;
+   private boolean optimisticLocking;
    private static final Log log = LogFactory.getLog(LockManagerImpl.class);
    protected static final boolean trace = log.isTraceEnabled();
    private static final String ANOTHER_THREAD = "(another thread)";
@@ -76,6 +77,7 @@ public class LockManagerImpl implements LockManager {
 
    @Start
    public void startLockManager() {
+      optimisticLocking = configuration.isOptimisticLocking();
       lockContainer = configuration.isUseLockStriping() ?
       transactionManager == null ? new ReentrantStripedLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantStripedLockContainer(configuration.getConcurrencyLevel(), invocationContextContainer) :
       transactionManager == null ? new ReentrantPerEntryLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantPerEntryLockContainer(configuration.getConcurrencyLevel(), invocationContextContainer);
@@ -122,9 +124,9 @@ public class LockManagerImpl implements LockManager {
          while (it.hasNext()) {
             Map.Entry<Object, CacheEntry> e = it.next();
             CacheEntry entry = e.getValue();
-            if (possiblyLocked(entry)) {
+            Object k = e.getKey();
+            if (needsUnlocking(k, entry, ctx.getLockOwner())) {
                // has been locked!
-               Object k = e.getKey();
                if (trace) log.tracef("Attempting to unlock %s", k);
                lockContainer.releaseLock(k);
             }
@@ -161,6 +163,15 @@ public class LockManagerImpl implements LockManager {
       return entry == null || entry.isChanged() || entry.isNull() || entry.isLockPlaceholder();
    }
 
+   /**
+    * With optimistic locking, entries modified by a transaction are only locked once the transaction prepares, so a
+    * changed entry is not evidence of a lock being held.  Releasing a lock that is not owned must be avoided since
+    * per-entry lock containers discard the lock regardless of its owner.
+    */
+   private boolean needsUnlocking(Object key, CacheEntry entry, Object owner) {
+      return possiblyLocked(entry) && (!optimisticLocking || ownsLock(key, owner));
+   }
+
    public void releaseLocks(InvocationContext ctx) {
       Object owner = ctx.getLockOwner();
       // clean up.
@@ -173,7 +184,7 @@ public class LockManagerImpl implements LockManager {
          Map.Entry<Object, CacheEntry> e = it.next();
          CacheEntry entry = e.getValue();
          Object key = e.getKey();
-         boolean needToUnlock = possiblyLocked(entry);
+         boolean needToUnlock = needsUnlocking(key, entry, owner);
          // could be null with read-committed
          if (entry != null && entry.isChanged()) entry.rollback();
          else {
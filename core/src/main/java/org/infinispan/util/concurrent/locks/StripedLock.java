@@ -22,6 +22,8 @@
  */
 package org.infinispan.util.concurrent.locks;
 
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -184,6 +186,71 @@ public class StripedLock {
     }
    }
 
+   /**
+    * Acquires the locks guarding all keys passed in.  Unlike {@link #acquireAllLocks(java.util.List, boolean)}, each
+    * lock is acquired only once and always in the same order, so threads locking overlapping sets of keys cannot
+    * deadlock each other.  Locks acquired this way must be released with {@link #releaseLocksInOrder(java.util.Collection)}.
+    * If any of the locks cannot be acquired within the timeout, those already acquired are released.
+    *
+    * @param keys      keys to lock
+    * @param exclusive whether locks are exclusive.
+    * @param millis    time to wait for each lock
+    * @return true if all the locks were acquired, false otherwise
+    */
+   public boolean acquireLocksInOrder(Collection<?> keys, boolean exclusive, long millis) {
+      BitSet indexes = lockIndexes(keys);
+      for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+         Lock toAcquire = exclusive ? sharedLocks[i].writeLock() : sharedLocks[i].readLock();
+         boolean acquired;
+         try {
+            acquired = toAcquire.tryLock(millis, TimeUnit.MILLISECONDS);
+         } catch (InterruptedException e) {
+            log.interruptedAcquiringLock(millis, e);
+            acquired = false;
+         }
+         if (!acquired) {
+            if (log.isTraceEnabled()) {
+               log.tracef("Could not acquire %s for %d keys", exclusive ? "WL" : "RL", keys.size());
+            }
+            for (int j = indexes.nextSetBit(0); j < i; j = indexes.nextSetBit(j + 1)) {
+               if (exclusive) {
+                  sharedLocks[j].writeLock().unlock();
+               } else {
+                  sharedLocks[j].readLock().unlock();
+               }
+            }
+            return false;
+         }
+      }
+      if (log.isTraceEnabled()) {
+         log.tracef("%s acquired for %d keys", exclusive ? "WL" : "RL", keys.size());
+      }
+      return true;
+   }
+
+   /**
+    * Releases the locks acquired through {@link #acquireLocksInOrder(java.util.Collection, boolean, long)}.
+    *
+    * @param keys keys to unlock
+    */
+   public void releaseLocksInOrder(Collection<?> keys) {
+      BitSet indexes = lockIndexes(keys);
+      for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+         ReentrantReadWriteLock lock = sharedLocks[i];
+         if (lock.isWriteLockedByCurrentThread()) {
+            lock.writeLock().unlock();
+         } else {
+            lock.readLock().unlock();
+         }
+      }
+   }
+
+   private BitSet lockIndexes(Collection<?> keys) {
+      BitSet indexes = new BitSet(sharedLocks.length);
+      for (Object k : keys) indexes.set(hashToIndex(k));
+      return indexes;
+   }
+
    /**
     * Returns the total number of locks held by this class.
     */
@@ -727,4 +727,20 @@ public interface Log extends BasicLogger {
    @Message(value = "Error flushing to file: %s", id = 151)
    void errorFlushingToFileChannel(FileChannel f, @Cause Exception e);
 
+   @LogMessage(level = WARN)
+   @Message(value = "Log segment %s is corrupt or was only partially written at offset %d, truncating it", id = 152)
+   void truncatingLogSegment(File f, long offset);
+
+   @LogMessage(level = ERROR)
+   @Message(value = "Error compacting log segment %s", id = 153)
+   void errorCompactingLogSegment(File f, @Cause Exception e);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Problem replaying modification %s received during state transfer", id = 154)
+   void problemReplayingLoggedModification(Object command, @Cause Throwable t);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Problem executing asynchronous inbound command %s", id = 155)
+   void problemExecutingInboundCommand(Object command, @Cause Throwable t);
+
 }
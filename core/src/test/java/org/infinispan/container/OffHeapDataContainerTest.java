@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionThreadPolicy;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.testng.annotations.Test;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+@Test(groups = "unit", testName = "container.OffHeapDataContainerTest")
+public class OffHeapDataContainerTest extends SimpleDataContainerTest {
+
+   @Override
+   protected DataContainer createContainer() {
+      OffHeapDataContainer dc = new OffHeapDataContainer(16);
+      dc.initialize(new TestObjectStreamMarshaller(), null, null);
+      return dc;
+   }
+
+   /**
+    * Entries handed out by an off-heap container are copies, so the last used stamp has to be checked on a freshly
+    * read entry rather than on the instance previously returned.
+    */
+   @Override
+   public void testUpdatingLastUsed() throws Exception {
+      long idle = 600000;
+      dc.put("k", "v", -1, -1);
+      InternalCacheEntry ice = dc.get("k");
+      assert ice.getClass().equals(immortaltype());
+      assert ice.getExpiryTime() == -1;
+      dc.put("k", "v", -1, idle);
+      long oldTime = System.currentTimeMillis();
+      Thread.sleep(100); // for time calc granularity
+      ice = dc.get("k");
+      assert ice.getClass().equals(transienttype());
+      assert ice.getLastUsed() > oldTime;
+      assert ice.getMaxIdle() == idle;
+      assert ice.getLifespan() == -1;
+
+      oldTime = System.currentTimeMillis();
+      Thread.sleep(100); // for time calc granularity
+      ice = dc.get("k");
+      assert ice.getLastUsed() > oldTime;
+      assert dc.peek("k").getLastUsed() == ice.getLastUsed();
+   }
+
+   public void testOverwriteAndRemove() {
+      for (int i = 0; i < 1000; i++) dc.put("k" + i, "v" + i, -1, -1);
+      for (int i = 0; i < 1000; i++) dc.put("k" + i, "value" + i, -1, -1);
+      assertEquals(1000, dc.size());
+      for (int i = 0; i < 1000; i++) assertEquals("value" + i, dc.get("k" + i).getValue());
+      for (int i = 0; i < 1000; i += 2) assertEquals("value" + i, dc.remove("k" + i).getValue());
+      assertEquals(500, dc.size());
+      for (int i = 0; i < 1000; i++) assertEquals(i % 2 != 0, dc.containsKey("k" + i));
+   }
+
+   public void testCompaction() {
+      OffHeapDataContainer container = (OffHeapDataContainer) createContainer();
+      container.setSlabSize(1024);
+      for (int round = 0; round < 20; round++) {
+         for (int i = 0; i < 500; i++) container.put("k" + i, "round" + round, -1, -1);
+      }
+      assertEquals(500, container.size());
+      for (int i = 0; i < 500; i++) assertEquals("round19", container.get("k" + i).getValue());
+      long allocated = container.getAllocatedOffHeapBytes();
+      for (int i = 0; i < 500; i++) container.remove("k" + i);
+      assertEquals(0, container.size());
+      assert container.getAllocatedOffHeapBytes() < allocated : "Expected slabs to be released on compaction";
+   }
+
+   public void testLargeEntries() {
+      OffHeapDataContainer container = (OffHeapDataContainer) createContainer();
+      container.setSlabSize(1024);
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 4096; i++) sb.append('x');
+      String large = sb.toString();
+      container.put("large", large, -1, -1);
+      container.put("small", "v", -1, -1);
+      assertEquals(large, container.get("large").getValue());
+      assertEquals("v", container.get("small").getValue());
+   }
+
+   public void testBoundedLRU() {
+      OffHeapDataContainer container = new OffHeapDataContainer(1, 4, EvictionStrategy.LRU, EvictionThreadPolicy.DEFAULT);
+      container.initialize(new TestObjectStreamMarshaller(), createNiceMock(EvictionManager.class),
+                           createNiceMock(PassivationManager.class));
+      for (int i = 0; i < 4; i++) container.put(i, "v" + i, -1, -1);
+      container.get(0);
+      container.put(4, "v4", -1, -1);
+      assertEquals(4, container.size());
+      assertNull(container.peek(1));
+      assert container.containsKey(0);
+      assert container.containsKey(4);
+   }
+
+   public void testMemoryBounded() {
+      OffHeapDataContainer container = new OffHeapDataContainer(1, 10000L, EvictionStrategy.FIFO, EvictionThreadPolicy.DEFAULT);
+      container.initialize(new TestObjectStreamMarshaller(), createNiceMock(EvictionManager.class),
+                           createNiceMock(PassivationManager.class));
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 1000; i++) sb.append('x');
+      String value = sb.toString();
+      for (int i = 0; i < 100; i++) container.put(i, value, -1, -1);
+      // every entry takes more than 1000 bytes once marshalled
+      assert container.size() > 0 && container.size() < 10 : "Unexpected size " + container.size();
+      assertNull(container.peek(0));
+      assert container.containsKey(99);
+   }
+}
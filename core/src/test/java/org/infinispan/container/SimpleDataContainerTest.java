@@ -22,6 +22,7 @@
  */
 package org.infinispan.container;
 
+import org.infinispan.container.entries.ExpirationIndex;
 import org.infinispan.container.entries.ImmortalCacheEntry;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.MortalCacheEntry;
@@ -165,6 +166,23 @@ public class SimpleDataContainerTest extends AbstractInfinispanTest {
       assertContainerEntry(mortaltype(), value);
    }
 
+   public void testRemovedKeysAreUnscheduled() {
+      if (!(dc instanceof DefaultDataContainer)) return;
+      ExpirationIndex index = ((DefaultDataContainer) dc).entryFactory.getExpirationIndex();
+      dc.put("k1", "v", 6000000, -1);
+      dc.put("k2", "v", -1, 6000000);
+      dc.put("k3", "v", 6000000, -1);
+      dc.put("k3", "v2", 7000000, -1);
+      assert index.size() == 3 : "Expected 3 scheduled keys but was " + index.size();
+
+      dc.remove("k1");
+      dc.put("k2", "v2", -1, -1);
+      assert index.size() == 1 : "Expected 1 scheduled key but was " + index.size();
+
+      dc.clear();
+      assert index.size() == 0;
+   }
+
    private void assertContainerEntry(Class<? extends InternalCacheEntry> type,
                                      String expectedValue) {
       assert dc.containsKey("k");
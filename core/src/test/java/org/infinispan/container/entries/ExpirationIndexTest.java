@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.entries;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+@Test(groups = "unit", testName = "container.entries.ExpirationIndexTest")
+public class ExpirationIndexTest extends AbstractInfinispanTest {
+
+   private static final long TICK = 100;
+   private static final long START = 1000000;
+
+   public void testOnlyDueKeysAreReturned() {
+      ExpirationIndex index = new ExpirationIndex(TICK, START);
+      index.schedule("a", START + 50);
+      index.schedule("b", START + 250);
+      index.schedule("c", START + 10 * TICK);
+
+      assert index.advance(START + 10).isEmpty();
+      assertKeys(index.advance(START + 60), "a");
+      assert index.advance(START + 200).isEmpty();
+      assertKeys(index.advance(START + 300), "b");
+      assert index.size() == 1;
+      assertKeys(index.advance(START + 20 * TICK), "c");
+      assert index.size() == 0;
+   }
+
+   public void testPastExpiryIsDueImmediately() {
+      ExpirationIndex index = new ExpirationIndex(TICK, START);
+      index.advance(START + 5 * TICK);
+      index.schedule("a", START);
+      assertKeys(index.advance(START + 5 * TICK), "a");
+   }
+
+   public void testRepeatedScheduleIsCollapsed() {
+      ExpirationIndex index = new ExpirationIndex(TICK, START);
+      index.schedule("a", START + 10);
+      index.schedule("a", START + 20);
+      assert index.size() == 1;
+      assertKeys(index.advance(START + 20), "a");
+   }
+
+   public void testCascadingFromHigherWheels() {
+      ExpirationIndex index = new ExpirationIndex(TICK, START);
+      long[] delays = {63 * TICK, 64 * TICK, 65 * TICK, 4095 * TICK, 4096 * TICK, 300000 * TICK, (1L << 24) * TICK + 5};
+      for (int i = 0; i < delays.length; i++) {
+         index.schedule(i, START + delays[i]);
+      }
+      for (int i = 0; i < delays.length; i++) {
+         assert !index.advance(START + delays[i] - 1).contains(i) : "Key " + i + " returned early";
+         assertKeys(index.advance(START + delays[i]), i);
+      }
+      assert index.size() == 0;
+   }
+
+   public void testRescheduleMovesKey() {
+      ExpirationIndex index = new ExpirationIndex(TICK, START);
+      index.schedule("a", START + 10);
+      index.schedule("a", START + 100000);
+      assert index.size() == 1;
+      assert index.advance(START + 10 * TICK).isEmpty();
+      assertKeys(index.advance(START + 100000), "a");
+   }
+
+   public void testUnschedule() {
+      ExpirationIndex index = new ExpirationIndex(TICK, START);
+      long[] delays = {10, 64 * TICK, 300000 * TICK, (1L << 24) * TICK + 5};
+      for (int i = 0; i < delays.length; i++) {
+         index.schedule(i, START + delays[i]);
+      }
+      // move some keys down a wheel before unscheduling them
+      index.advance(START + 65 * TICK);
+      for (int i = 0; i < delays.length; i++) {
+         index.unschedule(i);
+      }
+      assert index.size() == 0 : "Expected no keys, but was " + index.size();
+      index.unschedule("unknown");
+   }
+
+   public void testClear() {
+      ExpirationIndex index = new ExpirationIndex(TICK, START);
+      index.schedule("a", START + 10);
+      index.schedule("b", START + 100000);
+      index.clear();
+      assert index.size() == 0;
+      assert index.advance(START + 200000).isEmpty();
+   }
+
+   private void assertKeys(Collection<Object> actual, Object... expected) {
+      Set<Object> expectedSet = new HashSet<Object>();
+      for (Object o : expected) expectedSet.add(o);
+      assert new HashSet<Object>(actual).equals(expectedSet) : "Expected " + expectedSet + " but was " + actual;
+   }
+}
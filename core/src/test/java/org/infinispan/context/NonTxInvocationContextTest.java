@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.context;
+
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.context.impl.NonTxInvocationContext;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Tests how {@link NonTxInvocationContext} holds a single looked up entry, and moves entries into a map once a second
+ * key is looked up.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "context.NonTxInvocationContextTest")
+public class NonTxInvocationContextTest extends AbstractInfinispanTest {
+
+   public void testSingleEntryContext() {
+      NonTxInvocationContext ctx = new NonTxInvocationContext();
+      CacheEntry e1 = InternalEntryFactory.create("k1", "v1");
+      CacheEntry e2 = InternalEntryFactory.create("k2", "v2");
+
+      ctx.putLookedUpEntry("k1", e1);
+      assert ctx.lookupEntry("k1") == e1;
+      assert ctx.lookupEntry("k2") == null;
+      assert ctx.getLookedUpEntries().size() == 1;
+      Iterator<Map.Entry<Object, CacheEntry>> it = ctx.getLookedUpEntries().entrySet().reverseIterator();
+      Map.Entry<Object, CacheEntry> only = it.next();
+      assert only.getKey().equals("k1") && only.getValue() == e1;
+      assert !it.hasNext();
+
+      // a second key moves both entries into a map, preserving order
+      ctx.putLookedUpEntry("k2", e2);
+      assert ctx.lookupEntry("k1") == e1 && ctx.lookupEntry("k2") == e2;
+      it = ctx.getLookedUpEntries().entrySet().iterator();
+      assert it.next().getKey().equals("k1");
+      assert it.next().getKey().equals("k2");
+
+      ctx.reset();
+      assert ctx.getLookedUpEntries().isEmpty();
+      ctx.putLookedUpEntry("k2", e2);
+      assert ctx.lookupEntry("k2") == e2;
+      ctx.getLookedUpEntries().remove("k2");
+      assert ctx.lookupEntry("k2") == null;
+      assert ctx.getLookedUpEntries().isEmpty();
+   }
+}
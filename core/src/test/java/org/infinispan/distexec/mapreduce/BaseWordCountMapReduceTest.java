@@ -29,6 +29,7 @@ import java.util.StringTokenizer;
 import java.util.concurrent.Future;
 
 import org.infinispan.Cache;
+import org.infinispan.CacheException;
 import org.infinispan.config.Configuration;
 import org.infinispan.config.GlobalConfiguration;
 import org.infinispan.manager.DefaultCacheManager;
@@ -58,6 +59,12 @@ public abstract class BaseWordCountMapReduceTest extends MultipleCacheManagersTe
    private MapReduceTask<String, String, String, Integer> testinvokeMapReduce(String keys[],
             Mapper<String, String, String, Integer> mapper, Reducer<String, Integer> reducer)
             throws Exception {
+      return testinvokeMapReduce(keys, mapper, reducer, true);
+   }
+
+   private MapReduceTask<String, String, String, Integer> testinvokeMapReduce(String keys[],
+            Mapper<String, String, String, Integer> mapper, Reducer<String, Integer> reducer,
+            boolean distributeReducePhase) throws Exception {
       Cache c1 = cache(0, cacheName());
       Cache c2 = cache(1, cacheName());
 
@@ -79,7 +86,7 @@ public abstract class BaseWordCountMapReduceTest extends MultipleCacheManagersTe
       c1.put("213", "JBoss division of RedHat ");
       c2.put("214", "RedHat community");
 
-      MapReduceTask<String, String, String, Integer> task = new MapReduceTask<String, String, String, Integer>(c1);
+      MapReduceTask<String, String, String, Integer> task = new MapReduceTask<String, String, String, Integer>(c1, distributeReducePhase);
       task.mappedWith(mapper).reducedWith(reducer);
       if(keys != null && keys.length>0){
          task.onKeys(keys);
@@ -217,6 +224,60 @@ public abstract class BaseWordCountMapReduceTest extends MultipleCacheManagersTe
      assert totalWords == 13;    
   }
 
+   public void testinvokeMapReduceOnAllKeysWithCombiner() throws Exception {
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(null);
+      task.combinedWith(new WordCountReducer());
+      Map<String, Integer> mapReduce = task.execute();
+      Integer count = mapReduce.get("Infinispan");
+      assert count == 3;
+      count = mapReduce.get("RedHat");
+      assert count == 2;
+   }
+
+   public void testinvokeMapReduceOnSubsetOfKeysWithCombiner() throws Exception {
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(new String[] { "1", "2", "3" });
+      task.combinedWith(new WordCountReducer());
+      Map<String, Integer> mapReduce = task.execute();
+      Integer count = mapReduce.get("Infinispan");
+      assert count == 1;
+      count = mapReduce.get("Boston");
+      assert count == 1;
+   }
+
+   public void testinvokeMapReduceOnAllKeysWithReducePhaseOnMaster() throws Exception {
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(null, new WordCountMapper(),
+               new WordCountReducer(), false);
+      Map<String, Integer> mapReduce = task.execute();
+      Integer count = mapReduce.get("Infinispan");
+      assert count == 3;
+      count = mapReduce.get("RedHat");
+      assert count == 2;
+   }
+
+   public void testinvokeMapReduceWithFailingMapper() throws Exception {
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(null, new FailingMapper(),
+               new WordCountReducer());
+      try {
+         task.execute();
+         assert false : "Failure of the map phase should have been reported";
+      } catch (CacheException expected) {
+      }
+      // the cluster can still run tasks once a failed one was cleaned up
+      Map<String, Integer> mapReduce = testinvokeMapReduce(null).execute();
+      assert mapReduce.get("Infinispan") == 3;
+   }
+
+   private static class FailingMapper implements Mapper<String, String, String,Integer> {
+      /** The serialVersionUID */
+      private static final long serialVersionUID = 4150476738546516470L;
+
+      @Override
+      public void map(String key, String value, Collector<String, Integer> collector) {
+         collector.emit(key, 1);
+         if ("JBoss rules".equals(value)) throw new IllegalStateException("Failing on purpose");
+      }
+   }
+
    private static class WordCountMapper implements Mapper<String, String, String,Integer> {
       /** The serialVersionUID */
       private static final long serialVersionUID = -5943370243108735560L;
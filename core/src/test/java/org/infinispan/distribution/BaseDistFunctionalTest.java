@@ -69,6 +69,8 @@ public abstract class BaseDistFunctionalTest extends MultipleCacheManagersTest {
    protected int lockTimeout = 45;
    protected int numVirtualNodes = 1;
    protected boolean groupsEnabled = false;
+   protected boolean staggeredRemoteGets = false;
+   protected Integer rehashChunkSize;
    protected List<Grouper<?>> groupers;
 
    protected void createCacheManagers() throws Throwable {
@@ -87,6 +89,8 @@ public abstract class BaseDistFunctionalTest extends MultipleCacheManagersTest {
       configuration.setLockAcquisitionTimeout(lockTimeout, TimeUnit.SECONDS);
       configuration.setL1CacheEnabled(l1CacheEnabled);
       configuration.fluent().clustering().hash().numVirtualNodes(numVirtualNodes);
+      if (staggeredRemoteGets) configuration.fluent().hash().staggeredRemoteGets(true);
+      if (rehashChunkSize != null) configuration.fluent().hash().rehashChunkSize(rehashChunkSize);
       if (groupsEnabled) {
           configuration.fluent().hash().groupsEnabled(true); 
           configuration.fluent().hash().groupers(groupers);
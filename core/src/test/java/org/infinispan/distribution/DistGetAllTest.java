@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tests {@link org.infinispan.Cache#getAll(java.util.Collection)} in distributed mode.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "distribution.DistGetAllTest")
+public class DistGetAllTest extends BaseDistFunctionalTest {
+
+   public DistGetAllTest() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   public void testGetAllFromSeveralOwners() throws Exception {
+      MagicKey k1 = new MagicKey(c1, "k1");
+      MagicKey k2 = new MagicKey(c2, "k2");
+      MagicKey k3 = new MagicKey(c3, "k3");
+      MagicKey k4 = new MagicKey(c4, "k4");
+      c1.put(k1, "v1");
+      c2.put(k2, "v2");
+      c3.put(k3, "v3");
+      c4.put(k4, "v4");
+
+      for (int i = 0; i < caches.size(); i++) {
+         Map<Object, String> values = caches.get(i).getAll(Arrays.<Object>asList(k1, k2, k3, k4));
+         assert values.size() == 4 : "Expected 4 entries but got " + values;
+         assert "v1".equals(values.get(k1));
+         assert "v2".equals(values.get(k2));
+         assert "v3".equals(values.get(k3));
+         assert "v4".equals(values.get(k4));
+      }
+   }
+
+   public void testMissingKeysAreNotReturned() {
+      MagicKey k1 = new MagicKey(c1, "k1");
+      MagicKey k2 = new MagicKey(c2, "k2");
+      c1.put(k1, "v1");
+
+      Map<Object, String> values = c4.getAll(Arrays.<Object>asList(k1, k2, "nonexistent"));
+      assert values.size() == 1 : "Expected only k1 but got " + values;
+      assert "v1".equals(values.get(k1));
+   }
+
+   public void testRemoteEntriesStoredInL1() {
+      MagicKey k1 = new MagicKey(c1, "k1");
+      MagicKey k2 = new MagicKey(c2, "k2");
+      c1.put(k1, "v1");
+      c2.put(k2, "v2");
+
+      Cache<Object, String> nonOwner = nonOwnerOf(k1, k2);
+      assertIsNotInL1(nonOwner, k1);
+      assertIsNotInL1(nonOwner, k2);
+
+      Map<Object, String> values = nonOwner.getAll(Arrays.<Object>asList(k1, k2));
+      assert values.size() == 2;
+      assertIsInL1(nonOwner, k1);
+      assertIsInL1(nonOwner, k2);
+   }
+
+   public void testSkipRemoteLookup() {
+      MagicKey k1 = new MagicKey(c1, "k1");
+      c1.put(k1, "v1");
+
+      Cache<Object, String> nonOwner = nonOwnerOf(k1, k1);
+      Map<Object, String> values = nonOwner.getAdvancedCache().withFlags(Flag.SKIP_REMOTE_LOOKUP).getAll(Arrays.<Object>asList(k1));
+      assert values.isEmpty() : "Expected no entries but got " + values;
+   }
+
+   public void testGetAllAsync() throws Exception {
+      MagicKey k1 = new MagicKey(c1, "k1");
+      MagicKey k2 = new MagicKey(c2, "k2");
+      c1.put(k1, "v1");
+      c2.put(k2, "v2");
+
+      Map<Object, String> values = c3.getAllAsync(Arrays.<Object>asList(k1, k2)).get();
+      assert values.size() == 2;
+      assert "v1".equals(values.get(k1));
+      assert "v2".equals(values.get(k2));
+   }
+
+   private Cache<Object, String> nonOwnerOf(Object k1, Object k2) {
+      for (Cache<Object, String> c : caches) {
+         if (!isOwner(c, k1) && !isOwner(c, k2)) return c;
+      }
+      throw new IllegalStateException("Every cache owns " + k1 + " or " + k2);
+   }
+}
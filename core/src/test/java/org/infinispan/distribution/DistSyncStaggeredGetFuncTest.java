@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.remoting.transport.Address;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the distribution functional tests with remote gets sent to one owner at a time.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "distribution.DistSyncStaggeredGetFuncTest")
+public class DistSyncStaggeredGetFuncTest extends DistSyncFuncTest {
+   public DistSyncStaggeredGetFuncTest() {
+      sync = true;
+      tx = false;
+      testRetVals = true;
+      staggeredRemoteGets = true;
+   }
+
+   public void testLatencyIsTrackedForOwners() {
+      MagicKey k = new MagicKey(c1, "k");
+      c1.put(k, "value");
+
+      Cache<Object, String> nonOwner = null;
+      for (Cache<Object, String> c : caches) {
+         if (!isOwner(c, k)) nonOwner = c;
+      }
+      assert nonOwner != null;
+      assert "value".equals(nonOwner.get(k));
+
+      DistributionManagerImpl dm = (DistributionManagerImpl) nonOwner.getAdvancedCache().getDistributionManager();
+      int sampled = 0;
+      for (Address owner : dm.locate(k)) {
+         if (dm.getLatencyTracker().getAverageNanos(owner) >= 0) sampled++;
+      }
+      assert sampled > 0 : "At least the owner that answered should have been sampled";
+   }
+}
@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Test(groups = "unit", testName = "distribution.OwnerLatencyTrackerTest")
+public class OwnerLatencyTrackerTest extends AbstractInfinispanTest {
+
+   private final Address a = new TestAddress(1), b = new TestAddress(2), c = new TestAddress(3);
+
+   public void testUnknownOwnersKeepConsistentHashOrder() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker(TimeUnit.SECONDS.toNanos(10));
+      assert tracker.sortByLatency(Arrays.asList(a, b, c)).equals(Arrays.asList(a, b, c));
+      assert tracker.getAverageNanos(a) == -1;
+   }
+
+   public void testFastestOwnerFirst() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker(TimeUnit.SECONDS.toNanos(10));
+      tracker.recordResponse(a, 3000);
+      tracker.recordResponse(b, 1000);
+      tracker.recordResponse(c, 2000);
+      assert tracker.sortByLatency(Arrays.asList(a, b, c)).equals(Arrays.asList(b, c, a));
+   }
+
+   public void testMovingAverage() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker(TimeUnit.SECONDS.toNanos(10));
+      tracker.recordResponse(a, 1000);
+      assert tracker.getAverageNanos(a) == 1000;
+      tracker.recordPending(a, 6000);
+      assert tracker.getAverageNanos(a) == 2000 : "Average is " + tracker.getAverageNanos(a);
+   }
+
+   public void testFailedOwnerLast() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker(TimeUnit.SECONDS.toNanos(10));
+      tracker.recordResponse(a, 1000);
+      tracker.recordResponse(b, 2000);
+      tracker.recordFailure(a);
+      assert !tracker.isHealthy(a);
+      List<Address> sorted = tracker.sortByLatency(Arrays.asList(a, b, c));
+      assert sorted.get(2).equals(a) : "Failed owner should come last: " + sorted;
+
+      tracker.recordResponse(a, 1000);
+      assert tracker.isHealthy(a);
+   }
+
+   public void testQuarantineExpires() throws Exception {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker(TimeUnit.MILLISECONDS.toNanos(10));
+      tracker.recordFailure(a);
+      Thread.sleep(50);
+      assert tracker.isHealthy(a);
+   }
+
+   public void testRetainAll() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker(TimeUnit.SECONDS.toNanos(10));
+      tracker.recordResponse(a, 1000);
+      tracker.recordResponse(b, 1000);
+      tracker.retainAll(Collections.singleton(b));
+      assert tracker.getAverageNanos(a) == -1;
+      assert tracker.getAverageNanos(b) == 1000;
+   }
+}
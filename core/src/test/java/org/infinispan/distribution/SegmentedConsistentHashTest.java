@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.hash.MurmurHash3;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+
+@Test(groups = "unit", testName = "distribution.SegmentedConsistentHashTest")
+public class SegmentedConsistentHashTest extends AbstractInfinispanTest {
+
+   private List<Address> createAddresses(int numNodes) {
+      List<Address> addresses = new ArrayList<Address>(numNodes);
+      for (int i = 0; i < numNodes; i++) addresses.add(new TestAddress(i));
+      return addresses;
+   }
+
+   private SegmentedConsistentHash createConsistentHash(List<Address> servers, int numVirtualNodes, int numOwners) {
+      Configuration c = new Configuration().fluent()
+            .hash().consistentHashClass(SegmentedConsistentHash.class)
+            .numVirtualNodes(numVirtualNodes).numOwners(numOwners)
+            .build();
+      return (SegmentedConsistentHash) ConsistentHashHelper.createConsistentHash(c, servers);
+   }
+
+   public void testEveryNumOwners() {
+      List<Address> servers = createAddresses(6);
+      SegmentedConsistentHash ch = createConsistentHash(servers, 10, 2);
+      for (int i = 0; i < 1000; i++) {
+         for (int replCount = 1; replCount <= 8; replCount++) {
+            List<Address> owners = ch.locate(i, replCount);
+            assertEquals(owners.size(), Math.min(replCount, servers.size()));
+            assertEquals(new HashSet<Address>(owners).size(), owners.size(), "Duplicate owners " + owners);
+            // a lookup for fewer owners must return a prefix of a lookup for more owners
+            assertEquals(owners.subList(0, 1), ch.locate(i, 1));
+         }
+      }
+   }
+
+   public void testKeysInSameSegmentShareOwners() {
+      SegmentedConsistentHash ch = createConsistentHash(createAddresses(4), 1, 2);
+      for (int i = 0; i < 1000; i++) {
+         assertSame(ch.locate(i, 2), ch.getSegmentOwners(ch.getSegment(i)));
+      }
+   }
+
+   public void testOneSegmentPerHashMatchesDefaultConsistentHash() {
+      List<Address> servers = createAddresses(5);
+      DefaultConsistentHash dch = new DefaultConsistentHash(new MurmurHash3());
+      dch.setNumVirtualNodes(3);
+      dch.setCaches(new HashSet<Address>(servers));
+
+      // with a segment for every position on the wheel each key is at the start of its segment
+      SegmentedConsistentHash sch = new SegmentedConsistentHash(new MurmurHash3());
+      sch.setNumVirtualNodes(3);
+      sch.setNumSegments(dch.getHashSpace());
+      sch.setNumOwners(2);
+      sch.setCaches(new HashSet<Address>(servers));
+
+      for (int i = 0; i < 1000; i++) {
+         for (int replCount = 1; replCount <= 3; replCount++) {
+            assertEquals(sch.locate(i, replCount), dch.locate(i, replCount));
+         }
+      }
+   }
+
+   public void testTemplateKeepsSegmentSettings() {
+      SegmentedConsistentHash ch = new SegmentedConsistentHash(new MurmurHash3());
+      ch.setNumSegments(64);
+      ch.setNumOwners(3);
+      ch.setCaches(new HashSet<Address>(createAddresses(4)));
+
+      SegmentedConsistentHash copy = (SegmentedConsistentHash) ConsistentHashHelper.createConsistentHash(ch, ch.getCaches());
+      assertEquals(copy.getNumSegments(), 64);
+      assertEquals(copy.getNumOwners(), 3);
+      assertEquals(copy, ch);
+
+      SegmentedConsistentHash other = (SegmentedConsistentHash) ConsistentHashHelper.createConsistentHash(ch, createAddresses(5));
+      assertFalse(other.equals(ch));
+   }
+}
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.topologyaware;
+
+import org.easymock.IAnswer;
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.TestTopologyAwareAddress;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.responses.UnsureResponse;
+import org.infinispan.remoting.rpc.NearestFirstClusteredGet;
+import org.infinispan.remoting.rpc.ResponseFilter;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyDistanceComparator;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.easymock.EasyMock.*;
+
+@Test(groups = "unit", testName = "topologyaware.NearestFirstClusteredGetTest")
+public class NearestFirstClusteredGetTest extends AbstractInfinispanTest {
+
+   private static final long TIMEOUT = 1000;
+
+   private final Address self = new TestTopologyAwareAddress(0, "s0", "r0", "m0");
+   private final Address sameRack = new TestTopologyAwareAddress(1, "s0", "r0", "m1");
+   private final Address sameRack2 = new TestTopologyAwareAddress(2, "s0", "r0", "m2");
+   private final Address otherSite = new TestTopologyAwareAddress(3, "s1", "r0", "m0");
+   private final List<Address> members = Arrays.asList(otherSite, sameRack, sameRack2);
+   private final ClusteredGetCommand get = new ClusteredGetCommand("k", "cache");
+
+   public void testStopsAtGroupWithValue() {
+      RpcManager rpcManager = createMock(RpcManager.class);
+      expectGet(rpcManager, Arrays.asList(sameRack, sameRack2), replies(sameRack, null, sameRack2, value()));
+      replay(rpcManager);
+
+      Map<Address, Response> responses = invoke(rpcManager, null);
+      assert responses.get(sameRack2) instanceof SuccessfulResponse : responses;
+      verify(rpcManager);
+   }
+
+   public void testStopsWhenEveryMemberOfGroupMisses() {
+      RpcManager rpcManager = createMock(RpcManager.class);
+      expectGet(rpcManager, Arrays.asList(sameRack, sameRack2), replies(sameRack, null, sameRack2, null));
+      replay(rpcManager);
+
+      assert invoke(rpcManager, null).isEmpty();
+      verify(rpcManager);
+   }
+
+   public void testUnsureResponseAsksNextGroup() {
+      RpcManager rpcManager = createMock(RpcManager.class);
+      expectGet(rpcManager, Arrays.asList(sameRack, sameRack2), replies(sameRack, UnsureResponse.INSTANCE, sameRack2, null));
+      expectGet(rpcManager, Arrays.asList(otherSite), replies(otherSite, value()));
+      replay(rpcManager);
+
+      Map<Address, Response> responses = invoke(rpcManager, null);
+      assert responses.get(otherSite) instanceof SuccessfulResponse : responses;
+      verify(rpcManager);
+   }
+
+   public void testMissingReplyAsksNextGroup() {
+      RpcManager rpcManager = createMock(RpcManager.class);
+      expectGet(rpcManager, Arrays.asList(sameRack, sameRack2), replies(sameRack, null));
+      expectGet(rpcManager, Arrays.asList(otherSite), replies(otherSite, null));
+      replay(rpcManager);
+
+      assert invoke(rpcManager, null).isEmpty();
+      verify(rpcManager);
+   }
+
+   public void testMissDuringRehashAsksNextGroup() {
+      DistributionManager distributionManager = createMock(DistributionManager.class);
+      expect(distributionManager.isRehashInProgress()).andReturn(true).anyTimes();
+      expect(distributionManager.isJoinComplete()).andReturn(true).anyTimes();
+      RpcManager rpcManager = createMock(RpcManager.class);
+      expectGet(rpcManager, Arrays.asList(sameRack, sameRack2), replies(sameRack, null, sameRack2, null));
+      expectGet(rpcManager, Arrays.asList(otherSite), replies(otherSite, value()));
+      replay(rpcManager, distributionManager);
+
+      Map<Address, Response> responses = invoke(rpcManager, distributionManager);
+      assert responses.get(otherSite) instanceof SuccessfulResponse : responses;
+      verify(rpcManager);
+   }
+
+   private Map<Address, Response> invoke(RpcManager rpcManager, DistributionManager distributionManager) {
+      NearestFirstClusteredGet nearestFirstGet = new NearestFirstClusteredGet(rpcManager,
+            new TopologyDistanceComparator(self), distributionManager);
+      return nearestFirstGet.invoke(members, get, ResponseMode.SYNCHRONOUS, TIMEOUT);
+   }
+
+   private void expectGet(RpcManager rpcManager, List<Address> group, final Map<Address, Response> replies) {
+      expect(rpcManager.invokeRemotely(eq(group), same(get), eq(ResponseMode.SYNCHRONOUS), eq(TIMEOUT), eq(false),
+                                       isA(ResponseFilter.class)))
+            .andAnswer(new IAnswer<Map<Address, Response>>() {
+               public Map<Address, Response> answer() {
+                  // feed the replies through the filter, like the transport does; null replies are not returned
+                  ResponseFilter filter = (ResponseFilter) getCurrentArguments()[5];
+                  Map<Address, Response> responses = new HashMap<Address, Response>();
+                  for (Map.Entry<Address, Response> e : replies.entrySet()) {
+                     filter.isAcceptable(e.getValue(), e.getKey());
+                     if (e.getValue() != null) responses.put(e.getKey(), e.getValue());
+                  }
+                  return responses;
+               }
+            });
+   }
+
+   private static Map<Address, Response> replies(Object... sendersAndResponses) {
+      Map<Address, Response> replies = new HashMap<Address, Response>();
+      for (int i = 0; i < sendersAndResponses.length; i += 2)
+         replies.put((Address) sendersAndResponses[i], (Response) sendersAndResponses[i + 1]);
+      return replies;
+   }
+
+   private static Response value() {
+      return new SuccessfulResponse("v");
+   }
+}
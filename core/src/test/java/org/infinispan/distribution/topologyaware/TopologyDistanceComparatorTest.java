@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.topologyaware;
+
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.distribution.TestTopologyAwareAddress;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyDistanceComparator;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.infinispan.remoting.transport.TopologyDistanceComparator.*;
+
+@Test(groups = "unit", testName = "topologyaware.TopologyDistanceComparatorTest")
+public class TopologyDistanceComparatorTest extends AbstractInfinispanTest {
+
+   private final Address self = new TestTopologyAwareAddress(0, "s0", "r0", "m0");
+   private final Address sameMachine = new TestTopologyAwareAddress(1, "s0", "r0", "m0");
+   private final Address sameRack = new TestTopologyAwareAddress(2, "s0", "r0", "m1");
+   private final Address sameSite = new TestTopologyAwareAddress(3, "s0", "r1", "m2");
+   private final Address otherSite = new TestTopologyAwareAddress(4, "s1", "r0", "m0");
+
+   public void testDistance() {
+      assert distance(self, self) == SAME_NODE;
+      assert distance(self, sameMachine) == SAME_MACHINE;
+      assert distance(self, sameRack) == SAME_RACK;
+      assert distance(self, sameSite) == SAME_SITE;
+      assert distance(self, otherSite) == REMOTE_SITE;
+   }
+
+   public void testSortNearestFirst() {
+      TopologyDistanceComparator nearestFirst = new TopologyDistanceComparator(self);
+      List<Address> sorted = nearestFirst.sort(Arrays.asList(otherSite, sameSite, sameRack, sameMachine));
+      assert sorted.equals(Arrays.asList(sameMachine, sameRack, sameSite, otherSite)) : sorted;
+   }
+
+   public void testSortIsStable() {
+      Address sameRack2 = new TestTopologyAwareAddress(5, "s0", "r0", "m3");
+      TopologyDistanceComparator nearestFirst = new TopologyDistanceComparator(self);
+      List<Address> sorted = nearestFirst.sort(Arrays.asList(otherSite, sameRack2, sameRack));
+      assert sorted.equals(Arrays.asList(sameRack2, sameRack, otherSite)) : sorted;
+   }
+
+   public void testGroupByDistance() {
+      Address sameSite2 = new TestTopologyAwareAddress(5, "s0", "r2", "m3");
+      TopologyDistanceComparator nearestFirst = new TopologyDistanceComparator(self);
+      List<List<Address>> groups = nearestFirst.groupByDistance(Arrays.asList(otherSite, sameSite, sameSite2, sameRack));
+      assert groups.size() == 3 : groups;
+      assert groups.get(0).equals(Arrays.asList(sameRack));
+      assert groups.get(1).equals(Arrays.asList(sameSite, sameSite2));
+      assert groups.get(2).equals(Arrays.asList(otherSite));
+   }
+
+   public void testNonTopologyAwareAddressesAreEquallyFar() {
+      Address a = new TestAddress(1), b = new TestAddress(2), c = new TestAddress(3);
+      TopologyDistanceComparator nearestFirst = new TopologyDistanceComparator(a);
+      assert nearestFirst.groupByDistance(Arrays.asList(b, c)).size() == 1;
+      assert nearestFirst.sort(Arrays.asList(c, b)).equals(Arrays.asList(c, b));
+   }
+}
@@ -44,7 +44,7 @@ import static org.testng.Assert.*;
 @Test(testName = "distribution.VNodesCHPerfTest", groups = "manual")
 public class VNodesCHPerfTest extends AbstractInfinispanTest {
 
-   private Set<Address> createAddresses(int numNodes) {
+   protected Set<Address> createAddresses(int numNodes) {
       Set<Address> addresses = new HashSet<Address>(numNodes);
       for (int i = 0; i < numNodes; i++) {
          addresses.add(new JGroupsAddress(org.jgroups.util.UUID.randomUUID()));
@@ -81,7 +81,7 @@ public class VNodesCHPerfTest extends AbstractInfinispanTest {
       return duration;
    }
 
-   private ConsistentHash createConsistentHash(int numNodes) {
+   protected ConsistentHash createConsistentHash(int numNodes) {
       Configuration c = new Configuration();
       c.fluent().hash()
             .consistentHashClass(DefaultConsistentHash.class)
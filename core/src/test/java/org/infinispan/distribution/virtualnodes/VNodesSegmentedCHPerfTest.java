@@ -0,0 +1,49 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.virtualnodes;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the {@link VNodesCHPerfTest} lookups against the {@link SegmentedConsistentHash}, precomputing as many owners
+ * as the largest <code>numOwners</code> used by the test.
+ *
+ * @since 5.0
+ */
+@Test(testName = "distribution.VNodesSegmentedCHPerfTest", groups = "manual")
+public class VNodesSegmentedCHPerfTest extends VNodesCHPerfTest {
+
+   @Override
+   protected ConsistentHash createConsistentHash(int numNodes) {
+      Configuration c = new Configuration();
+      c.fluent().hash()
+            .consistentHashClass(SegmentedConsistentHash.class)
+            .numVirtualNodes(10)
+            .numOwners(4);
+      return ConsistentHashHelper.createConsistentHash(c, createAddresses(numNodes));
+   }
+}
@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.ByteArrayKey;
+import org.testng.annotations.Test;
+
+import java.util.Date;
+
+/**
+ * Tests that {@link MarshalledEntrySizeEstimator} only marshalls a sample of the objects it measures.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "eviction.MarshalledEntrySizeEstimatorTest")
+public class MarshalledEntrySizeEstimatorTest extends AbstractInfinispanTest {
+
+   public void testBinaryFormsNotMarshalled() {
+      CountingEstimator estimator = new CountingEstimator();
+      assert estimator.sizeOf(new byte[10]) == 10;
+      assert estimator.sizeOf(new ByteArrayKey(new byte[20])) == 20;
+      assert estimator.sizeOf("abc") == 6;
+      assert estimator.marshalled == 0;
+   }
+
+   public void testSerializedMarshalledValueNotMarshalledAgain() {
+      CountingEstimator estimator = new CountingEstimator();
+      MarshalledValue mv = new MarshalledValue(new Date(), true, new TestObjectStreamMarshaller());
+      byte[] raw = mv.serialize();
+      assert estimator.sizeOf(mv) == raw.length;
+      assert estimator.marshalled == 0;
+   }
+
+   public void testClassEstimateIsSampled() {
+      CountingEstimator estimator = new CountingEstimator();
+      int puts = MarshalledEntrySizeEstimator.SAMPLE_INTERVAL * 2;
+      for (int i = 0; i < puts; i++) {
+         assert estimator.sizeOf(new Date(i)) > 0;
+      }
+      assert estimator.marshalled == MarshalledEntrySizeEstimator.INITIAL_SAMPLES + 2
+            : "Marshalled " + estimator.marshalled + " times";
+   }
+
+   private static class CountingEstimator extends MarshalledEntrySizeEstimator {
+      int marshalled;
+
+      CountingEstimator() {
+         injectMarshaller(new TestObjectStreamMarshaller());
+      }
+
+      @Override
+      int marshalledSize(Object o) {
+         marshalled++;
+         return super.marshalledSize(o);
+      }
+   }
+}
@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * Tests eviction bounded by the estimated memory taken up by the cache entries rather than by their number.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "eviction.MemoryBoundedEvictionTest")
+public class MemoryBoundedEvictionTest extends SingleCacheManagerTest {
+
+   private static final long MAX_MEMORY = 1024 * 1024;
+
+   protected EvictionStrategy getEvictionStrategy() {
+      return EvictionStrategy.LRU;
+   }
+
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration cfg = new Configuration().fluent()
+            .eviction().strategy(getEvictionStrategy()).maxMemory(MAX_MEMORY)
+            .build();
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(cfg);
+      cache = cm.getCache();
+      return cm;
+   }
+
+   public void testMemoryStaysBounded() {
+      DataContainer dc = TestingUtil.extractComponent(cache, DataContainer.class);
+      assert dc instanceof DefaultDataContainer;
+      DefaultDataContainer container = (DefaultDataContainer) dc;
+      Random r = new Random(1);
+      for (int i = 0; i < 2000; i++) {
+         // values vary from a few bytes up to 8k
+         cache.put("key-" + r.nextInt(1000), new byte[1 + r.nextInt(8192)]);
+         assert container.getMemorySize() <= MAX_MEMORY : "memory bound exceeded: " + container.getMemorySize();
+      }
+
+      long expected = 0;
+      for (InternalCacheEntry e : container) {
+         expected += MarshalledEntrySizeEstimator.ENTRY_OVERHEAD + ((String) e.getKey()).length() * 2
+               + ((byte[]) e.getValue()).length;
+      }
+      assert container.size() > 0;
+      assert container.getMemorySize() == expected : "expected " + expected + " but was " + container.getMemorySize();
+   }
+
+   public void testOverwriteUpdatesMemorySize() {
+      DefaultDataContainer container = (DefaultDataContainer) TestingUtil.extractComponent(cache, DataContainer.class);
+      cache.put("k", new byte[1000]);
+      long small = container.getMemorySize();
+      cache.put("k", new byte[5000]);
+      assert container.getMemorySize() == small + 4000;
+      cache.remove("k");
+      assert container.getMemorySize() == 0;
+   }
+}
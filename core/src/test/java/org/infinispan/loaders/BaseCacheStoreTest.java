@@ -482,6 +482,27 @@ public abstract class BaseCacheStoreTest extends AbstractInfinispanTest {
       assert expected.isEmpty();
    }
 
+   public void testStoreAllAndLoadAllKeys() throws CacheLoaderException {
+      cs.store(InternalEntryFactory.create("k1", "v0"));
+      List<InternalCacheEntry> entries = new ArrayList<InternalCacheEntry>();
+      entries.add(InternalEntryFactory.create("k1", "v1"));
+      entries.add(InternalEntryFactory.create("k2", "v2"));
+      entries.add(InternalEntryFactory.create("k3", "v3"));
+      BulkOperations.storeAll(cs, entries);
+
+      assert cs.load("k3").getValue().equals("v3");
+
+      Set<InternalCacheEntry> set = BulkOperations.loadAll(cs, Arrays.asList("k1", "k2", "k4"));
+      assert set.size() == 2 : "Expected k1 and k2 but got " + set;
+      Map expected = new HashMap();
+      expected.put("k1", "v1");
+      expected.put("k2", "v2");
+      for (InternalCacheEntry se : set) assert expected.remove(se.getKey()).equals(se.getValue());
+      assert expected.isEmpty();
+
+      assert BulkOperations.loadAll(cs, Collections.emptySet()).isEmpty();
+   }
+
    public void testPurgeExpired() throws Exception {
       // Increased lifespan and idle timeouts to accommodate slower cache stores
       long lifespan = 6000;
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.decorators;
+
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.dummy.DummyInMemoryCacheStore;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tests that the write-behind store coalesces modifications within a batch window and hands them to the underlying
+ * store as a single batch.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "loaders.decorators.AsyncStoreBatchingTest")
+public class AsyncStoreBatchingTest extends AbstractInfinispanTest {
+   AsyncStore store;
+   BatchRecordingStore underlying;
+
+   @AfterMethod
+   public void tearDown() throws CacheLoaderException {
+      if (store != null) store.stop();
+   }
+
+   private void startStore(String name, AsyncStoreConfig asyncConfig) throws CacheLoaderException {
+      underlying = new BatchRecordingStore();
+      store = new AsyncStore(underlying, asyncConfig);
+      store.init(new DummyInMemoryCacheStore.Cfg().storeName(AsyncStoreBatchingTest.class.getName() + "-" + name), null, null);
+      store.start();
+   }
+
+   public void testModificationsCoalescedWithinWindow() throws Exception {
+      startStore("window", new AsyncStoreConfig().batchWindow(1000L));
+      for (int i = 0; i < 10; i++) store.store(InternalEntryFactory.create("k" + i, "v" + i));
+      for (int i = 0; i < 10; i++) store.store(InternalEntryFactory.create("k" + i, "v" + i + "-updated"));
+      store.remove("k0");
+
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return !underlying.batches.isEmpty();
+         }
+      });
+
+      assert underlying.batches.size() == 1 : "Expected a single batch but got " + underlying.batches;
+      assert underlying.batches.get(0).size() == 10 : "Expected one modification per key but got " + underlying.batches.get(0);
+      assert underlying.load("k0") == null;
+      for (int i = 1; i < 10; i++) assert underlying.load("k" + i).getValue().equals("v" + i + "-updated");
+
+      assert store.getFlushCount() == 1;
+      assert store.getFlushedModificationCount() == 10;
+      assert store.getQueueDepth() == 0;
+      assert store.getPendingModifications() == 0;
+      store.resetStatistics();
+      assert store.getFlushCount() == 0;
+      assert store.getMaxFlushTime() == 0;
+   }
+
+   public void testMaxBatchSizeFlushesBeforeWindowElapses() throws Exception {
+      startStore("maxBatchSize", new AsyncStoreConfig().batchWindow(60000L).maxBatchSize(5));
+      for (int i = 0; i < 5; i++) store.store(InternalEntryFactory.create("k" + i, "v" + i));
+
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return underlying.load("k4") != null;
+         }
+      }, 5000);
+
+      int flushed = 0;
+      for (List<Modification> batch : underlying.batches) flushed += batch.size();
+      assert flushed == 5 : "Expected all 5 modifications to be flushed but got " + underlying.batches;
+   }
+
+   public void testPendingModificationsFlushedOnStop() throws Exception {
+      startStore("stop", new AsyncStoreConfig().batchWindow(60000L));
+      store.store(InternalEntryFactory.create("k", "v"));
+      store.stop();
+      store = null;
+      assert underlying.load("k").getValue().equals("v");
+   }
+
+   static class BatchRecordingStore extends DummyInMemoryCacheStore {
+      final List<List<Modification>> batches = new CopyOnWriteArrayList<List<Modification>>();
+
+      @Override
+      protected void applyModifications(List<? extends Modification> mods) throws CacheLoaderException {
+         batches.add(new ArrayList<Modification>(mods));
+         super.applyModifications(mods);
+      }
+   }
+}
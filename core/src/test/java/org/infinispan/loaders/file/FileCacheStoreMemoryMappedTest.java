@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.file;
+
+import java.io.File;
+
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.bucket.Bucket;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "loaders.file.FileCacheStoreMemoryMappedTest")
+public class FileCacheStoreMemoryMappedTest extends FileCacheStoreTest {
+
+   @Override
+   protected CacheStore createCacheStore() throws CacheLoaderException {
+      clearTempDir();
+      fcs = new FileCacheStore();
+      fcs.init(createConfig(true), getCache(), getMarshaller());
+      fcs.start();
+      return fcs;
+   }
+
+   private FileCacheStoreConfig createConfig(boolean memoryMappedReads) {
+      return new FileCacheStoreConfig()
+         .fetchPersistentState(true)
+         .location(tmpDirectory)
+         .memoryMappedReads(memoryMappedReads)
+         .mappedFileCacheSize(16)
+         .purgeSynchronously(true);
+   }
+
+   @Override
+   protected void checkBucketExists(Bucket b) {
+      // Emptied buckets are deleted rather than truncated
+      assert !new File(fcs.root, b.getBucketIdAsString()).exists();
+   }
+
+   public void testLoadFromSharedBucket() throws Exception {
+      // "Aa" and "BB" have the same hash code, so they end up in the same bucket
+      assert "Aa".hashCode() == "BB".hashCode();
+      cs.store(InternalEntryFactory.create("Aa", "v1"));
+      cs.store(InternalEntryFactory.create("BB", "v2"));
+      assert fcs.loadBucketContainingKey("Aa").getNumEntries() == 2;
+      assert cs.load("Aa").getValue().equals("v1");
+      assert cs.load("BB").getValue().equals("v2");
+
+      cs.remove("Aa");
+      assert cs.load("Aa") == null;
+      assert cs.load("BB").getValue().equals("v2");
+   }
+
+   public void testReplacedBucketIsRemapped() throws Exception {
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      assert cs.load("k1").getValue().equals("v1");
+      assert fcs.mappedBuckets.containsKey(new File(fcs.root, String.valueOf("k1".hashCode())).getPath());
+
+      cs.store(InternalEntryFactory.create("k1", "v2"));
+      assert cs.load("k1").getValue().equals("v2");
+   }
+
+   public void testMappedFileCacheIsBounded() throws Exception {
+      for (int i = 0; i < 1000; i++) cs.store(InternalEntryFactory.create("k" + i, "v" + i));
+      for (int i = 0; i < 1000; i++) assert cs.load("k" + i).getValue().equals("v" + i);
+      assert fcs.mappedBuckets.size() <= 16;
+   }
+
+   public void testReadBucketsWrittenWithoutMemoryMapping() throws Exception {
+      cs.stop();
+      fcs = new FileCacheStore();
+      fcs.init(createConfig(false), getCache(), getMarshaller());
+      fcs.start();
+      fcs.store(InternalEntryFactory.create("k1", "v1"));
+      fcs.stop();
+
+      fcs.init(createConfig(true), getCache(), getMarshaller());
+      fcs.start();
+      cs = fcs;
+      assert cs.load("k1").getValue().equals("v1");
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      assert cs.load("k2").getValue().equals("v2");
+      assert cs.loadAll().size() == 2;
+   }
+}
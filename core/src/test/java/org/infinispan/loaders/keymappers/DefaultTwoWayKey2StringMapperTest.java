@@ -22,6 +22,7 @@
  */
 package org.infinispan.loaders.keymappers;
 
+import org.infinispan.util.ByteArrayKey;
 import org.testng.annotations.Test;
 
 @Test(groups = "unit", testName = "loaders.keymappers.DefaultTwoWayKey2StringMapperTest")
@@ -126,6 +127,12 @@ public class DefaultTwoWayKey2StringMapperTest {
       assert assertWorks(false);
    }
 
+   public void testByteArrayKey() {
+      assert mapper.isSupportedType(ByteArrayKey.class);
+      assert assertWorks(new ByteArrayKey(new byte[] {0, 1, -1, 127, -128}));
+      assert assertWorks(new ByteArrayKey(new byte[0]));
+   }
+
    private boolean assertWorks(Object key) {
       return mapper.getKeyMapping(mapper.getStringMapping(key)).equals(key);
    }
@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logstructured;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.BaseCacheStoreTest;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "loaders.logstructured.LogStructuredCacheStoreTest")
+public class LogStructuredCacheStoreTest extends BaseCacheStoreTest {
+
+   String tmpDirectory;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional(value = "/tmp") String basedir) {
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @AfterClass
+   protected void clearTempDir() {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+      new File(tmpDirectory).mkdirs();
+   }
+
+   @Override
+   protected CacheStore createCacheStore() throws CacheLoaderException {
+      clearTempDir();
+      return startStore(createConfig());
+   }
+
+   protected LogStructuredCacheStoreConfig createConfig() {
+      return new LogStructuredCacheStoreConfig()
+         .fetchPersistentState(true)
+         .location(tmpDirectory)
+         .purgeSynchronously(true); // for more accurate unit testing
+   }
+
+   private LogStructuredCacheStore startStore(LogStructuredCacheStoreConfig cfg) throws CacheLoaderException {
+      LogStructuredCacheStore store = new LogStructuredCacheStore();
+      store.init(cfg, getCache(), getMarshaller());
+      store.start();
+      return store;
+   }
+
+   public void testRecoveryFromHints() throws CacheLoaderException {
+      cs.stop();
+      LogStructuredCacheStore store = startStore(createConfig().maxSegmentSize(512));
+      try {
+         for (int i = 0; i < 100; i++) store.store(InternalEntryFactory.create("k" + i, "v" + i));
+         for (int i = 0; i < 100; i += 2) store.store(InternalEntryFactory.create("k" + i, "v" + i + "-updated"));
+         for (int i = 0; i < 100; i += 5) store.remove("k" + i);
+         assert segmentFiles(store.getRoot()).length > 1;
+      } finally {
+         store.stop();
+      }
+
+      store = startStore(createConfig().maxSegmentSize(512));
+      try {
+         assertRecovered(store);
+      } finally {
+         store.stop();
+      }
+   }
+
+   public void testRecoveryTruncatesPartialWrite() throws Exception {
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      cs.stop();
+
+      // Simulate a crash in the middle of an append: no hint, and a truncated record at the end of the segment
+      File root = ((LogStructuredCacheStore) cs).getRoot();
+      File[] segments = segmentFiles(root);
+      assert segments.length == 1;
+      File segment = segments[0];
+      assert new File(root, segment.getName().replace(LogSegment.SEGMENT_SUFFIX, LogSegment.HINT_SUFFIX)).delete();
+      long length = segment.length();
+      FileOutputStream out = new FileOutputStream(segment, true);
+      try {
+         out.write(new byte[]{0, 0, 0, 5, 0, 0, 0, 7, 1, 2, 3});
+      } finally {
+         out.close();
+      }
+      assert segment.length() > length;
+
+      cs = startStore(createConfig());
+      assert segment.length() == length;
+      assert cs.load("k1").getValue().equals("v1");
+      assert cs.load("k2").getValue().equals("v2");
+      cs.store(InternalEntryFactory.create("k3", "v3"));
+      assert cs.load("k3").getValue().equals("v3");
+   }
+
+   public void testCompaction() throws CacheLoaderException {
+      cs.stop();
+      LogStructuredCacheStoreConfig cfg = createConfig().maxSegmentSize(4096).compactionThreshold(0.5f);
+      LogStructuredCacheStore store = startStore(cfg);
+      try {
+         for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 10; i++) store.store(InternalEntryFactory.create("k" + i, "v" + i + "-" + round));
+         }
+         store.store(InternalEntryFactory.create("removed", "value"));
+         store.remove("removed");
+         store.compact();
+         // Without compaction, the 500 overwrites would take up dozens of segments
+         int segments = segmentFiles(store.getRoot()).length;
+         assert segments <= 5 : "Expected at most 5 segments after compaction, but there are " + segments;
+         for (int i = 0; i < 10; i++) assert store.load("k" + i).getValue().equals("v" + i + "-49");
+         assert store.load("removed") == null;
+      } finally {
+         store.stop();
+      }
+
+      store = startStore(cfg);
+      try {
+         for (int i = 0; i < 10; i++) assert store.load("k" + i).getValue().equals("v" + i + "-49");
+         assert !store.containsKey("removed");
+      } finally {
+         store.stop();
+      }
+   }
+
+   public void testMemoryMappedReads() throws CacheLoaderException {
+      cs.stop();
+      LogStructuredCacheStoreConfig cfg = createConfig().maxSegmentSize(512).memoryMappedReads(true);
+      LogStructuredCacheStore store = startStore(cfg);
+      try {
+         for (int i = 0; i < 100; i++) store.store(InternalEntryFactory.create("k" + i, "v" + i));
+         for (int i = 0; i < 100; i++) assert store.load("k" + i).getValue().equals("v" + i);
+      } finally {
+         store.stop();
+      }
+
+      store = startStore(cfg);
+      try {
+         for (int i = 0; i < 100; i++) assert store.load("k" + i).getValue().equals("v" + i);
+      } finally {
+         store.stop();
+      }
+   }
+
+   private void assertRecovered(CacheStore store) throws CacheLoaderException {
+      for (int i = 0; i < 100; i++) {
+         if (i % 5 == 0) {
+            assert store.load("k" + i) == null;
+         } else {
+            String expected = i % 2 == 0 ? "v" + i + "-updated" : "v" + i;
+            assert store.load("k" + i).getValue().equals(expected);
+         }
+      }
+   }
+
+   private File[] segmentFiles(File root) {
+      return root.listFiles(new FileFilter() {
+         @Override
+         public boolean accept(File f) {
+            return f.getName().endsWith(LogSegment.SEGMENT_SUFFIX);
+         }
+      });
+   }
+}
@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lock;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.context.Flag;
+import org.infinispan.distribution.MagicKey;
+import org.infinispan.test.fwk.CleanupAfterMethod;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Transaction;
+
+/**
+ * Runs the optimistic locking tests on a distributed cache where every key has a single owner, so that transactions
+ * also write keys owned by the other node.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "lock.DistOptimisticLockingTest")
+@CleanupAfterMethod
+public class DistOptimisticLockingTest extends OptimisticLockingTest {
+
+   @Override
+   protected Configuration createConfig() {
+      Configuration cfg = super.createConfig();
+      cfg.setCacheMode(Configuration.CacheMode.DIST_SYNC);
+      cfg.setNumOwners(1);
+      cfg.setL1CacheEnabled(false);
+      return cfg;
+   }
+
+   @Override
+   protected int numOwners() {
+      return 1;
+   }
+
+   public void testOverwriteOfRemoteKey() throws Exception {
+      Cache<Object, String> cache0 = cache(0), cache1 = cache(1);
+      MagicKey key = new MagicKey(cache1);
+      cache1.put(key, "v");
+
+      tm(0).begin();
+      assert "v".equals(cache0.put(key, "v0"));
+      tm(0).commit();
+
+      assert "v0".equals(cache1.get(key));
+      assert versionOnOwners(key) > 0;
+   }
+
+   public void testBlindWriteToRemoteKey() throws Exception {
+      Cache<Object, String> cache0 = cache(0), cache1 = cache(1);
+      MagicKey key = new MagicKey(cache1);
+      cache1.put(key, "v");
+
+      tm(0).begin();
+      cache0.getAdvancedCache().withFlags(Flag.SKIP_REMOTE_LOOKUP).put(key, "v0");
+      tm(0).commit();
+
+      assert "v0".equals(cache1.get(key));
+   }
+
+   public void testConflictOnRemoteKeyIsDetected() throws Exception {
+      Cache<Object, String> cache0 = cache(0), cache1 = cache(1);
+      MagicKey key = new MagicKey(cache1);
+      cache1.put(key, "v");
+
+      tm(0).begin();
+      assert "v".equals(cache0.get(key));
+      cache0.put(key, "v0");
+      Transaction tx = tm(0).suspend();
+
+      tm(1).begin();
+      cache1.put(key, "v1");
+      tm(1).commit();
+
+      tm(0).resume(tx);
+      try {
+         tm(0).commit();
+         assert false : "The transaction should have failed validation";
+      } catch (RollbackException expected) {
+      }
+
+      assert "v1".equals(cache0.get(key));
+      assert "v1".equals(cache1.get(key));
+   }
+}
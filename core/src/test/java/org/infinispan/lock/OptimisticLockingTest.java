@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lock;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.CleanupAfterMethod;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Transaction;
+
+/**
+ * Tests optimistic locking, where locks are only acquired and versions validated when a transaction prepares.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "lock.OptimisticLockingTest")
+@CleanupAfterMethod
+public class OptimisticLockingTest extends MultipleCacheManagersTest {
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      createClusteredCaches(2, createConfig());
+   }
+
+   protected Configuration createConfig() {
+      Configuration cfg = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC, true);
+      cfg.fluent().locking()
+            .isolationLevel(IsolationLevel.REPEATABLE_READ)
+            .lockAcquisitionTimeout(500L)
+            .optimistic(true);
+      return cfg;
+   }
+
+   /**
+    * @return the number of nodes holding each key
+    */
+   protected int numOwners() {
+      return 2;
+   }
+
+   public void testWritesDoNotLockBeforePrepare() throws Exception {
+      Cache<String, String> cache0 = cache(0);
+      cache0.put("k", "v");
+
+      tm(0).begin();
+      cache0.put("k", "v1");
+      assert !lockManager(0).isLocked("k");
+      Transaction tx = tm(0).suspend();
+
+      // a concurrent writer is not blocked, and wins
+      tm(0).begin();
+      cache0.put("k", "v2");
+      tm(0).commit();
+
+      tm(0).resume(tx);
+      try {
+         tm(0).commit();
+         assert false : "The transaction should have failed validation";
+      } catch (RollbackException expected) {
+      }
+
+      assert "v2".equals(cache(0).get("k"));
+      assert "v2".equals(cache(1).get("k"));
+      assertNotLocked("k");
+   }
+
+   public void testConflictWithRemoteTransaction() throws Exception {
+      Cache<String, String> cache0 = cache(0), cache1 = cache(1);
+      cache0.put("k", "v");
+
+      tm(0).begin();
+      assert "v".equals(cache0.get("k"));
+      cache0.put("k", "v0");
+      Transaction tx = tm(0).suspend();
+
+      tm(1).begin();
+      cache1.put("k", "v1");
+      tm(1).commit();
+
+      tm(0).resume(tx);
+      try {
+         tm(0).commit();
+         assert false : "The transaction should have failed validation";
+      } catch (RollbackException expected) {
+      }
+
+      assert "v1".equals(cache0.get("k"));
+      assert "v1".equals(cache1.get("k"));
+      assertNotLocked("k");
+   }
+
+   public void testConcurrentInsertIsDetected() throws Exception {
+      Cache<String, String> cache0 = cache(0), cache1 = cache(1);
+
+      tm(0).begin();
+      assert cache0.get("k") == null;
+      cache0.put("k", "v0");
+      Transaction tx = tm(0).suspend();
+
+      tm(1).begin();
+      cache1.put("k", "v1");
+      tm(1).commit();
+
+      tm(0).resume(tx);
+      try {
+         tm(0).commit();
+         assert false : "The transaction should have failed validation";
+      } catch (RollbackException expected) {
+      }
+
+      assert "v1".equals(cache0.get("k"));
+      assertNotLocked("k");
+   }
+
+   public void testNonConflictingTransactionsCommit() throws Exception {
+      Cache<String, String> cache0 = cache(0), cache1 = cache(1);
+
+      tm(0).begin();
+      cache0.put("k0", "v0");
+      cache0.put("k", "v0");
+      Transaction tx = tm(0).suspend();
+
+      tm(1).begin();
+      cache1.put("k1", "v1");
+      tm(1).commit();
+
+      tm(0).resume(tx);
+      tm(0).commit();
+
+      assert "v0".equals(cache1.get("k0"));
+      assert "v1".equals(cache0.get("k1"));
+      assertNotLocked("k0", "k1", "k");
+   }
+
+   public void testVersionsAreConsistentAcrossOwners() throws Exception {
+      tm(0).begin();
+      cache(0).put("k", "v");
+      tm(0).commit();
+
+      long version = versionOnOwners("k");
+      assert version > 0;
+
+      tm(1).begin();
+      cache(1).put("k", "v2");
+      tm(1).commit();
+
+      assert versionOnOwners("k") != version;
+   }
+
+   /**
+    * @return the version of the given key, after checking that every node holding it has the same version
+    */
+   protected long versionOnOwners(Object key) {
+      Long version = null;
+      int owners = 0;
+      for (Cache<?, ?> c : caches()) {
+         InternalCacheEntry ice = TestingUtil.extractComponent(c, DataContainer.class).peek(key);
+         if (ice == null) continue;
+         owners++;
+         assert version == null || version == ice.getVersion() : "Version " + ice.getVersion() + " differs from " + version;
+         version = ice.getVersion();
+      }
+      assert owners == numOwners() : "Expected " + numOwners() + " owners of " + key + ", found " + owners;
+      return version;
+   }
+
+   private void assertNotLocked(String... keys) {
+      for (Cache<?, ?> c : caches()) {
+         for (String key : keys) assertNotLocked(c, key);
+      }
+   }
+}
@@ -27,6 +27,8 @@ import org.infinispan.util.concurrent.locks.StripedLock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
@@ -108,6 +110,20 @@ public class StripedLockTest extends AbstractInfinispanTest {
 
    }
 
+   public void testLocksInOrderAreAtomic() throws Exception {
+      List<Object> keys = Arrays.<Object>asList("k1", "k2", "k3", "k4", "k5", "k6", KEY);
+      assert stripedLock.acquireLocksInOrder(keys, true, 0);
+      assert stripedLock.getTotalWriteLockCount() > 1;
+      stripedLock.releaseLocksInOrder(keys);
+      assert stripedLock.getTotalWriteLockCount() == 0;
+
+      assert aquireWL();
+      assert !stripedLock.acquireLocksInOrder(keys, true, 0);
+      assert stripedLock.getTotalWriteLockCount() == 1 : "No other locks should be held if the operation failed";
+      assert !stripedLock.acquireLocksInOrder(keys, false, 0);
+      assert stripedLock.getTotalReadLockCount() == 0 : "No read locks should be held if the operation failed";
+   }
+
    private boolean aquireWL() throws Exception {
       OtherThread otherThread = new OtherThread();
       otherThread.start();
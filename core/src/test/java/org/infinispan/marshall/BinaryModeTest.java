@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.interceptors.BinaryModeInterceptor;
+import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.interceptors.IsMarshallableInterceptor;
+import org.infinispan.interceptors.MarshalledValueInterceptor;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.util.ByteArrayKey;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+/**
+ * Tests that caches in binary mode store and replicate byte array keys and values as they are.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "marshall.BinaryModeTest")
+public class BinaryModeTest extends MultipleCacheManagersTest {
+
+   protected void createCacheManagers() throws Throwable {
+      // storeAsBinary is ignored in binary mode
+      Configuration replSync = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC).fluent()
+            .storeAsBinary().binaryMode().build();
+      createClusteredCaches(2, "binary", replSync);
+   }
+
+   public void testNoWrappingInterceptors() {
+      for (Cache c : caches("binary")) {
+         assert c.getConfiguration().isBinaryModeEnabled();
+         InterceptorChain ic = TestingUtil.extractComponent(c, InterceptorChain.class);
+         assert !ic.containsInterceptorType(MarshalledValueInterceptor.class);
+         assert !ic.containsInterceptorType(IsMarshallableInterceptor.class);
+         assert ic.containsInterceptorType(BinaryModeInterceptor.class);
+      }
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testNonBinaryKeyRejected() {
+      Cache<Object, byte[]> cache1 = cache(0, "binary");
+      cache1.put("k", new byte[]{1});
+   }
+
+   public void testBinaryEntriesStoredUnwrapped() {
+      Cache<ByteArrayKey, byte[]> cache1 = cache(0, "binary");
+      Cache<ByteArrayKey, byte[]> cache2 = cache(1, "binary");
+      byte[] value = {1, 2, 3, 4};
+      cache1.put(new ByteArrayKey(new byte[]{9, 8, 7}), value);
+
+      ByteArrayKey lookup = new ByteArrayKey(new byte[]{9, 8, 7});
+      InternalCacheEntry local = cache1.getAdvancedCache().getDataContainer().get(lookup);
+      assert local.getKey() instanceof ByteArrayKey;
+      assert local.getValue() == value : "Local value should be the very same byte array";
+
+      InternalCacheEntry remote = cache2.getAdvancedCache().getDataContainer().get(lookup);
+      assert remote.getKey() instanceof ByteArrayKey;
+      assert remote.getValue() instanceof byte[];
+      assert Arrays.equals(value, (byte[]) remote.getValue());
+      assert Arrays.equals(value, cache2.get(lookup));
+   }
+
+   public void testByteArrayKeyNeverWrapped() {
+      assert MarshalledValue.isTypeExcluded(ByteArrayKey.class);
+      assert MarshalledValue.isTypeExcluded(byte[].class);
+   }
+}
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.profiling;
+
+import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.NonTxInvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Guards the allocations saved on single key, non transactional reads, which reuse the thread's invocation context and
+ * get command, and keep the looked up entry out of a map.  The reuse itself is checked by identity on every run.  The
+ * allocation rate bound relies on the JIT eliminating short lived iterators, so it does not hold in interpreted mode,
+ * with trace logging, or on every JVM, and is run by hand.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "profiling.HotPathAllocationTest")
+public class HotPathAllocationTest extends SingleCacheManagerTest {
+
+   private static final int WARMUP = 200000;
+   private static final int OPERATIONS = 100000;
+   private static final long MAX_BYTES_PER_GET = 64;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      return TestCacheManagerFactory.createLocalCacheManager(false);
+   }
+
+   public void testGetReusesCommandAndContext() {
+      GetRecorder recorder = new GetRecorder();
+      cache.getAdvancedCache().addInterceptor(recorder, 0);
+      try {
+         cache.put("k", "v");
+         for (int i = 0; i < 1000; i++) {
+            assert "v".equals(cache.get("k"));
+            assert cache.get("missing") == null;
+         }
+      } finally {
+         cache.getAdvancedCache().removeInterceptor(GetRecorder.class);
+      }
+      assert recorder.commands.size() == 1 : "Expected a single pooled command, got " + recorder.commands.size();
+      assert recorder.contexts.size() == 1 : "Expected a single reused context, got " + recorder.contexts.size();
+      assert recorder.contexts.iterator().next() instanceof NonTxInvocationContext;
+   }
+
+   @Test(groups = "profiling", enabled = false)
+   public void testGetAllocationRate() {
+      ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+      if (!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+         throw new SkipException("Per thread allocation accounting is not available on this JVM");
+      com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled())
+         throw new SkipException("Per thread allocation accounting is not enabled on this JVM");
+
+      String key = "k", value = "v";
+      cache.put(key, value);
+      for (int i = 0; i < WARMUP; i++) assert cache.get(key) == value;
+
+      long threadId = Thread.currentThread().getId();
+      long before = allocations.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < OPERATIONS; i++) cache.get(key);
+      long bytesPerGet = (allocations.getThreadAllocatedBytes(threadId) - before) / OPERATIONS;
+
+      log.infof("Allocated %d bytes per get", bytesPerGet);
+      assert bytesPerGet <= MAX_BYTES_PER_GET : "Expected at most " + MAX_BYTES_PER_GET + " bytes per get, but was " + bytesPerGet;
+   }
+
+   public static class GetRecorder extends CommandInterceptor {
+      final Set<Object> commands = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+      final Set<Object> contexts = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+      @Override
+      public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
+         commands.add(command);
+         contexts.add(ctx);
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+}
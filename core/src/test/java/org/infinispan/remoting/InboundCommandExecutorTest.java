@@ -0,0 +1,324 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting;
+
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.tx.CommitCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.ClearCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test(groups = "unit", testName = "remoting.InboundCommandExecutorTest")
+public class InboundCommandExecutorTest extends AbstractInfinispanTest {
+
+   private static final String CACHE = "cache";
+   private static final Address SENDER = new TestAddress(1);
+   private static final Address OTHER_SENDER = new TestAddress(2);
+   private InboundCommandExecutor executor;
+
+   @BeforeMethod
+   public void setUp() {
+      executor = new InboundCommandExecutor(4, "InboundCommandExecutorTest");
+   }
+
+   @AfterMethod
+   public void tearDown() {
+      executor.stop();
+   }
+
+   public void testSameKeyIsOrdered() throws Exception {
+      final List<Integer> applied = Collections.synchronizedList(new ArrayList<Integer>());
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < 100; i++) {
+         final int n = i;
+         futures.add(executor.submit(SENDER, put("k"), new Callable<Integer>() {
+            @Override
+            public Integer call() {
+               applied.add(n);
+               return n;
+            }
+         }));
+      }
+      for (Future<Integer> f : futures) f.get(10, TimeUnit.SECONDS);
+      for (int i = 0; i < 100; i++) assertEquals((int) applied.get(i), i);
+   }
+
+   public void testBlockedKeyDoesNotBlockOtherKeys() throws Exception {
+      Object blockedKey = "blocked";
+      Object otherKey = keyOnOtherLane(blockedKey);
+      final CountDownLatch release = new CountDownLatch(1);
+      Future<Object> blocked = executor.submit(SENDER, put(blockedKey), new Callable<Object>() {
+         @Override
+         public Object call() throws Exception {
+            release.await();
+            return null;
+         }
+      });
+      Future<String> other = executor.submit(SENDER, put(otherKey), new Callable<String>() {
+         @Override
+         public String call() {
+            return "done";
+         }
+      });
+      try {
+         assertEquals(other.get(10, TimeUnit.SECONDS), "done");
+         assertFalse(blocked.isDone());
+      } finally {
+         release.countDown();
+      }
+      blocked.get(10, TimeUnit.SECONDS);
+   }
+
+   public void testMultiKeyCommandWaitsForAllItsKeys() throws Exception {
+      Object k1 = "k1";
+      Object k2 = keyOnOtherLane(k1);
+      final CountDownLatch release = new CountDownLatch(1);
+      Future<Object> blocked = executor.submit(SENDER, put(k2), new Callable<Object>() {
+         @Override
+         public Object call() throws Exception {
+            release.await();
+            return null;
+         }
+      });
+      Map<Object, Object> map = new HashMap<Object, Object>();
+      map.put(k1, "v1");
+      map.put(k2, "v2");
+      Future<String> putAll = executor.submit(SENDER, new SingleRpcCommand(CACHE, new PutMapCommand(map, null, -1, -1, null)), new Callable<String>() {
+         @Override
+         public String call() {
+            return "putAll";
+         }
+      });
+      Future<String> afterPutAll = executor.submit(SENDER, put(k1), new Callable<String>() {
+         @Override
+         public String call() {
+            return "put";
+         }
+      });
+
+      Thread.sleep(200);
+      assertFalse(putAll.isDone());
+      assertFalse(afterPutAll.isDone(), "A later write to k1 must not overtake the putAll");
+      release.countDown();
+      assertEquals(putAll.get(10, TimeUnit.SECONDS), "putAll");
+      assertEquals(afterPutAll.get(10, TimeUnit.SECONDS), "put");
+      blocked.get(10, TimeUnit.SECONDS);
+   }
+
+   public void testStopCancelsQueuedCommands() throws Exception {
+      Object k1 = "k1";
+      Object k2 = keyOnOtherLane(k1);
+      final CountDownLatch release = new CountDownLatch(1);
+      executor.submit(SENDER, put(k1), new Callable<Object>() {
+         @Override
+         public Object call() throws Exception {
+            release.await();
+            return null;
+         }
+      });
+      Future<String> queued = executor.submit(SENDER, put(k1), new Callable<String>() {
+         @Override
+         public String call() {
+            return "put";
+         }
+      });
+      Map<Object, Object> map = new HashMap<Object, Object>();
+      map.put(k1, "v1");
+      map.put(k2, "v2");
+      Future<String> putAll = executor.submit(SENDER, new SingleRpcCommand(CACHE, new PutMapCommand(map, null, -1, -1, null)), new Callable<String>() {
+         @Override
+         public String call() {
+            return "putAll";
+         }
+      });
+
+      executor.stop();
+      release.countDown();
+      for (Future<String> f : Arrays.asList(queued, putAll)) {
+         try {
+            f.get(10, TimeUnit.SECONDS);
+            fail("Commands still queued on stop should be cancelled");
+         } catch (CancellationException expected) {
+         }
+      }
+   }
+
+   public void testSendersDoNotBlockEachOther() throws Exception {
+      final CountDownLatch release = new CountDownLatch(1);
+      Future<Object> blocked = executor.submit(SENDER, put("k"), new Callable<Object>() {
+         @Override
+         public Object call() throws Exception {
+            release.await();
+            return null;
+         }
+      });
+      Future<String> other = executor.submit(OTHER_SENDER, put("k"), new Callable<String>() {
+         @Override
+         public String call() {
+            return "done";
+         }
+      });
+      try {
+         assertEquals(other.get(10, TimeUnit.SECONDS), "done");
+         assertFalse(blocked.isDone());
+      } finally {
+         release.countDown();
+      }
+      blocked.get(10, TimeUnit.SECONDS);
+   }
+
+   public void testCommitIsNotQueuedBehindCommandsWaitingForIt() throws Exception {
+      GlobalTransaction gtx = newGlobalTransaction();
+      executor.submit(SENDER, prepare(gtx), new Callable<Object>() {
+         @Override
+         public Object call() {
+            return null;
+         }
+      }).get(10, TimeUnit.SECONDS);
+      // a put waiting for a lock held by the prepared transaction
+      final CountDownLatch locksReleased = new CountDownLatch(1);
+      Future<Object> put = executor.submit(SENDER, put("k"), new Callable<Object>() {
+         @Override
+         public Object call() throws Exception {
+            locksReleased.await();
+            return null;
+         }
+      });
+      Future<Object> commit = executor.submit(SENDER, commit(gtx), new Callable<Object>() {
+         @Override
+         public Object call() {
+            locksReleased.countDown();
+            return null;
+         }
+      });
+      assertTrue(commit.isDone(), "A commit should be executed straight away");
+      put.get(10, TimeUnit.SECONDS);
+   }
+
+   public void testCommitWaitsForItsPrepare() throws Exception {
+      final GlobalTransaction gtx = newGlobalTransaction();
+      final List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+      final CountDownLatch release = new CountDownLatch(1);
+      executor.submit(SENDER, put("k"), new Callable<Object>() {
+         @Override
+         public Object call() throws Exception {
+            release.await();
+            return null;
+         }
+      });
+      executor.submit(SENDER, prepare(gtx), new Callable<Object>() {
+         @Override
+         public Object call() {
+            applied.add("prepare");
+            return null;
+         }
+      });
+      ExecutorService committer = Executors.newSingleThreadExecutor();
+      try {
+         Future<Future<Object>> commit = committer.submit(new Callable<Future<Object>>() {
+            @Override
+            public Future<Object> call() {
+               return executor.submit(SENDER, commit(gtx), new Callable<Object>() {
+                  @Override
+                  public Object call() {
+                     applied.add("commit");
+                     return null;
+                  }
+               });
+            }
+         });
+         Thread.sleep(200);
+         assertFalse(commit.isDone(), "The commit should wait for its prepare");
+         release.countDown();
+         commit.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS);
+         assertEquals(applied, Arrays.asList("prepare", "commit"));
+      } finally {
+         release.countDown();
+         committer.shutdownNow();
+      }
+   }
+
+   public void testClearSpansAllLanes() {
+      CacheRpcCommand clear = new SingleRpcCommand(CACHE, new ClearCommand(null, null));
+      assertEquals(executor.getLanes(clear).cardinality(), executor.getNumLanes());
+      assertEquals(executor.getLanes(put("k")).cardinality(), 1);
+      assertTrue(executor.getLanes(put("k")).get(executor.getLane(CACHE, "k")));
+   }
+
+   private Object keyOnOtherLane(Object key) {
+      int lane = executor.getLane(CACHE, key);
+      for (int i = 0; ; i++) {
+         Object other = "key" + i;
+         if (executor.getLane(CACHE, other) != lane) return other;
+      }
+   }
+
+   private static GlobalTransaction newGlobalTransaction() {
+      return TransactionFactory.TxFactoryEnum.NODLD_NORECOVERY_NOXA.newGlobalTransaction(SENDER, false, null, false);
+   }
+
+   private static CacheRpcCommand prepare(GlobalTransaction gtx) {
+      PrepareCommand prepare = new PrepareCommand(gtx, false, new PutKeyValueCommand("k", "value", false, null, -1, -1, null));
+      prepare.setCacheName(CACHE);
+      return prepare;
+   }
+
+   private static CacheRpcCommand commit(GlobalTransaction gtx) {
+      CommitCommand commit = new CommitCommand(gtx);
+      commit.setCacheName(CACHE);
+      return commit;
+   }
+
+   private static CacheRpcCommand put(Object key) {
+      return new SingleRpcCommand(CACHE, new PutKeyValueCommand(key, "value", false, null, -1, -1, null));
+   }
+}
@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.replication;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.remoting.CoalescingReplicationQueue;
+import org.infinispan.remoting.ReplicationQueue;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+@Test(groups = "functional", testName = "replication.CoalescingReplicationQueueTest")
+public class CoalescingReplicationQueueTest extends MultipleCacheManagersTest {
+
+   private static final int MAX_ELEMENTS = 100;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.REPL_ASYNC, false);
+      config.fluent().async()
+            .useReplQueue(true)
+            .replQueueClass(CoalescingReplicationQueue.class)
+            // long enough that only the test flushes the queue
+            .replQueueInterval(60000L)
+            .replQueueMaxElements(MAX_ELEMENTS);
+      createClusteredCaches(2, "coalescing", config);
+
+      Configuration bounded = config.clone();
+      bounded.fluent().async().replQueueMaxBytes(100L);
+      manager(0).defineConfiguration("bounded", bounded);
+      manager(1).defineConfiguration("bounded", bounded);
+   }
+
+   public void testOverwritesAreCoalesced() {
+      Cache<Object, Object> cache1 = cache(0, "coalescing");
+      final Cache<Object, Object> cache2 = cache(1, "coalescing");
+      ReplicationQueue queue = TestingUtil.extractComponent(cache1, ReplicationQueue.class);
+      assert queue instanceof CoalescingReplicationQueue;
+
+      for (int i = 0; i < 50; i++) cache1.put("hot", "v" + i);
+      cache1.put("cold", "value");
+      assertEquals(queue.getElementsCount(), 2);
+
+      assertEquals(queue.flush(), 2);
+      assertEquals(queue.getElementsCount(), 0);
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return "v49".equals(cache2.get("hot")) && "value".equals(cache2.get("cold"));
+         }
+      });
+   }
+
+   public void testConditionalWritesAreNotCoalesced() {
+      Cache<Object, Object> cache1 = cache(0, "coalescing");
+      final Cache<Object, Object> cache2 = cache(1, "coalescing");
+      ReplicationQueue queue = TestingUtil.extractComponent(cache1, ReplicationQueue.class);
+
+      cache1.put("k", "v1");
+      cache1.replace("k", "v1", "v2");
+      // supersedes the first put, but not the replace
+      cache1.put("k", "v3");
+      assertEquals(queue.getElementsCount(), 2);
+
+      assertEquals(queue.flush(), 2);
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return "v3".equals(cache2.get("k"));
+         }
+      });
+   }
+
+   public void testFlushWhenMaxBytesReached() {
+      Cache<Object, Object> cache1 = cache(0, "bounded");
+      final Cache<Object, Object> cache2 = cache(1, "bounded");
+      ReplicationQueue queue = TestingUtil.extractComponent(cache1, ReplicationQueue.class);
+
+      final byte[] value = new byte[60];
+      Arrays.fill(value, (byte) 1);
+      cache1.put("a", value);
+      assertEquals(queue.getElementsCount(), 1);
+      cache1.put("b", value);
+      assertEquals(queue.getElementsCount(), 0);
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return cache2.containsKey("a") && cache2.containsKey("b");
+         }
+      });
+   }
+}
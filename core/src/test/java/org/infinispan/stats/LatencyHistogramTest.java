@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+@Test(groups = "unit", testName = "stats.LatencyHistogramTest")
+public class LatencyHistogramTest extends AbstractInfinispanTest {
+
+   public void testBucketBoundaries() {
+      for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+         int bucket = LatencyHistogram.bucketFor(value);
+         assert bucket < LatencyHistogram.BUCKETS : "Bucket " + bucket + " out of range for " + value;
+         assert LatencyHistogram.lowestValueIn(bucket) <= value : "Value " + value + " below bucket " + bucket;
+         assert LatencyHistogram.highestValueIn(bucket) >= value : "Value " + value + " above bucket " + bucket;
+      }
+      for (int b = 1; b < LatencyHistogram.BUCKETS; b++) {
+         assert LatencyHistogram.lowestValueIn(b) == LatencyHistogram.highestValueIn(b - 1) + 1 : "Gap before bucket " + b;
+      }
+   }
+
+   public void testPercentiles() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (long i = 1; i <= 1000; i++) histogram.record(i * 1000);
+      LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+      assert snapshot.getCount() == 1000;
+      assert snapshot.getMean() == 500500;
+      assertWithinError(snapshot.getPercentile(50), 500000);
+      assertWithinError(snapshot.getPercentile(99), 990000);
+      assertWithinError(snapshot.getPercentile(99.9), 999000);
+      assertWithinError(snapshot.getPercentile(100), 1000000);
+   }
+
+   public void testEmptyAndReset() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      assert histogram.snapshot().getPercentile(99) == 0;
+      histogram.record(42);
+      histogram.record(-5);
+      assert histogram.snapshot().getCount() == 2;
+      assert histogram.snapshot().getPercentile(0) == 0;
+      histogram.reset();
+      assert histogram.snapshot().getCount() == 0;
+   }
+
+   public void testConcurrentRecording() throws Exception {
+      final LatencyHistogram histogram = new LatencyHistogram(4);
+      final int threads = 8, perThread = 10000;
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] recorders = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+         recorders[t] = new Thread("LatencyHistogramTest-" + t) {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  return;
+               }
+               for (int i = 0; i < perThread; i++) histogram.record(100);
+            }
+         };
+         recorders[t].start();
+      }
+      start.countDown();
+      for (Thread recorder : recorders) recorder.join();
+
+      LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+      assert snapshot.getCount() == threads * perThread : "Expected " + threads * perThread + " but was " + snapshot.getCount();
+      assert snapshot.getMean() == 100;
+   }
+
+   private void assertWithinError(long actual, long expected) {
+      assert actual >= expected && actual <= expected + expected / LatencyHistogram.SUB_BUCKETS :
+            "Expected about " + expected + " but was " + actual;
+   }
+}
@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput and hit ratio of the {@link BoundedConcurrentHashMap} eviction policies under a read
+ * mostly workload with a skewed key distribution.
+ * <p/>
+ * Modelled after a JMH benchmark: each policy is run for a number of warmup iterations, whose results are discarded,
+ * followed by measured iterations of fixed duration; the mean and standard deviation of the measured iterations are
+ * reported.
+ *
+ * @since 5.0
+ */
+@Test(testName = "stress.EvictionPolicyBenchmarkTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class EvictionPolicyBenchmarkTest {
+   private static final int CAPACITY = 4096;
+   private static final int CONCURRENCY = 32;
+   private static final int NUM_KEYS = 8 * CAPACITY;
+   private static final int NUM_THREADS = 8;
+   // percentage of the operations that are writes
+   private static final int WRITE_PERCENTAGE = 10;
+   private static final int WARMUP_ITERATIONS = 5;
+   private static final int MEASUREMENT_ITERATIONS = 10;
+   private static final long ITERATION_MILLIS = 1000;
+
+   private final int[] keys = new int[1 << 20];
+
+   @BeforeClass
+   public void generateKeys() {
+      // gaussian distribution, so that a minority of hot keys gets most of the accesses
+      Random r = new Random(12345);
+      for (int i = 0; i < keys.length; i++) {
+         keys[i] = (int) Math.min(NUM_KEYS - 1, Math.abs(r.nextGaussian() * CAPACITY));
+      }
+   }
+
+   public void testLRU() throws Exception {
+      benchmark(Eviction.LRU);
+   }
+
+   public void testLIRS() throws Exception {
+      benchmark(Eviction.LIRS);
+   }
+
+   public void testFIFO() throws Exception {
+      benchmark(Eviction.FIFO);
+   }
+
+   public void testUNORDERED() throws Exception {
+      benchmark(Eviction.UNORDERED);
+   }
+
+   public void testCLOCK() throws Exception {
+      benchmark(Eviction.CLOCK);
+   }
+
+   private void benchmark(Eviction eviction) throws Exception {
+      BoundedConcurrentHashMap<Integer, Integer> map =
+            new BoundedConcurrentHashMap<Integer, Integer>(CAPACITY, CONCURRENCY, eviction);
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+         runIteration(map);
+      }
+      double[] throughput = new double[MEASUREMENT_ITERATIONS];
+      double[] hitRatio = new double[MEASUREMENT_ITERATIONS];
+      for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+         double[] result = runIteration(map);
+         throughput[i] = result[0];
+         hitRatio[i] = result[1];
+      }
+      System.out.printf("%-10s %12.1f +/- %8.1f ops/ms   hit ratio %5.1f%% +/- %4.1f%%%n", eviction,
+            mean(throughput), stdDev(throughput), mean(hitRatio) * 100, stdDev(hitRatio) * 100);
+   }
+
+   /**
+    * @return the throughput in ops/ms and the hit ratio of a single iteration
+    */
+   private double[] runIteration(final BoundedConcurrentHashMap<Integer, Integer> map) throws Exception {
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicLong ops = new AtomicLong();
+      final AtomicLong reads = new AtomicLong();
+      final AtomicLong hits = new AtomicLong();
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ITERATION_MILLIS);
+      Thread[] threads = new Thread[NUM_THREADS];
+      for (int t = 0; t < NUM_THREADS; t++) {
+         final int offset = t * (keys.length / NUM_THREADS);
+         threads[t] = new Thread() {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  return;
+               }
+               long localOps = 0, localReads = 0, localHits = 0;
+               int i = offset;
+               while ((localOps & 0xFF) != 0 || System.nanoTime() < deadline) {
+                  Integer key = keys[i++ & (keys.length - 1)];
+                  if ((i % 100) < WRITE_PERCENTAGE) {
+                     map.put(key, key);
+                  } else {
+                     localReads++;
+                     if (map.get(key) != null) {
+                        localHits++;
+                     } else {
+                        // read-through, as a cache would after a miss
+                        map.put(key, key);
+                     }
+                  }
+                  localOps++;
+               }
+               ops.addAndGet(localOps);
+               reads.addAndGet(localReads);
+               hits.addAndGet(localHits);
+            }
+         };
+         threads[t].start();
+      }
+      long begin = System.nanoTime();
+      start.countDown();
+      for (Thread t : threads) {
+         t.join();
+      }
+      double millis = (System.nanoTime() - begin) / 1000000d;
+      return new double[]{ops.get() / millis, reads.get() == 0 ? 0 : (double) hits.get() / reads.get()};
+   }
+
+   private static double mean(double[] values) {
+      double sum = 0;
+      for (double v : values) {
+         sum += v;
+      }
+      return sum / values.length;
+   }
+
+   private static double stdDev(double[] values) {
+      double mean = mean(values);
+      double sum = 0;
+      for (double v : values) {
+         sum += (v - mean) * (v - mean);
+      }
+      return Math.sqrt(sum / values.length);
+   }
+}
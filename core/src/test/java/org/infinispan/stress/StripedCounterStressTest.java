@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.util.concurrent.StripedCounter;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the update throughput of a shared {@link AtomicLong} with that of a {@link StripedCounter} as the number of
+ * updating threads grows, and verifies that no update is lost.
+ *
+ * @since 5.0
+ */
+@Test(groups = "stress", testName = "stress.StripedCounterStressTest", enabled = false,
+      description = "Since this test is slow to run, it should be disabled by default and run by hand as necessary.")
+public class StripedCounterStressTest {
+
+   private static final long RUN_MILLIS = 2000;
+   private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
+   private interface Counter {
+      void increment();
+
+      long get();
+   }
+
+   public void testScaling() throws Exception {
+      System.out.printf("%8s %20s %20s%n", "threads", "AtomicLong ops/ms", "StripedCounter ops/ms");
+      for (int threads = 1; threads <= MAX_THREADS; threads <<= 1) {
+         final AtomicLong atomic = new AtomicLong();
+         final StripedCounter striped = new StripedCounter();
+         long atomicThroughput = run(threads, new Counter() {
+            public void increment() {
+               atomic.incrementAndGet();
+            }
+
+            public long get() {
+               return atomic.get();
+            }
+         });
+         long stripedThroughput = run(threads, new Counter() {
+            public void increment() {
+               striped.increment();
+            }
+
+            public long get() {
+               return striped.get();
+            }
+         });
+         System.out.printf("%8d %20d %20d%n", threads, atomicThroughput, stripedThroughput);
+      }
+   }
+
+   /**
+    * @return number of increments per millisecond
+    */
+   private long run(int threads, final Counter counter) throws Exception {
+      final CountDownLatch start = new CountDownLatch(1);
+      final long[] increments = new long[threads];
+      final long[] deadline = new long[1];
+      Thread[] workers = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+         final int index = t;
+         workers[t] = new Thread("StripedCounterStressTest-" + t) {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  return;
+               }
+               long count = 0;
+               long end = deadline[0];
+               // check the clock only every 1024 increments to keep it out of the measurement
+               while ((count & 1023) != 0 || System.nanoTime() < end) {
+                  counter.increment();
+                  count++;
+               }
+               increments[index] = count;
+            }
+         };
+         workers[t].start();
+      }
+      deadline[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+      start.countDown();
+      for (Thread worker : workers) worker.join();
+
+      long total = 0;
+      for (long count : increments) total += count;
+      assert counter.get() == total : "Expected " + total + " increments but counted " + counter.get();
+      return total / RUN_MILLIS;
+   }
+}
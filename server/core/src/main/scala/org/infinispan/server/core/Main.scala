@@ -60,6 +60,7 @@ object Main extends Log {
    val PROP_KEY_TOPOLOGY_STATE_TRANSFER = "infinispan.server.topology.state_transfer"
    val PROP_KEY_TOPOLOGY_UPDATE_TIMEOUT = "infinispan.server.topology.update_timeout"
    val PROP_KEY_CACHE_MANAGER_CLASS = "infinispan.server.cache_manager_class"
+   val PROP_KEY_BINARY_MODE = "infinispan.server.binary_mode"
    val HOST_DEFAULT = "127.0.0.1"
    val WORKER_THREADS_DEFAULT = 20 * Runtime.getRuntime.availableProcessors()
    val IDLE_TIMEOUT_DEFAULT = -1
@@ -70,6 +71,7 @@ object Main extends Log {
    val TOPO_REPL_TIMEOUT_DEFAULT = 10000L
    val TOPO_UPDATE_TIMEOUT_DEFAULT = 30000L
    val TOPO_STATE_TRANSFER_DEFAULT = true
+   val BINARY_MODE_DEFAULT = false
 
    /**
     * Server properties.  This object holds all of the required
@@ -183,7 +185,7 @@ object Main extends Log {
    }
 
    private def processCommandLine(args: Array[String]) {
-      val sopts = "-:hD:Vp:l:m:t:c:r:i:n:s:e:o:x:k:u:a:f:d:"
+      val sopts = "-:hD:Vp:l:m:t:c:r:i:n:s:e:o:x:k:u:a:f:d:b:"
       val lopts = Array(
          new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h'),
          new LongOpt("version", LongOpt.NO_ARGUMENT, null, 'V'),
@@ -202,7 +204,8 @@ object Main extends Log {
          new LongOpt("topo_repl_timeout", LongOpt.REQUIRED_ARGUMENT, null, 'u'),
          new LongOpt("topo_state_transfer", LongOpt.REQUIRED_ARGUMENT, null, 'a'),
          new LongOpt("topo_update_time", LongOpt.REQUIRED_ARGUMENT, null, 'd'),
-         new LongOpt("cache_manager_class", LongOpt.REQUIRED_ARGUMENT, null, 'f')
+         new LongOpt("cache_manager_class", LongOpt.REQUIRED_ARGUMENT, null, 'f'),
+         new LongOpt("binary_mode", LongOpt.REQUIRED_ARGUMENT, null, 'b')
          )
       val getopt = new Getopt("startServer", args, sopts, lopts)
       var code: Int = 0
@@ -232,6 +235,7 @@ object Main extends Log {
             case 'a' => props.setProperty(PROP_KEY_TOPOLOGY_STATE_TRANSFER, getopt.getOptarg)
             case 'd' => props.setProperty(PROP_KEY_TOPOLOGY_UPDATE_TIMEOUT, getopt.getOptarg)
             case 'f' => props.setProperty(PROP_KEY_CACHE_MANAGER_CLASS, getopt.getOptarg)
+            case 'b' => props.setProperty(PROP_KEY_BINARY_MODE, getopt.getOptarg)
             case 'D' => {
                val arg = getopt.getOptarg
                var name = ""
@@ -314,6 +318,9 @@ object Main extends Log {
       println
       println("    -f, --cache_manager_class=<clazz>  Cache manager class name to be used instead of the default one (it has to extend org.infinispan.manager.EmbeddedCacheManager).")
       println
+      println("    -b, --binary_mode=[true|false]     Runs the caches served by the server in binary mode, storing keys and values as the bytes received (default: false).")
+      println("                                       Embedded code sharing these caches must then use byte[] or ByteArrayKey keys. Only the Hot Rod server supports it.")
+      println
       println("    -D<name>[=<value>]                 Set a system property")
       println
       System.exit(0)
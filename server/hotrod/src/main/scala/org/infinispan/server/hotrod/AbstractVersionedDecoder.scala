@@ -57,6 +57,16 @@ abstract class AbstractVersionedDecoder {
     */
    def createValue(params: RequestParameters, nextVersion: Long, rawValue: Array[Byte]): CacheValue
 
+   /**
+    * Read the parameters and the key/value pairs of a multi-key put.
+    */
+   def readEntries(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Seq[(ByteArrayKey, Array[Byte])])
+
+   /**
+    * Create the response to a multi-key put.
+    */
+   def createPutAllResponse(header: HotRodHeader): AnyRef
+
    /**
     * Create a successful response.
     */
@@ -46,14 +46,40 @@ import transport.NettyTransport
  * @author Galder Zamarreño
  * @since 4.1
  */
-object Decoder10 extends AbstractVersionedDecoder with Log {
+object Decoder10 extends Decoder10
+
+/**
+ * Decoder for the operations of specification version 1.0, which later versions extend with the operations they add.
+ */
+class Decoder10 extends AbstractVersionedDecoder with Log {
    import OperationResponse._
    import ProtocolFlag._
    type SuitableHeader = HotRodHeader
 
    override def readHeader(buffer: ChannelBuffer, messageId: Long): (HotRodHeader, Boolean) = {
       val streamOp = buffer.readUnsignedByte
-      val (op, endOfOp) = streamOp match {
+      val (op, endOfOp) = readOperation(streamOp, messageId)
+      if (isTraceEnabled) trace("Operation code: %d has been matched to %s", streamOp, op)
+      
+      val cacheName = readString(buffer)
+      val flag = readUnsignedInt(buffer) match {
+         case 0 => NoFlag
+         case 1 => ForceReturnPreviousValue
+      }
+      val clientIntelligence = buffer.readUnsignedByte
+      val topologyId = readUnsignedInt(buffer)
+      // TODO: Use these once transaction support is added
+      val txId = buffer.readByte
+      if (txId != 0) throw new UnsupportedOperationException("Transaction types other than 0 (NO_TX) is not supported at this stage.  Saw TX_ID of " + txId)
+
+      (new HotRodHeader(op, messageId, cacheName, flag, clientIntelligence, topologyId, this), endOfOp)
+   }
+
+   /**
+    * Match the operation code with the request it stands for, and tell whether the request ends with the header.
+    */
+   protected def readOperation(streamOp: Short, messageId: Long): (Enumeration#Value, Boolean) = {
+      streamOp match {
          case 0x01 => (PutRequest, false)
          case 0x03 => (GetRequest, false)
          case 0x05 => (PutIfAbsentRequest, false)
@@ -69,20 +95,6 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          case 0x19 => (BulkGetRequest, false)
          case _ => throw new HotRodUnknownOperationException("Unknown operation: " + streamOp, messageId)
       }
-      if (isTraceEnabled) trace("Operation code: %d has been matched to %s", streamOp, op)
-      
-      val cacheName = readString(buffer)
-      val flag = readUnsignedInt(buffer) match {
-         case 0 => NoFlag
-         case 1 => ForceReturnPreviousValue
-      }
-      val clientIntelligence = buffer.readUnsignedByte
-      val topologyId = readUnsignedInt(buffer)
-      // TODO: Use these once transaction support is added
-      val txId = buffer.readByte
-      if (txId != 0) throw new UnsupportedOperationException("Transaction types other than 0 (NO_TX) is not supported at this stage.  Saw TX_ID of " + txId)
-
-      (new HotRodHeader(op, messageId, cacheName, flag, clientIntelligence, topologyId, this), endOfOp)
    }
 
    override def readKey(h: HotRodHeader, buffer: ChannelBuffer): (ByteArrayKey, Boolean) = {
@@ -115,6 +127,22 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
       }
    }
 
+   override def readEntries(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Seq[(ByteArrayKey, Array[Byte])]) = {
+      val lifespan = readLifespanOrMaxIdle(buffer)
+      val maxIdle = readLifespanOrMaxIdle(buffer)
+      val count = readUnsignedInt(buffer)
+      val entries = for (i <- 0 until count) yield (readKey(buffer), readRangedBytes(buffer))
+      (new RequestParameters(-1, lifespan, maxIdle, -1), entries)
+   }
+
+   override def createPutAllResponse(h: HotRodHeader): AnyRef =
+      new Response(h.messageId, h.cacheName, h.clientIntel, PutAllResponse, Success, h.topologyId)
+
+   private def readKeys(buffer: ChannelBuffer): Seq[ByteArrayKey] = {
+      val count = readUnsignedInt(buffer)
+      for (i <- 0 until count) yield readKey(buffer)
+   }
+
    private def readLifespanOrMaxIdle(buffer: ChannelBuffer): Int = {
       val stream = readUnsignedInt(buffer)
       if (stream <= 0) -1 else stream
@@ -197,6 +225,28 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
             if (isTraceEnabled) trace("About to create bulk response, count = %d", count)
             new BulkGetResponse(h.messageId, h.cacheName, h.clientIntel, BulkGetResponse, Success, h.topologyId, count)
          }
+         case GetAllRequest => {
+            val keys = readKeys(buffer)
+            if (isTraceEnabled) trace("About to get %d keys", keys.size)
+            // a single invocation, so that in DIST keys owned by the same node are fetched in one remote call
+            val javaKeys = new java.util.ArrayList[ByteArrayKey](keys.size)
+            for (k <- keys) javaKeys.add(k)
+            val values = cache.getAll(javaKeys)
+            val entries = mutable.ListBuffer.empty[(ByteArrayKey, Array[Byte])]
+            for (k <- keys) {
+               val v = values.get(k)
+               if (v != null) entries += ((k, v.data))
+            }
+            new GetAllResponse(h.messageId, h.cacheName, h.clientIntel, GetAllResponse, Success, h.topologyId, entries.toList)
+         }
+         case RemoveAllRequest => {
+            val keys = readKeys(buffer)
+            if (isTraceEnabled) trace("About to remove %d keys", keys.size)
+            // Previous values are never returned, so don't fetch them
+            val optCache = cache.getAdvancedCache.withFlags(SKIP_REMOTE_LOOKUP, SKIP_CACHE_LOAD)
+            for (k <- keys) optCache.remove(k)
+            new Response(h.messageId, h.cacheName, h.clientIntel, RemoveAllResponse, Success, h.topologyId)
+         }
       }
    }
 
@@ -252,6 +302,9 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          case StatsRequest => StatsResponse
          case PingRequest => PingResponse
          case BulkGetRequest => BulkGetResponse
+         case GetAllRequest => GetAllResponse
+         case PutAllRequest => PutAllResponse
+         case RemoveAllRequest => RemoveAllResponse
       }
    }
 
@@ -272,6 +325,9 @@ object OperationResponse extends Enumeration {
    val StatsResponse = Value(0x16)
    val PingResponse = Value(0x18)
    val BulkGetResponse = Value(0x1A)
+   val GetAllResponse = Value(0x1C)
+   val PutAllResponse = Value(0x1E)
+   val RemoveAllResponse = Value(0x20)
    val ErrorResponse = Value(0x50)
 }
 
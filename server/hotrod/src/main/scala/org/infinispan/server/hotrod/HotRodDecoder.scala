@@ -36,6 +36,8 @@ import org.infinispan.util.ByteArrayKey
 import java.io.{IOException, StreamCorruptedException}
 import org.jboss.netty.buffer.ChannelBuffer
 import org.jboss.netty.channel.Channel
+import java.util.concurrent.TimeUnit
+import HotRodOperation._
 
 /**
  * Top level Hot Rod decoder that after figuring out the version, delegates the rest of the reading to the
@@ -79,6 +81,7 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
          val version = buffer.readUnsignedByte
          val decoder = version match {
             case Version10 => Decoder10
+            case Version11 => Decoder11
             case _ => throw new UnknownVersionException("Unknown version:" + version, messageId)
          }
          val (header, endOfOp) = decoder.readHeader(buffer, messageId)
@@ -147,8 +150,24 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
    override protected def customDecodeHeader(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadHeader(header, buffer, cache))
 
-   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef =
-      writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         // Needs new versions for the values, which only this decoder can generate
+         case PutAllRequest => writeResponse(ch, putAll(buffer))
+         case _ => writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+      }
+   }
+
+   private def putAll(buffer: ChannelBuffer): AnyRef = {
+      val (parameters, entries) = header.decoder.readEntries(header, buffer)
+      params = parameters
+      if (isTrace) trace("About to put %d entries", entries.size)
+      val map = new java.util.HashMap[ByteArrayKey, CacheValue](entries.size)
+      for ((k, v) <- entries) map.put(k, header.decoder.createValue(params, generateVersion(cache), v))
+      getOptimizedCache(cache).putAll(map, toMillis(params.lifespan), TimeUnit.MILLISECONDS,
+         toMillis(params.maxIdle), TimeUnit.MILLISECONDS)
+      header.decoder.createPutAllResponse(header)
+   }
 
    override protected def customDecodeValue(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadValue(header, buffer, cache))
@@ -198,6 +217,7 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
 object HotRodDecoder extends Log {
    private val Magic = 0xA0
    private val Version10 = 10
+   private val Version11 = 11
 }
 
 class UnknownVersionException(reason: String, val messageId: Long) extends StreamCorruptedException(reason)
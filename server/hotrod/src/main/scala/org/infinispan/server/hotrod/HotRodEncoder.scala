@@ -93,6 +93,16 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
                buffer.writeByte(0) // Done
             }
          }
+         case g: GetAllResponse => {
+            if (g.status == Success) {
+               for ((key, value) <- g.entries) {
+                  buffer.writeByte(1) // Not done
+                  writeRangedBytes(key.getData, buffer)
+                  writeRangedBytes(value, buffer)
+               }
+               buffer.writeByte(0) // Done
+            }
+         }
          case g: GetResponse => if (g.status == Success) writeRangedBytes(g.data.get, buffer)
          case e: ErrorResponse => writeString(e.msg, buffer)
          case _ => if (buffer == null) throw new IllegalArgumentException("Response received is unknown: " + msg);         
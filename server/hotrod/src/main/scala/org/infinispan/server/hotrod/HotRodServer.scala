@@ -72,13 +72,35 @@ class HotRodServer extends AbstractProtocolServer("HotRod") with Log {
 
    override def start(p: Properties, cacheManager: EmbeddedCacheManager) {
       val properties = if (p == null) new Properties else p
+      val typedProps = TypedProperties.toTypedProperties(properties)
       isClustered = cacheManager.getGlobalConfiguration.getTransportClass != null
       if (isClustered)
-         defineTopologyCacheConfig(cacheManager, TypedProperties.toTypedProperties(properties))
-         
+         defineTopologyCacheConfig(cacheManager, typedProps)
+
+      // Done after defining the topology cache, whose String keys binary mode would reject
+      if (typedProps.getBooleanProperty(PROP_KEY_BINARY_MODE, BINARY_MODE_DEFAULT, true))
+         enableBinaryMode(cacheManager)
+
       super.start(properties, cacheManager, 11222)
    }
 
+   /**
+    * Keys and values reach the caches as ByteArrayKey and CacheValue instances built by the decoder, so caches that
+    * are not running yet are switched to binary mode to keep them from being wrapped or marshalled again.
+    */
+   private def enableBinaryMode(cacheManager: EmbeddedCacheManager) {
+      // Caches created later on for Hot Rod clients take their configuration from the default one
+      if (!cacheManager.isDefaultRunning)
+         cacheManager.getDefaultConfiguration.fluent.binaryMode
+
+      val binaryModeOverride = new Configuration
+      binaryModeOverride.fluent.binaryMode
+      for (cacheName <- asScalaIterator(cacheManager.getCacheNames.iterator)) {
+         if (cacheName != TopologyCacheName && !cacheManager.isRunning(cacheName))
+            cacheManager.defineConfiguration(cacheName, binaryModeOverride)
+      }
+   }
+
    override def startTransport(idleTimeout: Int, tcpNoDelay: Boolean,
          sendBufSize: Int, recvBufSize: Int, typedProps: TypedProperties) {
       // Start rest of the caches and self to view once we know for sure that we need to start
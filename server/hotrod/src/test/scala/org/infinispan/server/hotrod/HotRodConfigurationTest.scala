@@ -71,6 +71,22 @@ class HotRodConfigurationTest {
       }
    }
 
+   def testBinaryMode {
+      val props = new Properties
+      props.setProperty(PROP_KEY_BINARY_MODE, "true")
+      val cacheManager = TestCacheManagerFactory.createClusteredCacheManager
+      cacheManager.defineConfiguration("named", new Configuration)
+      val server = startHotRodServer(cacheManager, UniquePortThreadLocal.get.intValue, props)
+      try {
+         assertTrue(cacheManager.getCache().getConfiguration.isBinaryModeEnabled)
+         assertTrue(cacheManager.getCache("named").getConfiguration.isBinaryModeEnabled)
+         assertFalse(cacheManager.getCache(TopologyCacheName).getConfiguration.isBinaryModeEnabled)
+      } finally {
+         server.stop
+         cacheManager.stop
+      }
+   }
+
    private def withClusteredServer(props: Properties) (assert: Configuration => Unit) {
       val cacheManager = TestCacheManagerFactory.createClusteredCacheManager
       val server = startHotRodServer(cacheManager, UniquePortThreadLocal.get.intValue, props)
@@ -396,6 +396,47 @@ class HotRodFunctionalTest extends HotRodSingleNodeTest {
       }
    }
 
+   def testGetAll(m: Method) {
+      val size = 10
+      for (i <- 0 until size) assertStatus(client.put(k(m, i + "k-"), 0, 0, v(m, i + "v-")), Success)
+      // Ask for every other key, plus one that does not exist
+      val keys = (for (i <- 0 until size by 2) yield k(m, i + "k-")) :+ k(m, "missing-")
+      val resp = client.getAll(keys)
+      assertStatus(resp, Success)
+      assertEquals(resp.bulkData.size, size / 2)
+      for (i <- 0 until size by 2)
+         assertTrue(Arrays.equals(resp.bulkData.get(new ByteArrayKey(k(m, i + "k-"))).get, v(m, i + "v-")))
+   }
+
+   def testMultiKeyOperationsNeedVersion11(m: Method) {
+      for (code <- List[Byte](0x1B, 0x1D, 0x1F)) {
+         val status = client.execute(0xA0, code, cacheName, k(m), 0, 0, v(m), 0, 1, 0).status
+         assertEquals(status, UnknownOperation,
+            "Status should have been 'UnknownOperation' but instead was: " + status)
+      }
+      client.assertPut(m)
+   }
+
+   def testPutAllAndRemoveAll(m: Method) {
+      val size = 10
+      val entries = for (i <- 0 until size) yield (k(m, i + "k-"), v(m, i + "v-"))
+      assertStatus(client.putAll(entries, 0, 0), Success)
+      for (i <- 0 until size)
+         assertSuccess(client.get(k(m, i + "k-"), 0), v(m, i + "v-"))
+
+      assertStatus(client.removeAll(entries.map(_._1)), Success)
+      for (i <- 0 until size)
+         assertKeyDoesNotExist(client.get(k(m, i + "k-"), 0))
+   }
+
+   def testPutAllWithLifespan(m: Method) {
+      val entries = for (i <- 0 until 3) yield (k(m, i + "k-"), v(m, i + "v-"))
+      assertStatus(client.putAll(entries, 1, 0), Success)
+      Thread.sleep(1100)
+      for (i <- 0 until 3)
+         assertKeyDoesNotExist(client.get(k(m, i + "k-"), 0))
+   }
+
    def testPutBigSizeKey(m: Method) {
       val key = generateRandomString(1024 * 1024).getBytes
       assertStatus(client.put(key, 0, 0, v(m)), Success)
@@ -223,6 +223,21 @@ class HotRodClient(host: String, port: Int, defaultCacheName: String, rspTimeout
       var handler = ch.getPipeline.getLast.asInstanceOf[ClientHandler]
       handler.getResponse(op.id).asInstanceOf[TestBulkGetResponse]
    }
+
+   def getAll(keys: Seq[Array[Byte]]): TestBulkGetResponse = {
+      val op = new MultiKeyOp(0xA0, 0x1B, defaultCacheName, keys.map(k => (k, null)), 0, 0, 11)
+      execute(op, op.id).asInstanceOf[TestBulkGetResponse]
+   }
+
+   def putAll(entries: Seq[(Array[Byte], Array[Byte])], lifespan: Int, maxIdle: Int): TestResponse = {
+      val op = new MultiKeyOp(0xA0, 0x1D, defaultCacheName, entries, lifespan, maxIdle, 11)
+      execute(op, op.id)
+   }
+
+   def removeAll(keys: Seq[Array[Byte]]): TestResponse = {
+      val op = new MultiKeyOp(0xA0, 0x1F, defaultCacheName, keys.map(k => (k, null)), 0, 0, 11)
+      execute(op, op.id)
+   }
 }
 
 private class ClientPipelineFactory(client: HotRodClient, rspTimeoutSeconds: Int) extends ChannelPipelineFactory {
@@ -246,7 +261,7 @@ private class Encoder extends OneToOneEncoder {
             val buffer = dynamicBuffer
             buffer.writeByte(partial.magic.asInstanceOf[Byte]) // magic
             writeUnsignedLong(partial.id, buffer) // message id
-            buffer.writeByte(10) // version
+            buffer.writeByte(partial.protocolVersion) // version
             buffer.writeByte(partial.code) // opcode
             buffer
          }
@@ -254,7 +269,7 @@ private class Encoder extends OneToOneEncoder {
             val buffer = dynamicBuffer
             buffer.writeByte(op.magic.asInstanceOf[Byte]) // magic
             writeUnsignedLong(op.id, buffer) // message id
-            buffer.writeByte(10) // version
+            buffer.writeByte(op.protocolVersion) // version
             buffer.writeByte(op.code) // opcode
             if (!op.cacheName.isEmpty) {
                writeRangedBytes(op.cacheName.getBytes(), buffer) // cache name length + cache name
@@ -265,7 +280,18 @@ private class Encoder extends OneToOneEncoder {
             buffer.writeByte(op.clientIntel) // client intelligence
             writeUnsignedInt(op.topologyId, buffer) // topology id
             writeRangedBytes(new Array[Byte](0), buffer)
-            if (op.code != 0x13 && op.code != 0x15 && op.code != 0x17 && op.code != 0x19) { // if it's a key based op...
+            if (op.isInstanceOf[MultiKeyOp]) {
+               val multi = op.asInstanceOf[MultiKeyOp]
+               if (op.code == 0x1D) { // If it's putAll...
+                  writeUnsignedInt(multi.lifespan, buffer) // lifespan
+                  writeUnsignedInt(multi.maxIdle, buffer) // maxIdle
+               }
+               writeUnsignedInt(multi.entries.size, buffer) // Entry count
+               for ((key, value) <- multi.entries) {
+                  writeRangedBytes(key, buffer) // key length + key
+                  if (op.code == 0x1D) writeRangedBytes(value, buffer) // value length + value
+               }
+            } else if (op.code != 0x13 && op.code != 0x15 && op.code != 0x17 && op.code != 0x19) { // if it's a key based op...
                writeRangedBytes(op.key, buffer) // key length + key
                if (op.value != null) {
                   if (op.code != 0x0D) { // If it's not removeIfUnmodified...
@@ -358,7 +384,7 @@ private class Decoder(client: HotRodClient) extends ReplayingDecoder[VoidEnum] w
                }
             } else new TestResponse(id, op.cacheName, op.clientIntel, opCode, status, op.topologyId, topologyChangeResponse)
          }
-         case ContainsKeyResponse | ClearResponse | PingResponse =>
+         case ContainsKeyResponse | ClearResponse | PingResponse | PutAllResponse | RemoveAllResponse =>
             new TestResponse(id, op.cacheName, op.clientIntel, opCode, status, op.topologyId, topologyChangeResponse)
          case GetWithVersionResponse  => {
             if (status == Success) {
@@ -379,7 +405,7 @@ private class Decoder(client: HotRodClient) extends ReplayingDecoder[VoidEnum] w
                new TestGetResponse(id, op.cacheName, op.clientIntel, opCode, status, op.topologyId, None, topologyChangeResponse)
             }
          }
-         case BulkGetResponse => {
+         case BulkGetResponse | GetAllResponse => {
             var done = buf.readByte
             val bulkBuffer = mutable.Map.empty[ByteArrayKey, Array[Byte]]
             while (done == 1) {
@@ -387,7 +413,7 @@ private class Decoder(client: HotRodClient) extends ReplayingDecoder[VoidEnum] w
                done = buf.readByte
             }
             val bulk = immutable.Map[ByteArrayKey, Array[Byte]]() ++ bulkBuffer
-            new TestBulkGetResponse(id, op.cacheName, op.clientIntel, bulk, op.topologyId, topologyChangeResponse)
+            new TestBulkGetResponse(id, op.cacheName, op.clientIntel, opCode, bulk, op.topologyId, topologyChangeResponse)
          }
          case ErrorResponse => {
             if (op == null)
@@ -445,6 +471,7 @@ class Op(val magic: Int,
          val clientIntel: Byte,
          val topologyId: Int) {
    lazy val id = HotRodClient.idCounter.incrementAndGet
+   def protocolVersion: Byte = 10
    override def toString = {
       new StringBuilder().append("Op").append("(")
          .append(id).append(',')
@@ -492,6 +519,14 @@ class BulkGetOp(override val magic: Int,
               override val topologyId: Int,
               val count: Int) extends Op(magic, code, cacheName, null, 0, 0, null, 0, 0, clientIntel, topologyId)
 
+class MultiKeyOp(override val magic: Int,
+                 override val code: Byte,
+                 override val cacheName: String,
+                 val entries: Seq[(Array[Byte], Array[Byte])],
+                 override val lifespan: Int,
+                 override val maxIdle: Int,
+                 override val protocolVersion: Byte) extends Op(magic, code, cacheName, null, lifespan, maxIdle, null, 0, 0, 1, 0)
+
 class TestResponse(override val messageId: Long, override val cacheName: String,
                    override val clientIntel: Short, override val operation: OperationResponse,
                    override val status: OperationStatus,
@@ -532,6 +567,7 @@ class TestStatsResponse(override val messageId: Long, override val cacheName: St
       extends TestResponse(messageId, cacheName, clientIntel, StatsResponse, Success, topologyId, topologyResponse)
 
 class TestBulkGetResponse(override val messageId: Long, override val cacheName: String,
-                          override val clientIntel: Short, val bulkData: Map[ByteArrayKey, Array[Byte]],
+                          override val clientIntel: Short, override val operation: OperationResponse,
+                          val bulkData: Map[ByteArrayKey, Array[Byte]],
                           override val topologyId: Int, override val topologyResponse: Option[AbstractTopologyResponse])
-      extends TestResponse(messageId, cacheName, clientIntel, BulkGetResponse, Success, topologyId, topologyResponse)
\ No newline at end of file
+      extends TestResponse(messageId, cacheName, clientIntel, operation, Success, topologyId, topologyResponse)
\ No newline at end of file
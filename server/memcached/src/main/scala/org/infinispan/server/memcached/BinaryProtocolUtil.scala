@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import java.nio.ByteBuffer
+import org.jboss.netty.buffer.ChannelBuffer
+import org.infinispan.server.core.transport.ExtendedChannelBuffer._
+
+/**
+ * Memcached binary protocol utilities.
+ *
+ * @since 5.0
+ */
+trait BinaryProtocolUtil {
+
+   val RequestMagic = 0x80.toByte
+   val ResponseMagic = 0x81.toByte
+   val HeaderLength = 24
+
+   val Success: Short = 0x0000
+   val KeyNotFound: Short = 0x0001
+   val KeyExists: Short = 0x0002
+   val InvalidArguments: Short = 0x0004
+   val NotStored: Short = 0x0005
+   val NonNumericValue: Short = 0x0006
+   val UnknownCommand: Short = 0x0081
+   val InternalError: Short = 0x0084
+
+   val Empty = Array[Byte]()
+
+   /**
+    * Builds a response packet made of the fixed size header followed by the extras, key and value sections. The
+    * sections are wrapped rather than copied, so cached values go out to the wire as they are.
+    */
+   def buildResponse(opCode: Byte, status: Short, opaque: Int, cas: Long,
+                     extras: Array[Byte], key: Array[Byte], value: Array[Byte]): ChannelBuffer = {
+      val header = ByteBuffer.allocate(HeaderLength)
+      header.put(ResponseMagic)
+      header.put(opCode)
+      header.putShort(key.length.toShort)
+      header.put(extras.length.toByte)
+      header.put(0.toByte) // Data type
+      header.putShort(status)
+      header.putInt(extras.length + key.length + value.length)
+      header.putInt(opaque)
+      header.putLong(cas)
+      wrappedBuffer(header.array, extras, key, value)
+   }
+
+   def toUnsignedInt(i: Int): Long = i & 0xFFFFFFFFL
+
+   def toBytes(i: Int): Array[Byte] = ByteBuffer.allocate(4).putInt(i).array
+
+   def toBytes(l: Long): Array[Byte] = ByteBuffer.allocate(8).putLong(l).array
+}
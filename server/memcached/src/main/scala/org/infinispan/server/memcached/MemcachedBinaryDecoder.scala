@@ -0,0 +1,514 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import org.infinispan.server.core.Operation._
+import org.infinispan.server.memcached.MemcachedOperation._
+import org.infinispan.context.Flag
+import java.util.concurrent.{TimeUnit, ScheduledExecutorService}
+import java.io.{IOException, StreamCorruptedException}
+import java.nio.ByteBuffer
+import java.nio.channels.ClosedChannelException
+import org.infinispan.server.core._
+import org.infinispan.{AdvancedCache, Version, CacheException, Cache}
+import collection.mutable.ListBuffer
+import org.jboss.netty.buffer.{ChannelBuffers, ChannelBuffer}
+import transport.NettyTransport
+import DecoderState._
+import org.jboss.netty.channel.{ChannelFutureListener, ExceptionEvent, ChannelHandlerContext, Channel}
+
+/**
+ * A Memcached binary protocol specific decoder. Requests are framed by a fixed size header carrying the key, extras
+ * and body lengths, so keys and values are read straight off the buffer instead of being tokenized out of a command
+ * line.
+ *
+ * Quiet commands only answer back when there's something worth saying, i.e. errors, or hits in the case of getq and
+ * getkq. Responses for quiet commands are held back and written in one go along with the response for the next non
+ * quiet command, which is how clients pipeline multi-gets: a sequence of getq requests followed by a noop.
+ *
+ * Keys are converted into the Strings the Memcached cache is keyed on using ISO-8859-1, which maps each byte to a
+ * single character, so the ASCII keys that Memcached clients send are shared with text protocol connections.
+ *
+ * @since 5.0
+ */
+class MemcachedBinaryDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler: ScheduledExecutorService, transport: NettyTransport,
+      statistics: MemcachedStatistics)
+      extends AbstractProtocolDecoder[String, MemcachedValue](transport) with BinaryProtocolUtil {
+
+   cache = memcachedCache
+
+   import BinaryRequestResolver._
+   import MemcachedBinaryDecoder._
+
+   type SuitableParameters = MemcachedParameters
+   type SuitableHeader = BinaryRequestHeader
+
+   private lazy val isStatsEnabled = cache.getConfiguration.isExposeJmxStatistics
+   private final val pending = new ListBuffer[ChannelBuffer]
+   private var pendingBytes = 0
+   private var rawKey: Array[Byte] = _
+   private var stored: MemcachedValue = _
+   // Kept outside the header so that errors found while reading it can still be correlated with the request
+   private var lastOpCode: Byte = _
+   private var lastOpaque: Int = _
+   private var isCorrupted = false
+
+   override def readHeader(b: ChannelBuffer): (Option[BinaryRequestHeader], Boolean) = {
+      val magic = b.readByte
+      lastOpCode = b.readByte
+      val keyLength = b.readUnsignedShort
+      val extrasLength = b.readUnsignedByte
+      b.skipBytes(3) // Data type and reserved
+      val bodyLength = b.readInt
+      lastOpaque = b.readInt
+      val cas = b.readLong
+      val valueLength = bodyLength - keyLength - extrasLength
+      if (magic != RequestMagic || valueLength < 0) {
+         // Request boundaries can no longer be trusted, so the connection gets closed after replying
+         isCorrupted = true
+         throw new StreamCorruptedException("Invalid request header: magic=0x%02x, bodyLength=%d".format(magic, bodyLength))
+      }
+
+      val extras = new Array[Byte](extrasLength)
+      b.readBytes(extras)
+      val command = toCommand(lastOpCode)
+      if (command == None) {
+         b.skipBytes(keyLength + valueLength) // Skip the rest of the body to get to the next request
+         throw new UnknownOperationException("Unknown operation: 0x%02x".format(lastOpCode))
+      }
+      val c = command.get
+      if (!c.isValid(keyLength, extrasLength, valueLength)) {
+         b.skipBytes(keyLength + valueLength)
+         throw new StreamCorruptedException("Invalid arguments for %s: keyLength=%d, extrasLength=%d, valueLength=%d"
+               .format(c.op, keyLength, extrasLength, valueLength))
+      }
+
+      val op = (c.op, cas) match {
+         case (PutRequest | ReplaceRequest, v) if v != 0 => ReplaceIfUnmodifiedRequest
+         case (RemoveRequest, v) if v != 0 => RemoveIfUnmodifiedRequest
+         case (o, _) => o
+      }
+      if (isTraceEnabled) trace("Operation: %s, opaque: %d", op, lastOpaque)
+      val header = new BinaryRequestHeader(op, lastOpCode, lastOpaque, cas, keyLength, extras, valueLength,
+                                           c.isQuiet, c.isKeyReturned)
+      (Some(header), keyLength == 0 && valueLength == 0)
+   }
+
+   override def readKey(b: ChannelBuffer): (String, Boolean) = {
+      rawKey = new Array[Byte](header.keyLength)
+      b.readBytes(rawKey)
+      (new String(rawKey, KeyCharset), header.op == RemoveRequest)
+   }
+
+   override protected def get(buffer: ChannelBuffer): AnyRef = {
+      key = readKey(buffer)._1
+      createGetResponse(key, cache.get(key))
+   }
+
+   override def readParameters(ch: Channel, b: ChannelBuffer): Boolean = {
+      params = header.op match {
+         case PutRequest | PutIfAbsentRequest | ReplaceRequest | ReplaceIfUnmodifiedRequest => {
+            val extras = ByteBuffer.wrap(header.extras)
+            val flags = toUnsignedInt(extras.getInt)
+            val lifespan = {
+               val streamLifespan = extras.getInt
+               if (streamLifespan <= 0) -1 else streamLifespan
+            }
+            new MemcachedParameters(header.valueLength, lifespan, -1, header.cas, header.quiet, flags, "", 0)
+         }
+         case _ => new MemcachedParameters(header.valueLength, -1, -1, header.cas, header.quiet, 0, "", 0)
+      }
+      false
+   }
+
+   override protected def readValue(b: ChannelBuffer) {
+      b.readBytes(rawValue)
+   }
+
+   override def createValue(nextVersion: Long): MemcachedValue = {
+      stored = new MemcachedValue(rawValue, nextVersion, params.flags)
+      stored
+   }
+
+   override def getCache: Cache[String, MemcachedValue] = cache
+
+   override protected def customDecodeHeader(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case FlushAllRequest => flushAll(ch)
+         case VersionRequest => writeResponse(ch, response(Success, 0, Empty, Empty, Version.VERSION.getBytes))
+         case NoOpRequest => writeResponse(ch, response(Success))
+         case QuitRequest => quit(ch)
+      }
+   }
+
+   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case AppendRequest | PrependRequest => {
+            key = readKey(buffer)._1
+            checkpointTo(DECODE_PARAMETERS)
+         }
+         case IncrementRequest | DecrementRequest => {
+            key = readKey(buffer)._1
+            incrDecr(ch)
+         }
+         case RemoveIfUnmodifiedRequest => {
+            key = readKey(buffer)._1
+            removeIfUnmodified(ch)
+         }
+         case StatsRequest => {
+            // Stat groups are not supported, so every group gets the general statistics
+            buffer.skipBytes(header.keyLength)
+            writeResponse(ch, createStatsResponse)
+         }
+      }
+   }
+
+   override protected def customDecodeValue(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case AppendRequest | PrependRequest => {
+            readValue(buffer)
+            val prev = cache.get(key)
+            val ret =
+               if (prev == null) {
+                  response(NotStored)
+               } else if (header.cas != 0 && header.cas != prev.version) {
+                  response(KeyExists)
+               } else {
+                  val concatenated = header.op match {
+                     case AppendRequest => Array.concat(prev.data, rawValue)
+                     case PrependRequest => Array.concat(rawValue, prev.data)
+                  }
+                  val next = new MemcachedValue(concatenated, generateVersion(cache), prev.flags)
+                  // If there's a concurrent modification on this key, treat it as we couldn't replace it
+                  if (cache.replace(key, prev, next)) success(next.version) else response(NotStored)
+               }
+            writeResponse(ch, ret)
+         }
+      }
+   }
+
+   private def incrDecr(ch: Channel): AnyRef = {
+      val extras = ByteBuffer.wrap(header.extras)
+      val delta = BigInt(extras.getLong) & MaxUnsignedLong
+      val initial = BigInt(extras.getLong) & MaxUnsignedLong
+      val expiration = extras.getInt
+      val op = header.op
+      val prev = cache.get(key)
+      val ret =
+         if (prev != null) {
+            val prevCounter = BigInt(new String(prev.data))
+            val newCounter =
+               op match {
+                  case IncrementRequest => (prevCounter + delta) & MaxUnsignedLong // Wraps around like Memcached does
+                  case DecrementRequest => if (prevCounter < delta) BigInt(0) else prevCounter - delta
+               }
+            val next = new MemcachedValue(newCounter.toString.getBytes, generateVersion(cache), prev.flags)
+            if (!cache.replace(key, prev, next)) {
+               // If there's a concurrent modification on this key, the spec does not say what to do, so treat it as exceptional
+               throw new CacheException("Value modified since we retrieved from the cache, old value was " + prevCounter)
+            }
+            if (isStatsEnabled) if (op == IncrementRequest) statistics.incrHits.incrementAndGet() else statistics.decrHits.incrementAndGet
+            success(next.version, toBytes(newCounter.longValue))
+         } else {
+            if (isStatsEnabled) if (op == IncrementRequest) statistics.incrMisses.incrementAndGet() else statistics.decrMisses.incrementAndGet
+            if (expiration == NoCounterCreation) {
+               response(KeyNotFound)
+            } else {
+               val next = new MemcachedValue(initial.toString.getBytes, generateVersion(cache), 0)
+               val lifespan = toMillis(if (expiration <= 0) -1 else expiration)
+               val existing = cache.putIfAbsent(key, next, lifespan, TimeUnit.MILLISECONDS)
+               if (existing != null)
+                  throw new CacheException("Value created concurrently while initialising counter")
+               success(next.version, toBytes(initial.longValue))
+            }
+         }
+      writeResponse(ch, ret)
+   }
+
+   private def removeIfUnmodified(ch: Channel): AnyRef = {
+      val prev = cache.get(key)
+      val ret =
+         if (prev == null)
+            response(KeyNotFound)
+         else if (prev.version == header.cas && cache.remove(key, prev))
+            success(0)
+         else
+            response(KeyExists)
+      writeResponse(ch, ret)
+   }
+
+   private def flushAll(ch: Channel): AnyRef = {
+      val flushFunction = (cache: AdvancedCache[String, MemcachedValue]) => cache.withFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_CACHE_STORE).clear
+      val flushDelay = if (header.extras.isEmpty) 0 else ByteBuffer.wrap(header.extras).getInt
+      if (flushDelay == 0)
+         flushFunction(cache.getAdvancedCache)
+      else
+         scheduler.schedule(new DelayedFlushAll(cache, flushFunction), toMillis(flushDelay), TimeUnit.MILLISECONDS)
+      writeResponse(ch, success(0))
+   }
+
+   private def quit(ch: Channel): AnyRef = {
+      // Bypass writeResponse so that the channel is only closed once anything pending has been written
+      val ret = flushPending(success(0))
+      if (ret != null)
+         ch.write(ret).addListener(ChannelFutureListener.CLOSE)
+      else
+         ch.close
+      null
+   }
+
+   override def createSuccessResponse(prev: MemcachedValue): AnyRef = {
+      header.op match {
+         case ReplaceIfUnmodifiedRequest => {
+            if (isStatsEnabled) statistics.replaceIfUnmodifiedHits.incrementAndGet
+            success(stored.version)
+         }
+         case RemoveRequest => success(0)
+         case _ => success(stored.version)
+      }
+   }
+
+   override def createNotExecutedResponse(prev: MemcachedValue): AnyRef = {
+      if (isStatsEnabled && header.op == ReplaceIfUnmodifiedRequest)
+         statistics.replaceIfUnmodifiedBadval.incrementAndGet
+      // Replacing a missing key is the only way of getting here without a previous value
+      if (prev == null) response(KeyNotFound) else response(KeyExists)
+   }
+
+   override def createNotExistResponse: AnyRef = {
+      if (isStatsEnabled && header.op == ReplaceIfUnmodifiedRequest)
+         statistics.replaceIfUnmodifiedMisses.incrementAndGet
+      response(KeyNotFound)
+   }
+
+   override def createGetResponse(k: String, v: MemcachedValue): AnyRef = {
+      val returnedKey = if (header.returnKey) rawKey else Empty
+      if (v != null)
+         response(Success, v.version, toBytes(v.flags.toInt), returnedKey, v.data)
+      else if (header.quiet)
+         null // Misses are not reported back for quiet gets
+      else
+         response(KeyNotFound, 0, Empty, returnedKey, Empty)
+   }
+
+   override def createMultiGetResponse(pairs: Map[String, MemcachedValue]): AnyRef = {
+      val elements = new ListBuffer[ChannelBuffer]
+      for ((k, v) <- pairs)
+         elements += response(Success, v.version, toBytes(v.flags.toInt), k.getBytes(KeyCharset), v.data)
+      ChannelBuffers.wrappedBuffer(elements: _*)
+   }
+
+   override def createErrorResponse(t: Throwable): AnyRef = {
+      val cause = t match {
+         case m: MemcachedException => m.getCause
+         case _ => t
+      }
+      val status = cause match {
+         case c: ClosedChannelException => {
+            logExceptionReported(c)
+            return null // no-op, only log
+         }
+         case u: UnknownOperationException => {
+            logExceptionReported(u)
+            UnknownCommand
+         }
+         case i: IOException => {
+            logExceptionReported(i)
+            InvalidArguments
+         }
+         case n: NumberFormatException => {
+            logExceptionReported(n)
+            NonNumericValue
+         }
+         case _ => InternalError
+      }
+      val message = String.valueOf(cause.getMessage).getBytes
+      flushPending(buildResponse(lastOpCode, status, lastOpaque, 0, Empty, Empty, message))
+   }
+
+   override protected def createServerException(e: Exception, b: ChannelBuffer): (MemcachedException, Boolean) = {
+      e match {
+         case i: IOException => (new MemcachedException(i.getMessage, i), true)
+         case n: NumberFormatException => (new MemcachedException(n.getMessage, n), true)
+         case _ => (new MemcachedException(e.toString, e), false)
+      }
+   }
+
+   override def exceptionCaught(ctx: ChannelHandlerContext, e: ExceptionEvent) {
+      if (isCorrupted) {
+         val errorResponse = createErrorResponse(e.getCause)
+         if (errorResponse != null)
+            ctx.getChannel.write(errorResponse).addListener(ChannelFutureListener.CLOSE)
+         else
+            ctx.getChannel.close
+      } else {
+         super.exceptionCaught(ctx, e)
+      }
+   }
+
+   override def createStatsResponse: AnyRef = {
+      val elements = new ListBuffer[ChannelBuffer]
+      for ((stat, value) <- statistics.collect(cache, transport))
+         elements += response(Success, 0, Empty, stat.getBytes, value.toString.getBytes)
+      elements += response(Success) // An empty stat marks the end of the statistics
+      ChannelBuffers.wrappedBuffer(elements: _*)
+   }
+
+   override protected def writeResponse(ch: Channel, response: AnyRef): AnyRef = {
+      if (header.quiet) {
+         if (response != null) {
+            val buffer = response.asInstanceOf[ChannelBuffer]
+            pending += buffer
+            pendingBytes += buffer.readableBytes
+         }
+         // Do not let a long run of quiet commands pile up responses indefinitely
+         super.writeResponse(ch, if (pendingBytes >= MaxPendingBytes) flushPending(null) else null)
+      } else {
+         super.writeResponse(ch, flushPending(response))
+      }
+   }
+
+   /**
+    * Returns the given response preceded by any responses held back for quiet commands.
+    */
+   private def flushPending(response: AnyRef): AnyRef = {
+      if (pending.isEmpty) {
+         response
+      } else {
+         if (response != null) pending += response.asInstanceOf[ChannelBuffer]
+         val batch = ChannelBuffers.wrappedBuffer(pending: _*)
+         pending.clear
+         pendingBytes = 0
+         batch
+      }
+   }
+
+   private def success(cas: Long): ChannelBuffer = success(cas, Empty)
+
+   /**
+    * Successful outcomes of quiet commands are not reported back, with the exception of hits for quiet gets which are
+    * built separately.
+    */
+   private def success(cas: Long, value: Array[Byte]): ChannelBuffer =
+      if (header.quiet) null else response(Success, cas, Empty, Empty, value)
+
+   private def response(status: Short): ChannelBuffer = response(status, 0, Empty, Empty, Empty)
+
+   private def response(status: Short, cas: Long, extras: Array[Byte], key: Array[Byte], value: Array[Byte]): ChannelBuffer =
+      buildResponse(header.opCode, status, header.opaque, cas, extras, key, value)
+}
+
+object MemcachedBinaryDecoder {
+   private val KeyCharset = "ISO-8859-1"
+   private val MaxUnsignedLong = BigInt("18446744073709551615")
+   private val NoCounterCreation = 0xFFFFFFFF
+   private val MaxPendingBytes = 64 * 1024
+}
+
+class BinaryRequestHeader(op: Enumeration#Value, val opCode: Byte, val opaque: Int, val cas: Long,
+                          val keyLength: Int, val extras: Array[Byte], val valueLength: Int,
+                          val quiet: Boolean, val returnKey: Boolean) extends RequestHeader(op) {
+   override def toString = {
+      new StringBuilder().append("BinaryRequestHeader").append("{")
+         .append("op=").append(op)
+         .append(", opCode=").append(opCode)
+         .append(", opaque=").append(opaque)
+         .append(", cas=").append(cas)
+         .append(", keyLength=").append(keyLength)
+         .append(", extrasLength=").append(extras.length)
+         .append(", valueLength=").append(valueLength)
+         .append(", quiet=").append(quiet)
+         .append(", returnKey=").append(returnKey)
+         .append("}").toString
+   }
+}
+
+/**
+ * Describes the shape of a binary protocol command: whether it takes a key and a value, and which extras lengths it
+ * accepts.
+ */
+private class BinaryCommand(val op: Enumeration#Value, keyRequired: Boolean, keyAllowed: Boolean, valueAllowed: Boolean,
+                            extrasLengths: Set[Int], val isQuiet: Boolean, val isKeyReturned: Boolean) {
+
+   def this(op: Enumeration#Value, keyRequired: Boolean, valueAllowed: Boolean, extrasLengths: Int*) =
+      this(op, keyRequired, keyRequired, valueAllowed, Set(extrasLengths: _*), false, false)
+
+   def quietly: BinaryCommand = new BinaryCommand(op, keyRequired, keyAllowed, valueAllowed, extrasLengths, true, isKeyReturned)
+
+   def returningKey: BinaryCommand = new BinaryCommand(op, keyRequired, keyAllowed, valueAllowed, extrasLengths, isQuiet, true)
+
+   def withOptionalKey: BinaryCommand = new BinaryCommand(op, false, true, valueAllowed, extrasLengths, isQuiet, isKeyReturned)
+
+   private val MaxKeyLength = 250
+
+   def isValid(keyLength: Int, extrasLength: Int, valueLength: Int): Boolean = {
+      (keyLength > 0 || !keyRequired) && (keyLength == 0 || keyAllowed) && keyLength <= MaxKeyLength &&
+         (valueLength == 0 || valueAllowed) && extrasLengths.contains(extrasLength)
+   }
+}
+
+private object BinaryRequestResolver {
+   private val get = new BinaryCommand(GetRequest, true, false, 0)
+   private val set = new BinaryCommand(PutRequest, true, true, 8)
+   private val add = new BinaryCommand(PutIfAbsentRequest, true, true, 8)
+   private val replace = new BinaryCommand(ReplaceRequest, true, true, 8)
+   private val delete = new BinaryCommand(RemoveRequest, true, false, 0)
+   private val increment = new BinaryCommand(IncrementRequest, true, false, 20)
+   private val decrement = new BinaryCommand(DecrementRequest, true, false, 20)
+   private val quit = new BinaryCommand(QuitRequest, false, false, 0)
+   private val flush = new BinaryCommand(FlushAllRequest, false, false, 0, 4)
+   private val append = new BinaryCommand(AppendRequest, true, true, 0)
+   private val prepend = new BinaryCommand(PrependRequest, true, true, 0)
+
+   private val commands = Map[Byte, BinaryCommand](
+      (0x00: Byte) -> get,
+      (0x01: Byte) -> set,
+      (0x02: Byte) -> add,
+      (0x03: Byte) -> replace,
+      (0x04: Byte) -> delete,
+      (0x05: Byte) -> increment,
+      (0x06: Byte) -> decrement,
+      (0x07: Byte) -> quit,
+      (0x08: Byte) -> flush,
+      (0x09: Byte) -> get.quietly,
+      (0x0a: Byte) -> new BinaryCommand(NoOpRequest, false, false, 0),
+      (0x0b: Byte) -> new BinaryCommand(VersionRequest, false, false, 0),
+      (0x0c: Byte) -> get.returningKey,
+      (0x0d: Byte) -> get.returningKey.quietly,
+      (0x0e: Byte) -> append,
+      (0x0f: Byte) -> prepend,
+      (0x10: Byte) -> new BinaryCommand(StatsRequest, false, false, 0).withOptionalKey,
+      (0x11: Byte) -> set.quietly,
+      (0x12: Byte) -> add.quietly,
+      (0x13: Byte) -> replace.quietly,
+      (0x14: Byte) -> delete.quietly,
+      (0x15: Byte) -> increment.quietly,
+      (0x16: Byte) -> decrement.quietly,
+      (0x17: Byte) -> quit.quietly,
+      (0x18: Byte) -> flush.quietly,
+      (0x19: Byte) -> append.quietly,
+      (0x1a: Byte) -> prepend.quietly
+   )
+
+   def toCommand(opCode: Byte): Option[BinaryCommand] = commands.get(opCode)
+}
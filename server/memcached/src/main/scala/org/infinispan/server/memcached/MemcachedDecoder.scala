@@ -29,7 +29,6 @@ import org.infinispan.context.Flag
 import java.util.concurrent.{TimeUnit, ScheduledExecutorService}
 import java.io.{IOException, EOFException, StreamCorruptedException}
 import java.nio.channels.ClosedChannelException
-import java.util.concurrent.atomic.AtomicLong
 import org.infinispan.server.core._
 import org.infinispan.server.core.transport.ExtendedChannelBuffer._
 import org.infinispan.{AdvancedCache, Version, CacheException, Cache}
@@ -46,7 +45,8 @@ import org.jboss.netty.channel.Channel
  * @author Galder Zamarreño
  * @since 4.1
  */
-class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler: ScheduledExecutorService, transport: NettyTransport)
+class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler: ScheduledExecutorService, transport: NettyTransport,
+      statistics: MemcachedStatistics)
       extends AbstractProtocolDecoder[String, MemcachedValue](transport) with TextProtocolUtil {
 
    cache = memcachedCache
@@ -57,13 +57,6 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
    type SuitableHeader = RequestHeader
 
    private lazy val isStatsEnabled = cache.getConfiguration.isExposeJmxStatistics
-   private final val incrMisses = new AtomicLong(0)
-   private final val incrHits = new AtomicLong(0)
-   private final val decrMisses = new AtomicLong(0)
-   private final val decrHits = new AtomicLong(0)
-   private final val replaceIfUnmodifiedMisses = new AtomicLong(0)
-   private final val replaceIfUnmodifiedHits = new AtomicLong(0)
-   private final val replaceIfUnmodifiedBadval = new AtomicLong(0)
 
    override def readHeader(buffer: ChannelBuffer): (Option[RequestHeader], Boolean) = {
       var (streamOp, endOfOp) = readElement(buffer)
@@ -322,14 +315,14 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
             val next = createValue(newCounter.toString.getBytes, generateVersion(cache), params.flags)
             val replaced = cache.replace(key, prev, next)
             if (replaced) {
-               if (isStatsEnabled) if (op == IncrementRequest) incrHits.incrementAndGet() else decrHits.incrementAndGet
+               if (isStatsEnabled) if (op == IncrementRequest) statistics.incrHits.incrementAndGet() else statistics.decrHits.incrementAndGet
                if (!params.noReply) new String(next.data) + CRLF else null
             } else {
                // If there's a concurrent modification on this key, the spec does not say what to do, so treat it as exceptional
                throw new CacheException("Value modified since we retrieved from the cache, old value was " + prevCounter)
             }
          } else {
-            if (isStatsEnabled) if (op == IncrementRequest) incrMisses.incrementAndGet() else decrMisses.incrementAndGet
+            if (isStatsEnabled) if (op == IncrementRequest) statistics.incrMisses.incrementAndGet() else statistics.decrMisses.incrementAndGet
             if (!params.noReply) NOT_FOUND else null
          }
       writeResponse(ch, ret)
@@ -359,7 +352,7 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
    override def createSuccessResponse(prev: MemcachedValue): AnyRef = {
       if (isStatsEnabled) {
          header.op match {
-            case ReplaceIfUnmodifiedRequest => replaceIfUnmodifiedHits.incrementAndGet
+            case ReplaceIfUnmodifiedRequest => statistics.replaceIfUnmodifiedHits.incrementAndGet
             case _ => // No-op
          }
       }
@@ -374,7 +367,7 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
    override def createNotExecutedResponse(prev: MemcachedValue): AnyRef = {
       if (isStatsEnabled) {
          header.op match {
-            case ReplaceIfUnmodifiedRequest => replaceIfUnmodifiedBadval.incrementAndGet
+            case ReplaceIfUnmodifiedRequest => statistics.replaceIfUnmodifiedBadval.incrementAndGet
             case _ => // No-op
          }
       }
@@ -389,7 +382,7 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
    override def createNotExistResponse: AnyRef = {
       if (isStatsEnabled) {
          header.op match {
-            case ReplaceIfUnmodifiedRequest => replaceIfUnmodifiedMisses.incrementAndGet
+            case ReplaceIfUnmodifiedRequest => statistics.replaceIfUnmodifiedMisses.incrementAndGet
             case _ => // No-op
          }
       }
@@ -465,48 +458,8 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
    }
 
    override def createStatsResponse: AnyRef = {
-      val stats = cache.getAdvancedCache.getStats
       val sb = new StringBuilder
-      List[ChannelBuffer] (
-         buildStat("pid", 0, sb),
-         buildStat("uptime", stats.getTimeSinceStart, sb),
-         buildStat("uptime", stats.getTimeSinceStart, sb),
-         buildStat("time", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis), sb),
-         buildStat("version", cache.getVersion, sb),
-         buildStat("pointer_size", 0, sb), // Unsupported
-         buildStat("rusage_user", 0, sb), // Unsupported
-         buildStat("rusage_system", 0, sb), // Unsupported
-         buildStat("curr_items", stats.getCurrentNumberOfEntries, sb),
-         buildStat("total_items", stats.getTotalNumberOfEntries, sb),
-         buildStat("bytes", 0, sb), // Unsupported
-         buildStat("curr_connections", 0, sb), // TODO: Through netty?
-         buildStat("total_connections", 0, sb), // TODO: Through netty?
-         buildStat("connection_structures", 0, sb), // Unsupported
-         buildStat("cmd_get", stats.getRetrievals, sb),
-         buildStat("cmd_set", stats.getStores, sb),
-         buildStat("get_hits", stats.getHits, sb),
-         buildStat("get_misses", stats.getMisses, sb),
-         buildStat("delete_misses", stats.getRemoveMisses, sb),
-         buildStat("delete_hits", stats.getRemoveHits, sb),
-         buildStat("incr_misses", incrMisses, sb),
-         buildStat("incr_hits", incrHits, sb),
-         buildStat("decr_misses", decrMisses, sb),
-         buildStat("decr_hits", decrHits, sb),
-         buildStat("cas_misses", replaceIfUnmodifiedMisses, sb),
-         buildStat("cas_hits", replaceIfUnmodifiedHits, sb),
-         buildStat("cas_badval", replaceIfUnmodifiedBadval, sb),
-         buildStat("auth_cmds", 0, sb), // Unsupported
-         buildStat("auth_errors", 0, sb), // Unsupported
-         //TODO: Evictions are measure by evict calls, but not by nodes are that are expired after the entry's lifespan has expired.
-         buildStat("evictions", stats.getEvictions, sb),
-         buildStat("bytes_read", transport.getTotalBytesRead, sb),
-         buildStat("bytes_written", transport.getTotalBytesWritten, sb),
-         buildStat("limit_maxbytes", 0, sb), // Unsupported
-         buildStat("threads", 0, sb), // TODO: Through netty?
-         buildStat("conn_yields", 0, sb), // Unsupported
-         buildStat("reclaimed", 0, sb), // Unsupported
-         wrappedBuffer(END)
-      )
+      statistics.collect(cache, transport).map { case (stat, value) => buildStat(stat, value, sb) } ::: List(wrappedBuffer(END))
    }
 
    private def buildStat(stat: String, value: Any, sb: StringBuilder): ChannelBuffer = {
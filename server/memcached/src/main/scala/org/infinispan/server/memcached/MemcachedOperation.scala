@@ -34,4 +34,5 @@ object MemcachedOperation extends Enumeration(10) {
    val IncrementRequest, DecrementRequest = Value
    val FlushAllRequest, VersionRequest = Value
    val VerbosityRequest, QuitRequest = Value
+   val NoOpRequest, RemoveIfUnmodifiedRequest = Value
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import logging.Log
+import org.infinispan.server.core.DecoderState
+import org.infinispan.server.core.DecoderState._
+import org.infinispan.server.core.transport.NettyTransport
+import org.jboss.netty.buffer.ChannelBuffer
+import org.jboss.netty.channel.{ChannelStateEvent, Channel, ChannelHandlerContext}
+import org.jboss.netty.handler.codec.replay.ReplayingDecoder
+
+/**
+ * Decoder that works out whether a connection talks the Memcached text or binary protocol by looking at the first
+ * byte received, and then replaces itself in the pipeline with the corresponding protocol decoder. Binary requests
+ * always start with the request magic byte, which is never the first character of a text command.
+ *
+ * @since 5.0
+ */
+class MemcachedProtocolDetector(transport: NettyTransport,
+                                textDecoder: () => MemcachedDecoder,
+                                binaryDecoder: () => MemcachedBinaryDecoder)
+      extends ReplayingDecoder[DecoderState](DECODE_HEADER, true) with BinaryProtocolUtil with Log {
+
+   override def decode(ctx: ChannelHandlerContext, ch: Channel, buffer: ChannelBuffer, state: DecoderState): AnyRef = {
+      val isBinary = buffer.getByte(buffer.readerIndex) == RequestMagic
+      if (isTraceEnabled) trace("Connection %s uses the %s protocol", ch, if (isBinary) "binary" else "text")
+      val (name, decoder) = if (isBinary) ("binaryDecoder", binaryDecoder()) else ("textDecoder", textDecoder())
+      val pipeline = ctx.getPipeline
+      // The protocol decoder goes right after this decoder, so that the bytes returned below are handed over to it
+      pipeline.addAfter(ctx.getName, name, decoder)
+      pipeline.remove(this)
+      buffer.readBytes(actualReadableBytes)
+   }
+
+   override def channelOpen(ctx: ChannelHandlerContext, e: ChannelStateEvent) {
+      // The protocol decoder is only installed once data arrives, so it's up to this decoder to track the channel
+      transport.acceptedChannels.add(e.getChannel)
+      super.channelOpen(ctx, e)
+   }
+}
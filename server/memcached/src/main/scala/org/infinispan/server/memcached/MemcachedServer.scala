@@ -26,11 +26,17 @@ import org.infinispan.server.core.AbstractProtocolServer
 import java.util.concurrent.Executors
 import org.infinispan.manager.EmbeddedCacheManager
 import java.util.Properties
+import org.infinispan.Cache
+import org.infinispan.server.core.DecoderState
+import org.jboss.netty.handler.codec.replay.ReplayingDecoder
 
 /**
  * Memcached server defining its decoder/encoder settings. In fact, Memcached does not use an encoder since there's
  * no really common headers between protocol operations.
  *
+ * Both the text and the binary protocols are served on the same port. The protocol is detected for each connection
+ * when its first bytes arrive, see {@link MemcachedProtocolDetector}.
+ *
  * @author Galder Zamarreño
  * @since 4.1
  */
@@ -38,6 +44,8 @@ class MemcachedServer extends AbstractProtocolServer("Memcached") {
 
    protected lazy val scheduler = Executors.newScheduledThreadPool(1)
 
+   private final val statistics = new MemcachedStatistics
+
    override def start(p: Properties, cacheManager: EmbeddedCacheManager) {
       val properties = if (p == null) new Properties else p
       super.start(properties, cacheManager, 11211)
@@ -45,8 +53,19 @@ class MemcachedServer extends AbstractProtocolServer("Memcached") {
 
    override def getEncoder = null
 
-   override def getDecoder: MemcachedDecoder = {
-      val memcachedDecoder: MemcachedDecoder = new MemcachedDecoder(getCacheManager.getCache[String, MemcachedValue], scheduler, transport)
+   override def getDecoder: ReplayingDecoder[DecoderState] =
+      new MemcachedProtocolDetector(transport, () => createTextDecoder, () => createBinaryDecoder)
+
+   protected def getMemcachedCache: Cache[String, MemcachedValue] = getCacheManager.getCache[String, MemcachedValue]
+
+   protected def createTextDecoder: MemcachedDecoder = {
+      val memcachedDecoder: MemcachedDecoder = new MemcachedDecoder(getMemcachedCache, scheduler, transport, statistics)
+      memcachedDecoder.versionGenerator = this.versionGenerator
+      memcachedDecoder
+   }
+
+   protected def createBinaryDecoder: MemcachedBinaryDecoder = {
+      val memcachedDecoder = new MemcachedBinaryDecoder(getMemcachedCache, scheduler, transport, statistics)
       memcachedDecoder.versionGenerator = this.versionGenerator
       memcachedDecoder
    }
@@ -0,0 +1,191 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import java.lang.reflect.Method
+import java.net.Socket
+import java.nio.ByteBuffer
+import java.io.DataInputStream
+import java.util.Arrays
+import java.util.concurrent.TimeUnit
+import net.spy.memcached.{CASResponse, MemcachedClient}
+import org.infinispan.manager.EmbeddedCacheManager
+import org.testng.Assert._
+import org.testng.annotations.{AfterClass, Test}
+
+/**
+ * Tests Memcached binary protocol functionality against Infinispan Memcached server.
+ *
+ * @since 5.0
+ */
+@Test(groups = Array("functional"), testName = "server.memcached.MemcachedBinaryFunctionalTest")
+class MemcachedBinaryFunctionalTest extends MemcachedSingleNodeTest {
+   private var binaryClient: MemcachedClient = _
+
+   override def createCacheManager: EmbeddedCacheManager = {
+      val cm = super.createCacheManager
+      binaryClient = createMemcachedBinaryClient(60000, server.getPort)
+      cm
+   }
+
+   @AfterClass(alwaysRun = true)
+   override def destroyAfterClass {
+      binaryClient.shutdown
+      super.destroyAfterClass
+   }
+
+   def testSetBasic(m: Method) {
+      val f = binaryClient.set(k(m), 0, v(m))
+      assertTrue(f.get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(binaryClient.get(k(m)), v(m))
+   }
+
+   def testDataSharedWithTextProtocol(m: Method) {
+      assertTrue(client.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(binaryClient.get(k(m)), v(m))
+      assertTrue(binaryClient.set(k(m, "k1-"), 0, v(m, "v1-")).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.get(k(m, "k1-")), v(m, "v1-"))
+   }
+
+   def testGetBulk(m: Method) {
+      // Binary clients retrieve multiple keys as a pipeline of quiet gets followed by a noop
+      for (i <- 1 to 3)
+         assertTrue(binaryClient.set(k(m, "k" + i + "-"), 0, v(m, "v" + i + "-")).get(timeout, TimeUnit.SECONDS).booleanValue)
+      val keys = Arrays.asList(k(m, "k1-"), k(m, "k2-"), k(m, "k3-"), k(m, "k4-"))
+      val values = binaryClient.getBulk(keys)
+      assertEquals(values.size, 3)
+      for (i <- 1 to 3)
+         assertEquals(values.get(k(m, "k" + i + "-")), v(m, "v" + i + "-"))
+   }
+
+   def testAddAndReplace(m: Method) {
+      assertFalse(binaryClient.replace(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(binaryClient.add(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertFalse(binaryClient.add(k(m), 0, v(m, "v1-")).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(binaryClient.replace(k(m), 0, v(m, "v1-")).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(binaryClient.get(k(m)), v(m, "v1-"))
+   }
+
+   def testCas(m: Method) {
+      assertTrue(binaryClient.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      val value = binaryClient.gets(k(m))
+      assertEquals(value.getValue, v(m))
+      assertTrue(value.getCas != 0)
+      assertEquals(binaryClient.cas(k(m), value.getCas, v(m, "v1-")), CASResponse.OK)
+      assertEquals(binaryClient.cas(k(m), value.getCas, v(m, "v2-")), CASResponse.EXISTS)
+      assertEquals(binaryClient.cas(k(m, "k1-"), value.getCas, v(m, "v2-")), CASResponse.NOT_FOUND)
+      assertEquals(binaryClient.get(k(m)), v(m, "v1-"))
+   }
+
+   def testIncrementDecrement(m: Method) {
+      assertEquals(binaryClient.incr(k(m), 1), -1L) // Not found and not created
+      assertEquals(binaryClient.incr(k(m), 1, 10), 10L) // Created with the initial value
+      assertEquals(binaryClient.incr(k(m), 5), 15L)
+      assertEquals(binaryClient.decr(k(m), 20), 0L)
+      assertEquals(client.get(k(m)), "0")
+   }
+
+   def testAppendPrepend(m: Method) {
+      assertFalse(binaryClient.append(0, k(m), "-b").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(binaryClient.set(k(m), 0, "a").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(binaryClient.append(0, k(m), "-b").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(binaryClient.prepend(0, k(m), "c-").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(binaryClient.get(k(m)), "c-a-b")
+   }
+
+   def testDelete(m: Method) {
+      assertTrue(binaryClient.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(binaryClient.delete(k(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertFalse(binaryClient.delete(k(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertNull(binaryClient.get(k(m)))
+   }
+
+   def testQuietCommandsOnlyAnsweredWhenNeeded(m: Method) {
+      val socket = new Socket(server.getHost, server.getPort)
+      try {
+         val out = socket.getOutputStream
+         val in = new DataInputStream(socket.getInputStream)
+         // setq, getq for a missing key, getq for the stored key and a noop, all sent in one go
+         out.write(request(0x11, 1, k(m).getBytes, ByteBuffer.allocate(8).array, v(m).getBytes))
+         out.write(request(0x09, 2, k(m, "k1-").getBytes, Array(), Array()))
+         out.write(request(0x09, 3, k(m).getBytes, Array(), Array()))
+         out.write(request(0x0a, 4, Array(), Array(), Array()))
+         out.flush
+         // Only the hit and the noop are answered
+         val (hitStatus, hitOpaque, hitValue) = readResponse(in)
+         assertEquals(hitStatus, 0)
+         assertEquals(hitOpaque, 3)
+         assertEquals(new String(hitValue), v(m))
+         val (noopStatus, noopOpaque, _) = readResponse(in)
+         assertEquals(noopStatus, 0)
+         assertEquals(noopOpaque, 4)
+      } finally {
+         socket.close
+      }
+   }
+
+   def testUnknownCommand {
+      val socket = new Socket(server.getHost, server.getPort)
+      try {
+         val out = socket.getOutputStream
+         val in = new DataInputStream(socket.getInputStream)
+         out.write(request(0x7f, 1, "blah".getBytes, Array(), Array()))
+         out.write(request(0x0a, 2, Array(), Array(), Array()))
+         out.flush
+         val (status, opaque, _) = readResponse(in)
+         assertEquals(status, 0x81)
+         assertEquals(opaque, 1)
+         // The connection carries on being usable after the error
+         val (noopStatus, noopOpaque, _) = readResponse(in)
+         assertEquals(noopStatus, 0)
+         assertEquals(noopOpaque, 2)
+      } finally {
+         socket.close
+      }
+   }
+
+   private def request(opCode: Int, opaque: Int, key: Array[Byte], extras: Array[Byte], value: Array[Byte]): Array[Byte] = {
+      val buffer = ByteBuffer.allocate(24 + extras.length + key.length + value.length)
+      buffer.put(0x80.toByte).put(opCode.toByte).putShort(key.length.toShort)
+      buffer.put(extras.length.toByte).put(0.toByte).putShort(0)
+      buffer.putInt(extras.length + key.length + value.length).putInt(opaque).putLong(0)
+      buffer.put(extras).put(key).put(value)
+      buffer.array
+   }
+
+   private def readResponse(in: DataInputStream): (Int, Int, Array[Byte]) = {
+      assertEquals(in.readByte, 0x81.toByte)
+      in.readByte // Opcode
+      val keyLength = in.readUnsignedShort
+      val extrasLength = in.readUnsignedByte
+      in.readByte // Data type
+      val status = in.readUnsignedShort
+      val bodyLength = in.readInt
+      val opaque = in.readInt
+      in.readLong // CAS
+      in.skipBytes(extrasLength + keyLength)
+      val value = new Array[Byte](bodyLength - extrasLength - keyLength)
+      in.readFully(value)
+      (status, opaque, value)
+   }
+}
@@ -23,13 +23,14 @@
 package org.infinispan.server.memcached.test
 
 import java.lang.reflect.Method
-import net.spy.memcached.{DefaultConnectionFactory, MemcachedClient}
+import net.spy.memcached.{BinaryConnectionFactory, DefaultConnectionFactory, MemcachedClient}
 import java.net.InetSocketAddress
 import java.util.concurrent.atomic.AtomicInteger
-import org.infinispan.server.memcached.{MemcachedDecoder, MemcachedValue, MemcachedServer}
+import org.infinispan.server.memcached.{MemcachedValue, MemcachedServer}
 import org.infinispan.manager.EmbeddedCacheManager
 import java.util.{Properties, Arrays}
 import org.infinispan.server.core.Main._
+import org.infinispan.Cache
 
 /**
  * Utils for Memcached tests.
@@ -55,6 +56,13 @@ trait MemcachedTestingUtil {
       return new MemcachedClient(d, Arrays.asList(new InetSocketAddress(host, port)))
    }
 
+   def createMemcachedBinaryClient(timeout: Long, port: Int): MemcachedClient = {
+      val d = new BinaryConnectionFactory {
+         override def getOperationTimeout: Long = timeout
+      }
+      new MemcachedClient(d, Arrays.asList(new InetSocketAddress(host, port)))
+   }
+
    def startMemcachedTextServer(cacheManager: EmbeddedCacheManager): MemcachedServer =
       startMemcachedTextServer(cacheManager, UniquePortThreadLocal.get.intValue)
 
@@ -78,11 +86,8 @@ trait MemcachedTestingUtil {
    def startMemcachedTextServer(cacheManager: EmbeddedCacheManager, port: Int, cacheName: String): MemcachedServer = {
       val server = new MemcachedServer {
 
-         override def getDecoder: MemcachedDecoder = {
-            var memcachedDecoder: MemcachedDecoder = new MemcachedDecoder(getCacheManager.getCache[String, MemcachedValue](cacheName), scheduler, transport)
-            memcachedDecoder.versionGenerator = this.versionGenerator
-            memcachedDecoder
-         }
+         override def getMemcachedCache: Cache[String, MemcachedValue] =
+            getCacheManager.getCache[String, MemcachedValue](cacheName)
 
          override def startDefaultCache = getCacheManager.getCache(cacheName)
       }
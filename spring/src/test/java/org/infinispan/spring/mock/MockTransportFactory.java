@@ -24,8 +24,12 @@
 package org.infinispan.spring.mock;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.infinispan.client.hotrod.impl.ConfigurationProperties;
@@ -67,6 +71,16 @@ public final class MockTransportFactory implements TransportFactory {
       return null;
    }
 
+   @Override
+   public Transport getTransport(final InetSocketAddress server) {
+      return null;
+   }
+
+   @Override
+   public Map<InetSocketAddress, List<byte[]>> groupKeysByServer(final Collection<byte[]> keys) {
+      return Collections.singletonMap(null, (List<byte[]>) new ArrayList<byte[]>(keys));
+   }
+
    @Override
    public boolean isTcpNoDelay() {
       return false;